@@ -12,15 +12,13 @@ import rayrangers.raytracer.algorithm.Renderer;
 import rayrangers.raytracer.math.TrafoMatrix;
 import rayrangers.raytracer.math.Vertex3D;
 import rayrangers.raytracer.parser.ObjParser;
+import rayrangers.raytracer.view.StreamingPngWriter;
 import rayrangers.raytracer.view.ViewPane;
 
-import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 // import java.util.ArrayList;
-// import java.util.List;
-
-import javax.imageio.ImageIO;
+import java.util.List;
 
 public class Prototype {
     public static void main(String[] args) throws Exception {
@@ -33,8 +31,10 @@ public class Prototype {
         ViewPane viewPane = camera.getViewPane();
 
         scene.addCamera(camera);
-        Entity teapot = ObjParser.parseObjFile("examples/teapot/Teapot.obj");
-        Entity tuna = ObjParser.parseObjFile("examples/tuna/tuna-low.obj");
+        List<Entity> entities = ObjParser
+                .parseObjFiles(List.of("examples/teapot/Teapot.obj", "examples/tuna/tuna-low.obj"));
+        Entity teapot = entities.get(0);
+        Entity tuna = entities.get(1);
 
         TrafoMatrix tmTea = new TrafoMatrix(-50, -100, 10, -90, 10, -33, 1, 1, 1);
         teapot.transform(tmTea);
@@ -51,25 +51,18 @@ public class Prototype {
         scene.addLightSource(lightSource2);
 
         Renderer renderer = new Renderer(scene, camera.getUuid());
-        renderer.render();
-
-        long end = System.currentTimeMillis();
-        System.out.printf("Total runtime for rendering: %f s%n", (end - start) / 1000.0);
 
-        BufferedImage bufferedImage = new BufferedImage(viewPane.getResX(), viewPane.getResY(),
-                BufferedImage.TYPE_INT_RGB);
-        for (int j = 0; j < viewPane.getResY(); j++) {
-            for (int i = 0; i < viewPane.getResX(); i++) {
-                bufferedImage.setRGB(i, j, viewPane.getPixelAt(i, j).getColor().getRGB());
-            }
-        }
-
-        try {
-            File output = new File("artifacts/prototype.png");
-            ImageIO.write(bufferedImage, "png", output);
+        // Bands of the image are encoded while the remaining tiles are rendered
+        try (StreamingPngWriter output = new StreamingPngWriter(viewPane.getFrameBuffer(),
+                Path.of("artifacts/prototype.png"))) {
+            renderer.setRenderTarget(output);
+            renderer.render();
         } catch (IOException e) {
             e.printStackTrace();
         }
+
+        long end = System.currentTimeMillis();
+        System.out.printf("Total runtime for rendering and writing: %f s%n", (end - start) / 1000.0);
         System.out.println();
     }
 }
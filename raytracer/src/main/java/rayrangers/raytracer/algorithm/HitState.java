@@ -0,0 +1,229 @@
+package rayrangers.raytracer.algorithm;
+
+import rayrangers.raytracer.math.Vector3D;
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.world.Face;
+import rayrangers.raytracer.world.Instance;
+
+/**
+ * Mutable per-thread state of a closest-hit query.
+ * Traversal only updates the closest ray parameter and the hit face, the
+ * HitRecord is filled once for the final closest hit. This avoids allocating
+ * records and vectors for every visited node and every intermediate hit.
+ */
+public final class HitState {
+
+    /**
+     * Initial size of the traversal stack.
+     */
+    private static final int INITIAL_STACK_SIZE = 64;
+
+    /**
+     * State of the current thread.
+     */
+    private static final ThreadLocal<HitState> CURRENT = ThreadLocal.withInitial(HitState::new);
+
+    /**
+     * Ray parameter of the closest hit so far.
+     */
+    private double t;
+
+    /**
+     * Face of the closest hit so far, null if nothing has been hit yet.
+     */
+    private Face face;
+
+    /**
+     * Instance the closest hit face belongs to, null if the face is hit in
+     * world space.
+     */
+    private Instance instance;
+
+    /**
+     * Reusable ray for intersecting instances in object space.
+     */
+    private final Ray objectRay = new Ray(new Vertex3D(0, 0, 0), new Vector3D(0, 0, 0));
+
+    /**
+     * Reusable stack of node indices for iterative traversal.
+     */
+    private int[] stack = new int[INITIAL_STACK_SIZE];
+
+    /**
+     * Reusable stack of box entry distances, parallel to the node index stack.
+     */
+    private double[] distanceStack = new double[INITIAL_STACK_SIZE];
+
+    /**
+     * Reusable stack of node indices for the top-level hierarchy over all
+     * objects, which is traversed while the object hierarchies use the stacks
+     * above.
+     */
+    private int[] topLevelStack = new int[INITIAL_STACK_SIZE];
+
+    /**
+     * Reusable stack of box entry distances for the top-level hierarchy.
+     */
+    private double[] topLevelDistanceStack = new double[INITIAL_STACK_SIZE];
+
+    /**
+     * Creates an empty hit state.
+     * Use {@link #current()} to get the state of the current thread.
+     */
+    public HitState() {
+        reset();
+    }
+
+    /**
+     * Returns the hit state of the current thread.
+     *
+     * @return hit state
+     */
+    public static HitState current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Resets the state before a new query.
+     */
+    public void reset() {
+        t = Double.POSITIVE_INFINITY;
+        face = null;
+        instance = null;
+    }
+
+    /**
+     * Stores a new closest hit.
+     *
+     * @param face hit face
+     * @param t    ray parameter of the hit
+     */
+    public void update(Face face, double t) {
+        this.face = face;
+        this.t = t;
+        this.instance = null;
+    }
+
+    /**
+     * Marks the closest hit as a hit of a face of the given instance.
+     * Has to be called right after the instance found a closer hit, since
+     * {@link #update(Face, double)} resets it.
+     *
+     * @param instance instance whose mesh contains the hit face
+     */
+    public void setInstance(Instance instance) {
+        this.instance = instance;
+    }
+
+    /**
+     * Returns the reusable ray for intersecting instances in object space.
+     * Its coordinates are overwritten by every instance test.
+     *
+     * @return object space ray
+     */
+    public Ray getObjectRay() {
+        return objectRay;
+    }
+
+    /**
+     * Returns whether a hit has been stored since the last reset.
+     *
+     * @return true if a face has been hit
+     */
+    public boolean hasHit() {
+        return face != null;
+    }
+
+    /**
+     * Returns the ray parameter of the closest hit.
+     *
+     * @return ray parameter, positive infinity if nothing has been hit
+     */
+    public double getT() {
+        return t;
+    }
+
+    /**
+     * Returns the face of the closest hit.
+     *
+     * @return hit face, null if nothing has been hit
+     */
+    public Face getFace() {
+        return face;
+    }
+
+    /**
+     * Returns the traversal stack with at least the given size.
+     * The stack only grows, so no allocation happens in steady state.
+     *
+     * @param size minimum number of entries
+     * @return stack array
+     */
+    public int[] getStack(int size) {
+        if (stack.length < size) {
+            stack = new int[Math.max(size, stack.length * 2)];
+        }
+        return stack;
+    }
+
+    /**
+     * Returns the stack of box entry distances with at least the given size.
+     * The stack only grows, so no allocation happens in steady state.
+     *
+     * @param size minimum number of entries
+     * @return distance stack array
+     */
+    public double[] getDistanceStack(int size) {
+        if (distanceStack.length < size) {
+            distanceStack = new double[Math.max(size, distanceStack.length * 2)];
+        }
+        return distanceStack;
+    }
+
+    /**
+     * Returns the traversal stack of the top-level hierarchy with at least the
+     * given size.
+     *
+     * @param size minimum number of entries
+     * @return stack array
+     */
+    public int[] getTopLevelStack(int size) {
+        if (topLevelStack.length < size) {
+            topLevelStack = new int[Math.max(size, topLevelStack.length * 2)];
+        }
+        return topLevelStack;
+    }
+
+    /**
+     * Returns the stack of box entry distances of the top-level hierarchy with
+     * at least the given size.
+     *
+     * @param size minimum number of entries
+     * @return distance stack array
+     */
+    public double[] getTopLevelDistanceStack(int size) {
+        if (topLevelDistanceStack.length < size) {
+            topLevelDistanceStack = new double[Math.max(size, topLevelDistanceStack.length * 2)];
+        }
+        return topLevelDistanceStack;
+    }
+
+    /**
+     * Fills the hit record with the data of the closest hit.
+     *
+     * @param ray    ray of the query
+     * @param record hit record to fill
+     * @return true if there is a hit, false if the record was left untouched
+     */
+    public boolean fillHitRecord(Ray ray, HitRecord record) {
+        if (face == null) {
+            return false;
+        }
+        if (instance != null) {
+            instance.fillHitRecord(ray, face, t, record);
+        } else {
+            face.fillHitRecord(ray, t, record);
+        }
+        return true;
+    }
+}
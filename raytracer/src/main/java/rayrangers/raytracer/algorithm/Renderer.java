@@ -1,24 +1,32 @@
 package rayrangers.raytracer.algorithm;
 
 import java.awt.Color;
+import java.util.List;
 import java.util.UUID;
 
 import rayrangers.raytracer.math.Vector3D;
 import rayrangers.raytracer.math.Vertex3D;
-import rayrangers.raytracer.view.Pixel;
+import rayrangers.raytracer.view.HdrFrameBuffer;
+import rayrangers.raytracer.view.RenderTarget;
+import rayrangers.raytracer.view.Tile;
+import rayrangers.raytracer.view.ToneMapping;
 import rayrangers.raytracer.view.ViewPane;
 import rayrangers.raytracer.world.Camera;
 import rayrangers.raytracer.world.Scene;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Represents a renderer using the raytracing algorithm.
  */
 public class Renderer {
 
+    /**
+     * Default edge length of a render tile in pixels.
+     */
+    public static final int DEFAULT_TILE_SIZE = 32;
+
     /**
      * Scene to be rendered.
      */
@@ -39,59 +47,219 @@ public class Renderer {
      */
     private Shader shader;
 
+    /**
+     * Edge length of the tiles the viewpane is split into.
+     */
+    private int tileSize;
+
+    /**
+     * Whether the unclamped radiance is rendered into the HDR frame buffer of
+     * the viewpane.
+     */
+    private boolean highDynamicRange;
+
+    /**
+     * Target the colors are written to, null for the frame buffer of the viewpane.
+     */
+    private RenderTarget renderTarget;
+
     /**
      * Class constructor specifiying the scene and the UUID of the camera.
+     * Uses the default tile size.
      * 
      * @param scene scene to be rendered 
      * @param cameraUUID UUId of the camera the scene is rendered from
      */
     public Renderer(Scene scene, UUID cameraUUID) {
+        this(scene, cameraUUID, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Class constructor specifiying the scene, the UUID of the camera and the
+     * tile size.
+     * 
+     * @param scene      scene to be rendered
+     * @param cameraUUID UUID of the camera the scene is rendered from
+     * @param tileSize   edge length of a render tile in pixels, e.g. 16 or 32
+     * @throws IllegalArgumentException if {@code tileSize < 1}
+     */
+    public Renderer(Scene scene, UUID cameraUUID, int tileSize) {
+        if (tileSize < 1)
+            throw new IllegalArgumentException("Tile size must be positive.");
         this.scene = scene;
+        this.tileSize = tileSize;
         camera = scene.getCameras().get(cameraUUID);
         viewpane = camera.getViewPane();
         shader = new Shader(scene);
     }
 
+    /**
+     * Returns the edge length of the render tiles.
+     * 
+     * @return tile size in pixels
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Returns whether the scene is rendered with high dynamic range.
+     * 
+     * @return true if the radiance is written to the HDR frame buffer
+     */
+    public boolean isHighDynamicRange() {
+        return highDynamicRange;
+    }
+
+    /**
+     * Sets whether the scene is rendered with high dynamic range.
+     * If enabled, the unclamped radiance of every pixel is written to the HDR
+     * frame buffer of the viewpane, which is created if necessary, and the
+     * frame buffer receives the radiance mapped with {@link ToneMapping#CLAMP}.
+     * The image can then be tone mapped again with
+     * {@link ViewPane#toneMap(ToneMapping, float)} without rendering it again.
+     * Since the HDR frame buffer always lies on the heap and is tone mapped
+     * into the frame buffer of the viewpane, it cannot be combined with
+     * another render target.
+     * 
+     * @param highDynamicRange true to render the radiance
+     * @throws IllegalStateException if enabled while the render target is not
+     *                               the frame buffer of the viewpane
+     */
+    public void setHighDynamicRange(boolean highDynamicRange) {
+        checkHighDynamicRangeTarget(highDynamicRange, renderTarget);
+        this.highDynamicRange = highDynamicRange;
+    }
+
+    /**
+     * Returns the target the colors are written to.
+     * 
+     * @return render target, null for the frame buffer of the viewpane
+     */
+    public RenderTarget getRenderTarget() {
+        return renderTarget;
+    }
+
+    /**
+     * Sets the target the colors are written to instead of the frame buffer of
+     * the viewpane, e.g. a {@link rayrangers.raytracer.view.MappedFrameBuffer}
+     * for images too large for the heap. The target is notified whenever a
+     * tile has been rendered.
+     * 
+     * @param renderTarget render target of the viewpane size, null for the
+     *                     frame buffer of the viewpane
+     * @throws IllegalArgumentException if the target has a different size than
+     *                                  the viewpane
+     * @throws IllegalStateException    if high dynamic range is enabled and
+     *                                  the target is not the frame buffer of
+     *                                  the viewpane
+     */
+    public void setRenderTarget(RenderTarget renderTarget) {
+        checkHighDynamicRangeTarget(highDynamicRange, renderTarget);
+        if (renderTarget != null && (renderTarget.getWidth() != viewpane.getResX()
+                || renderTarget.getHeight() != viewpane.getResY()))
+            throw new IllegalArgumentException("Render target size " + renderTarget.getWidth() + "x"
+                    + renderTarget.getHeight() + " does not match viewpane size " + viewpane.getResX() + "x"
+                    + viewpane.getResY());
+        this.renderTarget = renderTarget;
+    }
+
+    /**
+     * Checks that high dynamic range rendering is only combined with the frame
+     * buffer of the viewpane as render target.
+     * 
+     * @param highDynamicRange whether high dynamic range is enabled
+     * @param renderTarget     render target, null for the frame buffer of the
+     *                         viewpane
+     * @throws IllegalStateException if high dynamic range is enabled and the
+     *                               target is another one
+     */
+    private void checkHighDynamicRangeTarget(boolean highDynamicRange, RenderTarget renderTarget) {
+        if (highDynamicRange && renderTarget != null && renderTarget != viewpane.getFrameBuffer())
+            throw new IllegalStateException(
+                    "High dynamic range rendering requires the frame buffer of the viewpane as render target.");
+    }
+
     /**
      * Renders the scene.
+     * The top-level BVH of the scene is built first, then the viewpane is split
+     * into tiles which are rendered in parallel by a work-stealing thread pool.
+     * The tiles are ordered along a Z-order curve, so every task covers a
+     * compact region of the image and touches few objects.
      */
     public void render() {
-        // Get number of available processors and create a thread pool of that size
+        scene.buildTopLevelHierarchy();
+        if (highDynamicRange) {
+            viewpane.createHdrFrameBuffer();
+        }
+        RenderTarget target = renderTarget != null ? renderTarget : viewpane.getFrameBuffer();
+
+        // Get number of available processors and create a work-stealing pool of that size
         int numCores = Runtime.getRuntime().availableProcessors();
-        ExecutorService executor = Executors.newFixedThreadPool(numCores);
+        ForkJoinPool pool = new ForkJoinPool(numCores);
 
-        // Get resolution of viewpane 
-        int resX = viewpane.getResX();
-        int resY = viewpane.getResY();
+        // Split viewpane into tiles
+        List<Tile> tiles = Tile.splitInZOrder(viewpane.getResX(), viewpane.getResY(), tileSize);
+        try {
+            // Blocks until all tiles have been rendered
+            pool.invoke(new TileRenderTask(this, tiles, 0, tiles.size(), target));
+        } finally {
+            pool.shutdown();
+        }
+    }
 
-        // Get camera position
+    /**
+     * Renders all pixels of a single tile.
+     * The scratch state (hit record, camera vectors) is shared by all rays of the tile.
+     * 
+     * @param tile   tile to be rendered
+     * @param target target the colors are written to
+     */
+    private void renderTile(Tile tile, RenderTarget target) {
+        // Get camera position and base vectors
         Vertex3D cameraPos = camera.getWorldPosition();
         Vector3D u = camera.getU();
         Vector3D v = camera.getV();
-        Vector3D w = camera.getW();
-        double d = camera.getPaneDistance();
-
-        // Iterate over all pixels in viewpane
-        for (int j = 0; j < resY; j++) {
-            for (int i = 0; i < resX; i++) {
-                // Indices must be final variables for lambda
-                final int x = i;
-                final int y = j;
-                
-                // Submit Runnable for each ray to thread pool
-                executor.execute(() -> {
-                    Pixel p = viewpane.getPixelAt(x, y);
-                    Ray viewRay = new Ray(cameraPos, computeRayDirection(p, u, v, w, d));
-                    p.setColor(traceRay(viewRay));
-                });
+        Vector3D dw = camera.getW().mult(-camera.getPaneDistance()); // −d * w is equal for all rays
+        HitRecord record = new HitRecord();
+        if (highDynamicRange) {
+            renderTileRadiance(tile, target, cameraPos, u, v, dw, record);
+        } else {
+            for (int j = tile.getY(); j < tile.getY() + tile.getHeight(); j++) {
+                for (int i = tile.getX(); i < tile.getX() + tile.getWidth(); i++) {
+                    Ray viewRay = new Ray(cameraPos,
+                            computeRayDirection(viewpane.getU(i), viewpane.getV(j), u, v, dw));
+                    target.setRgb(i, j, traceRay(viewRay, record));
+                }
             }
         }
-        executor.shutdown(); // Request an orderly shutdown such that no new tasks will be accepted
-        try {
-            // Blocks until all tasks have completed execution
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+        target.tileCompleted(tile);
+    }
+
+    /**
+     * Renders the radiance of all pixels of a single tile into the HDR frame
+     * buffer and the clamped colors into the render target.
+     * 
+     * @param tile      tile to be rendered
+     * @param target    target the colors are written to
+     * @param cameraPos position of the camera
+     * @param u         base vector in u-direction
+     * @param v         base vector in v-direction
+     * @param dw        base vector in w-direction multiplied by −d
+     * @param record    reusable hit record of the tile
+     */
+    private void renderTileRadiance(Tile tile, RenderTarget target, Vertex3D cameraPos, Vector3D u, Vector3D v,
+            Vector3D dw, HitRecord record) {
+        HdrFrameBuffer hdr = viewpane.getHdrFrameBuffer();
+        float[] radiance = hdr.getData();
+        for (int j = tile.getY(); j < tile.getY() + tile.getHeight(); j++) {
+            for (int i = tile.getX(); i < tile.getX() + tile.getWidth(); i++) {
+                Ray viewRay = new Ray(cameraPos, computeRayDirection(viewpane.getU(i), viewpane.getV(j), u, v, dw));
+                int index = hdr.indexOf(i, j);
+                traceRadiance(viewRay, record, radiance, index);
+                target.setRgb(i, j, ToneMapping.CLAMP.toRgb(radiance[index], radiance[index + 1],
+                        radiance[index + 2], 1f));
+            }
         }
     }
 
@@ -99,24 +267,130 @@ public class Renderer {
      * Traces a specified ray and returns the color of the related pixel.
      * 
      * @param viewRay ray to be traced 
-     * @return color of the related pixel 
+     * @param record  reusable hit record of the current tile
+     * @return color of the related pixel as packed RGB value
      */
-    private Color traceRay(Ray viewRay) {
-        HitRecord record = new HitRecord();
+    private int traceRay(Ray viewRay, HitRecord record) {
+        if (hitScene(viewRay, record))
+            return shader.calculatePixelRgb(record);
+        return scene.getBackgroundColor().getRGB();
+    }
+
+    /**
+     * Traces a specified ray and writes the unclamped radiance of the related
+     * pixel to an array.
+     * 
+     * @param viewRay ray to be traced
+     * @param record  reusable hit record of the current tile
+     * @param out     array the red, green and blue channels are written to
+     * @param offset  index of the red channel in the array
+     */
+    private void traceRadiance(Ray viewRay, HitRecord record, float[] out, int offset) {
+        if (hitScene(viewRay, record)) {
+            shader.calculatePixelRadiance(record, out, offset);
+        } else {
+            Color background = scene.getBackgroundColor();
+            out[offset] = background.getRed() / 255f;
+            out[offset + 1] = background.getGreen() / 255f;
+            out[offset + 2] = background.getBlue() / 255f;
+        }
+    }
+
+    /**
+     * Searches the closest hit of a view ray with the scene and counts the ray
+     * if traversal statistics are enabled.
+     * 
+     * @param viewRay ray to be traced
+     * @param record  reusable hit record of the current tile, receives the hit
+     * @return true if the ray hits the scene
+     */
+    private boolean hitScene(Ray viewRay, HitRecord record) {
+        if (TraversalStatistics.isEnabled()) {
+            TraversalStatistics.countRay();
+        }
         // Initial values for interval [t0,t1]: 
         // t0 = 0, t1 = infinity
-        if (scene.hit(viewRay, 0, Double.MAX_VALUE, record))
-            return shader.calculatePixelColor(record);
-        return scene.getBackgroundColor();
+        return scene.hit(viewRay, 0, Double.MAX_VALUE, record);
     }
 
     /**
      * Computes the direction of a ray going through a specified pixel.
      * 
-     * @param pixel pixel the ray is going through
+     * @param pu    pixel coordinate in u-direction
+     * @param pv    pixel coordinate in v-direction
+     * @param u     base vector in u-direction
+     * @param v     base vector in v-direction
+     * @param dw    base vector in w-direction multiplied by −d
      * @return ray direction as a vector
      */
-    private Vector3D computeRayDirection(Pixel pixel, Vector3D u, Vector3D v, Vector3D w, double d) {
-        return w.mult(-d).add(u.mult(pixel.getU())).add(v.mult(pixel.getV())); // Ray direction formula: −d * w + pixel.u * u + pixel.v * v
+    private Vector3D computeRayDirection(double pu, double pv, Vector3D u, Vector3D v, Vector3D dw) {
+        return dw.add(u.mult(pu)).add(v.mult(pv)); // Ray direction formula: −d * w + pixel.u * u + pixel.v * v
+    }
+
+    /**
+     * Fork/join task rendering a range of tiles.
+     * Ranges are split in halves until a single tile is left, so idle workers
+     * can steal the remaining halves from busy ones. Tasks are never
+     * serialized, so their fields are transient.
+     */
+    private static class TileRenderTask extends RecursiveAction {
+
+        /**
+         * Version of the serialized form inherited from RecursiveAction.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Renderer the tiles are rendered by.
+         */
+        private final transient Renderer renderer;
+
+        /**
+         * All tiles of the viewpane.
+         */
+        private final transient List<Tile> tiles;
+
+        /**
+         * Index of the first tile of the range (inclusive).
+         */
+        private final int from;
+
+        /**
+         * Index of the last tile of the range (exclusive).
+         */
+        private final int to;
+
+        /**
+         * Target the colors are written to.
+         */
+        private final transient RenderTarget target;
+
+        /**
+         * Creates a task for the tiles in range [from, to).
+         * 
+         * @param renderer renderer the tiles are rendered by
+         * @param tiles    all tiles of the viewpane
+         * @param from     first tile index (inclusive)
+         * @param to       last tile index (exclusive)
+         * @param target   target the colors are written to
+         */
+        TileRenderTask(Renderer renderer, List<Tile> tiles, int from, int to, RenderTarget target) {
+            this.renderer = renderer;
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+            this.target = target;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                renderer.renderTile(tiles.get(from), target);
+            } else if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new TileRenderTask(renderer, tiles, from, mid, target),
+                        new TileRenderTask(renderer, tiles, mid, to, target));
+            }
+        }
     }
 }
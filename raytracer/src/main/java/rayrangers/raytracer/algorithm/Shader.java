@@ -1,16 +1,19 @@
 package rayrangers.raytracer.algorithm;
 
 import java.awt.Color;
-import java.util.Map;
-import java.util.UUID;
 import rayrangers.raytracer.world.LightSource;
 import rayrangers.raytracer.world.Scene;
 import rayrangers.raytracer.world.Material;
-import rayrangers.raytracer.math.Vector3D;
 import rayrangers.raytracer.math.Vertex3D;
 
 /**
  * Represents a Blinn-Phong Shader.
+ * Colors are accumulated in float channels scaled to [0,1] and only packed
+ * into an 8-bit RGB value once the color of a pixel is complete, so shading a
+ * hit allocates no objects and rounds only once. Material colors are scaled
+ * once by the material, light sources once by the shader.
+ * For high dynamic range output the channels are not clamped, so the
+ * radiance can be tone mapped after rendering.
  */
 public class Shader {
 
@@ -20,159 +23,200 @@ public class Shader {
     private static final Color AMBIENT_COLOR = new Color(30, 30, 30);
 
     /**
-     * Hash map of all light sources of the scene.
+     * Positions of all light sources of the scene, three coordinates each.
      */
-    private Map<UUID, LightSource> lightSources;
+    private final double[] lightPositions;
 
     /**
-     * Background color of the scene.
+     * Colors of all light sources of the scene scaled to [0,1], three
+     * channels each.
      */
-    private Color backgroundColor;
+    private final float[] lightColors;
+
+    /**
+     * Background color of the scene scaled to [0,1], three channels.
+     */
+    private final float[] background = new float[3];
 
     /**
      * Class constructor specifying the scene to be rendered.
-     * 
+     * The light sources are captured when the shader is created.
+     *
      * @param scene scene to be rendered
      */
     public Shader(Scene scene) {
-        lightSources = scene.getLightSources();
-        if (scene.getBackgroundColor().equals(Color.BLACK)) {
-            backgroundColor = AMBIENT_COLOR;
-        } else {
-            backgroundColor = scene.getBackgroundColor();
+        Color backgroundColor = scene.getBackgroundColor().equals(Color.BLACK) ? AMBIENT_COLOR
+                : scene.getBackgroundColor();
+        background[0] = backgroundColor.getRed() / 255f;
+        background[1] = backgroundColor.getGreen() / 255f;
+        background[2] = backgroundColor.getBlue() / 255f;
+
+        int count = scene.getLightSources().size();
+        lightPositions = new double[count * 3];
+        lightColors = new float[count * 3];
+        int i = 0;
+        for (LightSource lightSource : scene.getLightSources().values()) {
+            double[] position = lightSource.getPosition().getlocationVector().getCoordinates();
+            Color color = lightSource.getColor();
+            for (int c = 0; c < 3; c++) {
+                lightPositions[i + c] = position[c];
+            }
+            lightColors[i] = color.getRed() / 255f;
+            lightColors[i + 1] = color.getGreen() / 255f;
+            lightColors[i + 2] = color.getBlue() / 255f;
+            i += 3;
         }
     }
 
     /**
      * Calculates the color of the associated pixel.
-     * 
+     *
      * @param record hit record of the intersection between ray and hit object
      * @return calculated color of the pixel
+     * @see #calculatePixelRgb(HitRecord)
      */
     public Color calculatePixelColor(HitRecord record) {
+        return new Color(calculatePixelRgb(record));
+    }
+
+    /**
+     * Calculates the color of the associated pixel without allocating objects.
+     *
+     * @param record hit record of the intersection between ray and hit object
+     * @return calculated color of the pixel as packed RGB value with opaque
+     *         alpha, see {@link Color#getRGB()}
+     */
+    public int calculatePixelRgb(HitRecord record) {
+        return shade(record, 1f, null, 0);
+    }
+
+    /**
+     * Calculates the linear radiance of the associated pixel without
+     * clamping the channels to [0,1].
+     *
+     * @param record   hit record of the intersection between ray and hit object
+     * @param radiance array the red, green and blue channels are written to
+     * @param offset   index of the red channel in the array
+     */
+    public void calculatePixelRadiance(HitRecord record, float[] radiance, int offset) {
+        shade(record, Float.POSITIVE_INFINITY, radiance, offset);
+    }
 
-        // get material, normal vector, view ray direction and hit point from hit record
+    /**
+     * Shades a hit, limiting the channels after every light source.
+     *
+     * @param record hit record of the intersection between ray and hit object
+     * @param limit  upper limit of the channels, 1 for 8-bit output
+     * @param out    array the red, green and blue channels are written to, or
+     *               null to pack them into an RGB value
+     * @param offset index of the red channel in the array
+     * @return packed RGB value if {@code out} is null, 0 otherwise
+     */
+    private int shade(HitRecord record, float limit, float[] out, int offset) {
         Material material = record.getMaterial();
-        Vertex3D hitPoint = record.getHitPoint();
+        double[] p = record.getHitPoint().getlocationVector().getCoordinates();
 
-        // get all Vertices from the current hit record
+        // Interpolate the directions of the vertices from the origin
         Vertex3D[] vertices = record.getAllVert();
-        Vector3D normal0 = vertices[0].getlocationVector().normalize();
-        Vector3D normal1 = vertices[1].getlocationVector().normalize();
-        Vector3D normal2 = vertices[2].getlocationVector().normalize();
-
-        double[] barycentric = calculateBarycentric(hitPoint, vertices[0], vertices[1], vertices[2]);
-        Vector3D interpolatedNormal = normal0.mult(barycentric[0]).add(normal1.mult(barycentric[1]))
-                .add(normal2.mult(barycentric[2])).normalize();
-
-        // get ambient coefficients from material
-        Color ambientCoefficients = material.getAmbient();
-        // calculate ambient color
-        Color ambientColor = new Color((int) (backgroundColor.getRed() * (ambientCoefficients.getRed() / 255.0)),
-                (int) (backgroundColor.getGreen() * (ambientCoefficients.getGreen() / 255.0)),
-                (int) (backgroundColor.getBlue() * (ambientCoefficients.getBlue() / 255.0)));
-
-        Color finalColor = new Color(0, 0, 0);
-        Color color = new Color(ambientColor.getRed(), ambientColor.getGreen(), ambientColor.getBlue());
-
-        // iterate over all light sources
-        for (LightSource lightSource : lightSources.values()) {
-
-            // get light source position, color and intensity
-            Color lightColor = lightSource.getColor();
-
-            // calculate light vector
-            Vector3D lightVector = lightSource.getPosition().getlocationVector().sub(hitPoint.getlocationVector())
-                    .normalize();
-
-            // get coefficients from material
-            Color diffuseColor = material.getDiffuse();
-            Color specularColor = material.getSpecular();
-            double specularExponent = material.getSpecularExp();
-            double dissolve = material.getTransparency();
-
-            // calculate diffuse color
-            double diffuseIntensity = Math.max(0, interpolatedNormal.scalar(lightVector));
-            Color diffuse = new Color((int) (lightColor.getRed() * (diffuseColor.getRed() / 255.0) * diffuseIntensity),
-                    (int) (lightColor.getGreen() * (diffuseColor.getGreen() / 255.0) * diffuseIntensity),
-                    (int) (lightColor.getBlue() * (diffuseColor.getBlue() / 255.0) * diffuseIntensity));
-            color = new Color(
-                    Math.min(255, color.getRed() + diffuse.getRed()),
-                    Math.min(255, color.getGreen() + diffuse.getGreen()),
-                    Math.min(255, color.getBlue() + diffuse.getBlue()));
-
-            // calculate specular color
-            Vector3D reflectionVector = interpolatedNormal.mult(2 * lightVector.scalar(interpolatedNormal))
-                    .sub(lightVector).normalize();
-            Vector3D viewVector = record.getViewRayDirection().mult(-1).normalize();
-            double specularIntensity = specularExponent > 0
-                    ? Math.pow(Math.max(0, reflectionVector.scalar(viewVector)), specularExponent)
-                    : 0.0;
-            Color specular = new Color(
-                    (int) (lightColor.getRed() * (specularColor.getRed() / 255.0) * specularIntensity),
-                    (int) (lightColor.getGreen() * (specularColor.getGreen() / 255.0) * specularIntensity),
-                    (int) (lightColor.getBlue() * (specularColor.getBlue() / 255.0) * specularIntensity));
-
-            color = new Color(
-                    Math.min(255, color.getRed() + specular.getRed()),
-                    Math.min(255, color.getGreen() + specular.getGreen()),
-                    Math.min(255, color.getBlue() + specular.getBlue()));
+        double[] a = vertices[0].getlocationVector().getCoordinates();
+        double[] b = vertices[1].getlocationVector().getCoordinates();
+        double[] c = vertices[2].getlocationVector().getCoordinates();
+        double e1x = b[0] - a[0], e1y = b[1] - a[1], e1z = b[2] - a[2];
+        double e2x = c[0] - a[0], e2y = c[1] - a[1], e2z = c[2] - a[2];
+        double apx = p[0] - a[0], apy = p[1] - a[1], apz = p[2] - a[2];
+        double d00 = e1x * e1x + e1y * e1y + e1z * e1z;
+        double d01 = e1x * e2x + e1y * e2y + e1z * e2z;
+        double d11 = e2x * e2x + e2y * e2y + e2z * e2z;
+        double d20 = apx * e1x + apy * e1y + apz * e1z;
+        double d21 = apx * e2x + apy * e2y + apz * e2z;
+        double denom = d00 * d11 - d01 * d01;
+        double w1 = (d11 * d20 - d01 * d21) / denom;
+        double w2 = (d00 * d21 - d01 * d20) / denom;
+        double w0 = 1.0 - w1 - w2;
+        double la = w0 / length(a), lb = w1 / length(b), lc = w2 / length(c);
+        double nx = a[0] * la + b[0] * lb + c[0] * lc;
+        double ny = a[1] * la + b[1] * lb + c[1] * lc;
+        double nz = a[2] * la + b[2] * lb + c[2] * lc;
+        double nLength = Math.sqrt(nx * nx + ny * ny + nz * nz);
+        nx /= nLength;
+        ny /= nLength;
+        nz /= nLength;
+
+        double[] direction = record.getViewRayDirection().getCoordinates();
+        double dLength = length(direction);
+        double vx = -direction[0] / dLength, vy = -direction[1] / dLength, vz = -direction[2] / dLength;
+
+        float ambientR = background[0] * material.getAmbientCoefficient(0);
+        float ambientG = background[1] * material.getAmbientCoefficient(1);
+        float ambientB = background[2] * material.getAmbientCoefficient(2);
+        float r = ambientR, g = ambientG, bl = ambientB;
+        float finalR = 0, finalG = 0, finalB = 0;
+        double specularExponent = material.getSpecularExp();
+        float dissolve = (float) material.getTransparency();
+
+        for (int i = 0; i < lightPositions.length; i += 3) {
+            double lx = lightPositions[i] - p[0], ly = lightPositions[i + 1] - p[1], lz = lightPositions[i + 2] - p[2];
+            double lLength = Math.sqrt(lx * lx + ly * ly + lz * lz);
+            lx /= lLength;
+            ly /= lLength;
+            lz /= lLength;
+            double nDotL = nx * lx + ny * ly + nz * lz;
+
+            // Diffuse term
+            float diffuse = (float) Math.max(0, nDotL);
+            // Specular term with the light vector reflected at the normal
+            double rx = 2 * nDotL * nx - lx, ry = 2 * nDotL * ny - ly, rz = 2 * nDotL * nz - lz;
+            double rLength = Math.sqrt(rx * rx + ry * ry + rz * rz);
+            float specular = specularExponent > 0
+                    ? (float) Math.pow(Math.max(0, (rx * vx + ry * vy + rz * vz) / rLength), specularExponent)
+                    : 0f;
+
+            r = Math.min(limit, r + lightColors[i] * (material.getDiffuseCoefficient(0) * diffuse
+                    + material.getSpecularCoefficient(0) * specular));
+            g = Math.min(limit, g + lightColors[i + 1] * (material.getDiffuseCoefficient(1) * diffuse
+                    + material.getSpecularCoefficient(1) * specular));
+            bl = Math.min(limit, bl + lightColors[i + 2] * (material.getDiffuseCoefficient(2) * diffuse
+                    + material.getSpecularCoefficient(2) * specular));
 
             // Dissolve - if entity is see-through
             if (dissolve < 1) {
-                color = mixColors(color, backgroundColor, dissolve);
+                r = r * dissolve + background[0] * (1 - dissolve);
+                g = g * dissolve + background[1] * (1 - dissolve);
+                bl = bl * dissolve + background[2] * (1 - dissolve);
             }
 
-            finalColor = new Color(
-                    Math.min(255, ambientColor.getRed() + color.getRed()),
-                    Math.min(255, ambientColor.getGreen() + color.getGreen()),
-                    Math.min(255, ambientColor.getBlue() + color.getBlue()));
+            finalR = Math.min(limit, ambientR + r);
+            finalG = Math.min(limit, ambientG + g);
+            finalB = Math.min(limit, ambientB + bl);
         }
-
-        return finalColor;
+        if (out == null)
+            return toRgb(finalR, finalG, finalB);
+        out[offset] = finalR;
+        out[offset + 1] = finalG;
+        out[offset + 2] = finalB;
+        return 0;
     }
 
     /**
-     * Mixes two colors based on a dissolve factor.
-     * 
-     * @param color1   first color
-     * @param color2   second color
-     * @param dissolve dissolve factor
-     * @return mixed color
+     * Packs channels in [0,1] into an opaque RGB value, rounding to the
+     * nearest 8-bit value.
+     *
+     * @param r red channel
+     * @param g green channel
+     * @param b blue channel
+     * @return packed RGB value, see {@link Color#getRGB()}
      */
-    private Color mixColors(Color color1, Color color2, double dissolve) {
-        int red = (int) (color1.getRed() * dissolve + color2.getRed() * (1 - dissolve));
-        int green = (int) (color1.getGreen() * dissolve + color2.getGreen() * (1 - dissolve));
-        int blue = (int) (color1.getBlue() * dissolve + color2.getBlue() * (1 - dissolve));
-        return new Color(red, green, blue);
+    static int toRgb(float r, float g, float b) {
+        return 0xFF000000 | (int) (r * 255 + 0.5f) << 16 | (int) (g * 255 + 0.5f) << 8 | (int) (b * 255 + 0.5f);
     }
 
     /**
-     * Calculates the barycentric coordinates of a point in a triangle.
-     * 
-     * @param p  point
-     * @param v0 vertex 0
-     * @param v1 vertex 1
-     * @param v2 vertex 2
-     * @return barycentric coordinates
+     * Returns the length of a vector given by its coordinates.
+     *
+     * @param v coordinates
+     * @return length
      */
-    private double[] calculateBarycentric(Vertex3D p, Vertex3D v0, Vertex3D v1, Vertex3D v2) {
-        Vector3D v0v1 = v1.getlocationVector().sub(v0.getlocationVector());
-        Vector3D v0v2 = v2.getlocationVector().sub(v0.getlocationVector());
-        Vector3D v0p = p.getlocationVector().sub(v0.getlocationVector());
-
-        double d00 = v0v1.scalar(v0v1);
-        double d01 = v0v1.scalar(v0v2);
-        double d11 = v0v2.scalar(v0v2);
-        double d20 = v0p.scalar(v0v1);
-        double d21 = v0p.scalar(v0v2);
-
-        double denom = d00 * d11 - d01 * d01;
-        double v = (d11 * d20 - d01 * d21) / denom;
-        double w = (d00 * d21 - d01 * d20) / denom;
-        double u = 1.0 - v - w;
-
-        return new double[] { u, v, w };
+    private static double length(double[] v) {
+        return Math.sqrt(v[0] * v[0] + v[1] * v[1] + v[2] * v[2]);
     }
-
-}
\ No newline at end of file
+}
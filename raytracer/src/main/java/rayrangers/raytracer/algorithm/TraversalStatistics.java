@@ -0,0 +1,133 @@
+package rayrangers.raytracer.algorithm;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects counters about the traversal of acceleration structures,
+ * e.g. visited nodes and ray-face intersection tests per ray.
+ * Counting is disabled by default to keep the hot path free of contention
+ * and has to be enabled explicitly, e.g. to compare different BVH builders.
+ */
+public class TraversalStatistics {
+
+    /**
+     * Whether the counters are updated during traversal.
+     */
+    private static volatile boolean enabled = false;
+
+    /**
+     * Number of traced rays.
+     */
+    private static final LongAdder rays = new LongAdder();
+
+    /**
+     * Number of visited BVH nodes (bounding box tests).
+     */
+    private static final LongAdder nodesVisited = new LongAdder();
+
+    /**
+     * Number of ray-face intersection tests.
+     */
+    private static final LongAdder faceTests = new LongAdder();
+
+    /**
+     * Private constructor, class only provides static members.
+     */
+    private TraversalStatistics() {
+    }
+
+    /**
+     * Returns whether the counters are updated during traversal.
+     * 
+     * @return true if counting is enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables counting.
+     * 
+     * @param enabled true to enable counting
+     */
+    public static void setEnabled(boolean enabled) {
+        TraversalStatistics.enabled = enabled;
+    }
+
+    /**
+     * Resets all counters to zero.
+     */
+    public static void reset() {
+        rays.reset();
+        nodesVisited.reset();
+        faceTests.reset();
+    }
+
+    /**
+     * Counts a traced ray.
+     */
+    public static void countRay() {
+        rays.increment();
+    }
+
+    /**
+     * Counts a visited BVH node.
+     */
+    public static void countNodeVisit() {
+        nodesVisited.increment();
+    }
+
+    /**
+     * Counts a ray-face intersection test.
+     */
+    public static void countFaceTest() {
+        faceTests.increment();
+    }
+
+    /**
+     * Returns the number of traced rays since the last reset.
+     * 
+     * @return number of rays
+     */
+    public static long getRays() {
+        return rays.sum();
+    }
+
+    /**
+     * Returns the number of visited BVH nodes since the last reset.
+     * 
+     * @return number of visited nodes
+     */
+    public static long getNodesVisited() {
+        return nodesVisited.sum();
+    }
+
+    /**
+     * Returns the average number of visited BVH nodes per ray.
+     * 
+     * @return visited nodes per ray, 0 if no ray has been counted
+     */
+    public static double getNodesVisitedPerRay() {
+        long r = getRays();
+        return r == 0 ? 0 : (double) getNodesVisited() / r;
+    }
+
+    /**
+     * Returns the number of ray-face intersection tests since the last reset.
+     * 
+     * @return number of face tests
+     */
+    public static long getFaceTests() {
+        return faceTests.sum();
+    }
+
+    /**
+     * Returns the average number of ray-face intersection tests per ray.
+     * 
+     * @return face tests per ray, 0 if no ray has been counted
+     */
+    public static double getFaceTestsPerRay() {
+        long r = getRays();
+        return r == 0 ? 0 : (double) getFaceTests() / r;
+    }
+}
@@ -0,0 +1,30 @@
+package rayrangers.raytracer.algorithm.bounding;
+
+import rayrangers.raytracer.algorithm.HitState;
+import rayrangers.raytracer.algorithm.Ray;
+
+/**
+ * Interface for objects with an axis-aligned bounding box that can be
+ * inserted into a {@link TopLevelHierarchy}.
+ */
+public interface Bounded {
+
+    /**
+     * Returns the bounding box enclosing the whole object.
+     *
+     * @return bounding box
+     */
+    BoundingBox getBoundingBox();
+
+    /**
+     * Searches the closest hit in the interval [t0,t1] without allocating any
+     * objects and updates the hit state if a closer hit is found.
+     *
+     * @param ray   Ray to check for a hit
+     * @param t0    Minimum ray parameter
+     * @param t1    Maximum ray parameter
+     * @param state hit state of the current thread
+     * @return Returns true if a hit occurred in the interval.
+     */
+    boolean closestHit(Ray ray, double t0, double t1, HitState state);
+}
@@ -13,6 +13,12 @@ import rayrangers.raytracer.math.Vertex3D;
  */
 public class BoundingBox implements Hittable {
 
+    /**
+     * Value returned by {@link #intersect(Ray, double, double)} if the ray misses
+     * the box.
+     */
+    public static final double MISS = Double.POSITIVE_INFINITY;
+
     /**
      * Minimum value of box along x1 axis.
      */
@@ -74,11 +80,11 @@ public class BoundingBox implements Hittable {
         // Initialise all variables with minumum and maximum double values,
         // representing +/- Infinity
         double x1min = Double.MAX_VALUE;
-        double x1max = Double.MIN_VALUE;
+        double x1max = -Double.MAX_VALUE;
         double x2min = Double.MAX_VALUE;
-        double x2max = Double.MIN_VALUE;
+        double x2max = -Double.MAX_VALUE;
         double x3min = Double.MAX_VALUE;
-        double x3max = Double.MIN_VALUE;
+        double x3max = -Double.MAX_VALUE;
 
         // Compare all vertices of the face
         for (Vertex3D vertex : face.getAllVert()) {
@@ -117,61 +123,169 @@ public class BoundingBox implements Hittable {
         this.x3max = x3max;
     }
 
+    /**
+     * Returns the minimum value of the box along the given axis.
+     * 
+     * @param axis axis index, integer value in [0,2]
+     * @return minimum value along the axis
+     * @throws IndexOutOfBoundsException if {@code axis < 0 || axis > 2}
+     */
+    public double getMin(int axis) {
+        switch (axis) {
+            case 0:
+                return x1min;
+            case 1:
+                return x2min;
+            case 2:
+                return x3min;
+            default:
+                throw new IndexOutOfBoundsException("Specified axis out of 3D space.");
+        }
+    }
+
+    /**
+     * Returns the maximum value of the box along the given axis.
+     * 
+     * @param axis axis index, integer value in [0,2]
+     * @return maximum value along the axis
+     * @throws IndexOutOfBoundsException if {@code axis < 0 || axis > 2}
+     */
+    public double getMax(int axis) {
+        switch (axis) {
+            case 0:
+                return x1max;
+            case 1:
+                return x2max;
+            case 2:
+                return x3max;
+            default:
+                throw new IndexOutOfBoundsException("Specified axis out of 3D space.");
+        }
+    }
+
+    /**
+     * Calculates the surface area of the box.
+     * Used by the surface area heuristic (SAH) as the relative probability
+     * of a random ray hitting the box.
+     * 
+     * @return surface area
+     */
+    public double surfaceArea() {
+        return surfaceArea(x1max - x1min, x2max - x2min, x3max - x3min);
+    }
+
+    /**
+     * Calculates the surface area of a box with the given extents.
+     * 
+     * @param dx1 extent along x1 axis
+     * @param dx2 extent along x2 axis
+     * @param dx3 extent along x3 axis
+     * @return surface area, 0 for empty boxes
+     */
+    static double surfaceArea(double dx1, double dx2, double dx3) {
+        if (dx1 < 0 || dx2 < 0 || dx3 < 0)
+            return 0;
+        return 2 * (dx1 * dx2 + dx2 * dx3 + dx3 * dx1);
+    }
+
     /**
      * @see Hittable
      */
     @Override
     public boolean hit(Ray ray, double t0, double t1, HitRecord record) {
-        // Get x1, x2 and x3 coordinates of ray origin e
-        double x1e = ray.getOrigin().getCoord(1);
-        double x2e = ray.getOrigin().getCoord(2);
-        double x3e = ray.getOrigin().getCoord(3);
+        return intersect(ray, t0, t1) != MISS;
+    }
 
+    /**
+     * Calculates the ray parameter where the ray enters the box within the
+     * interval [t0,t1].
+     * 
+     * @param ray Ray to check for a hit
+     * @param t0  Minimum ray parameter
+     * @param t1  Maximum ray parameter, e.g. the closest hit so far
+     * @return entry ray parameter (at least t0), {@link #MISS} if the ray does
+     *         not intersect the box within [t0,t1]
+     */
+    public double intersect(Ray ray, double t0, double t1) {
         // Get x1, x2 and x3 coordinates of ray direction d and calculate reciprocal
         // Divisions by 0 are handled by IEEE floating point conventions (yields +/-
         // Infinity)
-        double reciprocalX1d = 1 / ray.getDirection().getCoord(1); // reciprocal: (1/x1)
-        double reciprocalX2d = 1 / ray.getDirection().getCoord(2); // reciprocal: (1/x2)
-        double reciprocalX3d = 1 / ray.getDirection().getCoord(3); // reciprocal: (1/x3)
+        return entryDistance(x1min, x1max, x2min, x2max, x3min, x3max,
+                ray.getOrigin().getCoord(1), ray.getOrigin().getCoord(2), ray.getOrigin().getCoord(3),
+                1 / ray.getDirection().getCoord(1), 1 / ray.getDirection().getCoord(2),
+                1 / ray.getDirection().getCoord(3), t0, t1);
+    }
 
-        double tx1min;
-        double tx1max;
-        double tx2min;
-        double tx2max;
-        double tx3min;
-        double tx3max;
+    /**
+     * Slab test of a ray against an axis-aligned box.
+     * Calculates the ray parameter where the ray enters the box within the
+     * interval [t0,t1]. NaN values (ray origin on a slab plane of a ray parallel
+     * to it) are ignored, so the test is conservative.
+     * 
+     * @param x1min         minimum value of box along x1 axis
+     * @param x1max         maximum value of box along x1 axis
+     * @param x2min         minimum value of box along x2 axis
+     * @param x2max         maximum value of box along x2 axis
+     * @param x3min         minimum value of box along x3 axis
+     * @param x3max         maximum value of box along x3 axis
+     * @param x1e           x1 coordinate of ray origin
+     * @param x2e           x2 coordinate of ray origin
+     * @param x3e           x3 coordinate of ray origin
+     * @param reciprocalX1d reciprocal of x1 coordinate of ray direction
+     * @param reciprocalX2d reciprocal of x2 coordinate of ray direction
+     * @param reciprocalX3d reciprocal of x3 coordinate of ray direction
+     * @param t0            Minimum ray parameter
+     * @param t1            Maximum ray parameter
+     * @return entry ray parameter (at least t0), {@link #MISS} if the ray does
+     *         not intersect the box within [t0,t1]
+     */
+    static double entryDistance(double x1min, double x1max, double x2min, double x2max,
+            double x3min, double x3max, double x1e, double x2e, double x3e,
+            double reciprocalX1d, double reciprocalX2d, double reciprocalX3d, double t0, double t1) {
+        double tEnter = t0;
+        double tExit = t1;
+        double tmin;
+        double tmax;
 
         if (reciprocalX1d >= 0) {
-            tx1min = (x1min - x1e) * reciprocalX1d;
-            tx1max = (x1max - x1e) * reciprocalX1d;
+            tmin = (x1min - x1e) * reciprocalX1d;
+            tmax = (x1max - x1e) * reciprocalX1d;
         } else {
-            tx1max = (x1min - x1e) * reciprocalX1d;
-            tx1min = (x1max - x1e) * reciprocalX1d;
+            tmax = (x1min - x1e) * reciprocalX1d;
+            tmin = (x1max - x1e) * reciprocalX1d;
         }
+        // Comparisons with NaN are false, NaN does not shrink the interval
+        if (tmin > tEnter)
+            tEnter = tmin;
+        if (tmax < tExit)
+            tExit = tmax;
 
         if (reciprocalX2d >= 0) {
-            tx2min = (x2min - x2e) * reciprocalX2d;
-            tx2max = (x2max - x2e) * reciprocalX2d;
+            tmin = (x2min - x2e) * reciprocalX2d;
+            tmax = (x2max - x2e) * reciprocalX2d;
         } else {
-            tx2max = (x2min - x2e) * reciprocalX2d;
-            tx2min = (x2max - x2e) * reciprocalX2d;
+            tmax = (x2min - x2e) * reciprocalX2d;
+            tmin = (x2max - x2e) * reciprocalX2d;
         }
+        if (tmin > tEnter)
+            tEnter = tmin;
+        if (tmax < tExit)
+            tExit = tmax;
 
         if (reciprocalX3d >= 0) {
-            tx3min = (x3min - x3e) * reciprocalX3d;
-            tx3max = (x3max - x3e) * reciprocalX3d;
+            tmin = (x3min - x3e) * reciprocalX3d;
+            tmax = (x3max - x3e) * reciprocalX3d;
         } else {
-            tx3max = (x3min - x3e) * reciprocalX3d;
-            tx3min = (x3max - x3e) * reciprocalX3d;
+            tmax = (x3min - x3e) * reciprocalX3d;
+            tmin = (x3max - x3e) * reciprocalX3d;
         }
+        if (tmin > tEnter)
+            tEnter = tmin;
+        if (tmax < tExit)
+            tExit = tmax;
 
-        // Check all permutations
-        if (tx1min > tx2max || tx2min > tx1max
-                || tx1min > tx3max || tx3min > tx1max
-                || tx3min > tx2max || tx2min > tx3max) {
-            return false;
-        }
-        return true;
+        // Ray is inside all three slabs at the same time within [t0,t1]
+        return tEnter <= tExit ? tEnter : MISS;
     }
 
     /**
@@ -1,9 +1,15 @@
 package rayrangers.raytracer.algorithm.bounding;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinTask;
 
 import rayrangers.raytracer.algorithm.HitRecord;
+import rayrangers.raytracer.algorithm.HitState;
 import rayrangers.raytracer.algorithm.Ray;
+import rayrangers.raytracer.algorithm.TraversalStatistics;
+import rayrangers.raytracer.math.Vertex3D;
 import rayrangers.raytracer.world.Face;
 import rayrangers.raytracer.world.Hittable;
 
@@ -12,11 +18,40 @@ import rayrangers.raytracer.world.Hittable;
  */
 public class BoundingVolume implements Hittable {
 
+    /**
+     * Estimated cost of traversing a node (bounding box test) for the SAH.
+     */
+    public static final double TRAVERSAL_COST = 1.0;
+
+    /**
+     * Estimated cost of a ray-face intersection test for the SAH,
+     * relative to {@link #TRAVERSAL_COST}.
+     */
+    public static final double INTERSECTION_COST = 1.5;
+
+    /**
+     * Number of bins per axis used to evaluate SAH split candidates.
+     */
+    private static final int SAH_BINS = 12;
+
+    /**
+     * Maximum number of faces in a leaf created by the SAH builder.
+     */
+    private static final int SAH_MAX_LEAF_FACES = 4;
+
+    /**
+     * Minimum number of faces of a node whose children are built in parallel.
+     * Smaller subtrees are built sequentially, since forking costs more than
+     * building them.
+     */
+    static final int PARALLEL_BUILD_CUTOFF = 4096;
+
     /**
      * Left child of a BoundingVolume node.
      * Can either be an inner node of type BoundingVolume or a primitive Face (leaf
      * node representation).
-     * If there is none, its value is null.
+     * If there is none, its value is null. If both children are null, the node is
+     * a leaf containing all its faces (SAH builder).
      */
     private Hittable left;
 
@@ -43,41 +78,128 @@ public class BoundingVolume implements Hittable {
      * are aligned to.
      */
     public BoundingVolume(List<Face> faces, int axis) {
+        this(faces, axis, SplitMethod.MEDIAN);
+    }
+
+    /**
+     * Constructs a BoundingVolume with the given list of faces using the given
+     * split method.
+     * Subtrees with at least {@link #PARALLEL_BUILD_CUTOFF} faces are built in
+     * parallel in the current fork/join pool, or in the common pool if called
+     * from outside a pool.
+     * 
+     * @param faces       faces contained inside the BoundingVolume
+     * @param axis        axis the faces are aligned to, only used by
+     *                    {@link SplitMethod#MEDIAN}
+     * @param splitMethod strategy to split the faces into child volumes
+     */
+    public BoundingVolume(List<Face> faces, int axis, SplitMethod splitMethod) {
+        this(faces, axis, splitMethod, splitMethod == SplitMethod.MORTON ? null : computeCenters(faces),
+                splitMethod == SplitMethod.SAH ? computeBounds(faces) : null,
+                splitMethod == SplitMethod.MORTON ? sortByMortonCode(faces) : null, 0);
+    }
+
+    /**
+     * Constructs a BoundingVolume for a part of the faces of its parent.
+     * Centers and bounds of the faces are computed once for the whole tree and
+     * reordered together with the faces.
+     * 
+     * @param faces       faces contained inside the BoundingVolume
+     * @param axis        axis the faces are aligned to, only used by
+     *                    {@link SplitMethod#MEDIAN}
+     * @param splitMethod strategy to split the faces into child volumes
+     * @param centers     centers of all faces of the tree, three per face
+     * @param faceBounds  bounds of all faces of the tree, six per face, null for
+     *                    {@link SplitMethod#MEDIAN}
+     * @param codes       sorted Morton codes of all faces of the tree, only for
+     *                    {@link SplitMethod#MORTON}
+     * @param offset      index of the first face of this node in the cached
+     *                    arrays
+     */
+    private BoundingVolume(List<Face> faces, int axis, SplitMethod splitMethod, double[] centers,
+            double[] faceBounds, int[] codes, int offset) {
         this.faces = faces;
         // Create left and right BoundingVolumes
-        create(axis);
+        if (splitMethod == SplitMethod.SAH) {
+            createSah(centers, faceBounds, offset);
+        } else if (splitMethod == SplitMethod.MORTON) {
+            createMorton(codes, offset);
+        } else {
+            create(axis, centers, offset);
+        }
+    }
+
+    /**
+     * Returns the centers (x1, x2, x3) of the given faces.
+     * 
+     * @param faces face list
+     * @return three coordinates per face
+     */
+    private static double[] computeCenters(List<Face> faces) {
+        double[] centers = new double[faces.size() * 3];
+        for (int f = 0; f < faces.size(); f++) {
+            Vertex3D center = faces.get(f).getCenter();
+            for (int axis = 0; axis < 3; axis++) {
+                centers[f * 3 + axis] = center.getCoord(axis + 1);
+            }
+        }
+        return centers;
+    }
+
+    /**
+     * Returns the bounds (min x1, min x2, min x3, max x1, max x2, max x3) of the
+     * given faces.
+     * 
+     * @param faces face list
+     * @return six coordinates per face
+     */
+    static double[] computeBounds(List<Face> faces) {
+        double[] bounds = new double[faces.size() * 6];
+        for (int f = 0; f < faces.size(); f++) {
+            for (int axis = 0; axis < 3; axis++) {
+                bounds[f * 6 + axis] = Double.MAX_VALUE;
+                bounds[f * 6 + axis + 3] = -Double.MAX_VALUE;
+            }
+            faces.get(f).enclose(bounds, f * 6);
+        }
+        return bounds;
     }
 
     /**
      * 
      * Creates left and right child nodes of the BoundingVolume recursively.
      * If only one face is left, the child node is set to the face itself, allowed
-     * by the Hittable interface. Else, the faces are sorted along the chosen axis,
-     * split in the middle and two new BoundingVolumes are created.
+     * by the Hittable interface. Else, the faces are split at the median of their
+     * centers along the chosen axis and two new BoundingVolumes are created.
      * 
      * @param axis Axis the faces are aligned to
      */
     public void create(int axis) {
+        create(axis, computeCenters(faces), 0);
+    }
+
+    /**
+     * Creates left and right child nodes at the median of the cached face
+     * centers along the chosen axis.
+     * Instead of sorting all faces, they are only partitioned around the median
+     * (nth element), which takes linear time per level.
+     * 
+     * @param axis    Axis the faces are aligned to
+     * @param centers centers of all faces of the tree
+     * @param offset  index of the first face of this node in centers
+     */
+    private void create(int axis, double[] centers, int offset) {
         if (faces.size() == 1) { // BoundingVolume only contains one face
             left = faces.get(0); // Final leaf with Face object
             right = null;
             boundingBox = new BoundingBox(faces.get(0));
         } else {
-
-            // Sort faces by the center of the chosen axis
-            faces.sort((face1, face2) -> {
-                double center1 = face1.getCenter().getCoord(axis + 1); // getCoord expects a number between 1 and 3
-                double center2 = face2.getCenter().getCoord(axis + 1); // getCoord expects a number between 1 and 3
-                return Double.compare(center1, center2);
-            });
-
-            // Split faces sorted along the chosen axis in the middle
+            // Split faces along the chosen axis in the middle
             int mid = faces.size() / 2;
-            List<Face> leftFaces = faces.subList(0, mid);
-            List<Face> rightFaces = faces.subList(mid, faces.size());
+            selectNth(mid, axis, centers, offset);
 
-            left = new BoundingVolume(leftFaces, (axis + 1) % 3); // Create left BoundingVolume
-            right = new BoundingVolume(rightFaces, (axis + 1) % 3); // Create rigth BoundingVolume
+            // Create left and right BoundingVolume
+            createChildren(mid, (axis + 1) % 3, SplitMethod.MEDIAN, centers, null, null, offset);
 
             // Create BoundingBox for the entire BoundingVolume
             boundingBox = BoundingBox.combine(((BoundingVolume) left).boundingBox,
@@ -85,33 +207,590 @@ public class BoundingVolume implements Hittable {
         }
     }
 
+    /**
+     * Reorders the faces such that the face at index n is the one a sort by
+     * center along the axis would put there, all faces before it have a lower
+     * or equal center and all faces after it a greater or equal one
+     * (Hoare's quickselect).
+     * 
+     * @param n       index of the face to select
+     * @param axis    axis the faces are compared along
+     * @param centers centers of all faces of the tree
+     * @param offset  index of the first face of this node in centers
+     */
+    private void selectNth(int n, int axis, double[] centers, int offset) {
+        int lo = 0;
+        int hi = faces.size() - 1;
+        while (lo < hi) {
+            // Median of three as pivot avoids quadratic time on sorted input
+            int m = (lo + hi) >>> 1;
+            double a = centers[(offset + lo) * 3 + axis];
+            double b = centers[(offset + m) * 3 + axis];
+            double c = centers[(offset + hi) * 3 + axis];
+            double pivot = Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (centers[(offset + i) * 3 + axis] < pivot) {
+                    i++;
+                }
+                while (centers[(offset + j) * 3 + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swapFaces(i, j, centers, null, offset);
+                    i++;
+                    j--;
+                }
+            }
+            // [lo,j] <= pivot, [i,hi] >= pivot, faces in between equal the pivot
+            if (n <= j) {
+                hi = j;
+            } else if (n >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Creates the child volumes for the faces before and after index mid.
+     * Large subtrees are built in parallel: the left child is forked, the right
+     * child is built by the current thread.
+     * 
+     * @param mid         index of the first face of the right child
+     * @param axis        axis passed to the children
+     * @param splitMethod strategy to split the faces into child volumes
+     * @param centers     centers of all faces of the tree
+     * @param faceBounds  bounds of all faces of the tree, null for median split
+     * @param codes       sorted Morton codes of all faces of the tree, null if
+     *                    not split by Morton code
+     * @param offset      index of the first face of this node in the cached
+     *                    arrays
+     */
+    private void createChildren(int mid, int axis, SplitMethod splitMethod, double[] centers,
+            double[] faceBounds, int[] codes, int offset) {
+        int n = faces.size();
+        List<Face> leftFaces = faces.subList(0, mid);
+        List<Face> rightFaces = faces.subList(mid, n);
+        if (n >= PARALLEL_BUILD_CUTOFF) {
+            // Children work on disjoint ranges of the face list and the cached arrays
+            ForkJoinTask<BoundingVolume> leftTask = ForkJoinTask.adapt(
+                    () -> new BoundingVolume(leftFaces, axis, splitMethod, centers, faceBounds, codes, offset))
+                    .fork();
+            right = new BoundingVolume(rightFaces, axis, splitMethod, centers, faceBounds, codes, offset + mid);
+            left = leftTask.join();
+        } else {
+            left = new BoundingVolume(leftFaces, axis, splitMethod, centers, faceBounds, codes, offset);
+            right = new BoundingVolume(rightFaces, axis, splitMethod, centers, faceBounds, codes, offset + mid);
+        }
+    }
+
+    /**
+     * Swaps two faces of this node together with their cached centers and
+     * bounds.
+     * 
+     * @param i          index of the first face in this node
+     * @param j          index of the second face in this node
+     * @param centers    centers of all faces of the tree
+     * @param faceBounds bounds of all faces of the tree, may be null
+     * @param offset     index of the first face of this node in the cached
+     *                   arrays
+     */
+    private void swapFaces(int i, int j, double[] centers, double[] faceBounds, int offset) {
+        Collections.swap(faces, i, j);
+        swap(centers, offset + i, offset + j, 3);
+        if (faceBounds != null) {
+            swap(faceBounds, offset + i, offset + j, 6);
+        }
+    }
+
+    /**
+     * Creates left and right child nodes of the BoundingVolume recursively
+     * using a binned surface area heuristic (SAH).
+     * The face centers are distributed into bins along every axis and the split
+     * between two bins with the lowest estimated traversal cost is chosen.
+     * If no split is cheaper than intersecting all faces directly, the node
+     * becomes a leaf containing all of its faces.
+     * 
+     * @param centers    centers of all faces of the tree
+     * @param faceBounds bounds of all faces of the tree
+     * @param offset     index of the first face of this node in the cached
+     *                   arrays
+     */
+    private void createSah(double[] centers, double[] faceBounds, int offset) {
+        int n = faces.size();
+
+        double[] centerBounds = emptyBounds();
+        double[] nodeBounds = emptyBounds();
+        for (int f = offset; f < offset + n; f++) {
+            grow(nodeBounds, faceBounds, f * 6);
+            growPoint(centerBounds, centers, f * 3);
+        }
+        boundingBox = toBoundingBox(nodeBounds);
+
+        if (n == 1) {
+            return; // Leaf with a single face
+        }
+
+        // Evaluate all split candidates along all axes
+        int[] split = new int[2];
+        double bestCost = TRAVERSAL_COST + INTERSECTION_COST
+                * findSahSplit(faceBounds, centers, offset, offset + n, centerBounds, split)
+                / boundingBox.surfaceArea();
+
+        double leafCost = INTERSECTION_COST * n;
+        if (n <= SAH_MAX_LEAF_FACES && (split[0] < 0 || leafCost <= bestCost)) {
+            return; // Intersecting all faces is cheaper than splitting
+        }
+
+        int mid;
+        if (split[0] < 0) {
+            // All centers coincide, split in the middle to limit the leaf size
+            mid = n / 2;
+        } else {
+            mid = 0;
+            for (int f = 0; f < n; f++) {
+                if (isLeftOfSahSplit(centers, offset + f, centerBounds, split)) {
+                    swapFaces(f, mid, centers, faceBounds, offset);
+                    mid++;
+                }
+            }
+        }
+
+        createChildren(mid, 0, SplitMethod.SAH, centers, faceBounds, null, offset);
+    }
+
+    /**
+     * Sorts the faces by the Morton codes of the centers of their bounding
+     * boxes in a grid spanning all centers.
+     * 
+     * @param faces face list, sorted in place
+     * @return sorted codes
+     * @see MortonBuilder
+     */
+    private static int[] sortByMortonCode(List<Face> faces) {
+        int n = faces.size();
+        double[] faceBounds = computeBounds(faces);
+        long[] keys = new long[n];
+        MortonCode.computeKeys(faceBounds, 0, n, MortonCode.centerBounds(faceBounds, n), keys);
+        Arrays.sort(keys);
+
+        Face[] sorted = new Face[n];
+        int[] codes = new int[n];
+        for (int i = 0; i < n; i++) {
+            sorted[i] = faces.get((int) keys[i]);
+            codes[i] = (int) (keys[i] >>> 32);
+        }
+        for (int i = 0; i < n; i++) {
+            faces.set(i, sorted[i]);
+        }
+        return codes;
+    }
+
+    /**
+     * Creates left and right child nodes of faces sorted by Morton code.
+     * The faces are split where the codes first differ, so every node splits
+     * the grid cell of its parent in the middle. If all codes are equal, the
+     * faces are split in the middle.
+     * 
+     * @param codes  sorted Morton codes of all faces of the tree
+     * @param offset index of the first face of this node in codes
+     */
+    private void createMorton(int[] codes, int offset) {
+        if (faces.size() == 1) {
+            left = faces.get(0); // Final leaf with Face object
+            right = null;
+            boundingBox = new BoundingBox(faces.get(0));
+        } else {
+            int mid = MortonCode.split(codes, offset, offset + faces.size()) - offset;
+            createChildren(mid, 0, SplitMethod.MORTON, null, null, codes, offset);
+            boundingBox = BoundingBox.combine(((BoundingVolume) left).boundingBox,
+                    ((BoundingVolume) right).boundingBox);
+        }
+    }
+
+    /**
+     * Searches the split of the items in [start,end) with the lowest cost
+     * estimated by a binned surface area heuristic (SAH).
+     * The item centers are distributed into bins along every axis and every
+     * split between two neighboring bins is evaluated. Used for the faces of a
+     * {@link BoundingVolume} as well as for the objects of a
+     * {@link TopLevelHierarchy}.
+     * 
+     * @param itemBounds   bounds of all items, six per item
+     * @param centers      centers of all items, three per item
+     * @param start        index of the first item
+     * @param end          index after the last item
+     * @param centerBounds bounds of the centers of the items in [start,end)
+     * @param split        receives the axis of the best split, -1 if all
+     *                     centers coincide, and the first bin of its right side
+     * @return sum of surface area times item count of both sides of the best
+     *         split, which is proportional to its SAH cost without the constant
+     *         costs, infinite if there is no split
+     */
+    static double findSahSplit(double[] itemBounds, double[] centers, int start, int end,
+            double[] centerBounds, int[] split) {
+        double bestCost = Double.POSITIVE_INFINITY;
+        split[0] = -1;
+        split[1] = -1;
+        int[] counts = new int[SAH_BINS];
+        double[][] binBounds = new double[SAH_BINS][];
+        double[] rightAreas = new double[SAH_BINS];
+        int[] rightCounts = new int[SAH_BINS];
+        for (int axis = 0; axis < 3; axis++) {
+            double cmin = centerBounds[axis];
+            double extent = centerBounds[axis + 3] - cmin;
+            if (extent <= 0) {
+                continue; // All centers lie in one plane, no split possible along this axis
+            }
+            for (int b = 0; b < SAH_BINS; b++) {
+                counts[b] = 0;
+                binBounds[b] = emptyBounds();
+            }
+            for (int i = start; i < end; i++) {
+                int b = binIndex(centers[i * 3 + axis], cmin, extent);
+                counts[b]++;
+                grow(binBounds[b], itemBounds, i * 6);
+            }
+
+            // Sweep from the right to get area and count of all right partitions
+            double[] acc = emptyBounds();
+            int count = 0;
+            for (int b = SAH_BINS - 1; b > 0; b--) {
+                grow(acc, binBounds[b], 0);
+                count += counts[b];
+                rightAreas[b] = surfaceArea(acc);
+                rightCounts[b] = count;
+            }
+
+            // Sweep from the left and evaluate split between bin b-1 and b
+            acc = emptyBounds();
+            count = 0;
+            for (int b = 1; b < SAH_BINS; b++) {
+                grow(acc, binBounds[b - 1], 0);
+                count += counts[b - 1];
+                if (count == 0 || rightCounts[b] == 0) {
+                    continue;
+                }
+                double cost = surfaceArea(acc) * count + rightAreas[b] * rightCounts[b];
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    split[0] = axis;
+                    split[1] = b;
+                }
+            }
+        }
+        return bestCost;
+    }
+
+    /**
+     * Returns whether an item belongs to the left side of a split found by
+     * {@link #findSahSplit(double[], double[], int, int, double[], int[])}.
+     * 
+     * @param centers      centers of all items, three per item
+     * @param item         index of the item
+     * @param centerBounds bounds of the centers the split was searched for
+     * @param split        axis and first bin of the right side of the split
+     * @return true if the bin of the item center is lower than the split bin
+     */
+    static boolean isLeftOfSahSplit(double[] centers, int item, double[] centerBounds, int[] split) {
+        int axis = split[0];
+        double cmin = centerBounds[axis];
+        return binIndex(centers[item * 3 + axis], cmin, centerBounds[axis + 3] - cmin) < split[1];
+    }
+
+    /**
+     * Returns the index of the SAH bin an item center belongs to.
+     * 
+     * @param center coordinate of the item center along the binning axis
+     * @param cmin   minimum of all item centers along the axis
+     * @param extent extent of all item centers along the axis
+     * @return bin index in [0, SAH_BINS - 1]
+     */
+    private static int binIndex(double center, double cmin, double extent) {
+        int b = (int) (SAH_BINS * (center - cmin) / extent);
+        return Math.min(b, SAH_BINS - 1);
+    }
+
+    /**
+     * Returns bounds (min x1, min x2, min x3, max x1, max x2, max x3) of an empty
+     * box, which can be enlarged with {@link #grow(double[], double[], int)}.
+     * 
+     * @return empty bounds
+     */
+    static double[] emptyBounds() {
+        double max = Double.POSITIVE_INFINITY;
+        return new double[] { max, max, max, -max, -max, -max };
+    }
+
+    /**
+     * Enlarges the bounds to enclose the bounds stored in other at the given offset.
+     * 
+     * @param bounds bounds to enlarge
+     * @param other  array containing the bounds to enclose
+     * @param offset offset of the bounds in other
+     */
+    static void grow(double[] bounds, double[] other, int offset) {
+        for (int axis = 0; axis < 3; axis++) {
+            bounds[axis] = Math.min(bounds[axis], other[offset + axis]);
+            bounds[axis + 3] = Math.max(bounds[axis + 3], other[offset + axis + 3]);
+        }
+    }
+
+    /**
+     * Enlarges the bounds to enclose the point stored in points at the given offset.
+     * 
+     * @param bounds bounds to enlarge
+     * @param points array containing the point to enclose
+     * @param offset offset of the point in points
+     */
+    static void growPoint(double[] bounds, double[] points, int offset) {
+        for (int axis = 0; axis < 3; axis++) {
+            bounds[axis] = Math.min(bounds[axis], points[offset + axis]);
+            bounds[axis + 3] = Math.max(bounds[axis + 3], points[offset + axis]);
+        }
+    }
+
+    /**
+     * Calculates the surface area of the given bounds.
+     * 
+     * @param bounds bounds (min x1, min x2, min x3, max x1, max x2, max x3)
+     * @return surface area
+     */
+    static double surfaceArea(double[] bounds) {
+        return BoundingBox.surfaceArea(bounds[3] - bounds[0], bounds[4] - bounds[1], bounds[5] - bounds[2]);
+    }
+
+    /**
+     * Creates a BoundingBox from the given bounds.
+     * 
+     * @param bounds bounds (min x1, min x2, min x3, max x1, max x2, max x3)
+     * @return bounding box
+     */
+    private static BoundingBox toBoundingBox(double[] bounds) {
+        return new BoundingBox(bounds[0], bounds[3], bounds[1], bounds[4], bounds[2], bounds[5]);
+    }
+
+    /**
+     * Swaps two blocks of the given size in an array.
+     * 
+     * @param array array to swap the blocks in
+     * @param i     index of the first block
+     * @param j     index of the second block
+     * @param size  block size
+     */
+    private static void swap(double[] array, int i, int j, int size) {
+        for (int k = 0; k < size; k++) {
+            double tmp = array[i * size + k];
+            array[i * size + k] = array[j * size + k];
+            array[j * size + k] = tmp;
+        }
+    }
+
+    /**
+     * Returns whether this node is a leaf containing all of its faces.
+     * 
+     * @return true if the node has no child volumes
+     */
+    boolean isFaceLeaf() {
+        return left == null && right == null;
+    }
+
+    /**
+     * Calculates the cost of this subtree according to the surface area heuristic.
+     * The cost is the expected effort for a ray hitting this node, measured in
+     * {@link #TRAVERSAL_COST} per visited node and {@link #INTERSECTION_COST} per
+     * ray-face intersection test.
+     * 
+     * @return SAH cost of the subtree
+     */
+    public double getSahCost() {
+        if (isFaceLeaf()) {
+            return TRAVERSAL_COST + INTERSECTION_COST * faces.size();
+        }
+        if (!(left instanceof BoundingVolume)) {
+            return TRAVERSAL_COST + INTERSECTION_COST; // Leaf with a single face
+        }
+        BoundingVolume l = (BoundingVolume) left;
+        BoundingVolume r = (BoundingVolume) right;
+        double area = boundingBox.surfaceArea();
+        if (area <= 0) {
+            return TRAVERSAL_COST + (l.getSahCost() + r.getSahCost()) / 2;
+        }
+        return TRAVERSAL_COST + (l.boundingBox.surfaceArea() * l.getSahCost()
+                + r.boundingBox.surfaceArea() * r.getSahCost()) / area;
+    }
+
+    /**
+     * Counts the nodes of this subtree.
+     * 
+     * @return number of nodes including this one
+     */
+    public int getNodeCount() {
+        if (left instanceof BoundingVolume) {
+            return 1 + ((BoundingVolume) left).getNodeCount() + ((BoundingVolume) right).getNodeCount();
+        }
+        return 1;
+    }
+
+    /**
+     * Returns the left child of the node.
+     * 
+     * @return inner node, face (leaf) or null
+     */
+    Hittable getLeft() {
+        return left;
+    }
+
+    /**
+     * Returns the right child of the node.
+     * 
+     * @return inner node or null
+     */
+    Hittable getRight() {
+        return right;
+    }
+
+    /**
+     * Returns the faces contained inside the BoundingVolume.
+     * 
+     * @return face list
+     */
+    List<Face> getFaces() {
+        return faces;
+    }
+
+    /**
+     * Returns the bounding box associated with the BoundingVolume.
+     * 
+     * @return bounding box
+     */
+    public BoundingBox getBoundingBox() {
+        return boundingBox;
+    }
+
     /**
      * @see Hittable
      */
     @Override
     public boolean hit(Ray ray, double t0, double t1, HitRecord record) {
-        if (boundingBox.hit(ray, t0, t1, record)) {
-            HitRecord lrec = new HitRecord();
-            HitRecord rrec = new HitRecord();
-            boolean leftHit = (left != null) && left.hit(ray, t0, t1, lrec);
-            boolean rightHit = (right != null) && right.hit(ray, t0, t1, rrec);
-
-            if (leftHit && rightHit) {
-                if (lrec.getT() < rrec.getT()) {
-                    record.set(lrec);
-                } else {
-                    record.set(rrec);
-                }
-                return true;
-            } else if (leftHit) {
-                record.set(lrec);
-                return true;
-            } else if (rightHit) {
-                record.set(rrec);
-                return true;
-            }
+        HitState state = HitState.current();
+        state.reset();
+        return closestHit(ray, t0, t1, state) && state.fillHitRecord(ray, record);
+    }
+
+    /**
+     * Searches the closest hit in the interval [t0,t1] in this subtree without
+     * allocating any objects.
+     * The child whose bounding box is entered first is visited first, and a
+     * child is skipped if its box is entered behind the closest hit so far.
+     * 
+     * @param ray   Ray to check for a hit
+     * @param t0    Minimum ray parameter
+     * @param t1    Maximum ray parameter
+     * @param state hit state updated with every closer hit
+     * @return Returns true if a hit occurred in the interval.
+     */
+    public boolean closestHit(Ray ray, double t0, double t1, HitState state) {
+        if (TraversalStatistics.isEnabled()) {
+            TraversalStatistics.countNodeVisit();
+        }
+        if (boundingBox.intersect(ray, t0, t1) == BoundingBox.MISS) {
+            return false;
+        }
+        return closestHitInside(ray, t0, t1, state);
+    }
+
+    /**
+     * Searches the closest hit in this subtree, assuming that the ray hits the
+     * bounding box of this node.
+     * 
+     * @param ray   Ray to check for a hit
+     * @param t0    Minimum ray parameter
+     * @param t1    Maximum ray parameter
+     * @param state hit state updated with every closer hit
+     * @return Returns true if a hit occurred in the interval.
+     */
+    private boolean closestHitInside(Ray ray, double t0, double t1, HitState state) {
+        if (isFaceLeaf()) {
+            return hitFaces(faces, ray, t0, t1, state);
+        }
+        if (!(left instanceof BoundingVolume)) {
+            return hitFace((Face) left, ray, t0, t1, state); // Leaf with a single face
+        }
+
+        // Order children by the distance their bounding boxes are entered at
+        BoundingVolume near = (BoundingVolume) left;
+        BoundingVolume far = (BoundingVolume) right;
+        if (TraversalStatistics.isEnabled()) {
+            TraversalStatistics.countNodeVisit();
+            TraversalStatistics.countNodeVisit();
+        }
+        double nearEntry = near.boundingBox.intersect(ray, t0, t1);
+        double farEntry = far.boundingBox.intersect(ray, t0, t1);
+        if (farEntry < nearEntry) {
+            near = (BoundingVolume) right;
+            far = (BoundingVolume) left;
+            double tmp = nearEntry;
+            nearEntry = farEntry;
+            farEntry = tmp;
+        }
+
+        boolean hit = false;
+        if (nearEntry != BoundingBox.MISS && near.closestHitInside(ray, t0, t1, state)) {
+            hit = true;
+            t1 = state.getT(); // Update t1 to decrease interval [t0,t1]
+        }
+        // Skip far child if its box is entered behind the closest hit
+        if (farEntry <= t1 && far.closestHitInside(ray, t0, t1, state)) {
+            hit = true;
         }
-        return false;
+        return hit;
     }
 
+    /**
+     * Checks a single face for a hit in the interval [t0,t1].
+     * 
+     * @param face  face to check
+     * @param ray   Ray to check for a hit
+     * @param t0    Minimum ray parameter
+     * @param t1    Maximum ray parameter
+     * @param state hit state updated on a hit
+     * @return Returns true if a hit occurred in the interval.
+     */
+    static boolean hitFace(Face face, Ray ray, double t0, double t1, HitState state) {
+        if (TraversalStatistics.isEnabled()) {
+            TraversalStatistics.countFaceTest();
+        }
+        double t = face.intersect(ray, t0, t1);
+        if (t == Face.MISS) {
+            return false;
+        }
+        state.update(face, t);
+        return true;
+    }
+
+    /**
+     * Checks all faces of a leaf node for the closest hit in the interval [t0,t1].
+     * 
+     * @param leafFaces faces of the leaf
+     * @param ray       Ray to check for a hit
+     * @param t0        Minimum ray parameter
+     * @param t1        Maximum ray parameter
+     * @param state     hit state updated with every closer hit
+     * @return Returns true if a hit occurred in the interval.
+     */
+    private static boolean hitFaces(List<Face> leafFaces, Ray ray, double t0, double t1, HitState state) {
+        boolean hit = false;
+        for (int i = 0; i < leafFaces.size(); i++) {
+            if (hitFace(leafFaces.get(i), ray, t0, t1, state)) {
+                hit = true;
+                t1 = state.getT(); // Update t1 to decrease interval [t0,t1]
+            }
+        }
+        return hit;
+    }
 }
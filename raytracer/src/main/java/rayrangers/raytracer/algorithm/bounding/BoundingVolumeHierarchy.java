@@ -19,14 +19,71 @@ public class BoundingVolumeHierarchy implements Hittable {
     private BoundingVolume root;
 
     /**
-     * Constructs a bounding volume hierarchy (BVH tree) for the given faces.
+     * Strategy used to split the faces while building the tree.
+     */
+    private SplitMethod splitMethod;
+
+    /**
+     * Constructs a bounding volume hierarchy (BVH tree) for the given faces
+     * using the median split method.
      * 
      * @param faces faces the BVH tree is constructed for 
      */
     public BoundingVolumeHierarchy(List<Face> faces) {
-        // Create the hierarchy recursivel, 
+        this(faces, SplitMethod.MEDIAN);
+    }
+
+    /**
+     * Constructs a bounding volume hierarchy (BVH tree) for the given faces
+     * using the given split method.
+     * 
+     * @param faces       faces the BVH tree is constructed for
+     * @param splitMethod strategy to split the faces into bounding volumes
+     */
+    public BoundingVolumeHierarchy(List<Face> faces, SplitMethod splitMethod) {
+        this.splitMethod = splitMethod;
+        // Create the hierarchy recursively,
         // starting with the bounding volume for the root node
-        root = new BoundingVolume(faces, 0);
+        root = new BoundingVolume(faces, 0, splitMethod);
+    }
+
+    /**
+     * Returns the strategy used to split the faces while building the tree.
+     * 
+     * @return split method
+     */
+    public SplitMethod getSplitMethod() {
+        return splitMethod;
+    }
+
+    /**
+     * Returns the root node of the tree.
+     * 
+     * @return root bounding volume
+     */
+    public BoundingVolume getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns the cost of the tree according to the surface area heuristic.
+     * The value estimates the effort for a ray hitting the root box, measured in
+     * node visits ({@link BoundingVolume#TRAVERSAL_COST}) and face intersection
+     * tests ({@link BoundingVolume#INTERSECTION_COST}). Lower is better.
+     * 
+     * @return SAH cost of the tree
+     */
+    public double getSahCost() {
+        return root.getSahCost();
+    }
+
+    /**
+     * Returns the number of nodes in the tree.
+     * 
+     * @return node count
+     */
+    public int getNodeCount() {
+        return root.getNodeCount();
     }
 
     /**
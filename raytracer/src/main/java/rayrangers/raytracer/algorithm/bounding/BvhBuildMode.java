@@ -0,0 +1,21 @@
+package rayrangers.raytracer.algorithm.bounding;
+
+/**
+ * Strategies for when the BVH tree of an entity is built.
+ */
+public enum BvhBuildMode {
+
+    /**
+     * Builds the tree when the entity is transformed.
+     */
+    EAGER,
+
+    /**
+     * Only computes the bounding box of the mesh when the entity is
+     * transformed and builds the tree when the first ray enters the box.
+     * Entities which are never reached, e.g. off-screen or occluded ones, do
+     * not pay for the build, so rendering starts sooner. Refitting an existing
+     * tree is not deferred.
+     */
+    LAZY
+}
@@ -0,0 +1,20 @@
+package rayrangers.raytracer.algorithm.bounding;
+
+/**
+ * Strategies to update the BVH tree of an entity after its vertices have
+ * been transformed.
+ */
+public enum BvhUpdateMode {
+
+    /**
+     * Builds a new tree after every transformation.
+     */
+    REBUILD,
+
+    /**
+     * Keeps the topology of the tree and recomputes the bounds of all nodes
+     * bottom-up. The tree is only rebuilt if its SAH cost grows by more than the
+     * rebuild threshold compared to the cost right after the last build.
+     */
+    REFIT
+}
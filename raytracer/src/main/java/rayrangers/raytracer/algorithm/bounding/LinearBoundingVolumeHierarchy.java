@@ -0,0 +1,852 @@
+package rayrangers.raytracer.algorithm.bounding;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import rayrangers.raytracer.algorithm.HitRecord;
+import rayrangers.raytracer.algorithm.HitState;
+import rayrangers.raytracer.algorithm.Ray;
+import rayrangers.raytracer.algorithm.TraversalStatistics;
+import rayrangers.raytracer.world.Face;
+import rayrangers.raytracer.world.GeometryPrecision;
+import rayrangers.raytracer.world.GeometryStorage;
+import rayrangers.raytracer.world.Hittable;
+
+/**
+ * Represents a bounding volume hierarchy (BVH tree) flattened into primitive
+ * arrays.
+ * The nodes are stored in depth-first order, so the first child of an inner
+ * node directly follows its parent and only the index of the second child has
+ * to be stored. Compared to the tree of BoundingVolume objects, traversal does
+ * not chase pointers or dispatch virtually per node, and a node needs 56 bytes
+ * (six doubles, two ints) instead of about 130 bytes spread over a
+ * BoundingVolume, a BoundingBox and a face sub list.
+ * With {@link GeometryStorage#OFF_HEAP} the bounds, nodes and face indices are
+ * moved into direct buffers outside the Java heap.
+ */
+public final class LinearBoundingVolumeHierarchy implements Hittable {
+
+    /**
+     * Bounds of all nodes, six values per node:
+     * (min x1, min x2, min x3, max x1, max x2, max x3).
+     * Null if stored in single precision.
+     */
+    private double[] bounds;
+
+    /**
+     * Bounds of all nodes in single precision, rounded outwards. Null if stored
+     * in double precision.
+     */
+    private float[] floatBounds;
+
+    /**
+     * Two values per node.
+     * Inner node: (index of second child, 0).
+     * Leaf node: (offset of first face in {@link #faceIndices}, number of faces).
+     * Null if stored off-heap.
+     */
+    private int[] nodes;
+
+    /**
+     * Indices of the faces in {@link #faces}, reordered such that the faces of
+     * every leaf are stored contiguously. Null if stored off-heap.
+     */
+    private int[] faceIndices;
+
+    /**
+     * Bounds of all nodes in single precision outside the heap, rounded
+     * outwards. Null if stored on the heap.
+     */
+    private FloatBuffer boundsBuffer;
+
+    /**
+     * Child indices or face ranges of all nodes outside the heap, null if
+     * stored on the heap.
+     *
+     * @see #nodes
+     */
+    private IntBuffer nodeBuffer;
+
+    /**
+     * Face indices ordered by leaf outside the heap, null if stored on the
+     * heap.
+     *
+     * @see #faceIndices
+     */
+    private IntBuffer faceIndexBuffer;
+
+    /**
+     * All faces of the hierarchy.
+     */
+    private final Face[] faces;
+
+    /**
+     * Number of nodes in the hierarchy.
+     */
+    private final int nodeCount;
+
+    /**
+     * Maximum depth of the hierarchy, determines the size of the traversal stack.
+     */
+    private final int maxDepth;
+
+    /**
+     * Strategy used to split the faces while building the tree.
+     */
+    private final SplitMethod splitMethod;
+
+    /**
+     * SAH cost of the hierarchy right after it was built, reference for the
+     * quality of the tree after refits.
+     */
+    private final double buildSahCost;
+
+    /**
+     * Constructs a flattened bounding volume hierarchy for the given faces.
+     * The tree is built with the given split method and flattened afterwards.
+     *
+     * @param faces       faces the hierarchy is constructed for
+     * @param splitMethod strategy to split the faces into bounding volumes
+     */
+    public LinearBoundingVolumeHierarchy(List<Face> faces, SplitMethod splitMethod) {
+        this(new BoundingVolumeHierarchy(faces, splitMethod), faces);
+    }
+
+    /**
+     * Constructs a flattened bounding volume hierarchy from an existing tree.
+     *
+     * @param bvhTree BVH tree to be flattened
+     * @param faces   all faces contained in the tree
+     */
+    public LinearBoundingVolumeHierarchy(BoundingVolumeHierarchy bvhTree, List<Face> faces) {
+        this.faces = faces.toArray(new Face[0]);
+        this.splitMethod = bvhTree.getSplitMethod();
+        nodeCount = bvhTree.getNodeCount();
+        bounds = new double[nodeCount * 6];
+        nodes = new int[nodeCount * 2];
+        faceIndices = new int[this.faces.length];
+
+        // Map faces to their index in the face array
+        Map<Face, Integer> indexOf = new IdentityHashMap<>();
+        for (int i = 0; i < this.faces.length; i++) {
+            indexOf.put(this.faces[i], i);
+        }
+        int[] counters = new int[2]; // Next free node index and next free face slot
+        maxDepth = flatten(bvhTree.getRoot(), indexOf, counters);
+        buildSahCost = getSahCost();
+    }
+
+    /**
+     * Constructs a hierarchy from already flattened arrays.
+     *
+     * @param faces        all faces of the hierarchy
+     * @param splitMethod  split method the hierarchy was built with
+     * @param bounds       bounds of all nodes
+     * @param nodes        child indices or face ranges of all nodes
+     * @param faceIndices  face indices ordered by leaf
+     * @param maxDepth     maximum depth of the hierarchy
+     * @param buildSahCost SAH cost right after the hierarchy was built
+     */
+    private LinearBoundingVolumeHierarchy(Face[] faces, SplitMethod splitMethod, double[] bounds, int[] nodes,
+            int[] faceIndices, int maxDepth, double buildSahCost) {
+        this.faces = faces;
+        this.splitMethod = splitMethod;
+        this.bounds = bounds;
+        this.nodes = nodes;
+        this.faceIndices = faceIndices;
+        this.nodeCount = nodes.length / 2;
+        this.maxDepth = maxDepth;
+        this.buildSahCost = buildSahCost;
+    }
+
+    /**
+     * Constructs a hierarchy wrapping already flattened buffers.
+     *
+     * @param faces        all faces of the hierarchy
+     * @param splitMethod  split method the hierarchy was built with
+     * @param bounds       bounds of all nodes in single precision
+     * @param nodes        child indices or face ranges of all nodes
+     * @param faceIndices  face indices ordered by leaf
+     * @param maxDepth     maximum depth of the hierarchy
+     * @param buildSahCost SAH cost right after the hierarchy was built
+     */
+    private LinearBoundingVolumeHierarchy(Face[] faces, SplitMethod splitMethod, FloatBuffer bounds,
+            IntBuffer nodes, IntBuffer faceIndices, int maxDepth, double buildSahCost) {
+        this.faces = faces;
+        this.splitMethod = splitMethod;
+        this.boundsBuffer = bounds;
+        this.nodeBuffer = nodes;
+        this.faceIndexBuffer = faceIndices;
+        this.nodeCount = nodes.capacity() / 2;
+        this.maxDepth = maxDepth;
+        this.buildSahCost = buildSahCost;
+    }
+
+    /**
+     * Constructs a hierarchy from arrays built without a tree of
+     * BoundingVolume objects.
+     *
+     * @param faces       all faces of the hierarchy
+     * @param splitMethod split method the hierarchy was built with
+     * @param bounds      bounds of all nodes
+     * @param nodes       child indices or face ranges of all nodes
+     * @param faceIndices face indices ordered by leaf
+     * @param maxDepth    maximum depth of the hierarchy
+     * @see MortonBuilder
+     */
+    LinearBoundingVolumeHierarchy(Face[] faces, SplitMethod splitMethod, double[] bounds, int[] nodes,
+            int[] faceIndices, int maxDepth) {
+        this.faces = faces;
+        this.splitMethod = splitMethod;
+        this.bounds = bounds;
+        this.nodes = nodes;
+        this.faceIndices = faceIndices;
+        this.nodeCount = nodes.length / 2;
+        this.maxDepth = maxDepth;
+        this.buildSahCost = getSahCost();
+    }
+
+    /**
+     * Writes the flattened arrays of the hierarchy.
+     * Faces are referenced by their index in the face list the hierarchy was
+     * built for, which has to be stored in the same order alongside.
+     *
+     * @param out output to write to
+     * @throws IOException if writing fails
+     * @see #read(ByteBuffer, List)
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(splitMethod.ordinal());
+        out.writeInt(nodeCount);
+        out.writeInt(faceIndices.length);
+        out.writeInt(maxDepth);
+        out.writeDouble(buildSahCost);
+        for (int i = 0; i < nodeCount * 6; i++) {
+            out.writeDouble(bound(i));
+        }
+        for (int i = 0; i < nodeCount * 2; i++) {
+            out.writeInt(node(i));
+        }
+        for (int i = 0; i < faces.length; i++) {
+            out.writeInt(faceIndex(i));
+        }
+    }
+
+    /**
+     * Reads a hierarchy written by {@link #write(DataOutput)} without building
+     * it again.
+     *
+     * @param in    buffer positioned at the start of the hierarchy
+     * @param faces faces in the order the hierarchy was built for
+     * @return hierarchy over the given faces
+     * @throws IllegalArgumentException if the data does not describe a valid
+     *                                  hierarchy over the given faces
+     * @throws java.nio.BufferUnderflowException if the buffer ends early
+     */
+    public static LinearBoundingVolumeHierarchy read(ByteBuffer in, List<Face> faces) {
+        int splitMethod = in.getInt();
+        int nodeCount = in.getInt();
+        int faceCount = in.getInt();
+        int maxDepth = in.getInt();
+        double buildSahCost = in.getDouble();
+        if (splitMethod < 0 || splitMethod >= SplitMethod.values().length || faceCount != faces.size()
+                || nodeCount < 1 || nodeCount > 2 * Math.max(faceCount, 1))
+            throw new IllegalArgumentException("Invalid BVH header.");
+
+        double[] bounds = new double[nodeCount * 6];
+        int[] nodes = new int[nodeCount * 2];
+        int[] faceIndices = new int[faceCount];
+        in.asDoubleBuffer().get(bounds);
+        in.position(in.position() + bounds.length * Double.BYTES);
+        in.asIntBuffer().get(nodes);
+        in.position(in.position() + nodes.length * Integer.BYTES);
+        in.asIntBuffer().get(faceIndices);
+        in.position(in.position() + faceIndices.length * Integer.BYTES);
+        validate(IntBuffer.wrap(nodes), IntBuffer.wrap(faceIndices), maxDepth);
+        return new LinearBoundingVolumeHierarchy(faces.toArray(new Face[0]), SplitMethod.values()[splitMethod],
+                bounds, nodes, faceIndices, maxDepth, buildSahCost);
+    }
+
+    /**
+     * Wraps buffers filled by
+     * {@link #copyTo(FloatBuffer, IntBuffer, IntBuffer)} without copying
+     * them, e.g. views of a memory-mapped file. The values from the current
+     * position to the limit of each buffer are used. The hierarchy reports
+     * {@link GeometryStorage#OFF_HEAP} and single precision.
+     *
+     * @param faces        faces in the order the hierarchy was built for
+     * @param splitMethod  split method the hierarchy was built with
+     * @param maxDepth     maximum depth of the hierarchy
+     * @param buildSahCost SAH cost right after the hierarchy was built
+     * @param bounds       six bounds per node
+     * @param nodes        two values per node
+     * @param faceIndices  face indices ordered by leaf
+     * @return hierarchy over the given faces
+     * @throws IllegalArgumentException if the buffers do not describe a valid
+     *                                  hierarchy over the given faces
+     */
+    public static LinearBoundingVolumeHierarchy wrap(List<Face> faces, SplitMethod splitMethod, int maxDepth,
+            double buildSahCost, FloatBuffer bounds, IntBuffer nodes, IntBuffer faceIndices) {
+        int nodeCount = nodes.remaining() / 2;
+        if (nodes.remaining() % 2 != 0 || bounds.remaining() != nodeCount * 6
+                || faceIndices.remaining() != faces.size() || nodeCount < 1
+                || nodeCount > 2 * Math.max(faces.size(), 1))
+            throw new IllegalArgumentException("Buffer sizes do not describe a BVH.");
+        IntBuffer nodeView = nodes.slice();
+        IntBuffer faceIndexView = faceIndices.slice();
+        validate(nodeView, faceIndexView, maxDepth);
+        return new LinearBoundingVolumeHierarchy(faces.toArray(new Face[0]), splitMethod, bounds.slice(), nodeView,
+                faceIndexView, maxDepth, buildSahCost);
+    }
+
+    /**
+     * Checks that all child indices, face ranges, face indices and the depth
+     * are in range, since traversal trusts them.
+     *
+     * @param nodes       two values per node, starting at index 0
+     * @param faceIndices face indices ordered by leaf, starting at index 0
+     * @param maxDepth    expected maximum depth
+     * @throws IllegalArgumentException if a value is out of range
+     */
+    private static void validate(IntBuffer nodes, IntBuffer faceIndices, int maxDepth) {
+        int nodeCount = nodes.capacity() / 2;
+        int faceCount = faceIndices.capacity();
+        int[] depths = new int[nodeCount];
+        depths[0] = 1;
+        int depth = 1;
+        for (int node = 0; node < nodeCount; node++) {
+            int first = nodes.get(node * 2);
+            int count = nodes.get(node * 2 + 1);
+            boolean valid = count == 0 ? first > node + 1 && first < nodeCount
+                    : count > 0 && first >= 0 && first <= faceCount - count;
+            if (!valid)
+                throw new IllegalArgumentException("Invalid BVH node " + node + ".");
+            if (count == 0) {
+                depths[node + 1] = depths[node] + 1;
+                depths[first] = depths[node] + 1;
+                depth = Math.max(depth, depths[node] + 1);
+            }
+        }
+        if (depth != maxDepth)
+            throw new IllegalArgumentException("Invalid BVH depth " + maxDepth + ".");
+        for (int k = 0; k < faceCount; k++) {
+            int index = faceIndices.get(k);
+            if (index < 0 || index >= faceCount)
+                throw new IllegalArgumentException("Invalid BVH face index " + index + ".");
+        }
+    }
+
+    /**
+     * Copies the flattened hierarchy into buffers, with the bounds in single
+     * precision rounded outwards, such that it can be stored and wrapped again
+     * by {@link #wrap(List, SplitMethod, int, double, FloatBuffer, IntBuffer, IntBuffer)}.
+     *
+     * @param boundsOut      receives six bounds per node at index 0
+     * @param nodesOut       receives two values per node at index 0
+     * @param faceIndicesOut receives the face indices ordered by leaf at index 0
+     */
+    public void copyTo(FloatBuffer boundsOut, IntBuffer nodesOut, IntBuffer faceIndicesOut) {
+        for (int b = 0; b < nodeCount * 6; b += 6) {
+            for (int axis = 0; axis < 3; axis++) {
+                boundsOut.put(b + axis, floatBelow(bound(b + axis)));
+                boundsOut.put(b + axis + 3, floatAbove(bound(b + axis + 3)));
+            }
+        }
+        for (int i = 0; i < nodeCount * 2; i++) {
+            nodesOut.put(i, node(i));
+        }
+        for (int k = 0; k < faces.length; k++) {
+            faceIndicesOut.put(k, faceIndex(k));
+        }
+    }
+
+    /**
+     * Stores the given subtree in depth-first order.
+     *
+     * @param volume   root of the subtree
+     * @param indexOf  map from face to its index in the face array
+     * @param counters next free node index and next free face slot
+     * @return depth of the subtree
+     */
+    private int flatten(BoundingVolume volume, Map<Face, Integer> indexOf, int[] counters) {
+        int node = counters[0]++;
+        BoundingBox box = volume.getBoundingBox();
+        for (int axis = 0; axis < 3; axis++) {
+            bounds[node * 6 + axis] = box.getMin(axis);
+            bounds[node * 6 + axis + 3] = box.getMax(axis);
+        }
+
+        if (volume.isFaceLeaf() || !(volume.getLeft() instanceof BoundingVolume)) {
+            // Leaf with all its faces or with a single face as left child
+            List<Face> leafFaces = volume.isFaceLeaf() ? volume.getFaces() : List.of((Face) volume.getLeft());
+            nodes[node * 2] = counters[1];
+            nodes[node * 2 + 1] = leafFaces.size();
+            for (Face face : leafFaces) {
+                faceIndices[counters[1]++] = indexOf.get(face);
+            }
+            return 1;
+        }
+
+        // First child directly follows its parent
+        int leftDepth = flatten((BoundingVolume) volume.getLeft(), indexOf, counters);
+        nodes[node * 2] = counters[0];
+        nodes[node * 2 + 1] = 0;
+        int rightDepth = flatten((BoundingVolume) volume.getRight(), indexOf, counters);
+        return 1 + Math.max(leftDepth, rightDepth);
+    }
+
+    /**
+     * @see Hittable
+     */
+    @Override
+    public boolean hit(Ray ray, double t0, double t1, HitRecord record) {
+        HitState state = HitState.current();
+        state.reset();
+        return closestHit(ray, t0, t1, state) && state.fillHitRecord(ray, record);
+    }
+
+    /**
+     * Searches the closest hit in the interval [t0,t1] without allocating any
+     * objects. The hit state is only updated if a hit closer than t1 is found,
+     * the hit record can be filled afterwards with
+     * {@link HitState#fillHitRecord(Ray, HitRecord)}.
+     * The child whose bounding box is entered first is visited first. The
+     * farther child is pushed together with its entry distance and skipped when
+     * popped if the closest hit found meanwhile lies in front of its box.
+     *
+     * @param ray   Ray to check for a hit
+     * @param t0    Minimum ray parameter
+     * @param t1    Maximum ray parameter
+     * @param state hit state of the current thread
+     * @return Returns true if a hit occurred in the interval.
+     */
+    public boolean closestHit(Ray ray, double t0, double t1, HitState state) {
+        // Get ray origin e and reciprocal of ray direction d once for all nodes
+        double x1e = ray.getOrigin().getCoord(1);
+        double x2e = ray.getOrigin().getCoord(2);
+        double x3e = ray.getOrigin().getCoord(3);
+        double reciprocalX1d = 1 / ray.getDirection().getCoord(1);
+        double reciprocalX2d = 1 / ray.getDirection().getCoord(2);
+        double reciprocalX3d = 1 / ray.getDirection().getCoord(3);
+
+        boolean countNodes = TraversalStatistics.isEnabled();
+        if (countNodes) {
+            TraversalStatistics.countNodeVisit();
+        }
+        if (entryDistance(0, x1e, x2e, x3e, reciprocalX1d, reciprocalX2d, reciprocalX3d, t0,
+                t1) == BoundingBox.MISS) {
+            return false;
+        }
+
+        int[] stack = state.getStack(maxDepth);
+        double[] distanceStack = state.getDistanceStack(maxDepth);
+        int[] nodes = this.nodes; // Null if stored off-heap
+        int[] faceIndices = this.faceIndices;
+        int stackSize = 0;
+        int node = 0; // Invariant: the box of node is hit within [t0,t1]
+        boolean hit = false;
+        while (true) {
+            int count = nodes != null ? nodes[node * 2 + 1] : nodeBuffer.get(node * 2 + 1);
+            if (count == 0) {
+                // Inner node: test both children and visit the nearer one first
+                int near = node + 1;
+                int far = nodes != null ? nodes[node * 2] : nodeBuffer.get(node * 2);
+                if (countNodes) {
+                    TraversalStatistics.countNodeVisit();
+                    TraversalStatistics.countNodeVisit();
+                }
+                double nearEntry = entryDistance(near, x1e, x2e, x3e, reciprocalX1d, reciprocalX2d,
+                        reciprocalX3d, t0, t1);
+                double farEntry = entryDistance(far, x1e, x2e, x3e, reciprocalX1d, reciprocalX2d,
+                        reciprocalX3d, t0, t1);
+                if (farEntry < nearEntry) {
+                    int tmp = near;
+                    near = far;
+                    far = tmp;
+                    double tmpEntry = nearEntry;
+                    nearEntry = farEntry;
+                    farEntry = tmpEntry;
+                }
+                if (nearEntry != BoundingBox.MISS) {
+                    if (farEntry != BoundingBox.MISS) {
+                        stack[stackSize] = far;
+                        distanceStack[stackSize++] = farEntry;
+                    }
+                    node = near;
+                    continue;
+                }
+            } else {
+                // Leaf node: check all faces, the interval shrinks with every hit
+                int offset = nodes != null ? nodes[node * 2] : nodeBuffer.get(node * 2);
+                for (int k = offset; k < offset + count; k++) {
+                    Face face = faces[faceIndices != null ? faceIndices[k] : faceIndexBuffer.get(k)];
+                    if (BoundingVolume.hitFace(face, ray, t0, t1, state)) {
+                        hit = true;
+                        t1 = state.getT(); // Update t1 to decrease interval [t0,t1]
+                    }
+                }
+            }
+            // Pop the next node whose box is not entered behind the closest hit
+            do {
+                if (stackSize == 0) {
+                    return hit;
+                }
+                node = stack[--stackSize];
+            } while (distanceStack[stackSize] > t1);
+        }
+    }
+
+    /**
+     * Calculates the distance at which a ray enters the bounding box of a node.
+     *
+     * @param node          node index
+     * @param x1e           x1 coordinate of ray origin
+     * @param x2e           x2 coordinate of ray origin
+     * @param x3e           x3 coordinate of ray origin
+     * @param reciprocalX1d reciprocal of x1 coordinate of ray direction
+     * @param reciprocalX2d reciprocal of x2 coordinate of ray direction
+     * @param reciprocalX3d reciprocal of x3 coordinate of ray direction
+     * @param t0            minimum ray parameter
+     * @param t1            maximum ray parameter
+     * @return entry distance clamped to t0, or {@link BoundingBox#MISS}
+     * @see BoundingBox#intersect(Ray, double, double)
+     */
+    private double entryDistance(int node, double x1e, double x2e, double x3e,
+            double reciprocalX1d, double reciprocalX2d, double reciprocalX3d, double t0, double t1) {
+        int b = node * 6;
+        if (boundsBuffer != null) {
+            return BoundingBox.entryDistance(boundsBuffer.get(b), boundsBuffer.get(b + 3), boundsBuffer.get(b + 1),
+                    boundsBuffer.get(b + 4), boundsBuffer.get(b + 2), boundsBuffer.get(b + 5), x1e, x2e, x3e,
+                    reciprocalX1d, reciprocalX2d, reciprocalX3d, t0, t1);
+        }
+        if (bounds == null) {
+            return BoundingBox.entryDistance(floatBounds[b], floatBounds[b + 3], floatBounds[b + 1],
+                    floatBounds[b + 4], floatBounds[b + 2], floatBounds[b + 5], x1e, x2e, x3e, reciprocalX1d,
+                    reciprocalX2d, reciprocalX3d, t0, t1);
+        }
+        return BoundingBox.entryDistance(bounds[b], bounds[b + 3], bounds[b + 1], bounds[b + 4],
+                bounds[b + 2], bounds[b + 5], x1e, x2e, x3e, reciprocalX1d, reciprocalX2d, reciprocalX3d,
+                t0, t1);
+    }
+
+    /**
+     * Recomputes the bounds of all nodes after the vertices of the faces have
+     * moved, keeping the topology of the tree.
+     * Children are stored after their parent, so iterating over the nodes in
+     * reverse order updates every node after its children. The quality of the
+     * tree decreases if faces of a node move apart, which can be detected by
+     * comparing the returned cost with {@link #getBuildSahCost()}.
+     * Read-only buffers, e.g. of a file mapped read-only, are copied into
+     * direct buffers first. Must not be called while rays traverse the
+     * hierarchy.
+     *
+     * @return SAH cost of the refitted hierarchy
+     */
+    public double refit() {
+        if (boundsBuffer != null && boundsBuffer.isReadOnly()) {
+            setStorage(GeometryStorage.HEAP);
+            setStorage(GeometryStorage.OFF_HEAP);
+        }
+        double[] leafBounds = new double[6];
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            int b = node * 6;
+            int count = node(node * 2 + 1);
+            if (count == 0) {
+                // Inner node: enclose the bounds of both children
+                int l = (node + 1) * 6;
+                int r = node(node * 2) * 6;
+                for (int axis = 0; axis < 3; axis++) {
+                    setBounds(b + axis, Math.min(bound(l + axis), bound(r + axis)),
+                            Math.max(bound(l + axis + 3), bound(r + axis + 3)));
+                }
+                continue;
+            }
+            // Leaf node: enclose all vertices of its faces
+            for (int axis = 0; axis < 3; axis++) {
+                leafBounds[axis] = Double.MAX_VALUE;
+                leafBounds[axis + 3] = -Double.MAX_VALUE;
+            }
+            int offset = node(node * 2);
+            for (int k = offset; k < offset + count; k++) {
+                faces[faceIndex(k)].enclose(leafBounds, 0);
+            }
+            for (int axis = 0; axis < 3; axis++) {
+                setBounds(b + axis, leafBounds[axis], leafBounds[axis + 3]);
+            }
+        }
+        return getSahCost();
+    }
+
+    /**
+     * Returns a value of the bounds array in the current precision.
+     *
+     * @param i index in the bounds array
+     * @return bound
+     */
+    private double bound(int i) {
+        if (bounds != null) {
+            return bounds[i];
+        }
+        return floatBounds != null ? floatBounds[i] : boundsBuffer.get(i);
+    }
+
+    /**
+     * Returns a value of the node array in the current storage.
+     *
+     * @param i index in the node array, two per node
+     * @return child index, face offset or face count
+     */
+    private int node(int i) {
+        return nodes != null ? nodes[i] : nodeBuffer.get(i);
+    }
+
+    /**
+     * Returns a face index in the current storage.
+     *
+     * @param k position in the face indices ordered by leaf
+     * @return index of the face in {@link #faces}
+     */
+    private int faceIndex(int k) {
+        return faceIndices != null ? faceIndices[k] : faceIndexBuffer.get(k);
+    }
+
+    /**
+     * Stores the minimum and maximum of a node along an axis. In single
+     * precision they are rounded outwards, so the box never shrinks.
+     *
+     * @param i   index of the minimum in the bounds array
+     * @param min minimum
+     * @param max maximum
+     */
+    private void setBounds(int i, double min, double max) {
+        if (bounds != null) {
+            bounds[i] = min;
+            bounds[i + 3] = max;
+        } else if (floatBounds != null) {
+            floatBounds[i] = floatBelow(min);
+            floatBounds[i + 3] = floatAbove(max);
+        } else {
+            boundsBuffer.put(i, floatBelow(min));
+            boundsBuffer.put(i + 3, floatAbove(max));
+        }
+    }
+
+    /**
+     * Rounds a value to the largest float not greater than it.
+     *
+     * @param value value to round
+     * @return float lower bound
+     */
+    private static float floatBelow(double value) {
+        float rounded = (float) value;
+        return rounded > value ? Math.nextDown(rounded) : rounded;
+    }
+
+    /**
+     * Rounds a value to the smallest float not less than it.
+     *
+     * @param value value to round
+     * @return float upper bound
+     */
+    private static float floatAbove(double value) {
+        float rounded = (float) value;
+        return rounded < value ? Math.nextUp(rounded) : rounded;
+    }
+
+    /**
+     * Returns the precision the bounds are stored in.
+     *
+     * @return geometry precision
+     */
+    public GeometryPrecision getPrecision() {
+        return bounds != null ? GeometryPrecision.DOUBLE : GeometryPrecision.FLOAT;
+    }
+
+    /**
+     * Converts the bounds to the given precision.
+     * Converting to single precision rounds minima down and maxima up, so
+     * every box still encloses its faces and no hit is lost. Converting an
+     * off-heap hierarchy to double precision moves it to the heap. Must not be
+     * called while rays traverse the hierarchy.
+     *
+     * @param precision geometry precision
+     */
+    public void setPrecision(GeometryPrecision precision) {
+        if (precision == getPrecision()) {
+            return;
+        }
+        setStorage(GeometryStorage.HEAP);
+        if (precision == GeometryPrecision.FLOAT) {
+            double[] source = bounds;
+            floatBounds = new float[source.length];
+            bounds = null;
+            for (int i = 0; i < source.length; i += 6) {
+                for (int axis = 0; axis < 3; axis++) {
+                    setBounds(i + axis, source[i + axis], source[i + axis + 3]);
+                }
+            }
+        } else {
+            bounds = new double[floatBounds.length];
+            for (int i = 0; i < bounds.length; i++) {
+                bounds[i] = floatBounds[i];
+            }
+            floatBounds = null;
+        }
+    }
+
+    /**
+     * Returns the memory the bounds, nodes and face indices are stored in.
+     *
+     * @return geometry storage
+     */
+    public GeometryStorage getStorage() {
+        return boundsBuffer != null ? GeometryStorage.OFF_HEAP : GeometryStorage.HEAP;
+    }
+
+    /**
+     * Moves the bounds, nodes and face indices into the given memory.
+     * Moving them off-heap converts the bounds to single precision first;
+     * moving them back to the heap keeps single precision. Must not be called
+     * while rays traverse the hierarchy.
+     *
+     * @param storage geometry storage
+     */
+    public void setStorage(GeometryStorage storage) {
+        if (storage == getStorage()) {
+            return;
+        }
+        if (storage == GeometryStorage.OFF_HEAP) {
+            setPrecision(GeometryPrecision.FLOAT);
+            boundsBuffer = GeometryStorage.allocateDirect(floatBounds.length).asFloatBuffer().put(0, floatBounds);
+            nodeBuffer = GeometryStorage.allocateDirect(nodes.length).asIntBuffer().put(0, nodes);
+            faceIndexBuffer = GeometryStorage.allocateDirect(faceIndices.length).asIntBuffer().put(0, faceIndices);
+            floatBounds = null;
+            nodes = null;
+            faceIndices = null;
+        } else {
+            floatBounds = new float[boundsBuffer.capacity()];
+            boundsBuffer.get(0, floatBounds);
+            nodes = new int[nodeBuffer.capacity()];
+            nodeBuffer.get(0, nodes);
+            faceIndices = new int[faceIndexBuffer.capacity()];
+            faceIndexBuffer.get(0, faceIndices);
+            boundsBuffer = null;
+            nodeBuffer = null;
+            faceIndexBuffer = null;
+        }
+    }
+
+    /**
+     * Returns the approximate size of the node and face arrays, or of the
+     * buffers outside the heap if stored off-heap. The face array always stays
+     * on the heap.
+     *
+     * @return size in bytes
+     */
+    public long getMemoryBytes() {
+        long faceBytes = (long) faces.length * Integer.BYTES; // Compressed references
+        if (boundsBuffer != null) {
+            return faceBytes + ((long) boundsBuffer.capacity() + nodeBuffer.capacity() + faceIndexBuffer.capacity())
+                    * Integer.BYTES;
+        }
+        long boundsBytes = bounds != null ? (long) bounds.length * Double.BYTES
+                : (long) floatBounds.length * Float.BYTES;
+        return boundsBytes + (long) nodes.length * Integer.BYTES + (long) faceIndices.length * Integer.BYTES
+                + faceBytes;
+    }
+
+    /**
+     * Returns the cost of the hierarchy according to the surface area heuristic
+     * right after it was built.
+     *
+     * @return SAH cost at build time
+     */
+    public double getBuildSahCost() {
+        return buildSahCost;
+    }
+
+    /**
+     * Returns the cost of the hierarchy according to the surface area heuristic.
+     *
+     * @return SAH cost
+     * @see BoundingVolumeHierarchy#getSahCost()
+     */
+    public double getSahCost() {
+        return sahCost(0);
+    }
+
+    /**
+     * Calculates the SAH cost of the subtree starting at the given node.
+     *
+     * @param node node index
+     * @return SAH cost of the subtree
+     */
+    private double sahCost(int node) {
+        int count = node(node * 2 + 1);
+        if (count > 0) {
+            return BoundingVolume.TRAVERSAL_COST + BoundingVolume.INTERSECTION_COST * count;
+        }
+        int l = node + 1;
+        int r = node(node * 2);
+        double area = surfaceArea(node);
+        if (area <= 0) {
+            return BoundingVolume.TRAVERSAL_COST + (sahCost(l) + sahCost(r)) / 2;
+        }
+        return BoundingVolume.TRAVERSAL_COST
+                + (surfaceArea(l) * sahCost(l) + surfaceArea(r) * sahCost(r)) / area;
+    }
+
+    /**
+     * Calculates the surface area of the bounding box of a node.
+     *
+     * @param node node index
+     * @return surface area
+     */
+    private double surfaceArea(int node) {
+        int b = node * 6;
+        return BoundingBox.surfaceArea(bound(b + 3) - bound(b), bound(b + 4) - bound(b + 1),
+                bound(b + 5) - bound(b + 2));
+    }
+
+    /**
+     * Returns the bounding box of the whole hierarchy.
+     *
+     * @return bounding box of the root node
+     */
+    public BoundingBox getBoundingBox() {
+        return new BoundingBox(bound(0), bound(3), bound(1), bound(4), bound(2), bound(5));
+    }
+
+    /**
+     * Returns the number of nodes in the hierarchy.
+     *
+     * @return node count
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the maximum depth of the hierarchy.
+     *
+     * @return depth, 1 for a hierarchy consisting of a single leaf
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Returns the strategy used to split the faces while building the tree.
+     *
+     * @return split method
+     */
+    public SplitMethod getSplitMethod() {
+        return splitMethod;
+    }
+}
@@ -0,0 +1,230 @@
+package rayrangers.raytracer.algorithm.bounding;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+import rayrangers.raytracer.world.Face;
+
+/**
+ * Builds a flattened bounding volume hierarchy split by Morton code
+ * ({@link SplitMethod#MORTON}) from faces added in batches.
+ * If the grid is known in advance, e.g. from the bounds of the vertices of a
+ * mesh, the Morton codes of every batch are computed and sorted when it is
+ * added, so the faces can be added while they are still being parsed and
+ * {@link #build()} only merges the sorted batches and writes the nodes.
+ * The nodes are written directly into the arrays of the
+ * LinearBoundingVolumeHierarchy without creating BoundingVolume objects. The
+ * hierarchy is identical to the one flattened from a BoundingVolumeHierarchy
+ * built with {@link SplitMethod#MORTON} if no grid is set.
+ * A builder is not thread-safe; batches have to be added by one thread at a
+ * time.
+ */
+public class MortonBuilder {
+
+    /**
+     * All added faces in the order they were added.
+     */
+    private Face[] faces;
+
+    /**
+     * Bounds of the added faces, six per face.
+     */
+    private double[] faceBounds;
+
+    /**
+     * Sort keys of the added faces, see
+     * {@link MortonCode#computeKeys(double[], int, int, double[], long[])}.
+     */
+    private long[] keys;
+
+    /**
+     * Number of added faces.
+     */
+    private int count;
+
+    /**
+     * Bounds of the grid the codes are computed in, null if not known yet.
+     */
+    private double[] grid;
+
+    /**
+     * Whether the keys of the added faces are missing or were computed for
+     * another grid.
+     */
+    private boolean stale;
+
+    /**
+     * Class constructor specifying the expected number of faces.
+     *
+     * @param expectedFaces number of faces the arrays are sized for, they grow
+     *                      if more faces are added
+     */
+    public MortonBuilder(int expectedFaces) {
+        int capacity = Math.max(expectedFaces, 16);
+        faces = new Face[capacity];
+        faceBounds = new double[capacity * 6];
+        keys = new long[capacity];
+    }
+
+    /**
+     * Builds a flattened hierarchy split by Morton code for the given faces
+     * without changing their order.
+     *
+     * @param faces faces the hierarchy is constructed for, at least one
+     * @return flattened hierarchy
+     */
+    public static LinearBoundingVolumeHierarchy build(List<Face> faces) {
+        MortonBuilder builder = new MortonBuilder(faces.size());
+        builder.add(faces);
+        return builder.build();
+    }
+
+    /**
+     * Sets the bounds of the grid the Morton codes are computed in. They should
+     * enclose the centers of all faces, e.g. as bounds of all vertices they
+     * reference; centers outside are clamped to the border cells, which only
+     * lowers the quality of the tree.
+     * If faces were already added with another grid, their codes are computed
+     * again by {@link #build()}.
+     *
+     * @param bounds bounds (min x1, min x2, min x3, max x1, max x2, max x3) of
+     *               the grid
+     */
+    public void setGrid(double[] bounds) {
+        if (count > 0 && !Arrays.equals(grid, bounds)) {
+            stale = true;
+        }
+        grid = bounds.clone();
+    }
+
+    /**
+     * Adds a batch of faces and computes their bounds.
+     *
+     * @param batch faces to add
+     */
+    public void add(List<Face> batch) {
+        add(batch, BoundingVolume.computeBounds(batch));
+    }
+
+    /**
+     * Adds a batch of faces with bounds computed by the caller, e.g. while
+     * parsing them. If the grid is set, the Morton codes of the batch are
+     * computed and sorted right away.
+     *
+     * @param batch       faces to add
+     * @param batchBounds bounds (min x1, min x2, min x3, max x1, max x2, max x3)
+     *                    of the faces, six per face
+     */
+    public void add(List<Face> batch, double[] batchBounds) {
+        int from = count;
+        int to = from + batch.size();
+        if (to > faces.length) {
+            int capacity = Math.max(to, faces.length * 2);
+            faces = Arrays.copyOf(faces, capacity);
+            faceBounds = Arrays.copyOf(faceBounds, capacity * 6);
+            keys = Arrays.copyOf(keys, capacity);
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            faces[from + i] = batch.get(i);
+        }
+        System.arraycopy(batchBounds, 0, faceBounds, from * 6, batch.size() * 6);
+        count = to;
+
+        if (grid == null) {
+            stale = true;
+        } else if (!stale) {
+            // Sorted batches are runs the final sort only has to merge
+            MortonCode.computeKeys(faceBounds, from, to, grid, keys);
+            Arrays.sort(keys, from, to);
+        }
+    }
+
+    /**
+     * Returns the number of added faces.
+     *
+     * @return face count
+     */
+    public int getFaceCount() {
+        return count;
+    }
+
+    /**
+     * Builds the hierarchy for all added faces.
+     * Large subtrees are written in parallel in the current fork/join pool, or
+     * in the common pool if called from outside a pool.
+     *
+     * @return flattened hierarchy
+     * @throws IllegalStateException if no faces were added
+     */
+    public LinearBoundingVolumeHierarchy build() {
+        if (count == 0)
+            throw new IllegalStateException("No faces added.");
+        if (stale) {
+            // Without a grid the centers span the grid, as for BoundingVolumeHierarchy
+            double[] bounds = grid != null ? grid : MortonCode.centerBounds(faceBounds, count);
+            MortonCode.computeKeys(faceBounds, 0, count, bounds, keys);
+        }
+        Arrays.sort(keys, 0, count);
+
+        int[] faceIndices = new int[count];
+        int[] codes = new int[count];
+        for (int i = 0; i < count; i++) {
+            faceIndices[i] = (int) keys[i];
+            codes[i] = (int) (keys[i] >>> 32);
+        }
+        int nodeCount = 2 * count - 1;
+        double[] bounds = new double[nodeCount * 6];
+        int[] nodes = new int[nodeCount * 2];
+        int maxDepth = writeNode(0, 0, count, codes, faceIndices, bounds, nodes);
+        return new LinearBoundingVolumeHierarchy(Arrays.copyOf(faces, count), SplitMethod.MORTON, bounds, nodes,
+                faceIndices, maxDepth);
+    }
+
+    /**
+     * Writes the subtree of a range of sorted faces in depth-first order.
+     * A subtree of n faces has 2n - 1 nodes, so the index of the second child
+     * is known before the first child is written and both children can be
+     * written in parallel.
+     *
+     * @param node        index of the root of the subtree
+     * @param lo          index of the first face of the range
+     * @param hi          index after the last face of the range
+     * @param codes       sorted Morton codes
+     * @param faceIndices face indices ordered by code
+     * @param bounds      bounds of all nodes
+     * @param nodes       child indices or face ranges of all nodes
+     * @return depth of the subtree
+     */
+    private int writeNode(int node, int lo, int hi, int[] codes, int[] faceIndices, double[] bounds,
+            int[] nodes) {
+        if (hi - lo == 1) { // Leaf with a single face
+            nodes[node * 2] = lo;
+            nodes[node * 2 + 1] = 1;
+            System.arraycopy(faceBounds, faceIndices[lo] * 6, bounds, node * 6, 6);
+            return 1;
+        }
+        int mid = MortonCode.split(codes, lo, hi);
+        int right = node + 2 * (mid - lo);
+        nodes[node * 2] = right;
+        nodes[node * 2 + 1] = 0;
+        int leftDepth;
+        int rightDepth;
+        if (hi - lo >= BoundingVolume.PARALLEL_BUILD_CUTOFF) {
+            // Children write disjoint ranges of the node arrays
+            ForkJoinTask<Integer> leftTask = ForkJoinTask
+                    .adapt(() -> writeNode(node + 1, lo, mid, codes, faceIndices, bounds, nodes)).fork();
+            rightDepth = writeNode(right, mid, hi, codes, faceIndices, bounds, nodes);
+            leftDepth = leftTask.join();
+        } else {
+            leftDepth = writeNode(node + 1, lo, mid, codes, faceIndices, bounds, nodes);
+            rightDepth = writeNode(right, mid, hi, codes, faceIndices, bounds, nodes);
+        }
+        for (int axis = 0; axis < 3; axis++) {
+            bounds[node * 6 + axis] = Math.min(bounds[(node + 1) * 6 + axis], bounds[right * 6 + axis]);
+            bounds[node * 6 + axis + 3] = Math.max(bounds[(node + 1) * 6 + axis + 3],
+                    bounds[right * 6 + axis + 3]);
+        }
+        return 1 + Math.max(leftDepth, rightDepth);
+    }
+}
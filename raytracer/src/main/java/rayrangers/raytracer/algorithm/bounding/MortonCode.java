@@ -0,0 +1,136 @@
+package rayrangers.raytracer.algorithm.bounding;
+
+/**
+ * Morton codes (Z-order curve) of face centers used by
+ * {@link SplitMethod#MORTON}.
+ * The bounding box of all centers is divided into a grid of 2^10 cells per
+ * axis, and the code of a center interleaves the bits of its three cell
+ * indices. Faces sorted by code are close in space if their codes share a long
+ * prefix, so splitting a sorted range where the codes first differ splits it
+ * at the spatial median of the grid.
+ */
+final class MortonCode {
+
+    /**
+     * Number of bits per axis, the codes have three times as many bits.
+     */
+    static final int BITS_PER_AXIS = 10;
+
+    /**
+     * Number of grid cells per axis.
+     */
+    private static final int CELLS = 1 << BITS_PER_AXIS;
+
+    /**
+     * Private constructor, class only provides static members.
+     */
+    private MortonCode() {
+    }
+
+    /**
+     * Returns the bounds of the centers of the given face bounds.
+     *
+     * @param faceBounds bounds of the faces, six per face
+     * @param count      number of faces
+     * @return bounds (min x1, min x2, min x3, max x1, max x2, max x3) of the
+     *         centers
+     */
+    static double[] centerBounds(double[] faceBounds, int count) {
+        double[] bounds = BoundingVolume.emptyBounds();
+        for (int f = 0; f < count; f++) {
+            for (int axis = 0; axis < 3; axis++) {
+                double center = center(faceBounds, f, axis);
+                bounds[axis] = Math.min(bounds[axis], center);
+                bounds[axis + 3] = Math.max(bounds[axis + 3], center);
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Computes the sort keys of a range of faces. A key holds the code of the
+     * center of the bounding box of the face in its upper 32 bits and the index
+     * of the face in its lower 32 bits, so sorting the keys sorts the faces by
+     * code and equal codes by index.
+     *
+     * @param faceBounds bounds of the faces, six per face
+     * @param from       index of the first face
+     * @param to         index after the last face
+     * @param grid       bounds of the grid, centers outside of it are clamped
+     *                   to its border cells
+     * @param keys       array receiving the keys at the indices of the faces
+     */
+    static void computeKeys(double[] faceBounds, int from, int to, double[] grid, long[] keys) {
+        double[] scale = new double[3];
+        for (int axis = 0; axis < 3; axis++) {
+            double extent = grid[axis + 3] - grid[axis];
+            scale[axis] = extent > 0 ? CELLS / extent : 0;
+        }
+        for (int f = from; f < to; f++) {
+            int code = 0;
+            for (int axis = 0; axis < 3; axis++) {
+                int cell = (int) ((center(faceBounds, f, axis) - grid[axis]) * scale[axis]);
+                code |= spread(Math.max(0, Math.min(cell, CELLS - 1))) << (2 - axis);
+            }
+            keys[f] = (long) code << 32 | f;
+        }
+    }
+
+    /**
+     * Finds the split of a sorted range of codes at the highest bit in which
+     * its first and its last code differ. All codes before the split have the
+     * bit cleared, all codes after it have the bit set.
+     *
+     * @param codes sorted codes
+     * @param lo    index of the first code of the range
+     * @param hi    index after the last code of the range, at least lo + 2
+     * @return index of the first code of the second half, the middle of the
+     *         range if all codes are equal
+     */
+    static int split(int[] codes, int lo, int hi) {
+        int differing = codes[lo] ^ codes[hi - 1];
+        if (differing == 0) {
+            return (lo + hi) >>> 1;
+        }
+        int bit = Integer.highestOneBit(differing);
+        // Binary search for the first code with the bit set, codes[hi - 1] has it
+        int first = lo + 1;
+        int last = hi - 1;
+        while (first < last) {
+            int m = (first + last) >>> 1;
+            if ((codes[m] & bit) != 0) {
+                last = m;
+            } else {
+                first = m + 1;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Returns the center of the bounds of a face along an axis.
+     *
+     * @param faceBounds bounds of the faces, six per face
+     * @param face       index of the face
+     * @param axis       axis (0-based)
+     * @return center coordinate
+     */
+    private static double center(double[] faceBounds, int face, int axis) {
+        return 0.5 * (faceBounds[face * 6 + axis] + faceBounds[face * 6 + axis + 3]);
+    }
+
+    /**
+     * Inserts two zero bits between every bit of a cell index, such that the
+     * indices of the three axes can be interleaved.
+     *
+     * @param value cell index with at most 10 bits
+     * @return spread bits
+     */
+    private static int spread(int value) {
+        value = (value | value << 16) & 0x030000FF;
+        value = (value | value << 8) & 0x0300F00F;
+        value = (value | value << 4) & 0x030C30C3;
+        value = (value | value << 2) & 0x09249249;
+        return value;
+    }
+}
@@ -0,0 +1,34 @@
+package rayrangers.raytracer.algorithm.bounding;
+
+/**
+ * Strategies to split the faces of a BoundingVolume into two child volumes
+ * while building a BoundingVolumeHierarchy.
+ */
+public enum SplitMethod {
+
+    /**
+     * Partitions the faces around the median of their centers along an axis
+     * chosen round-robin and splits them in the middle. Every leaf contains
+     * exactly one face.
+     */
+    MEDIAN,
+
+    /**
+     * Distributes the face centers into bins along all three axes and chooses
+     * the split with the lowest estimated traversal cost according to the
+     * surface area heuristic (SAH). Leaves may contain several faces.
+     */
+    SAH,
+
+    /**
+     * Sorts the faces along a Morton (Z-order) curve through the centers of
+     * their bounding boxes and splits them where their codes first differ,
+     * i.e. at the spatial middle of a grid over all centers (linear BVH).
+     * Fastest to build and can be built while the faces are still being
+     * parsed, but the trees are of lower quality. Every leaf contains exactly
+     * one face.
+     *
+     * @see MortonBuilder
+     */
+    MORTON
+}
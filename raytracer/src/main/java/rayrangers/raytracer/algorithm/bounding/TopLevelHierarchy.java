@@ -0,0 +1,299 @@
+package rayrangers.raytracer.algorithm.bounding;
+
+import java.util.List;
+
+import rayrangers.raytracer.algorithm.HitRecord;
+import rayrangers.raytracer.algorithm.HitState;
+import rayrangers.raytracer.algorithm.Ray;
+import rayrangers.raytracer.algorithm.TraversalStatistics;
+import rayrangers.raytracer.world.Hittable;
+
+/**
+ * Represents a top-level bounding volume hierarchy over whole objects (e.g.
+ * entities), each of which brings its own hierarchy over its faces.
+ * Every leaf contains exactly one object, so the number of objects tested per
+ * ray grows logarithmically with the number of objects instead of linearly.
+ * The tree is built with a binned surface area heuristic over the object
+ * bounds and stored in primitive arrays in the same layout as
+ * {@link LinearBoundingVolumeHierarchy}.
+ */
+public class TopLevelHierarchy implements Hittable {
+
+    /**
+     * Bounds of all nodes, six values per node:
+     * (min x1, min x2, min x3, max x1, max x2, max x3).
+     */
+    private final double[] bounds;
+
+    /**
+     * Two values per node.
+     * Inner node: (index of second child, 0).
+     * Leaf node: (index of the object in {@link #objects}, 1).
+     */
+    private final int[] nodes;
+
+    /**
+     * All objects of the hierarchy, reordered while building.
+     */
+    private final Bounded[] objects;
+
+    /**
+     * Number of nodes in the hierarchy.
+     */
+    private int nodeCount;
+
+    /**
+     * Maximum depth of the hierarchy, determines the size of the traversal stack.
+     */
+    private final int maxDepth;
+
+    /**
+     * Constructs a top-level hierarchy over the given objects.
+     * The bounding boxes of the objects are queried once while building, so the
+     * hierarchy has to be rebuilt if an object moves.
+     *
+     * @param objects objects the hierarchy is constructed for
+     */
+    public TopLevelHierarchy(List<? extends Bounded> objects) {
+        int n = objects.size();
+        this.objects = objects.toArray(new Bounded[0]);
+        bounds = new double[Math.max(2 * n - 1, 0) * 6];
+        nodes = new int[Math.max(2 * n - 1, 0) * 2];
+        if (n == 0) {
+            maxDepth = 0;
+            return;
+        }
+
+        // Cache bounds and centers of all objects
+        double[] objectBounds = new double[n * 6];
+        double[] centers = new double[n * 3];
+        for (int o = 0; o < n; o++) {
+            BoundingBox box = this.objects[o].getBoundingBox();
+            for (int axis = 0; axis < 3; axis++) {
+                objectBounds[o * 6 + axis] = box.getMin(axis);
+                objectBounds[o * 6 + axis + 3] = box.getMax(axis);
+                centers[o * 3 + axis] = (box.getMin(axis) + box.getMax(axis)) / 2;
+            }
+        }
+        maxDepth = build(0, n, objectBounds, centers);
+    }
+
+    /**
+     * Builds the subtree for the objects in [start,end) in depth-first order.
+     * The objects are split where the binned surface area heuristic estimates
+     * the lowest cost; if all centers coincide, they are split in the middle.
+     *
+     * @param start        index of the first object
+     * @param end          index after the last object
+     * @param objectBounds bounds of all objects, reordered together with them
+     * @param centers      centers of all objects, reordered together with them
+     * @return depth of the subtree
+     */
+    private int build(int start, int end, double[] objectBounds, double[] centers) {
+        int node = nodeCount++;
+        double[] nodeBounds = BoundingVolume.emptyBounds();
+        double[] centerBounds = BoundingVolume.emptyBounds();
+        for (int o = start; o < end; o++) {
+            BoundingVolume.grow(nodeBounds, objectBounds, o * 6);
+            BoundingVolume.growPoint(centerBounds, centers, o * 3);
+        }
+        System.arraycopy(nodeBounds, 0, bounds, node * 6, 6);
+
+        if (end - start == 1) {
+            nodes[node * 2] = start;
+            nodes[node * 2 + 1] = 1;
+            return 1;
+        }
+
+        // Evaluate all split candidates along all axes
+        int[] split = new int[2];
+        BoundingVolume.findSahSplit(objectBounds, centers, start, end, centerBounds, split);
+
+        int mid;
+        if (split[0] < 0) {
+            mid = (start + end) / 2; // All centers coincide, split in the middle
+        } else {
+            mid = start;
+            for (int o = start; o < end; o++) {
+                if (BoundingVolume.isLeftOfSahSplit(centers, o, centerBounds, split)) {
+                    swap(o, mid, objectBounds, centers);
+                    mid++;
+                }
+            }
+        }
+
+        // First child directly follows its parent
+        int leftDepth = build(start, mid, objectBounds, centers);
+        nodes[node * 2] = nodeCount;
+        nodes[node * 2 + 1] = 0;
+        int rightDepth = build(mid, end, objectBounds, centers);
+        return 1 + Math.max(leftDepth, rightDepth);
+    }
+
+    /**
+     * Swaps two objects together with their cached bounds and centers.
+     *
+     * @param i            index of the first object
+     * @param j            index of the second object
+     * @param objectBounds bounds of all objects
+     * @param centers      centers of all objects
+     */
+    private void swap(int i, int j, double[] objectBounds, double[] centers) {
+        Bounded tmp = objects[i];
+        objects[i] = objects[j];
+        objects[j] = tmp;
+        for (int k = 0; k < 6; k++) {
+            double b = objectBounds[i * 6 + k];
+            objectBounds[i * 6 + k] = objectBounds[j * 6 + k];
+            objectBounds[j * 6 + k] = b;
+        }
+        for (int k = 0; k < 3; k++) {
+            double c = centers[i * 3 + k];
+            centers[i * 3 + k] = centers[j * 3 + k];
+            centers[j * 3 + k] = c;
+        }
+    }
+
+    /**
+     * @see Hittable
+     */
+    @Override
+    public boolean hit(Ray ray, double t0, double t1, HitRecord record) {
+        HitState state = HitState.current();
+        state.reset();
+        return closestHit(ray, t0, t1, state) && state.fillHitRecord(ray, record);
+    }
+
+    /**
+     * Searches the closest hit of all objects in the interval [t0,t1] without
+     * allocating any objects.
+     * Nodes are visited front to back and skipped if their bounding box is
+     * entered behind the closest hit so far, just as in
+     * {@link LinearBoundingVolumeHierarchy#closestHit}.
+     *
+     * @param ray   Ray to check for a hit
+     * @param t0    Minimum ray parameter
+     * @param t1    Maximum ray parameter
+     * @param state hit state of the current thread
+     * @return Returns true if a hit occurred in the interval.
+     */
+    public boolean closestHit(Ray ray, double t0, double t1, HitState state) {
+        if (nodeCount == 0) {
+            return false;
+        }
+        // Get ray origin e and reciprocal of ray direction d once for all nodes
+        double x1e = ray.getOrigin().getCoord(1);
+        double x2e = ray.getOrigin().getCoord(2);
+        double x3e = ray.getOrigin().getCoord(3);
+        double reciprocalX1d = 1 / ray.getDirection().getCoord(1);
+        double reciprocalX2d = 1 / ray.getDirection().getCoord(2);
+        double reciprocalX3d = 1 / ray.getDirection().getCoord(3);
+
+        boolean countNodes = TraversalStatistics.isEnabled();
+        if (countNodes) {
+            TraversalStatistics.countNodeVisit();
+        }
+        if (entryDistance(0, x1e, x2e, x3e, reciprocalX1d, reciprocalX2d, reciprocalX3d, t0,
+                t1) == BoundingBox.MISS) {
+            return false;
+        }
+
+        // Separate stacks, the object hierarchies use the default ones
+        int[] stack = state.getTopLevelStack(maxDepth);
+        double[] distanceStack = state.getTopLevelDistanceStack(maxDepth);
+        int stackSize = 0;
+        int node = 0; // Invariant: the box of node is hit within [t0,t1]
+        boolean hit = false;
+        while (true) {
+            if (nodes[node * 2 + 1] == 0) {
+                // Inner node: test both children and visit the nearer one first
+                int near = node + 1;
+                int far = nodes[node * 2];
+                if (countNodes) {
+                    TraversalStatistics.countNodeVisit();
+                    TraversalStatistics.countNodeVisit();
+                }
+                double nearEntry = entryDistance(near, x1e, x2e, x3e, reciprocalX1d, reciprocalX2d,
+                        reciprocalX3d, t0, t1);
+                double farEntry = entryDistance(far, x1e, x2e, x3e, reciprocalX1d, reciprocalX2d,
+                        reciprocalX3d, t0, t1);
+                if (farEntry < nearEntry) {
+                    int tmp = near;
+                    near = far;
+                    far = tmp;
+                    double tmpEntry = nearEntry;
+                    nearEntry = farEntry;
+                    farEntry = tmpEntry;
+                }
+                if (nearEntry != BoundingBox.MISS) {
+                    if (farEntry != BoundingBox.MISS) {
+                        stack[stackSize] = far;
+                        distanceStack[stackSize++] = farEntry;
+                    }
+                    node = near;
+                    continue;
+                }
+            } else if (objects[nodes[node * 2]].closestHit(ray, t0, t1, state)) {
+                // Leaf node: the object traverses its own hierarchy
+                hit = true;
+                t1 = state.getT(); // Update t1 to decrease interval [t0,t1]
+            }
+            // Pop the next node whose box is not entered behind the closest hit
+            do {
+                if (stackSize == 0) {
+                    return hit;
+                }
+                node = stack[--stackSize];
+            } while (distanceStack[stackSize] > t1);
+        }
+    }
+
+    /**
+     * Calculates the distance at which a ray enters the bounding box of a node.
+     *
+     * @param node          node index
+     * @param x1e           x1 coordinate of ray origin
+     * @param x2e           x2 coordinate of ray origin
+     * @param x3e           x3 coordinate of ray origin
+     * @param reciprocalX1d reciprocal of x1 coordinate of ray direction
+     * @param reciprocalX2d reciprocal of x2 coordinate of ray direction
+     * @param reciprocalX3d reciprocal of x3 coordinate of ray direction
+     * @param t0            minimum ray parameter
+     * @param t1            maximum ray parameter
+     * @return entry distance clamped to t0, or {@link BoundingBox#MISS}
+     */
+    private double entryDistance(int node, double x1e, double x2e, double x3e,
+            double reciprocalX1d, double reciprocalX2d, double reciprocalX3d, double t0, double t1) {
+        int b = node * 6;
+        return BoundingBox.entryDistance(bounds[b], bounds[b + 3], bounds[b + 1], bounds[b + 4],
+                bounds[b + 2], bounds[b + 5], x1e, x2e, x3e, reciprocalX1d, reciprocalX2d, reciprocalX3d,
+                t0, t1);
+    }
+
+    /**
+     * Returns the number of objects in the hierarchy.
+     *
+     * @return object count
+     */
+    public int getObjectCount() {
+        return objects.length;
+    }
+
+    /**
+     * Returns the number of nodes in the hierarchy.
+     *
+     * @return node count
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the maximum depth of the hierarchy.
+     *
+     * @return depth, 0 for an empty hierarchy
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+}
@@ -80,7 +80,7 @@ public class TrafoMatrix {
      * @param m The transformation matrix to multiply with.
      * @return A new TrafoMatrix instance representing the result.
      */
-    private TrafoMatrix matrMult(TrafoMatrix m) {
+    public TrafoMatrix matrMult(TrafoMatrix m) {
         double[] result = new double[16];
         for (int i = 0; i < 4; i++) {
             for (int j = 0; j < 4; j++) {
@@ -93,6 +93,35 @@ public class TrafoMatrix {
         return new TrafoMatrix(result);
     }
 
+    /**
+     * Computes the inverse of the affine transformation.
+     * The upper left 3x3 part is inverted, the inverse translation is
+     * {@code -A^-1 * t}.
+     *
+     * @return A new TrafoMatrix instance representing the inverse.
+     * @throws ArithmeticException If the matrix is singular (e.g. a scaling
+     *                             factor is 0) and cannot be inverted.
+     */
+    public TrafoMatrix inverse() {
+        double[][] linear = new double[3][3];
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                linear[i][j] = getElement(i, j);
+            }
+        }
+        double[][] inv = new Matrix3x3(linear).inverse().getElements();
+        double[] result = new double[16];
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                result[i * 4 + j] = inv[i][j];
+            }
+            result[i * 4 + 3] = -(inv[i][0] * getElement(0, 3) + inv[i][1] * getElement(1, 3)
+                    + inv[i][2] * getElement(2, 3));
+        }
+        result[15] = 1;
+        return new TrafoMatrix(result);
+    }
+
     /**
      * Internal helper method:
      *
@@ -0,0 +1,391 @@
+package rayrangers.raytracer.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import rayrangers.raytracer.algorithm.bounding.LinearBoundingVolumeHierarchy;
+import rayrangers.raytracer.algorithm.bounding.SplitMethod;
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.Face;
+import rayrangers.raytracer.world.GeometryPrecision;
+import rayrangers.raytracer.world.GeometryStorage;
+import rayrangers.raytracer.world.Mesh;
+import rayrangers.raytracer.world.Triangle;
+
+/**
+ * Native binary mesh format, converted once from an OBJ file and loaded
+ * without parsing.
+ * A file is loaded by mapping it into memory; the mesh wraps float and int
+ * buffer views of the mapped sections without copying them, so loading only
+ * creates the faces and materials. The file is mapped privately, transforming
+ * the mesh writes into copy-on-write pages and never changes the file. Files
+ * which cannot be opened for writing are mapped read-only and the mesh copies
+ * the buffers into direct buffers before it is transformed.
+ * Loaded entities use {@link GeometryStorage#OFF_HEAP}, so the mesh stays
+ * mapped in single precision in every scene until the entity is moved to the
+ * heap. The BVH tree is stored if the entity had one when it was written and
+ * is wrapped like the mesh, so a loaded entity can be rendered without
+ * building it; otherwise it is built off-heap when the entity is transformed.
+ *
+ * File layout (little-endian):
+ * header of {@value #HEADER_SIZE} bytes with magic, format version, flags,
+ * vertex, triangle and face count and the offsets of the sections, followed by
+ * the sections, each aligned to {@value #ALIGNMENT} bytes: positions (three
+ * floats per vertex), normal vectors (three floats per vertex, NaN for none,
+ * only if flagged), vertex indices (three ints per triangle), faces (triangle,
+ * material and smoothing group index, -1 for none), the BVH tree (only if
+ * flagged: SAH cost at build time as double and padding to 16 bytes, six
+ * float bounds per node, two ints per node and the face indices ordered by
+ * leaf) and the table of the entity name, smoothing groups and materials. The
+ * header additionally holds offset, node count, maximum depth and split method
+ * of the BVH tree.
+ * Usage: BinaryMeshFormat [obj file] [binary mesh file]
+ */
+public class BinaryMeshFormat {
+
+    /**
+     * Version of the file layout, files of other versions are rejected.
+     */
+    public static final int FORMAT_VERSION = 2;
+
+    /**
+     * Usual file extension of binary mesh files.
+     */
+    public static final String EXTENSION = ".rrbm";
+
+    /**
+     * Magic number at the start of every file, the bytes "RRBM" in
+     * little-endian order.
+     */
+    private static final int MAGIC = 0x4D425252;
+
+    /**
+     * Size of the header in bytes, including reserved space.
+     */
+    private static final int HEADER_SIZE = 64;
+
+    /**
+     * Alignment of the sections in bytes.
+     */
+    private static final int ALIGNMENT = 16;
+
+    /**
+     * Flag set if the file contains normal vectors.
+     */
+    private static final int HAS_NORMALS = 1;
+
+    /**
+     * Flag set if the file contains a BVH tree.
+     */
+    private static final int HAS_BVH = 2;
+
+    /**
+     * Size of the BVH section before the bounds: SAH cost and padding.
+     */
+    private static final int BVH_HEADER_SIZE = 16;
+
+    /**
+     * Private constructor, class only provides static members.
+     */
+    private BinaryMeshFormat() {
+    }
+
+    /**
+     * Converts an OBJ file into a binary mesh file.
+     *
+     * @param args path of the OBJ file and of the binary mesh file
+     * @throws IOException if the OBJ file cannot be parsed or the binary mesh
+     *                     file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: BinaryMeshFormat <obj file> <binary mesh file>");
+            return;
+        }
+        convert(args[0], Path.of(args[1]));
+    }
+
+    /**
+     * Parses an OBJ file and writes it as binary mesh file.
+     *
+     * @param objPath path to the OBJ file
+     * @param path    path of the binary mesh file, replaced if it exists
+     * @throws IOException if the OBJ file cannot be parsed or the binary mesh
+     *                     file cannot be written
+     */
+    public static void convert(String objPath, Path path) throws IOException {
+        write(ObjParser.parseObjFile(objPath), path);
+    }
+
+    /**
+     * Writes the mesh, faces, materials and BVH tree of an entity to a
+     * temporary file and moves it into place, so readers never see partially
+     * written files. Positions and normal vectors are rounded to floats, the
+     * bounds of the BVH tree are rounded outwards.
+     *
+     * @param entity entity whose faces are triangles of its mesh, e.g. parsed
+     *               by the ObjParser, with or without BVH tree
+     * @param path   path of the binary mesh file, replaced if it exists
+     * @throws IOException                   if the file cannot be written
+     * @throws UnsupportedOperationException if a face is not a triangle of the
+     *                                       entity mesh
+     * @throws IllegalArgumentException      if the file would be larger than
+     *                                       2 GB
+     */
+    public static void write(Entity entity, Path path) throws IOException {
+        List<Face> faces = entity.getFaces();
+        Mesh mesh = entity.getMesh();
+
+        // Table of shared objects, referenced by index
+        EntityTable entityTable = EntityTable.of(entity);
+        ByteBuffer table = entityTable.encode(ByteOrder.LITTLE_ENDIAN);
+
+        int vertexValues = mesh.getVertexCount() * 3;
+        int indexValues = mesh.getTriangleCount() * 3;
+        boolean hasNormals = mesh.getNormals() != null || mesh.getFloatNormals() != null
+                || mesh.getNormalBuffer() != null;
+        long positionsOffset = HEADER_SIZE;
+        long normalsOffset = hasNormals ? align(positionsOffset + (long) vertexValues * Float.BYTES) : 0;
+        long indicesOffset = align((hasNormals ? normalsOffset : positionsOffset)
+                + (long) vertexValues * Float.BYTES);
+        long facesOffset = align(indicesOffset + (long) indexValues * Integer.BYTES);
+        LinearBoundingVolumeHierarchy tree = entity.getBvhTree();
+        int nodeCount = tree != null ? tree.getNodeCount() : 0;
+        long bvhOffset = tree != null ? align(facesOffset + 3L * faces.size() * Integer.BYTES) : 0;
+        long boundsOffset = bvhOffset + BVH_HEADER_SIZE;
+        long nodesOffset = boundsOffset + 6L * nodeCount * Float.BYTES;
+        long faceIndicesOffset = nodesOffset + 2L * nodeCount * Integer.BYTES;
+        long tableOffset = align(tree != null ? faceIndicesOffset + (long) faces.size() * Integer.BYTES
+                : facesOffset + 3L * faces.size() * Integer.BYTES);
+        long size = tableOffset + table.limit();
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Entity is too large for a binary mesh file.");
+
+        ByteBuffer out = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(FORMAT_VERSION).putInt((hasNormals ? HAS_NORMALS : 0) | (tree != null ? HAS_BVH : 0))
+                .putInt(mesh.getVertexCount()).putInt(mesh.getTriangleCount()).putInt(faces.size())
+                .putInt((int) positionsOffset).putInt((int) normalsOffset).putInt((int) indicesOffset)
+                .putInt((int) facesOffset).putInt((int) tableOffset).putInt((int) bvhOffset).putInt(nodeCount)
+                .putInt(tree != null ? tree.getMaxDepth() : 0)
+                .putInt(tree != null ? tree.getSplitMethod().ordinal() : 0);
+        for (int v = 0; v < mesh.getVertexCount(); v++) {
+            for (int axis = 0; axis < 3; axis++) {
+                int i = v * 3 + axis;
+                out.putFloat((int) positionsOffset + i * Float.BYTES, (float) mesh.getCoord(v, axis));
+                if (hasNormals) {
+                    out.putFloat((int) normalsOffset + i * Float.BYTES, normalValue(mesh, i));
+                }
+            }
+        }
+        for (int t = 0; t < mesh.getTriangleCount(); t++) {
+            for (int corner = 0; corner < 3; corner++) {
+                out.putInt((int) indicesOffset + (t * 3 + corner) * Integer.BYTES, mesh.getVertexIndex(t, corner));
+            }
+        }
+        out.position((int) facesOffset);
+        for (Face face : faces) {
+            out.putInt(((Triangle) face).getIndex());
+            out.putInt(entityTable.materialIndex(face));
+            out.putInt(entityTable.groupIndex(face));
+        }
+        if (tree != null) {
+            out.putDouble((int) bvhOffset, tree.getBuildSahCost());
+            tree.copyTo(out.slice((int) boundsOffset, 6 * nodeCount * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                    .asFloatBuffer(),
+                    out.slice((int) nodesOffset, 2 * nodeCount * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                            .asIntBuffer(),
+                    out.slice((int) faceIndicesOffset, faces.size() * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                            .asIntBuffer());
+        }
+        out.position((int) tableOffset).put(table);
+
+        Path directory = path.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                out.flip();
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Loads a binary mesh file by mapping it into memory.
+     *
+     * @param path path of the binary mesh file
+     * @return entity stored off-heap whose mesh and BVH tree wrap the mapped
+     *         file, without BVH tree if the file has none
+     * @throws IOException if the file cannot be read or is not a valid binary
+     *                     mesh file
+     */
+    public static Entity read(Path path) throws IOException {
+        MappedByteBuffer buffer = map(path);
+        try {
+            return readEntity(buffer.order(ByteOrder.LITTLE_ENDIAN));
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid binary mesh file " + path + ".", e);
+        }
+    }
+
+    /**
+     * Maps a whole file privately, or read-only if it cannot be opened for
+     * writing, e.g. because access is denied or it lies on a read-only file
+     * system. The mapping stays valid after the channel is closed.
+     *
+     * @param path path of the file
+     * @return mapped file
+     * @throws IOException if the file cannot be mapped or is too small or too
+     *                     large to be a binary mesh file
+     */
+    private static MappedByteBuffer map(Path path) throws IOException {
+        FileChannel channel;
+        FileChannel.MapMode mode;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            mode = FileChannel.MapMode.PRIVATE;
+        } catch (NoSuchFileException e) {
+            throw e;
+        } catch (FileSystemException e) {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            mode = FileChannel.MapMode.READ_ONLY;
+        }
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE)
+                throw new IOException(path + " is not a binary mesh file.");
+            return channel.map(mode, 0, size);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads the entity from a mapped file.
+     *
+     * @param file little-endian buffer of the whole file
+     * @return entity in single precision
+     * @throws IllegalArgumentException if the header or a section is invalid
+     */
+    private static Entity readEntity(ByteBuffer file) {
+        if (file.getInt() != MAGIC)
+            throw new IllegalArgumentException("Wrong magic number.");
+        int version = file.getInt();
+        if (version != FORMAT_VERSION)
+            throw new IllegalArgumentException("Unsupported format version " + version + ".");
+        int flags = file.getInt();
+        int vertexCount = file.getInt();
+        int triangleCount = file.getInt();
+        int faceCount = file.getInt();
+        int positionsOffset = file.getInt();
+        int normalsOffset = file.getInt();
+        int indicesOffset = file.getInt();
+        int facesOffset = file.getInt();
+        int tableOffset = file.getInt();
+        int bvhOffset = file.getInt();
+        int nodeCount = file.getInt();
+        int maxDepth = file.getInt();
+        int splitMethod = file.getInt();
+
+        long vertexBytes = 3L * vertexCount * Float.BYTES;
+        FloatBuffer positions = section(file, positionsOffset, vertexBytes).asFloatBuffer();
+        FloatBuffer normals = (flags & HAS_NORMALS) != 0 ? section(file, normalsOffset, vertexBytes).asFloatBuffer()
+                : null;
+        IntBuffer indices = section(file, indicesOffset, 3L * triangleCount * Integer.BYTES).asIntBuffer();
+        IntBuffer faceRecords = section(file, facesOffset, 3L * faceCount * Integer.BYTES).asIntBuffer();
+        ByteBuffer table = section(file, tableOffset, file.limit() - (long) tableOffset);
+
+        EntityTable entityTable = EntityTable.read(table);
+
+        Mesh mesh = new Mesh(positions, normals, indices);
+        List<Face> faces = new ArrayList<>(faceCount);
+        for (int i = 0; i < faceCount; i++) {
+            int triangle = faceRecords.get();
+            int material = faceRecords.get();
+            int group = faceRecords.get();
+            faces.add(entityTable.createFace(mesh, triangle, material, group));
+        }
+
+        Entity entity = new Entity(entityTable.getName(), faces, mesh);
+        entity.setGeometryPrecision(GeometryPrecision.FLOAT);
+        entity.setGeometryStorage(GeometryStorage.OFF_HEAP);
+        if ((flags & HAS_BVH) != 0) {
+            long nodesOffset = BVH_HEADER_SIZE + 6L * nodeCount * Float.BYTES;
+            long faceIndicesOffset = nodesOffset + 2L * nodeCount * Integer.BYTES;
+            if (nodeCount < 1 || splitMethod < 0 || splitMethod >= SplitMethod.values().length)
+                throw new IllegalArgumentException("Invalid BVH header.");
+            ByteBuffer bvh = section(file, bvhOffset, faceIndicesOffset + (long) faceCount * Integer.BYTES);
+            entity.setBvhTree(LinearBoundingVolumeHierarchy.wrap(faces, SplitMethod.values()[splitMethod], maxDepth,
+                    bvh.getDouble(0),
+                    bvh.slice(BVH_HEADER_SIZE, (int) (nodesOffset - BVH_HEADER_SIZE)).order(ByteOrder.LITTLE_ENDIAN)
+                            .asFloatBuffer(),
+                    bvh.slice((int) nodesOffset, (int) (faceIndicesOffset - nodesOffset))
+                            .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer(),
+                    bvh.slice((int) faceIndicesOffset, faceCount * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                            .asIntBuffer()));
+        }
+        return entity;
+    }
+
+    /**
+     * Returns a little-endian view of a section of the file.
+     *
+     * @param file   buffer of the whole file
+     * @param offset offset of the section
+     * @param length length of the section in bytes
+     * @return view of the section
+     * @throws IllegalArgumentException if the section is not within the file
+     *                                  or misaligned
+     */
+    private static ByteBuffer section(ByteBuffer file, int offset, long length) {
+        if (offset < HEADER_SIZE || offset % ALIGNMENT != 0 || length < 0 || offset + length > file.limit())
+            throw new IllegalArgumentException("Invalid section at offset " + offset + ".");
+        return file.slice(offset, (int) length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Rounds an offset up to the alignment of the sections.
+     *
+     * @param offset offset in bytes
+     * @return aligned offset
+     */
+    private static long align(long offset) {
+        return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * Returns a normal vector value of a mesh in any storage.
+     *
+     * @param mesh mesh with normal vectors
+     * @param i    index of the value, three per vertex
+     * @return coordinate, NaN if the vertex has no normal vector
+     */
+    private static float normalValue(Mesh mesh, int i) {
+        if (mesh.getNormals() != null) {
+            return (float) mesh.getNormals()[i];
+        }
+        return mesh.getFloatNormals() != null ? mesh.getFloatNormals()[i] : mesh.getNormalBuffer().get(i);
+    }
+}
@@ -0,0 +1,298 @@
+package rayrangers.raytracer.parser;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.Face;
+import rayrangers.raytracer.world.Material;
+import rayrangers.raytracer.world.Mesh;
+import rayrangers.raytracer.world.Triangle;
+
+/**
+ * Table of the entity name, smoothing groups and materials shared by the faces
+ * of an entity, as stored by the MeshCache and the BinaryMeshFormat.
+ * Faces refer to smoothing groups and materials by their index in the table,
+ * -1 for none.
+ *
+ * Layout: entity name, number of smoothing groups followed by the groups,
+ * number of materials followed by the materials with name, ambient, diffuse
+ * and specular color, specular exponent, transparency and illumination model.
+ * Strings are stored as length, -1 for null, and UTF-8 bytes, colors as
+ * presence flag byte and ARGB value.
+ */
+final class EntityTable {
+
+    /**
+     * Size of a material in the table without its name: three colors,
+     * specular exponent, transparency and illumination model.
+     */
+    private static final int MATERIAL_SIZE = 3 * (1 + Integer.BYTES) + 2 * Double.BYTES + Integer.BYTES;
+
+    /**
+     * Name of the entity, may be null.
+     */
+    private final String name;
+
+    /**
+     * Smoothing groups ordered by index.
+     */
+    private final List<String> groups;
+
+    /**
+     * Materials ordered by index.
+     */
+    private final List<Material> materials;
+
+    /**
+     * Index of every smoothing group, null for tables read from a buffer.
+     */
+    private final Map<String, Integer> groupIndices;
+
+    /**
+     * Index of every material by identity, null for tables read from a buffer.
+     */
+    private final Map<Material, Integer> materialIndices;
+
+    /**
+     * Class constructor specifying the contents of the table.
+     *
+     * @param name            name of the entity
+     * @param groups          smoothing groups ordered by index
+     * @param materials       materials ordered by index
+     * @param groupIndices    index of every smoothing group, may be null
+     * @param materialIndices index of every material, may be null
+     */
+    private EntityTable(String name, List<String> groups, List<Material> materials,
+            Map<String, Integer> groupIndices, Map<Material, Integer> materialIndices) {
+        this.name = name;
+        this.groups = groups;
+        this.materials = materials;
+        this.groupIndices = groupIndices;
+        this.materialIndices = materialIndices;
+    }
+
+    /**
+     * Collects the smoothing groups and materials of the faces of an entity in
+     * the order they are first used.
+     *
+     * @param entity entity whose faces are triangles of its mesh
+     * @return table of the entity
+     * @throws UnsupportedOperationException if a face is not a triangle of the
+     *                                       entity mesh
+     */
+    static EntityTable of(Entity entity) {
+        Mesh mesh = entity.getMesh();
+        List<String> groups = new ArrayList<>();
+        List<Material> materials = new ArrayList<>();
+        Map<String, Integer> groupIndices = new HashMap<>();
+        Map<Material, Integer> materialIndices = new IdentityHashMap<>();
+        for (Face face : entity.getFaces()) {
+            if (!(face instanceof Triangle triangle) || triangle.getMesh() != mesh)
+                throw new UnsupportedOperationException("Only triangles of the entity mesh can be stored.");
+            String group = face.getSmoothingGroup();
+            if (group != null && groupIndices.putIfAbsent(group, groups.size()) == null) {
+                groups.add(group);
+            }
+            Material material = face.getMaterial();
+            if (material != null && materialIndices.putIfAbsent(material, materials.size()) == null) {
+                materials.add(material);
+            }
+        }
+        return new EntityTable(entity.getName(), groups, materials, groupIndices, materialIndices);
+    }
+
+    /**
+     * Reads a table written by {@link #encode(ByteOrder)} and advances the
+     * buffer behind it.
+     *
+     * @param in buffer to read from
+     * @return table
+     * @throws java.nio.BufferUnderflowException if the table is truncated
+     */
+    static EntityTable read(ByteBuffer in) {
+        String name = readString(in);
+        int groupCount = in.getInt();
+        List<String> groups = new ArrayList<>(groupCount);
+        for (int i = 0; i < groupCount; i++) {
+            groups.add(readString(in));
+        }
+        int materialCount = in.getInt();
+        List<Material> materials = new ArrayList<>(materialCount);
+        for (int i = 0; i < materialCount; i++) {
+            materials.add(new Material(readString(in), readColor(in), readColor(in), readColor(in),
+                    in.getDouble(), in.getDouble(), in.getInt()));
+        }
+        return new EntityTable(name, groups, materials, null, null);
+    }
+
+    /**
+     * Encodes the table.
+     *
+     * @param order byte order of the numbers
+     * @return encoded table, flipped for reading
+     */
+    ByteBuffer encode(ByteOrder order) {
+        byte[] encodedName = encodeString(name);
+        List<byte[]> encodedGroups = new ArrayList<>(groups.size());
+        List<byte[]> materialNames = new ArrayList<>(materials.size());
+        int size = stringSize(encodedName) + 2 * Integer.BYTES + materials.size() * MATERIAL_SIZE;
+        for (String group : groups) {
+            encodedGroups.add(encodeString(group));
+            size += stringSize(encodedGroups.get(encodedGroups.size() - 1));
+        }
+        for (Material material : materials) {
+            materialNames.add(encodeString(material.getName()));
+            size += stringSize(materialNames.get(materialNames.size() - 1));
+        }
+
+        ByteBuffer table = ByteBuffer.allocate(size).order(order);
+        putString(table, encodedName);
+        table.putInt(groups.size());
+        for (byte[] group : encodedGroups) {
+            putString(table, group);
+        }
+        table.putInt(materials.size());
+        for (int i = 0; i < materials.size(); i++) {
+            Material material = materials.get(i);
+            putString(table, materialNames.get(i));
+            putColor(table, material.getAmbient());
+            putColor(table, material.getDiffuse());
+            putColor(table, material.getSpecular());
+            table.putDouble(material.getSpecularExp());
+            table.putDouble(material.getTransparency());
+            table.putInt(material.getIllum());
+        }
+        return table.flip();
+    }
+
+    /**
+     * Returns the name of the entity.
+     *
+     * @return entity name, may be null
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the index of the smoothing group of a face of the entity the
+     * table was collected from.
+     *
+     * @param face face of the entity
+     * @return index of the smoothing group, -1 if the face has none
+     */
+    int groupIndex(Face face) {
+        return face.getSmoothingGroup() != null ? groupIndices.get(face.getSmoothingGroup()) : -1;
+    }
+
+    /**
+     * Returns the index of the material of a face of the entity the table was
+     * collected from.
+     *
+     * @param face face of the entity
+     * @return index of the material, -1 if the face has none
+     */
+    int materialIndex(Face face) {
+        return face.getMaterial() != null ? materialIndices.get(face.getMaterial()) : -1;
+    }
+
+    /**
+     * Creates a face from a stored face record.
+     *
+     * @param mesh     mesh of the entity
+     * @param triangle index of the triangle in the mesh
+     * @param material index of the material, -1 for none
+     * @param group    index of the smoothing group, -1 for none
+     * @return triangle of the mesh
+     * @throws IllegalArgumentException  if the triangle index is invalid
+     * @throws IndexOutOfBoundsException if the material or group index is
+     *                                   invalid
+     */
+    Triangle createFace(Mesh mesh, int triangle, int material, int group) {
+        if (triangle < 0 || triangle >= mesh.getTriangleCount())
+            throw new IllegalArgumentException("Invalid triangle index " + triangle + ".");
+        return new Triangle(material >= 0 ? materials.get(material) : null, group >= 0 ? groups.get(group) : null,
+                mesh, triangle);
+    }
+
+    /**
+     * Encodes a nullable string as UTF-8.
+     *
+     * @param string string, may be null
+     * @return bytes, null if {@code string == null}
+     */
+    private static byte[] encodeString(String string) {
+        return string != null ? string.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Returns the size of an encoded string in the table.
+     *
+     * @param bytes encoded string, may be null
+     * @return length and bytes in bytes
+     */
+    private static int stringSize(byte[] bytes) {
+        return Integer.BYTES + (bytes != null ? bytes.length : 0);
+    }
+
+    /**
+     * Puts an encoded string as length, -1 for null, and bytes.
+     *
+     * @param out   buffer to write to
+     * @param bytes encoded string, may be null
+     */
+    private static void putString(ByteBuffer out, byte[] bytes) {
+        if (bytes == null) {
+            out.putInt(-1);
+            return;
+        }
+        out.putInt(bytes.length);
+        out.put(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #putString(ByteBuffer, byte[])}.
+     *
+     * @param in buffer to read from
+     * @return string, may be null
+     */
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Puts a nullable color as presence flag and ARGB value.
+     *
+     * @param out   buffer to write to
+     * @param color color, may be null
+     */
+    private static void putColor(ByteBuffer out, Color color) {
+        out.put((byte) (color != null ? 1 : 0));
+        out.putInt(color != null ? color.getRGB() : 0);
+    }
+
+    /**
+     * Reads a color written by {@link #putColor(ByteBuffer, Color)}.
+     *
+     * @param in buffer to read from
+     * @return color, may be null
+     */
+    private static Color readColor(ByteBuffer in) {
+        boolean present = in.get() != 0;
+        int argb = in.getInt();
+        return present ? new Color(argb, true) : null;
+    }
+}
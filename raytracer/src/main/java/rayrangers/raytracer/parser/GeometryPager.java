@@ -0,0 +1,293 @@
+package rayrangers.raytracer.parser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import rayrangers.raytracer.algorithm.bounding.SplitMethod;
+import rayrangers.raytracer.world.Entity;
+
+/**
+ * Out-of-core storage of entities, paged in from memory-mapped binary mesh
+ * files when a ray reaches their bounds.
+ * Every entity is stored in its own file together with its BVH tree, so the
+ * top-level hierarchy of the scene only holds the bounding boxes and each
+ * entity is a subtree which is loaded as a whole. Loading maps the file and
+ * wraps mesh and tree without copying; the operating system reads the pages
+ * the traversal touches.
+ * The pager keeps the approximate size of the resident meshes and trees below
+ * a budget by evicting entities with the clock algorithm: every access marks
+ * an entity, and the clock hand evicts the first entity it finds unmarked
+ * while clearing the marks it passes. Evicted mappings are released when they
+ * become unreachable. Rendering the tiles in Z-order keeps the entities hit
+ * by a worker close together and the page-in rate low.
+ * All methods are thread-safe. A thread paging in an entity blocks others that
+ * need the same entity until it is loaded.
+ */
+public class GeometryPager {
+
+    /**
+     * Directory the files of stored entities are written to.
+     */
+    private final Path directory;
+
+    /**
+     * Maximum approximate size of all resident entities in bytes.
+     */
+    private long residentBudget;
+
+    /**
+     * Resident entities in the order of the clock.
+     */
+    private final List<PagedEntity> resident = new ArrayList<>();
+
+    /**
+     * Position of the clock hand in the resident entities.
+     */
+    private int hand;
+
+    /**
+     * Approximate size of all resident entities in bytes.
+     */
+    private long residentBytes;
+
+    /**
+     * Number of entities loaded because a ray reached them.
+     */
+    private long pageIns;
+
+    /**
+     * Number of entities evicted to stay within the budget.
+     */
+    private long evictions;
+
+    /**
+     * Number of rays which reached a paged entity, including page-ins.
+     */
+    private final LongAdder accesses = new LongAdder();
+
+    /**
+     * Class constructor specifying the directory and the resident-set budget.
+     *
+     * @param directory      directory the files of stored entities are written
+     *                       to, created if missing
+     * @param residentBudget maximum approximate size of all resident entities
+     *                       in bytes; a single entity is always kept, even if
+     *                       it is larger
+     * @throws IOException if the directory cannot be created
+     */
+    public GeometryPager(Path directory, long residentBudget) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.residentBudget = residentBudget;
+    }
+
+    /**
+     * Writes an entity with its BVH tree to a binary mesh file in the
+     * directory of the pager. The entity itself is not kept and can be
+     * discarded to free its memory.
+     *
+     * @param entity transformed entity whose faces are triangles of its mesh;
+     *               its BVH tree is built if missing
+     * @return paged entity, not resident
+     * @throws IOException if the file cannot be written
+     */
+    public PagedEntity store(Entity entity) throws IOException {
+        if (entity.getBvhTree() == null) {
+            entity.buildBvhTree();
+        }
+        Path path = directory.resolve(entity.getUuid() + BinaryMeshFormat.EXTENSION);
+        BinaryMeshFormat.write(entity, path);
+        return open(path);
+    }
+
+    /**
+     * Opens an existing binary mesh file for paging. The file is mapped once to
+     * read the bounds of its BVH tree.
+     *
+     * @param path path of the binary mesh file, whose mesh is in world
+     *             coordinates
+     * @return paged entity, not resident
+     * @throws IOException if the file cannot be read or is not a valid binary
+     *                     mesh file
+     */
+    public PagedEntity open(Path path) throws IOException {
+        return new PagedEntity(this, path, load(path).getBoundingBox());
+    }
+
+    /**
+     * Returns the resident entity of a paged entity, loading it first if
+     * necessary. Called for every ray reaching the entity.
+     *
+     * @param paged paged entity created by this pager
+     * @return resident entity
+     * @throws UncheckedIOException if the file cannot be read
+     */
+    Entity access(PagedEntity paged) {
+        accesses.increment();
+        if (!paged.referenced) {
+            // Only write when the flag changes, so hot entities do not bounce
+            // their cache line between the cores
+            paged.referenced = true;
+        }
+        Entity entity = paged.getEntity();
+        if (entity != null) {
+            return entity;
+        }
+        synchronized (paged) {
+            entity = paged.getEntity();
+            if (entity != null) {
+                return entity; // Loaded by another thread meanwhile
+            }
+            try {
+                entity = load(paged.getPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            synchronized (this) {
+                paged.residentBytes = entity.getMesh().getMemoryBytes() + entity.getBvhTree().getMemoryBytes();
+                paged.setEntity(entity);
+                resident.add(paged);
+                residentBytes += paged.residentBytes;
+                pageIns++;
+                evict(paged);
+            }
+            return entity;
+        }
+    }
+
+    /**
+     * Loads an entity from a binary mesh file, building its BVH tree if the
+     * file has none.
+     *
+     * @param path path of the binary mesh file
+     * @return entity with BVH tree
+     * @throws IOException if the file cannot be read or is not a valid binary
+     *                     mesh file
+     */
+    private static Entity load(Path path) throws IOException {
+        Entity entity = BinaryMeshFormat.read(path);
+        if (entity.getBvhTree() == null) {
+            entity.setSplitMethod(SplitMethod.MORTON);
+            entity.buildBvhTree();
+        }
+        return entity;
+    }
+
+    /**
+     * Evicts entities by the clock algorithm until the resident entities fit
+     * into the budget.
+     *
+     * @param keep entity which must stay resident, may be null
+     */
+    private synchronized void evict(PagedEntity keep) {
+        while (residentBytes > residentBudget && resident.size() > (keep != null ? 1 : 0)) {
+            if (hand >= resident.size()) {
+                hand = 0;
+            }
+            PagedEntity candidate = resident.get(hand);
+            if (candidate == keep || candidate.referenced) {
+                candidate.referenced = false;
+                hand++;
+                continue;
+            }
+            // The last entity takes the place of the evicted one
+            resident.set(hand, resident.get(resident.size() - 1));
+            resident.remove(resident.size() - 1);
+            candidate.setEntity(null);
+            residentBytes -= candidate.residentBytes;
+            evictions++;
+        }
+    }
+
+    /**
+     * Evicts all resident entities.
+     */
+    public synchronized void evictAll() {
+        for (PagedEntity paged : resident) {
+            paged.setEntity(null);
+        }
+        evictions += resident.size();
+        resident.clear();
+        residentBytes = 0;
+        hand = 0;
+    }
+
+    /**
+     * Returns the directory the files of stored entities are written to.
+     *
+     * @return directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the resident-set budget.
+     *
+     * @return maximum approximate size of all resident entities in bytes
+     */
+    public synchronized long getResidentBudget() {
+        return residentBudget;
+    }
+
+    /**
+     * Sets the resident-set budget and evicts entities until they fit into it.
+     *
+     * @param residentBudget maximum approximate size of all resident entities
+     *                       in bytes
+     */
+    public synchronized void setResidentBudget(long residentBudget) {
+        this.residentBudget = residentBudget;
+        evict(null);
+    }
+
+    /**
+     * Returns the approximate size of the resident meshes and BVH trees.
+     *
+     * @return resident size in bytes
+     */
+    public synchronized long getResidentBytes() {
+        return residentBytes;
+    }
+
+    /**
+     * Returns the number of resident entities.
+     *
+     * @return resident entities
+     */
+    public synchronized int getResidentCount() {
+        return resident.size();
+    }
+
+    /**
+     * Returns the number of entities loaded because a ray reached them.
+     *
+     * @return page-ins
+     */
+    public synchronized long getPageIns() {
+        return pageIns;
+    }
+
+    /**
+     * Returns the number of entities evicted, including {@link #evictAll()}.
+     *
+     * @return evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of rays which reached a paged entity. The page-in
+     * rate is {@link #getPageIns()} divided by this number.
+     *
+     * @return accesses, including those which paged in
+     */
+    public long getAccesses() {
+        return accesses.sum();
+    }
+}
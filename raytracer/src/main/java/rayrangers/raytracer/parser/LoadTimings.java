@@ -0,0 +1,165 @@
+package rayrangers.raytracer.parser;
+
+import java.util.Arrays;
+
+/**
+ * Timings of the stages of loading an OBJ file with the
+ * {@link StreamingObjLoader}.
+ * Every stage records when it started and ended relative to the start of
+ * loading and how long it was busy, so overlapping stages can be compared:
+ * binning runs while the file is parsed and is mostly idle waiting for
+ * batches, only building the nodes remains after parsing.
+ * The timings are filled by
+ * {@link StreamingObjLoader#load(String, LoadTimings)} and have to be read
+ * after it returned.
+ */
+public class LoadTimings {
+
+    /**
+     * Stages of the loading pipeline.
+     */
+    public enum Stage {
+
+        /**
+         * Reading the file into memory.
+         */
+        READ,
+
+        /**
+         * Parsing vertices and faces, handing the faces to the binning stage in
+         * batches.
+         */
+        PARSE,
+
+        /**
+         * Computing and sorting the Morton codes of the batches while parsing.
+         */
+        BIN,
+
+        /**
+         * Merging the sorted batches and writing the nodes of the BVH tree
+         * after parsing.
+         */
+        BUILD
+    }
+
+    /**
+     * Start of loading in nanoseconds of {@link System#nanoTime()}.
+     */
+    private long origin;
+
+    /**
+     * Start of every stage relative to {@link #origin}.
+     */
+    private final long[] starts = new long[Stage.values().length];
+
+    /**
+     * End of every stage relative to {@link #origin}.
+     */
+    private final long[] ends = new long[Stage.values().length];
+
+    /**
+     * Busy time of every stage.
+     */
+    private final long[] busy = new long[Stage.values().length];
+
+    /**
+     * Class constructor creating empty timings.
+     */
+    public LoadTimings() {
+        Arrays.fill(starts, -1);
+    }
+
+    /**
+     * Starts the clock and clears all stages.
+     */
+    void start() {
+        origin = System.nanoTime();
+        Arrays.fill(starts, -1);
+        Arrays.fill(ends, 0);
+        Arrays.fill(busy, 0);
+    }
+
+    /**
+     * Records an interval a stage was busy in.
+     *
+     * @param stage stage
+     * @param start start of the interval in nanoseconds of
+     *              {@link System#nanoTime()}
+     * @param end   end of the interval in nanoseconds of
+     *              {@link System#nanoTime()}
+     */
+    void record(Stage stage, long start, long end) {
+        int i = stage.ordinal();
+        if (starts[i] < 0) {
+            starts[i] = start - origin;
+        }
+        ends[i] = end - origin;
+        busy[i] += end - start;
+    }
+
+    /**
+     * Returns when a stage started, relative to the start of loading.
+     *
+     * @param stage stage
+     * @return start in nanoseconds, -1 if the stage did not run
+     */
+    public long getStartNanos(Stage stage) {
+        return starts[stage.ordinal()];
+    }
+
+    /**
+     * Returns when a stage ended, relative to the start of loading.
+     *
+     * @param stage stage
+     * @return end in nanoseconds
+     */
+    public long getEndNanos(Stage stage) {
+        return ends[stage.ordinal()];
+    }
+
+    /**
+     * Returns how long a stage was busy, which is less than the time between
+     * its start and end if it waited for another stage.
+     *
+     * @param stage stage
+     * @return busy time in nanoseconds
+     */
+    public long getBusyNanos(Stage stage) {
+        return busy[stage.ordinal()];
+    }
+
+    /**
+     * Returns the time from the start of loading until the entity was ready to
+     * be rendered.
+     *
+     * @return total time in nanoseconds
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for (long end : ends) {
+            total = Math.max(total, end);
+        }
+        return total;
+    }
+
+    /**
+     * Returns a table of all stages in milliseconds.
+     *
+     * @return timings
+     */
+    @Override
+    public String toString() {
+        StringBuilder table = new StringBuilder(String.format("%-6s %9s %9s %9s%n", "stage", "start ms", "end ms",
+                "busy ms"));
+        for (Stage stage : Stage.values()) {
+            if (getStartNanos(stage) >= 0) {
+                table.append(String.format("%-6s %9.2f %9.2f %9.2f%n", stage, getStartNanos(stage) / 1e6,
+                        getEndNanos(stage) / 1e6, getBusyNanos(stage) / 1e6));
+            }
+        }
+        table.append(String.format("total %.2f ms, %.2f ms after parsing%n", getTotalNanos() / 1e6,
+                (getTotalNanos() - getEndNanos(Stage.PARSE)) / 1e6));
+        return table.toString();
+    }
+}
@@ -0,0 +1,461 @@
+package rayrangers.raytracer.parser;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import rayrangers.raytracer.algorithm.bounding.LinearBoundingVolumeHierarchy;
+import rayrangers.raytracer.algorithm.bounding.SplitMethod;
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.Face;
+import rayrangers.raytracer.world.Mesh;
+import rayrangers.raytracer.world.Triangle;
+
+/**
+ * Persistent cache of parsed and transformed meshes together with their
+ * flattened BVH tree.
+ * An entry is keyed by a SHA-256 hash over the bytes of the OBJ file, the
+ * referenced MTL files, the transformation and the split method, so changing
+ * any of them results in a new entry. Entries are read through a memory-mapped
+ * file, which skips parsing the OBJ file and building the tree.
+ *
+ * Entry layout (big-endian):
+ * magic, format version, key (32 bytes), payload length, CRC32 of the payload,
+ * followed by the payload: entity name, smoothing groups, materials, the packed
+ * mesh arrays, faces with triangle, material and smoothing group indices and
+ * the flattened BVH tree. Entries with a wrong magic, version, key, length or
+ * checksum are deleted and rebuilt.
+ */
+public class MeshCache {
+
+    /**
+     * Version of the entry layout, entries of other versions are rebuilt.
+     */
+    public static final int FORMAT_VERSION = 2;
+
+    /**
+     * Magic number at the start of every entry ("RRMC").
+     */
+    private static final int MAGIC = 0x52524D43;
+
+    /**
+     * Size of the entry header in bytes.
+     */
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + 32 + 2 * Long.BYTES;
+
+    /**
+     * File extension of cache entries.
+     */
+    private static final String EXTENSION = ".rrmc";
+
+    /**
+     * Directory the entries are stored in.
+     */
+    private final Path directory;
+
+    /**
+     * Number of loads served from the cache.
+     */
+    private long hits;
+
+    /**
+     * Number of loads which had to parse the OBJ file.
+     */
+    private long misses;
+
+    /**
+     * Number of stale or corrupt entries which were deleted and rebuilt.
+     */
+    private long invalidations;
+
+    /**
+     * Class constructor specifying the cache directory.
+     *
+     * @param directory directory the entries are stored in, created if missing
+     * @throws IOException if the directory cannot be created
+     */
+    public MeshCache(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * Loads the entity described by an OBJ file, transforms it and builds its
+     * BVH tree. If a valid entry exists, the entity is read from it instead,
+     * otherwise the entity is parsed and a new entry is written.
+     *
+     * @param objPath     path to the OBJ file
+     * @param tm          transformation applied to the entity, null for none
+     * @param splitMethod split method of the BVH tree
+     * @return transformed entity with built BVH tree
+     * @throws IOException if the OBJ file cannot be parsed or the entry cannot
+     *                     be written
+     */
+    public Entity load(String objPath, TrafoMatrix tm, SplitMethod splitMethod) throws IOException {
+        byte[] key = key(objPath, tm, splitMethod);
+        Path entry = directory.resolve(HexFormat.of().formatHex(key) + EXTENSION);
+        if (Files.exists(entry)) {
+            Entity entity = read(entry, key);
+            if (entity != null) {
+                hits++;
+                return entity;
+            }
+            invalidations++;
+            Files.deleteIfExists(entry);
+        }
+
+        misses++;
+        Entity entity = ObjParser.parseObjFile(objPath);
+        entity.setSplitMethod(splitMethod);
+        if (tm != null) {
+            entity.transform(tm);
+        } else {
+            entity.buildBvhTree();
+        }
+        write(entry, key, entity);
+        return entity;
+    }
+
+    /**
+     * Returns the directory the entries are stored in.
+     *
+     * @return cache directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the number of loads served from the cache.
+     *
+     * @return cache hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of loads which had to parse the OBJ file.
+     *
+     * @return cache misses, including rebuilt entries
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of stale or corrupt entries which were rebuilt.
+     *
+     * @return invalidated entries
+     */
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Computes the key of an entry.
+     *
+     * @param objPath     path to the OBJ file
+     * @param tm          transformation, null for none
+     * @param splitMethod split method of the BVH tree
+     * @return SHA-256 hash
+     * @throws IOException if the OBJ file cannot be read
+     */
+    private static byte[] key(String objPath, TrafoMatrix tm, SplitMethod splitMethod) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+        ByteBuffer parameters = ByteBuffer.allocate(2 * Integer.BYTES + 16 * Double.BYTES);
+        parameters.putInt(FORMAT_VERSION).putInt(splitMethod.ordinal());
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                parameters.putDouble(tm != null ? tm.getElement(i, j) : (i == j ? 1 : 0));
+            }
+        }
+        digest.update(parameters.flip());
+
+        // MTL files are resolved the same way as by the ObjParser
+        String directoryPrefix = objPath.substring(0, objPath.lastIndexOf(File.separator) + 1);
+        ByteBuffer obj = digestFile(digest, Path.of(objPath));
+        for (String mtlFile : materialLibraries(obj)) {
+            Path mtlPath = Path.of(directoryPrefix + mtlFile);
+            digest.update(mtlFile.getBytes(StandardCharsets.UTF_8));
+            if (Files.exists(mtlPath)) {
+                digestFile(digest, mtlPath);
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Adds the content of a file to a digest.
+     *
+     * @param digest digest to update
+     * @param path   path of the file
+     * @return memory-mapped content of the file
+     * @throws IOException if the file cannot be read
+     */
+    private static ByteBuffer digestFile(MessageDigest digest, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteBuffer lengthBytes = ByteBuffer.allocate(Long.BYTES).putLong(channel.size()).flip();
+            digest.update(lengthBytes);
+            digest.update(content.duplicate());
+            return content;
+        }
+    }
+
+    /**
+     * Extracts the file names of all 'mtllib' statements of an OBJ file.
+     *
+     * @param obj content of the OBJ file
+     * @return referenced MTL file names
+     */
+    private static List<String> materialLibraries(ByteBuffer obj) {
+        byte[] keyword = "mtllib".getBytes(StandardCharsets.US_ASCII);
+        List<String> names = new ArrayList<>();
+        int limit = obj.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && obj.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int pos = lineStart + keyword.length;
+            if (pos < lineEnd && isBlank(obj.get(pos)) && matches(obj, lineStart, keyword)) {
+                while (pos < lineEnd && isBlank(obj.get(pos))) {
+                    pos++;
+                }
+                int nameStart = pos;
+                while (pos < lineEnd && !isBlank(obj.get(pos)) && obj.get(pos) != '#') {
+                    pos++;
+                }
+                byte[] name = new byte[pos - nameStart];
+                obj.get(nameStart, name);
+                names.add(new String(name, StandardCharsets.UTF_8));
+            }
+            lineStart = lineEnd + 1;
+        }
+        return names;
+    }
+
+    /**
+     * Checks whether the buffer contains the given bytes at a position.
+     *
+     * @param buffer   buffer to check
+     * @param position absolute position
+     * @param bytes    expected bytes
+     * @return true if all bytes match
+     */
+    private static boolean matches(ByteBuffer buffer, int position, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(position + i) != bytes[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a byte is a whitespace character within a line.
+     *
+     * @param b byte to check
+     * @return true for space, tab and carriage return
+     */
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    /**
+     * Reads an entry through a memory-mapped file.
+     *
+     * @param entry path of the entry
+     * @param key   expected key
+     * @return entity, null if the entry is stale or corrupt
+     * @throws IOException if the entry cannot be read
+     */
+    private static Entity read(Path entry, byte[] key) throws IOException {
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE)
+                return null;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION)
+                return null;
+            byte[] entryKey = new byte[key.length];
+            buffer.get(entryKey);
+            if (!Arrays.equals(entryKey, key) || buffer.getLong() != size - HEADER_SIZE)
+                return null;
+            long checksum = buffer.getLong();
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice());
+            if (crc.getValue() != checksum)
+                return null;
+
+            try {
+                return readPayload(buffer);
+            } catch (RuntimeException e) {
+                // Inconsistent payload despite a matching checksum
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Writes an entry to a temporary file and moves it into place, so readers
+     * never see partially written entries.
+     *
+     * @param entry  path of the entry
+     * @param key    key of the entry
+     * @param entity entity with built BVH tree
+     * @throws IOException if the entry cannot be written
+     */
+    private void write(Path entry, byte[] key, Entity entity) throws IOException {
+        Path temp = Files.createTempFile(directory, entry.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.position(HEADER_SIZE);
+                CRC32 crc = new CRC32();
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        new CheckedOutputStream(Channels.newOutputStream(channel), crc), 1 << 16));
+                writePayload(out, entity);
+                out.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(FORMAT_VERSION).put(key)
+                        .putLong(channel.position() - HEADER_SIZE).putLong(crc.getValue());
+                channel.write(header.flip(), 0);
+            }
+            try {
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Writes the mesh, materials and BVH tree of an entity.
+     *
+     * @param out    output to write to
+     * @param entity entity with built BVH tree
+     * @throws IOException if writing fails
+     */
+    private static void writePayload(DataOutputStream out, Entity entity) throws IOException {
+        List<Face> faces = entity.getFaces();
+        Mesh mesh = entity.getMesh();
+
+        // Table of shared objects, referenced by index
+        EntityTable table = EntityTable.of(entity);
+        ByteBuffer encodedTable = table.encode(ByteOrder.BIG_ENDIAN);
+        out.write(encodedTable.array(), 0, encodedTable.limit());
+
+        int vertexValues = mesh.getVertexCount() * 3;
+        int indexValues = mesh.getTriangleCount() * 3;
+        out.writeInt(mesh.getVertexCount());
+        out.writeInt(mesh.getTriangleCount());
+        out.writeBoolean(mesh.getNormals() != null);
+        for (int i = 0; i < vertexValues; i++) {
+            out.writeDouble(mesh.getPositions()[i]);
+        }
+        if (mesh.getNormals() != null) {
+            for (int i = 0; i < vertexValues; i++) {
+                out.writeDouble(mesh.getNormals()[i]);
+            }
+        }
+        for (int i = 0; i < indexValues; i++) {
+            out.writeInt(mesh.getIndices()[i]);
+        }
+
+        out.writeInt(faces.size());
+        for (Face face : faces) {
+            out.writeInt(((Triangle) face).getIndex());
+            out.writeInt(table.materialIndex(face));
+            out.writeInt(table.groupIndex(face));
+        }
+        entity.getBvhTree().write(out);
+    }
+
+    /**
+     * Reads the mesh, materials and BVH tree of an entity.
+     *
+     * @param in buffer positioned at the start of the payload
+     * @return entity with BVH tree
+     */
+    private static Entity readPayload(ByteBuffer in) {
+        EntityTable table = EntityTable.read(in);
+        int vertexCount = in.getInt();
+        int triangleCount = in.getInt();
+        boolean hasNormals = in.get() != 0;
+        double[] positions = readDoubles(in, vertexCount * 3);
+        double[] normals = hasNormals ? readDoubles(in, vertexCount * 3) : null;
+        int[] indices = readInts(in, triangleCount * 3);
+        Mesh mesh = new Mesh(positions, normals, indices);
+
+        int faceCount = in.getInt();
+        List<Face> faces = new ArrayList<>(faceCount);
+        for (int i = 0; i < faceCount; i++) {
+            int triangle = in.getInt();
+            int material = in.getInt();
+            int group = in.getInt();
+            faces.add(table.createFace(mesh, triangle, material, group));
+        }
+
+        Entity entity = new Entity(table.getName(), faces, mesh);
+        entity.setBvhTree(LinearBoundingVolumeHierarchy.read(in, faces));
+        return entity;
+    }
+
+    /**
+     * Reads doubles in bulk and advances the buffer behind them.
+     *
+     * @param in    buffer to read from
+     * @param count number of doubles
+     * @return doubles
+     */
+    private static double[] readDoubles(ByteBuffer in, int count) {
+        double[] values = new double[count];
+        in.asDoubleBuffer().get(values);
+        in.position(in.position() + count * Double.BYTES);
+        return values;
+    }
+
+    /**
+     * Reads ints in bulk and advances the buffer behind them.
+     *
+     * @param in    buffer to read from
+     * @param count number of ints
+     * @return ints
+     */
+    private static int[] readInts(ByteBuffer in, int count) {
+        int[] values = new int[count];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + count * Integer.BYTES);
+        return values;
+    }
+}
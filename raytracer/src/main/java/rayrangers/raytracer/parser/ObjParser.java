@@ -1,42 +1,105 @@
 package rayrangers.raytracer.parser;
 
-import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
-import rayrangers.raytracer.math.Vector3D;
-import rayrangers.raytracer.math.Vertex3D;
 import rayrangers.raytracer.world.Entity;
 import rayrangers.raytracer.world.Face;
 import rayrangers.raytracer.world.Material;
+import rayrangers.raytracer.world.Mesh;
 import rayrangers.raytracer.world.Triangle;
 
 /**
  * Parser for a Wavefront OBJ file.
+ * The file is read into memory at once and scanned byte by byte, numbers are
+ * parsed without creating strings. Every call parses with its own parser
+ * instance, so several files can be parsed concurrently.
  * 
  * Inspired by
  * https://github.com/UtkuOktay/Ray-Tracer/blob/main/src/main/java/com/utils/OBJParser.java
  */
 public class ObjParser {
 
+    /**
+     * Estimated number of bytes per vertex of an OBJ file, including its share
+     * of normal vectors, texture coordinates and faces. Used to size the arrays
+     * before parsing; excess capacity is trimmed afterwards.
+     */
+    private static final int BYTES_PER_VERTEX_ESTIMATE = 128;
+
+    /**
+     * Number of faces handed to a {@link FaceBatchListener} at once.
+     */
+    static final int BATCH_SIZE = 4096;
+
+    /**
+     * Receives the faces of a file in batches while it is being parsed.
+     */
+    interface FaceBatchListener {
+
+        /**
+         * Called with the next batch of faces. The arrays are not used by the
+         * parser afterwards.
+         * 
+         * @param faces        faces in file order
+         * @param faceBounds   bounds (min x1, min x2, min x3, max x1, max x2,
+         *                     max x3) of the faces, six per face
+         * @param vertexBounds bounds of all vertices parsed so far
+         */
+        void accept(List<Face> faces, double[] faceBounds, double[] vertexBounds);
+    }
+
     // Temporary parsing data structures
-    private static String entityName;
-    private static Map<String, Material> materials;
-    private static List<Vertex3D> vertices;
-    private static List<Vector3D> normalVectors;
-    private static List<Face> faces;
-    private static Material currentMaterial;
-    private static String currentSmoothingGroup;
+    private final String filePath;
+    private String entityName;
+    private Map<String, Material> materials = new HashMap<>();
+    private final Mesh mesh;
+    private double[] normalVectors;
+    private int normalCount;
+    private final List<Face> faces;
+    private Material currentMaterial;
+    private String currentSmoothingGroup;
+    private final int[] corner = new int[2];
+
+    // Current batch of faces, only used with a listener
+    private final FaceBatchListener listener;
+    private List<Face> batch = new ArrayList<>();
+    private double[] batchBounds;
+    private final double[] vertexBounds = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.NEGATIVE_INFINITY };
+    private int boundedVertexCount;
+
+    /**
+     * Class constructor creating the parsing data structures for a file.
+     * 
+     * @param filePath path to the OBJ file
+     * @param size     size of the file in bytes, used to size the arrays
+     * @param listener listener receiving the faces in batches, may be null
+     */
+    private ObjParser(String filePath, int size, FaceBatchListener listener) {
+        this.filePath = filePath;
+        this.listener = listener;
+        this.batchBounds = listener == null ? null : new double[BATCH_SIZE * 6];
+        int capacity = Math.max(size / BYTES_PER_VERTEX_ESTIMATE, 16);
+        mesh = new Mesh(capacity, capacity);
+        normalVectors = new double[capacity * 3];
+        faces = new ArrayList<>(capacity);
+    }
 
     // TODO: Maybe default material?
     /**
-     * Parses a Wavefront OBJ file at the given location.$
+     * Parses a Wavefront OBJ file at the given location.
      * 
      * @param filePath path to the OBJ file
      * @return Entity
@@ -44,105 +107,238 @@ public class ObjParser {
      * @throws IOException           if there is any error while reading the file
      */
     public static Entity parseObjFile(String filePath) throws FileNotFoundException, IOException {
+        return parse(filePath, readFile(filePath), null);
+    }
+
+    /**
+     * Reads the content of a file.
+     * 
+     * @param filePath path to the file
+     * @return content
+     * @throws FileNotFoundException if the file is not present
+     * @throws IOException           if there is any error while reading the file
+     */
+    static byte[] readFile(String filePath) throws FileNotFoundException, IOException {
+        try (FileInputStream in = new FileInputStream(new File(filePath))) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Parses the content of a Wavefront OBJ file and hands the faces to the
+     * given listener in batches of {@link #BATCH_SIZE} while parsing.
+     * 
+     * @param filePath path to the OBJ file, used to find MTL files
+     * @param content  content of the OBJ file
+     * @param listener listener receiving the faces, may be null
+     * @return Entity
+     * @throws FileNotFoundException if an MTL file is not present
+     * @throws IOException           if there is any error while reading an MTL
+     *                               file
+     */
+    static Entity parse(String filePath, byte[] content, FaceBatchListener listener)
+            throws FileNotFoundException, IOException {
+        return new ObjParser(filePath, content.length, listener).parse(content);
+    }
 
-        // Reset temporary parsing data structures
-        entityName = null;
-        materials = new HashMap<>();
-        vertices = new ArrayList<>();
-        normalVectors = new ArrayList<>();
-        faces = new ArrayList<>();
-        currentMaterial = null;
-        currentSmoothingGroup = null;
-
-        File file = new File(filePath);
-        BufferedReader br = new BufferedReader(new FileReader(file));
-        String line = br.readLine();
-        while (line != null) {
-            line = line.split("#", 2)[0]; // Sanitize any comments (also at end of line)
-            if (line.length() > 0) { // Full line comments will result in empty string
-                String[] data = line.split("\\s+"); // Split by any number of whitespace chars
-                switch (data[0]) { // Analyze first identifier value
-                    case "o": // Given entity name (optional)
-                        entityName = data[1];
-                        break;
-                    case "mtllib": // Reference to external material definition
-                        String mtlFilePath = filePath.substring(0, filePath.lastIndexOf(File.separator) + 1)
-                                + data[1]; // Build mtl path from obj path and mtl file name
-                        materials = MtlParser.parseMaterialFile(mtlFilePath); // Call mtl parser
-                        break;
-                    case "usemtl": // Material name
-                        currentMaterial = materials.get(data[1]);
-                        break;
-                    case "v": // Vertex
-                        vertices.add(parseVertex(data));
-                        break;
-                    case "vn": // Normal vector
-                        normalVectors.add(parseVertexNormals(data));
-                        break;
-                    case "s": // Smoothing group
-                        if (data[1].equalsIgnoreCase("off")) {
-                            currentSmoothingGroup = null;
-                        }
-                        currentSmoothingGroup = data[1];
-                        break;
-                    case "f": // Face
-                        faces.add(parseFace(data));
-                        break;
-                    default: // Ignore unused params, e.g.: groups ('g')
-                        break;
+    /**
+     * Parses several Wavefront OBJ files in parallel on one thread per core.
+     * 
+     * @param filePaths paths to the OBJ files
+     * @return entities in the order of the paths
+     * @throws FileNotFoundException if an OBJ file is not present
+     * @throws IOException           if there is any error while reading a file
+     * @see #parseObjFiles(List, int)
+     */
+    public static List<Entity> parseObjFiles(List<String> filePaths) throws FileNotFoundException, IOException {
+        return parseObjFiles(filePaths, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Parses several Wavefront OBJ files in parallel on a pool with the given
+     * number of threads.
+     * All files are submitted at once and large files are split into chunks by
+     * the {@link ParallelObjParser}, so idle threads help with the largest file
+     * and the whole list loads in roughly the time of its largest file.
+     * 
+     * @param filePaths   paths to the OBJ files
+     * @param parallelism maximum number of threads
+     * @return entities in the order of the paths
+     * @throws FileNotFoundException if an OBJ file is not present
+     * @throws IOException           if there is any error while reading a file
+     */
+    public static List<Entity> parseObjFiles(List<String> filePaths, int parallelism)
+            throws FileNotFoundException, IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<Entity>> tasks = new ArrayList<>();
+            for (String filePath : filePaths) {
+                tasks.add(pool.submit(() -> {
+                    try {
+                        // Small files fit into one chunk, which the sequential parser reads in one pass
+                        return new File(filePath).length() < ParallelObjParser.MIN_CHUNK_SIZE
+                                ? parseObjFile(filePath)
+                                : ParallelObjParser.parseObjFile(filePath);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+            List<Entity> entities = new ArrayList<>();
+            for (ForkJoinTask<Entity> task : tasks) {
+                entities.add(task.join());
+            }
+            return entities;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses the content of the file.
+     * 
+     * @param content content of the OBJ file
+     * @return Entity
+     * @throws FileNotFoundException if an MTL file is not present
+     * @throws IOException           if there is any error while reading an MTL
+     *                               file
+     */
+    private Entity parse(byte[] content) throws FileNotFoundException, IOException {
+        ObjScanner scanner = new ObjScanner(content, 0, content.length);
+        while (scanner.nextLine()) {
+            // Analyze first identifier value
+            if (scanner.skipKeyword(ObjScanner.VERTEX)) {
+                mesh.addVertex(scanner.nextDouble(), scanner.nextDouble(), scanner.nextDouble());
+            } else if (scanner.skipKeyword(ObjScanner.FACE)) {
+                Face face = parseFace(scanner);
+                faces.add(face);
+                if (listener != null) {
+                    addToBatch(face);
                 }
+            } else if (scanner.skipKeyword(ObjScanner.NORMAL)) {
+                parseVertexNormal(scanner);
+            } else if (scanner.skipKeyword(ObjScanner.SMOOTHING_GROUP)) {
+                // Groups repeat often, reuse the string of the current one if equal
+                currentSmoothingGroup = scanner.nextString(currentSmoothingGroup);
+            } else if (scanner.skipKeyword(ObjScanner.USE_MATERIAL)) { // Material name
+                currentMaterial = materials.get(scanner.nextString());
+            } else if (scanner.skipKeyword(ObjScanner.OBJECT)) { // Given entity name (optional)
+                entityName = scanner.nextString();
+            } else if (scanner.skipKeyword(ObjScanner.MATERIAL_LIBRARY)) { // Reference to external material definition
+                String mtlFilePath = materialLibraryPath(filePath, scanner.nextString());
+                materials = MtlParser.parseMaterialFile(mtlFilePath); // Call mtl parser
             }
-            line = br.readLine(); // Read next line in file
+            // Ignore unused params, e.g.: groups ('g') and texture coordinates ('vt')
+        }
+        if (listener != null && !batch.isEmpty()) {
+            flushBatch();
         }
-        br.close();
-        return new Entity(entityName, faces, vertices);
+        mesh.trim();
+        return new Entity(entityName, faces, mesh);
     }
 
-    private static Vertex3D parseVertex(String[] data) {
-        return new Vertex3D(
-                Double.parseDouble(data[1]),
-                Double.parseDouble(data[2]),
-                Double.parseDouble(data[3]));
+    /**
+     * Adds a face to the current batch and hands the batch to the listener
+     * when it is full.
+     * 
+     * @param face parsed face
+     */
+    private void addToBatch(Face face) {
+        int offset = batch.size() * 6;
+        for (int axis = 0; axis < 3; axis++) {
+            batchBounds[offset + axis] = Double.MAX_VALUE;
+            batchBounds[offset + axis + 3] = -Double.MAX_VALUE;
+        }
+        face.enclose(batchBounds, offset);
+        batch.add(face);
+        if (batch.size() == BATCH_SIZE) {
+            flushBatch();
+        }
     }
 
-    private static Vector3D parseVertexNormals(String[] data) {
-        return new Vector3D(
-                Double.parseDouble(data[1]),
-                Double.parseDouble(data[2]),
-                Double.parseDouble(data[3]));
+    /**
+     * Hands the current batch to the listener together with the bounds of all
+     * vertices parsed so far and starts a new batch.
+     */
+    private void flushBatch() {
+        int vertexCount = mesh.getVertexCount();
+        for (int v = boundedVertexCount; v < vertexCount; v++) {
+            for (int axis = 0; axis < 3; axis++) {
+                double coord = mesh.getCoord(v, axis);
+                vertexBounds[axis] = Math.min(vertexBounds[axis], coord);
+                vertexBounds[axis + 3] = Math.max(vertexBounds[axis + 3], coord);
+            }
+        }
+        boundedVertexCount = vertexCount;
+        listener.accept(batch, batchBounds, vertexBounds.clone());
+        batch = new ArrayList<>(BATCH_SIZE);
+        batchBounds = new double[BATCH_SIZE * 6];
     }
 
-    private static Face parseFace(String[] data) {
-        if (data.length > 4) {
+    /**
+     * Builds the path of an MTL file from the path of the OBJ file referencing
+     * it and the file name given in the 'mtllib' statement.
+     * 
+     * @param objPath path to the OBJ file
+     * @param name    file name of the MTL file
+     * @return path to the MTL file
+     */
+    static String materialLibraryPath(String objPath, String name) {
+        return objPath.substring(0, objPath.lastIndexOf(File.separator) + 1) + name;
+    }
+
+    /**
+     * Parses the coordinates of a normal vector and appends them to the normal
+     * vectors.
+     * 
+     * @param scanner scanner positioned after the keyword
+     */
+    private void parseVertexNormal(ObjScanner scanner) {
+        if (normalCount * 3 == normalVectors.length) {
+            normalVectors = Arrays.copyOf(normalVectors, normalVectors.length * 2);
+        }
+        normalVectors[normalCount * 3] = scanner.nextDouble();
+        normalVectors[normalCount * 3 + 1] = scanner.nextDouble();
+        normalVectors[normalCount * 3 + 2] = scanner.nextDouble();
+        normalCount++;
+    }
+
+    /**
+     * Parses a triangle and sets the normal vectors of its vertices if given.
+     * 
+     * @param scanner scanner positioned after the keyword
+     * @return triangle
+     */
+    private Face parseFace(ObjScanner scanner) {
+        int v1 = parseFaceVertex(scanner);
+        int v2 = parseFaceVertex(scanner);
+        int v3 = parseFaceVertex(scanner);
+        if (scanner.hasToken()) {
             // Not a triangle
             throw new UnsupportedOperationException("Polygons are not supported yet.");
-        } else {
-            if (data[1].length() == data[1].replace("/", "").length()) { // Check first data element
-                                                                         // for format f v1 v2 v3
-                // "Shortcut": Only vertices in data element
-                return new Triangle(
-                        currentMaterial, currentSmoothingGroup,
-                        vertices.get(Integer.parseInt(data[1]) - 1),
-                        vertices.get(Integer.parseInt(data[2]) - 1),
-                        vertices.get(Integer.parseInt(data[3]) - 1));
-            }
-            // Format is v/vt/vn OR v//vn
-            List<Vertex3D> faceVertList = new ArrayList<>();
-            for (int i = 1; i < data.length; i++) {
-                String currCoord = data[i];
-                List<String[]> parsedIndices = new ArrayList<>();
-                parsedIndices.add(currCoord.split("/"));
-                for (String[] idxEntry : parsedIndices) {
-                    int vertIdx = Integer.parseInt(idxEntry[0]);
-                    if (idxEntry.length == 3) { // Add normalVector for formats v/vt/vn OR v//vn
-                        vertices.get(vertIdx - 1)
-                                .setNormalVector(normalVectors.get(Integer.parseInt(idxEntry[2]) - 1));
-                    }
-                    faceVertList.add(vertices.get(vertIdx - 1));
-                    // TODO: Check for vt presence if textures are implemented
-                }
+        }
+        return new Triangle(currentMaterial, currentSmoothingGroup, mesh, mesh.addTriangle(v1, v2, v3));
+    }
+
+    /**
+     * Parses a vertex of a face and sets its normal vector if given.
+     * 
+     * @param scanner scanner positioned before the vertex
+     * @return index of the vertex in the mesh
+     */
+    private int parseFaceVertex(ObjScanner scanner) {
+        scanner.nextFaceVertex(mesh.getVertexCount(), normalCount, corner);
+        int vertIdx = corner[0];
+        int normalIdx = corner[1];
+        if (normalIdx != -1) { // Add normalVector for formats v/vt/vn OR v//vn
+            if (normalIdx < 0 || normalIdx >= normalCount) {
+                throw new IndexOutOfBoundsException("Normal vector " + (normalIdx + 1) + " does not exist.");
             }
-            return new Triangle(currentMaterial, currentSmoothingGroup, faceVertList);
+            mesh.setNormal(vertIdx, normalVectors[normalIdx * 3], normalVectors[normalIdx * 3 + 1],
+                    normalVectors[normalIdx * 3 + 2]);
         }
+        return vertIdx;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,398 @@
+package rayrangers.raytracer.parser;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tokenizer reading the lines of a Wavefront OBJ file directly from bytes.
+ * Tokens are compared and numbers are parsed in place, so scanning a line does
+ * not create any objects. Comments starting with '#' are skipped, tokens are
+ * separated by whitespace like {@code line.split("\\s+")}.
+ */
+final class ObjScanner {
+
+    // Keywords of the supported statements
+    static final byte[] VERTEX = keyword("v");
+    static final byte[] NORMAL = keyword("vn");
+    static final byte[] FACE = keyword("f");
+    static final byte[] OBJECT = keyword("o");
+    static final byte[] MATERIAL_LIBRARY = keyword("mtllib");
+    static final byte[] USE_MATERIAL = keyword("usemtl");
+    static final byte[] SMOOTHING_GROUP = keyword("s");
+
+    /**
+     * Powers of ten which are exactly representable as double.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    /**
+     * Largest mantissa which is exactly representable as double (2^53).
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    /**
+     * Content of the file.
+     */
+    private final byte[] buffer;
+
+    /**
+     * End of the scanned range (exclusive).
+     */
+    private final int end;
+
+    /**
+     * Current position in the current line.
+     */
+    private int pos;
+
+    /**
+     * End of the current line without its comment (exclusive).
+     */
+    private int lineEnd;
+
+    /**
+     * Start of the next line.
+     */
+    private int nextLine;
+
+    /**
+     * Class constructor specifying the scanned range.
+     *
+     * @param buffer content of the file
+     * @param start  start of the first line
+     * @param end    end of the scanned range (exclusive)
+     */
+    ObjScanner(byte[] buffer, int start, int end) {
+        this.buffer = buffer;
+        this.end = end;
+        this.nextLine = start;
+    }
+
+    /**
+     * Advances to the next line.
+     *
+     * @return true if there is another line, false at the end of the range
+     */
+    boolean nextLine() {
+        if (nextLine >= end) {
+            return false;
+        }
+        pos = nextLine;
+        int i = pos;
+        while (i < end && buffer[i] != '\n' && buffer[i] != '#') {
+            i++;
+        }
+        lineEnd = i;
+        while (i < end && buffer[i] != '\n') { // Skip the comment
+            i++;
+        }
+        nextLine = i + 1;
+        return true;
+    }
+
+    /**
+     * Checks if the current line has another token.
+     *
+     * @return true if there is another token
+     */
+    boolean hasToken() {
+        skipBlanks();
+        return pos < lineEnd;
+    }
+
+    /**
+     * Consumes the next token if it equals the given keyword.
+     *
+     * @param keyword ASCII bytes of the keyword
+     * @return true if the token was consumed
+     */
+    boolean skipKeyword(byte[] keyword) {
+        skipBlanks();
+        int tokenEnd = pos + keyword.length;
+        if (tokenEnd > lineEnd || (tokenEnd < lineEnd && !isBlank(buffer[tokenEnd]))) {
+            return false;
+        }
+        for (int i = 0; i < keyword.length; i++) {
+            if (buffer[pos + i] != keyword[i]) {
+                return false;
+            }
+        }
+        pos = tokenEnd;
+        return true;
+    }
+
+    /**
+     * Consumes the next byte if it equals the given character.
+     *
+     * @param c ASCII character
+     * @return true if the byte was consumed
+     */
+    boolean skip(char c) {
+        if (pos < lineEnd && buffer[pos] == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the current position is at the end of a token.
+     *
+     * @return true if followed by whitespace or the end of the line
+     */
+    boolean atTokenEnd() {
+        return pos >= lineEnd || isBlank(buffer[pos]);
+    }
+
+    /**
+     * Consumes the next token and returns it as string.
+     *
+     * @return token, null if the line has no more tokens
+     */
+    String nextString() {
+        skipBlanks();
+        if (pos >= lineEnd) {
+            return null;
+        }
+        int start = pos;
+        skipToken();
+        return decode(start, pos);
+    }
+
+    /**
+     * Consumes the next token if it equals the given string, otherwise returns
+     * it as new string. Avoids creating a string for repeated tokens.
+     *
+     * @param previous string to compare with, may be null
+     * @return previous if the token equals it, the token otherwise, null if the
+     *         line has no more tokens
+     */
+    String nextString(String previous) {
+        skipBlanks();
+        if (pos >= lineEnd) {
+            return null;
+        }
+        int start = pos;
+        skipToken();
+        if (previous != null && previous.length() == pos - start) {
+            boolean equal = true;
+            for (int i = 0; i < previous.length() && equal; i++) {
+                equal = previous.charAt(i) == buffer[start + i];
+            }
+            if (equal) {
+                return previous;
+            }
+        }
+        return decode(start, pos);
+    }
+
+    /**
+     * Parses a vertex of a face in one of the formats v, v/vt, v/vt/vn or v//vn.
+     * Indices are converted to 0-based indices, negative indices count back
+     * from the last vertex or normal vector defined before the face.
+     *
+     * @param vertexCount number of vertices defined before the face
+     * @param normalCount number of normal vectors defined before the face
+     * @param corner      array receiving the vertex index at 0 and the normal
+     *                    vector index at 1, -1 if the vertex has no normal vector
+     * @throws NumberFormatException     if the vertex is malformed
+     * @throws IndexOutOfBoundsException if an index is 0
+     */
+    void nextFaceVertex(int vertexCount, int normalCount, int[] corner) {
+        corner[0] = nextIndex(vertexCount);
+        corner[1] = -1;
+        if (skip('/')) {
+            if (!skip('/')) {
+                nextInt(); // TODO: Check for vt presence if textures are implemented
+                skip('/');
+            }
+            if (!atTokenEnd()) { // Formats v/vt/vn OR v//vn
+                corner[1] = nextIndex(normalCount);
+            }
+        }
+        if (!atTokenEnd()) {
+            throw new NumberFormatException("Invalid face vertex after index " + (corner[0] + 1) + ".");
+        }
+    }
+
+    /**
+     * Parses a 1-based OBJ index and converts it to a 0-based index.
+     *
+     * @param count number of elements defined so far, negative indices count
+     *              back from it
+     * @return 0-based index
+     * @throws IndexOutOfBoundsException if the index is 0
+     */
+    private int nextIndex(int count) {
+        int index = nextInt();
+        if (index == 0) {
+            throw new IndexOutOfBoundsException("OBJ indices start at 1.");
+        }
+        return index < 0 ? count + index : index - 1;
+    }
+
+    /**
+     * Parses an integer at the current position. Skips leading whitespace and
+     * stops at the first byte which is not a digit, e.g. a '/' of a face vertex.
+     *
+     * @return parsed integer
+     * @throws NumberFormatException if there is no valid integer
+     */
+    int nextInt() {
+        skipBlanks();
+        byte[] buffer = this.buffer;
+        int lineEnd = this.lineEnd;
+        int start = pos;
+        int p = start;
+        boolean negative = p < lineEnd && buffer[p] == '-';
+        if (p < lineEnd && (negative || buffer[p] == '+')) {
+            p++;
+        }
+        int digitsStart = p;
+        long value = 0;
+        while (p < lineEnd && isDigit(buffer[p]) && value <= Integer.MAX_VALUE) {
+            value = value * 10 + (buffer[p] - '0');
+            p++;
+        }
+        pos = p;
+        if (p == digitsStart || (p < lineEnd && isDigit(buffer[p]))
+                || (negative ? -value < Integer.MIN_VALUE : value > Integer.MAX_VALUE)) {
+            skipToken();
+            throw new NumberFormatException("For input string: \"" + decode(start, pos) + "\"");
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * Parses the next token as double. Produces exactly the same value as
+     * {@link Double#parseDouble(String)}: decimal numbers whose digits fit into
+     * the 53 bit mantissa and whose exponent is at most 22 are converted exactly
+     * with a single multiplication or division by a power of ten, all other
+     * tokens are passed to {@code Double.parseDouble}.
+     *
+     * @return parsed double
+     * @throws NumberFormatException if the token is not a valid number
+     */
+    double nextDouble() {
+        skipBlanks();
+        byte[] buffer = this.buffer; // Locals keep the scan loops in registers
+        int lineEnd = this.lineEnd;
+        int start = pos;
+        int p = start;
+        boolean negative = p < lineEnd && buffer[p] == '-';
+        if (p < lineEnd && (negative || buffer[p] == '+')) {
+            p++;
+        }
+        long mantissa = 0;
+        int exponent = 0;
+        boolean exact = true;
+        int digitsStart = p;
+        while (p < lineEnd && isDigit(buffer[p])) {
+            if (mantissa < MAX_EXACT_MANTISSA) {
+                mantissa = mantissa * 10 + (buffer[p] - '0');
+            } else {
+                exact = false;
+            }
+            p++;
+        }
+        int digits = p - digitsStart;
+        if (p < lineEnd && buffer[p] == '.') {
+            int fractionStart = ++p;
+            while (p < lineEnd && isDigit(buffer[p])) {
+                if (mantissa < MAX_EXACT_MANTISSA) {
+                    mantissa = mantissa * 10 + (buffer[p] - '0');
+                    exponent--;
+                } else {
+                    exact = false;
+                }
+                p++;
+            }
+            digits += p - fractionStart;
+        }
+        if (p < lineEnd && (buffer[p] == 'e' || buffer[p] == 'E')) {
+            p++;
+            boolean negativeExponent = p < lineEnd && buffer[p] == '-';
+            if (p < lineEnd && (negativeExponent || buffer[p] == '+')) {
+                p++;
+            }
+            int exponentStart = p;
+            int value = 0;
+            while (p < lineEnd && isDigit(buffer[p])) {
+                value = Math.min(value * 10 + (buffer[p] - '0'), 10000);
+                p++;
+            }
+            exact &= p > exponentStart;
+            exponent += negativeExponent ? -value : value;
+        }
+        pos = p;
+        if (exact && digits > 0 && atTokenEnd() && mantissa < MAX_EXACT_MANTISSA
+                && exponent >= -22 && exponent <= 22) {
+            double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+        // Rare cases like many digits, large exponents or NaN
+        pos = start;
+        skipToken();
+        return Double.parseDouble(decode(start, pos));
+    }
+
+    /**
+     * Returns the ASCII bytes of a keyword.
+     *
+     * @param keyword keyword
+     * @return bytes
+     */
+    private static byte[] keyword(String keyword) {
+        return keyword.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Skips whitespace in the current line.
+     */
+    private void skipBlanks() {
+        while (pos < lineEnd && isBlank(buffer[pos])) {
+            pos++;
+        }
+    }
+
+    /**
+     * Skips the rest of the current token.
+     */
+    private void skipToken() {
+        while (pos < lineEnd && !isBlank(buffer[pos])) {
+            pos++;
+        }
+    }
+
+    /**
+     * Decodes a range of the buffer as UTF-8.
+     *
+     * @param start start of the range
+     * @param stop  end of the range (exclusive)
+     * @return decoded string
+     */
+    private String decode(int start, int stop) {
+        return new String(buffer, start, stop - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks if a byte is whitespace as matched by the regular expression \s.
+     *
+     * @param b byte
+     * @return true if whitespace
+     */
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+
+    /**
+     * Checks if a byte is an ASCII digit.
+     *
+     * @param b byte
+     * @return true if digit
+     */
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
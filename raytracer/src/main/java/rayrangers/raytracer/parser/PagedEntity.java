@@ -0,0 +1,136 @@
+package rayrangers.raytracer.parser;
+
+import java.nio.file.Path;
+
+import rayrangers.raytracer.algorithm.HitRecord;
+import rayrangers.raytracer.algorithm.HitState;
+import rayrangers.raytracer.algorithm.Ray;
+import rayrangers.raytracer.algorithm.bounding.Bounded;
+import rayrangers.raytracer.algorithm.bounding.BoundingBox;
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.Hittable;
+
+/**
+ * Entity stored in a binary mesh file which is only loaded when a ray reaches
+ * its bounding box.
+ * While the entity is not resident, only its bounding box is kept in memory;
+ * the first ray that needs the geometry pages it in through the
+ * {@link GeometryPager} which created this object, and the pager evicts it
+ * again when the resident-set budget is exceeded. Rays which are traversing an
+ * evicted entity finish on the geometry they already hold.
+ * Added to a scene by {@link rayrangers.raytracer.world.Scene#addBounded}.
+ */
+public class PagedEntity implements Bounded, Hittable {
+
+    /**
+     * Pager loading and evicting the entity.
+     */
+    private final GeometryPager pager;
+
+    /**
+     * Path of the binary mesh file.
+     */
+    private final Path path;
+
+    /**
+     * Bounding box of the stored BVH tree.
+     */
+    private final BoundingBox boundingBox;
+
+    /**
+     * Loaded entity, null if not resident.
+     */
+    private volatile Entity entity;
+
+    /**
+     * Approximate size of the resident mesh and BVH tree, guarded by the pager.
+     */
+    long residentBytes;
+
+    /**
+     * Set whenever a ray reaches the entity, cleared by the eviction clock of
+     * the pager.
+     */
+    volatile boolean referenced;
+
+    /**
+     * Class constructor specifying the pager, the file and the bounds.
+     *
+     * @param pager       pager loading and evicting the entity
+     * @param path        path of the binary mesh file
+     * @param boundingBox bounding box of the stored BVH tree
+     */
+    PagedEntity(GeometryPager pager, Path path, BoundingBox boundingBox) {
+        this.pager = pager;
+        this.path = path;
+        this.boundingBox = boundingBox;
+    }
+
+    /**
+     * Returns the path of the binary mesh file.
+     *
+     * @return path
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns whether the entity is currently loaded.
+     *
+     * @return true if resident
+     */
+    public boolean isResident() {
+        return entity != null;
+    }
+
+    /**
+     * Returns the loaded entity.
+     *
+     * @return entity, null if not resident
+     */
+    Entity getEntity() {
+        return entity;
+    }
+
+    /**
+     * Sets the loaded entity, called by the pager.
+     *
+     * @param entity entity, null when evicted
+     */
+    void setEntity(Entity entity) {
+        this.entity = entity;
+    }
+
+    /**
+     * @see Bounded
+     */
+    @Override
+    public BoundingBox getBoundingBox() {
+        return boundingBox;
+    }
+
+    /**
+     * Pages the entity in if it is not resident and searches the closest hit
+     * in its BVH tree.
+     *
+     * @see Bounded
+     * @throws java.io.UncheckedIOException if the binary mesh file cannot be
+     *                                      read
+     */
+    @Override
+    public boolean closestHit(Ray ray, double t0, double t1, HitState state) {
+        Entity resident = pager.access(this);
+        return resident.closestHit(ray, t0, t1, state);
+    }
+
+    /**
+     * @see Hittable
+     */
+    @Override
+    public boolean hit(Ray ray, double t0, double t1, HitRecord record) {
+        HitState state = HitState.current();
+        state.reset();
+        return closestHit(ray, t0, t1, state) && state.fillHitRecord(ray, record);
+    }
+}
@@ -0,0 +1,444 @@
+package rayrangers.raytracer.parser;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.Face;
+import rayrangers.raytracer.world.Material;
+import rayrangers.raytracer.world.Mesh;
+import rayrangers.raytracer.world.Triangle;
+
+/**
+ * Parser for large Wavefront OBJ files using all cores.
+ * The file is memory-mapped and split at line boundaries into chunks, which
+ * are parsed concurrently in two passes:
+ * <ol>
+ * <li>Every chunk counts its vertices, normal vectors and faces and records
+ * the last 'mtllib', 'usemtl', 's' and 'o' statement.</li>
+ * <li>Prefix sums of the counts give every chunk its offsets in the shared
+ * mesh arrays, and the recorded statements give the material and smoothing
+ * group in effect at its first line. Every chunk then parses its lines
+ * directly into the shared arrays.</li>
+ * </ol>
+ * Negative indices are resolved against the offsets, so they may reach back
+ * into previous chunks. The resulting entity is identical to the one of
+ * {@link ObjParser}. Parsing is stateless and thread-safe.
+ */
+public class ParallelObjParser {
+
+    /**
+     * Minimum size of a chunk in bytes, smaller files are parsed as one chunk.
+     */
+    static final long MIN_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * Maximum size of a chunk in bytes, so every chunk fits into a byte array.
+     */
+    static final long MAX_CHUNK_SIZE = 1 << 26;
+
+    /**
+     * Number of chunks per worker thread, more chunks than threads balance
+     * chunks which take longer than others.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * Size of the window read to find the end of a line.
+     */
+    private static final int LINE_WINDOW = 4096;
+
+    /**
+     * Part of an OBJ file consisting of whole lines.
+     */
+    private static final class Chunk {
+
+        /**
+         * Position of the first byte in the file.
+         */
+        private final long start;
+
+        /**
+         * Position after the last byte in the file.
+         */
+        private final long end;
+
+        // Counts of the first pass
+        private int vertexCount;
+        private int normalCount;
+        private int faceCount;
+
+        // Last statements of the first pass
+        private final List<String> materialLibraries = new ArrayList<>();
+        private boolean usesMaterial;
+        private String lastMaterial;
+        private String libraryOfLastMaterial;
+        private boolean setsSmoothingGroup;
+        private String lastSmoothingGroup;
+        private boolean namesObject;
+        private String lastObjectName;
+
+        // Offsets in the shared arrays and state at the first line
+        private int vertexOffset;
+        private int normalOffset;
+        private int faceOffset;
+        private Map<String, Material> materials;
+        private Material material;
+        private String smoothingGroup;
+
+        /**
+         * Class constructor specifying the range in the file.
+         *
+         * @param start position of the first byte
+         * @param end   position after the last byte
+         */
+        private Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Shared arrays all chunks are parsed into.
+     */
+    private static final class Target {
+
+        private final Mesh mesh;
+        private final double[] positions;
+        private final int[] indices;
+        private final double[] normalVectors;
+        private final int[] normalIndices;
+        private final Face[] faces;
+
+        /**
+         * Class constructor allocating the arrays.
+         *
+         * @param vertexCount number of vertices
+         * @param normalCount number of normal vectors
+         * @param faceCount   number of faces
+         */
+        private Target(int vertexCount, int normalCount, int faceCount) {
+            positions = new double[Math.multiplyExact(vertexCount, 3)];
+            indices = new int[Math.multiplyExact(faceCount, 3)];
+            normalVectors = new double[Math.multiplyExact(normalCount, 3)];
+            normalIndices = normalCount > 0 ? new int[indices.length] : null;
+            faces = new Face[faceCount];
+            mesh = new Mesh(positions, null, indices);
+        }
+    }
+
+    /**
+     * Parses a Wavefront OBJ file at the given location in parallel, in the
+     * current fork/join pool or in the common pool if called from outside a
+     * pool.
+     *
+     * @param filePath path to the OBJ file
+     * @return Entity
+     * @throws FileNotFoundException if OBJ file is not present
+     * @throws IOException           if there is any error while reading the file
+     */
+    public static Entity parseObjFile(String filePath) throws FileNotFoundException, IOException {
+        return parseObjFile(filePath, 0);
+    }
+
+    /**
+     * Parses a Wavefront OBJ file at the given location in parallel with the
+     * given nominal chunk size.
+     *
+     * @param filePath  path to the OBJ file
+     * @param chunkSize nominal size of a chunk in bytes, 0 to derive it from the
+     *                  file size and the number of worker threads
+     * @return Entity
+     * @throws FileNotFoundException if OBJ file is not present
+     * @throws IOException           if there is any error while reading the file
+     */
+    static Entity parseObjFile(String filePath, long chunkSize) throws FileNotFoundException, IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+            List<Chunk> chunks = split(channel, chunkSize);
+
+            // First pass: count elements and record statements
+            runAll(chunks, chunk -> count(channel, chunk));
+
+            // Offsets and state at the start of every chunk
+            Map<String, Map<String, Material>> libraries = new HashMap<>();
+            Map<String, Material> materials = new HashMap<>();
+            Material material = null;
+            String smoothingGroup = null;
+            String entityName = null;
+            int vertexCount = 0;
+            int normalCount = 0;
+            int faceCount = 0;
+            for (Chunk chunk : chunks) {
+                chunk.vertexOffset = vertexCount;
+                chunk.normalOffset = normalCount;
+                chunk.faceOffset = faceCount;
+                chunk.materials = materials;
+                chunk.material = material;
+                chunk.smoothingGroup = smoothingGroup;
+                vertexCount = Math.addExact(vertexCount, chunk.vertexCount);
+                normalCount = Math.addExact(normalCount, chunk.normalCount);
+                faceCount = Math.addExact(faceCount, chunk.faceCount);
+
+                for (String name : chunk.materialLibraries) {
+                    if (!libraries.containsKey(name)) {
+                        String mtlFilePath = ObjParser.materialLibraryPath(filePath, name);
+                        libraries.put(name, MtlParser.parseMaterialFile(mtlFilePath));
+                    }
+                }
+                if (chunk.usesMaterial) {
+                    Map<String, Material> current = chunk.libraryOfLastMaterial == null ? materials
+                            : libraries.get(chunk.libraryOfLastMaterial);
+                    material = current.get(chunk.lastMaterial);
+                }
+                if (!chunk.materialLibraries.isEmpty()) {
+                    materials = libraries.get(chunk.materialLibraries.get(chunk.materialLibraries.size() - 1));
+                }
+                if (chunk.setsSmoothingGroup) {
+                    smoothingGroup = chunk.lastSmoothingGroup;
+                }
+                if (chunk.namesObject) {
+                    entityName = chunk.lastObjectName;
+                }
+            }
+            // Second pass: parse into the shared arrays
+            Target target = new Target(vertexCount, normalCount, faceCount);
+            runAll(chunks, chunk -> parse(channel, chunk, target, libraries));
+
+            // Normal vectors in file order, so the last face referencing a vertex wins as in ObjParser
+            if (target.normalIndices != null) {
+                for (int i = 0; i < target.indices.length; i++) {
+                    int n = target.normalIndices[i];
+                    if (n != -1) {
+                        target.mesh.setNormal(target.indices[i], target.normalVectors[n * 3],
+                                target.normalVectors[n * 3 + 1], target.normalVectors[n * 3 + 2]);
+                    }
+                }
+            }
+            return new Entity(entityName, new ArrayList<>(Arrays.asList(target.faces)), target.mesh);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(filePath);
+        }
+    }
+
+    /**
+     * Splits the file into chunks of whole lines.
+     *
+     * @param channel   channel of the OBJ file
+     * @param chunkSize nominal size of a chunk in bytes, 0 to derive it from the
+     *                  file size and the number of worker threads
+     * @return chunks in file order
+     * @throws IOException if the file cannot be read
+     */
+    private static List<Chunk> split(FileChannel channel, long chunkSize) throws IOException {
+        long size = channel.size();
+        if (chunkSize <= 0) {
+            int threads = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool().getParallelism()
+                    : ForkJoinPool.getCommonPoolParallelism();
+            chunkSize = Math.max(MIN_CHUNK_SIZE, size / ((long) threads * CHUNKS_PER_THREAD) + 1);
+        }
+        chunkSize = Math.min(chunkSize, MAX_CHUNK_SIZE);
+
+        List<Chunk> chunks = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            long end = start + chunkSize < size ? lineStart(channel, start + chunkSize, size) : size;
+            if (end - start > Integer.MAX_VALUE - 8) {
+                throw new IOException("Line at position " + start + " is too long.");
+            }
+            chunks.add(new Chunk(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Finds the start of the first line at or after the given position.
+     *
+     * @param channel  channel of the OBJ file
+     * @param position position in the file
+     * @param size     size of the file
+     * @return start of the line, the file size if there is none
+     * @throws IOException if the file cannot be read
+     */
+    private static long lineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(LINE_WINDOW);
+        long offset = position - 1; // A line starts at the position if the previous byte ends a line
+        while (offset < size) {
+            window.clear();
+            int read = channel.read(window, offset);
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += Math.max(read, 1);
+        }
+        return size;
+    }
+
+    /**
+     * Copies a chunk from the memory-mapped file into a byte array.
+     *
+     * @param channel channel of the OBJ file
+     * @param chunk   chunk
+     * @return content of the chunk
+     * @throws IOException if the file cannot be mapped
+     */
+    private static byte[] read(FileChannel channel, Chunk chunk) throws IOException {
+        byte[] content = new byte[(int) (chunk.end - chunk.start)];
+        channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, content.length).get(content);
+        return content;
+    }
+
+    /**
+     * First pass: counts the elements of a chunk and records its last
+     * statements.
+     *
+     * @param channel channel of the OBJ file
+     * @param chunk   chunk
+     * @throws IOException if the file cannot be read
+     */
+    private static void count(FileChannel channel, Chunk chunk) throws IOException {
+        byte[] content = read(channel, chunk);
+        ObjScanner scanner = new ObjScanner(content, 0, content.length);
+        while (scanner.nextLine()) {
+            if (scanner.skipKeyword(ObjScanner.VERTEX)) {
+                chunk.vertexCount++;
+            } else if (scanner.skipKeyword(ObjScanner.FACE)) {
+                chunk.faceCount++;
+            } else if (scanner.skipKeyword(ObjScanner.NORMAL)) {
+                chunk.normalCount++;
+            } else if (scanner.skipKeyword(ObjScanner.SMOOTHING_GROUP)) {
+                chunk.setsSmoothingGroup = true;
+                chunk.lastSmoothingGroup = scanner.nextString(chunk.lastSmoothingGroup);
+            } else if (scanner.skipKeyword(ObjScanner.USE_MATERIAL)) {
+                chunk.usesMaterial = true;
+                chunk.lastMaterial = scanner.nextString();
+                chunk.libraryOfLastMaterial = chunk.materialLibraries.isEmpty() ? null
+                        : chunk.materialLibraries.get(chunk.materialLibraries.size() - 1);
+            } else if (scanner.skipKeyword(ObjScanner.OBJECT)) {
+                chunk.namesObject = true;
+                chunk.lastObjectName = scanner.nextString();
+            } else if (scanner.skipKeyword(ObjScanner.MATERIAL_LIBRARY)) {
+                chunk.materialLibraries.add(scanner.nextString());
+            }
+        }
+    }
+
+    /**
+     * Second pass: parses the vertices, normal vectors and faces of a chunk into
+     * the shared arrays at the offsets of the chunk.
+     *
+     * @param channel   channel of the OBJ file
+     * @param chunk     chunk
+     * @param target    shared arrays
+     * @param libraries parsed material libraries by file name
+     * @throws IOException if the file cannot be read
+     */
+    private static void parse(FileChannel channel, Chunk chunk, Target target,
+            Map<String, Map<String, Material>> libraries) throws IOException {
+        byte[] content = read(channel, chunk);
+        ObjScanner scanner = new ObjScanner(content, 0, content.length);
+        // Number of vertices and normal vectors defined before the current line
+        int vertex = chunk.vertexOffset;
+        int normal = chunk.normalOffset;
+        int face = chunk.faceOffset;
+        Map<String, Material> materials = chunk.materials;
+        Material material = chunk.material;
+        String smoothingGroup = chunk.smoothingGroup;
+        int[] corner = new int[2];
+        while (scanner.nextLine()) {
+            if (scanner.skipKeyword(ObjScanner.VERTEX)) {
+                target.positions[vertex * 3] = scanner.nextDouble();
+                target.positions[vertex * 3 + 1] = scanner.nextDouble();
+                target.positions[vertex * 3 + 2] = scanner.nextDouble();
+                vertex++;
+            } else if (scanner.skipKeyword(ObjScanner.FACE)) {
+                for (int i = face * 3; i < face * 3 + 3; i++) {
+                    scanner.nextFaceVertex(vertex, normal, corner);
+                    // Like ObjParser, only vertices defined before the face may be referenced
+                    if (corner[0] < 0 || corner[0] >= vertex) {
+                        throw new IndexOutOfBoundsException("Vertex " + (corner[0] + 1) + " does not exist.");
+                    }
+                    if (corner[1] != -1 && (corner[1] < 0 || corner[1] >= normal)) {
+                        throw new IndexOutOfBoundsException("Normal vector " + (corner[1] + 1) + " does not exist.");
+                    }
+                    target.indices[i] = corner[0];
+                    if (target.normalIndices != null) {
+                        target.normalIndices[i] = corner[1];
+                    }
+                }
+                if (scanner.hasToken()) {
+                    // Not a triangle
+                    throw new UnsupportedOperationException("Polygons are not supported yet.");
+                }
+                target.faces[face] = new Triangle(material, smoothingGroup, target.mesh, face);
+                face++;
+            } else if (scanner.skipKeyword(ObjScanner.NORMAL)) {
+                target.normalVectors[normal * 3] = scanner.nextDouble();
+                target.normalVectors[normal * 3 + 1] = scanner.nextDouble();
+                target.normalVectors[normal * 3 + 2] = scanner.nextDouble();
+                normal++;
+            } else if (scanner.skipKeyword(ObjScanner.SMOOTHING_GROUP)) {
+                smoothingGroup = scanner.nextString(smoothingGroup);
+            } else if (scanner.skipKeyword(ObjScanner.USE_MATERIAL)) {
+                material = materials.get(scanner.nextString());
+            } else if (scanner.skipKeyword(ObjScanner.MATERIAL_LIBRARY)) {
+                materials = libraries.get(scanner.nextString());
+            }
+        }
+    }
+
+    /**
+     * Work done for a chunk.
+     */
+    @FunctionalInterface
+    private interface ChunkTask {
+
+        /**
+         * Processes a chunk.
+         *
+         * @param chunk chunk
+         * @throws IOException if the file cannot be read
+         */
+        void run(Chunk chunk) throws IOException;
+    }
+
+    /**
+     * Processes all chunks in parallel and waits for them.
+     *
+     * @param chunks chunks
+     * @param task   work done for every chunk
+     * @throws IOException if a chunk cannot be read
+     */
+    private static void runAll(List<Chunk> chunks, ChunkTask task) throws IOException {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            tasks.add(ForkJoinTask.adapt(() -> {
+                try {
+                    task.run(chunk);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        try {
+            ForkJoinTask.invokeAll(tasks);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package rayrangers.raytracer.parser;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+
+import rayrangers.raytracer.algorithm.bounding.MortonBuilder;
+import rayrangers.raytracer.algorithm.bounding.SplitMethod;
+import rayrangers.raytracer.parser.LoadTimings.Stage;
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.Face;
+
+/**
+ * Loads a Wavefront OBJ file into an entity with a BVH tree in a pipeline of
+ * two threads.
+ * A parser thread reads and parses the file and hands the faces in batches of
+ * {@link ObjParser#BATCH_SIZE} to the calling thread, which computes and
+ * sorts their Morton codes with a {@link MortonBuilder} while the rest of the
+ * file is parsed. The bounds of the vertices parsed so far serve as grid,
+ * which in the usual layout of all vertices before all faces is final when the
+ * first face is parsed. After parsing only the sorted batches are merged and
+ * the nodes written, so the entity is ready to be rendered shortly after the
+ * file is parsed.
+ * The tree is built in object space with {@link SplitMethod#MORTON}; a later
+ * transformation refits it like any other tree of the entity.
+ */
+public class StreamingObjLoader {
+
+    /**
+     * Maximum number of batches waiting for the binning stage, limits the
+     * memory used if the parser is faster.
+     */
+    private static final int QUEUE_CAPACITY = 16;
+
+    /**
+     * Batch of faces passed from the parser thread to the binning stage.
+     */
+    private static final class Batch {
+
+        private final List<Face> faces;
+        private final double[] faceBounds;
+        private final double[] vertexBounds;
+
+        /**
+         * Class constructor.
+         *
+         * @param faces        faces in file order, empty for the end marker
+         * @param faceBounds   bounds of the faces, six per face
+         * @param vertexBounds bounds of all vertices parsed so far
+         */
+        private Batch(List<Face> faces, double[] faceBounds, double[] vertexBounds) {
+            this.faces = faces;
+            this.faceBounds = faceBounds;
+            this.vertexBounds = vertexBounds;
+        }
+    }
+
+    /**
+     * Marker passed after the last batch.
+     */
+    private static final Batch END = new Batch(List.of(), null, null);
+
+    /**
+     * Private constructor, class only provides static members.
+     */
+    private StreamingObjLoader() {
+    }
+
+    /**
+     * Loads a Wavefront OBJ file and builds its BVH tree while parsing.
+     *
+     * @param filePath path to the OBJ file
+     * @return entity with a BVH tree in object space
+     * @throws FileNotFoundException if OBJ file is not present
+     * @throws IOException           if there is any error while reading the file
+     */
+    public static Entity load(String filePath) throws FileNotFoundException, IOException {
+        return load(filePath, new LoadTimings());
+    }
+
+    /**
+     * Loads a Wavefront OBJ file and builds its BVH tree while parsing,
+     * recording the timings of all stages.
+     *
+     * @param filePath path to the OBJ file
+     * @param timings  timings filled with the stages of this load
+     * @return entity with a BVH tree in object space
+     * @throws FileNotFoundException if OBJ file is not present
+     * @throws IOException           if there is any error while reading the file
+     */
+    public static Entity load(String filePath, LoadTimings timings) throws FileNotFoundException, IOException {
+        timings.start();
+        BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        Entity[] entity = new Entity[1];
+        Throwable[] failure = new Throwable[1];
+
+        Thread parser = new Thread(() -> {
+            try {
+                long start = System.nanoTime();
+                byte[] content = ObjParser.readFile(filePath);
+                long read = System.nanoTime();
+                timings.record(Stage.READ, start, read);
+                entity[0] = ObjParser.parse(filePath, content, (faces, faceBounds, vertexBounds) -> {
+                    try {
+                        queue.put(new Batch(faces, faceBounds, vertexBounds));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt(); // Keeps the end marker from blocking
+                        throw new CancellationException("Loading " + filePath + " was cancelled.");
+                    }
+                });
+                timings.record(Stage.PARSE, read, System.nanoTime());
+            } catch (Throwable e) {
+                failure[0] = e;
+            } finally {
+                try {
+                    queue.put(END);
+                } catch (InterruptedException e) {
+                    // The binning stage is gone and does not wait for the marker
+                }
+            }
+        }, "obj-parser");
+        parser.setDaemon(true);
+        parser.start();
+
+        MortonBuilder builder = new MortonBuilder(ObjParser.BATCH_SIZE);
+        try {
+            for (Batch batch = queue.take(); batch != END; batch = queue.take()) {
+                long start = System.nanoTime();
+                builder.setGrid(batch.vertexBounds);
+                builder.add(batch.faces, batch.faceBounds);
+                timings.record(Stage.BIN, start, System.nanoTime());
+            }
+            parser.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Loading " + filePath + " was interrupted.");
+        } finally {
+            if (parser.isAlive()) {
+                parser.interrupt(); // Stop parsing if the binning stage failed
+            }
+        }
+
+        // Rethrow failures of the parser thread, the queue and join make its writes visible
+        if (failure[0] instanceof IOException) {
+            throw (IOException) failure[0];
+        } else if (failure[0] instanceof RuntimeException) {
+            throw (RuntimeException) failure[0];
+        } else if (failure[0] instanceof Error) {
+            throw (Error) failure[0];
+        }
+
+        if (builder.getFaceCount() > 0) {
+            long start = System.nanoTime();
+            entity[0].setBvhTree(builder.build());
+            timings.record(Stage.BUILD, start, System.nanoTime());
+        }
+        return entity[0];
+    }
+}
@@ -0,0 +1,142 @@
+package rayrangers.raytracer.view;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Represents the colors of a grid of pixels as packed RGB values.
+ * The colors are stored row by row in a single int array, so a 2000x2000
+ * image takes 16 MB instead of one pixel and one color object per pixel, and
+ * can be exported as a whole instead of pixel by pixel.
+ */
+public class FrameBuffer implements RenderTarget {
+
+    /**
+     * Masks of the red, green and blue channels of a packed RGB value.
+     */
+    private static final int[] MASKS = { 0xFF0000, 0xFF00, 0xFF };
+
+    /**
+     * Width of the buffer in pixels.
+     */
+    private final int width;
+
+    /**
+     * Height of the buffer in pixels.
+     */
+    private final int height;
+
+    /**
+     * Packed RGB values row by row, see {@link java.awt.Color#getRGB()}.
+     */
+    private final int[] data;
+
+    /**
+     * Class constructor specifying the size of the buffer.
+     * All pixels are initially black.
+     *
+     * @param width  width in pixels
+     * @param height height in pixels
+     * @throws IllegalArgumentException if a dimension is not positive or the
+     *                                  buffer would exceed the maximum array
+     *                                  length
+     */
+    public FrameBuffer(int width, int height) {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("Buffer dimensions must be positive: " + width + "x" + height);
+        if ((long) width * height > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Buffer too large: " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+        data = new int[width * height];
+    }
+
+    /**
+     * @see RenderTarget
+     */
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @see RenderTarget
+     */
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the index of the pixel at position (i,j) in the data array.
+     *
+     * @param i horizontal index of the pixel
+     * @param j vertical index of the pixel
+     * @return index in the data array
+     */
+    public int indexOf(int i, int j) {
+        return j * width + i;
+    }
+
+    /**
+     * @see RenderTarget
+     */
+    @Override
+    public int getRgb(int i, int j) {
+        return data[indexOf(i, j)];
+    }
+
+    /**
+     * Pixels are written by one thread each, so no synchronization is needed
+     * as long as the buffer is read after rendering has completed.
+     *
+     * @see RenderTarget
+     */
+    @Override
+    public void setRgb(int i, int j, int rgb) {
+        data[indexOf(i, j)] = rgb;
+    }
+
+    /**
+     * Returns the backing array of the buffer.
+     * Changes to the array are reflected in the buffer and vice versa.
+     *
+     * @return packed RGB values row by row
+     */
+    public int[] getData() {
+        return data;
+    }
+
+    /**
+     * Copies the colors of all pixels into an image in one call.
+     *
+     * @param image image of the same size as the buffer, whose raster
+     *              stores packed RGB values like {@link BufferedImage#TYPE_INT_RGB}
+     * @throws IllegalArgumentException if the image has a different size
+     */
+    public void copyTo(BufferedImage image) {
+        if (image.getWidth() != width || image.getHeight() != height)
+            throw new IllegalArgumentException("Image size " + image.getWidth() + "x" + image.getHeight()
+                    + " does not match buffer size " + width + "x" + height);
+        image.getRaster().setDataElements(0, 0, width, height, data);
+    }
+
+    /**
+     * Returns an RGB image sharing the data array of the buffer, so the
+     * image is created without copying any pixels.
+     *
+     * @return image of type {@link BufferedImage#TYPE_INT_RGB} backed by the
+     *         buffer
+     */
+    public BufferedImage toBufferedImage() {
+        DirectColorModel colorModel = new DirectColorModel(24, MASKS[0], MASKS[1], MASKS[2]);
+        SinglePixelPackedSampleModel sampleModel = new SinglePixelPackedSampleModel(DataBufferInt.TYPE_INT, width,
+                height, MASKS);
+        WritableRaster raster = Raster.createWritableRaster(sampleModel, new DataBufferInt(data, data.length), null);
+        return new BufferedImage(colorModel, raster, false, null);
+    }
+}
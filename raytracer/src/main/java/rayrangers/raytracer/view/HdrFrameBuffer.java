@@ -0,0 +1,131 @@
+package rayrangers.raytracer.view;
+
+/**
+ * Represents the linear radiance of a grid of pixels with high dynamic range.
+ * The red, green and blue channels are stored as unclamped floats, pixel by
+ * pixel and row by row, so an image can be rendered once and tone mapped
+ * into a {@link FrameBuffer} with different settings afterwards.
+ */
+public class HdrFrameBuffer {
+
+    /**
+     * Width of the buffer in pixels.
+     */
+    private final int width;
+
+    /**
+     * Height of the buffer in pixels.
+     */
+    private final int height;
+
+    /**
+     * Red, green and blue radiance of the pixels row by row.
+     */
+    private final float[] data;
+
+    /**
+     * Class constructor specifying the size of the buffer.
+     * All pixels are initially black.
+     *
+     * @param width  width in pixels
+     * @param height height in pixels
+     * @throws IllegalArgumentException if a dimension is not positive or the
+     *                                  buffer would exceed the maximum array
+     *                                  length
+     */
+    public HdrFrameBuffer(int width, int height) {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("Buffer dimensions must be positive: " + width + "x" + height);
+        if ((long) width * height * 3 > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Buffer too large: " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+        data = new float[width * height * 3];
+    }
+
+    /**
+     * Returns the width of the buffer.
+     *
+     * @return width in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the buffer.
+     *
+     * @return height in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the index of the red channel of the pixel at position (i,j) in
+     * the data array, followed by the green and the blue channel.
+     *
+     * @param i horizontal index of the pixel
+     * @param j vertical index of the pixel
+     * @return index in the data array
+     */
+    public int indexOf(int i, int j) {
+        return (j * width + i) * 3;
+    }
+
+    /**
+     * Returns a channel of the pixel at position (i,j).
+     *
+     * @param i       horizontal index of the pixel
+     * @param j       vertical index of the pixel
+     * @param channel 0 for red, 1 for green, 2 for blue
+     * @return linear radiance
+     */
+    public float get(int i, int j, int channel) {
+        return data[indexOf(i, j) + channel];
+    }
+
+    /**
+     * Sets the radiance of the pixel at position (i,j).
+     *
+     * @param i horizontal index of the pixel
+     * @param j vertical index of the pixel
+     * @param r red radiance
+     * @param g green radiance
+     * @param b blue radiance
+     */
+    public void set(int i, int j, float r, float g, float b) {
+        int index = indexOf(i, j);
+        data[index] = r;
+        data[index + 1] = g;
+        data[index + 2] = b;
+    }
+
+    /**
+     * Returns the backing array of the buffer.
+     * Changes to the array are reflected in the buffer and vice versa.
+     *
+     * @return red, green and blue radiance of the pixels row by row
+     */
+    public float[] getData() {
+        return data;
+    }
+
+    /**
+     * Tone maps all pixels into a frame buffer of the same size.
+     *
+     * @param toneMapping operator mapping the radiance to display values
+     * @param exposure    factor the radiance is multiplied by
+     * @param target      frame buffer the packed RGB values are written to
+     * @throws IllegalArgumentException if the target has a different size
+     */
+    public void toneMap(ToneMapping toneMapping, float exposure, FrameBuffer target) {
+        if (target.getWidth() != width || target.getHeight() != height)
+            throw new IllegalArgumentException("Target size " + target.getWidth() + "x" + target.getHeight()
+                    + " does not match buffer size " + width + "x" + height);
+        int[] rgb = target.getData();
+        for (int p = 0, index = 0; p < rgb.length; p++, index += 3) {
+            rgb[p] = toneMapping.toRgb(data[index], data[index + 1], data[index + 2], exposure);
+        }
+    }
+}
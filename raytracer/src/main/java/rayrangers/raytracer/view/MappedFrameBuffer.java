@@ -0,0 +1,383 @@
+package rayrangers.raytracer.view;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Represents a frame buffer of packed RGB values stored in a memory-mapped
+ * file, for images too large for the heap, e.g. 20000x20000 pixels.
+ * The image is split into square storage tiles, each stored contiguously, so
+ * the pixels of a render tile lie in few pages. Every row of storage tiles is
+ * mapped separately, so the file may exceed 2 GB. Once all pixels of a storage
+ * tile have been completed, its pages are flushed to the file by a background
+ * thread while the render workers continue.
+ *
+ * File layout (little-endian): header of {@value #HEADER_SIZE} bytes with
+ * magic, format version, width, height and tile size, followed by the storage
+ * tiles row by row, each with the pixels of a full tile row by row. Tiles at
+ * the right and bottom border are padded to the full tile size.
+ */
+public class MappedFrameBuffer implements RenderTarget, Closeable {
+
+    /**
+     * Default edge length of a storage tile in pixels.
+     */
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    /**
+     * Size of the file header in bytes.
+     */
+    public static final int HEADER_SIZE = 32;
+
+    /**
+     * Version of the file layout, files of other versions are rejected.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * Magic number at the start of every file, the bytes "RRFB" in
+     * little-endian order.
+     */
+    private static final int MAGIC = 0x42465252;
+
+    /**
+     * File channel of the buffer, closed by {@link #close()}.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Width of the image in pixels.
+     */
+    private final int width;
+
+    /**
+     * Height of the image in pixels.
+     */
+    private final int height;
+
+    /**
+     * Edge length of a storage tile in pixels.
+     */
+    private final int tileSize;
+
+    /**
+     * Number of storage tiles in x-direction.
+     */
+    private final int tilesX;
+
+    /**
+     * Mapped rows of storage tiles.
+     */
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * Int views of the mapped rows of storage tiles.
+     */
+    private final IntBuffer[] pixels;
+
+    /**
+     * Number of pixels per storage tile not completed since its last flush.
+     */
+    private final AtomicIntegerArray pending;
+
+    /**
+     * Single background thread flushing completed storage tiles.
+     */
+    private final ExecutorService flusher;
+
+    /**
+     * Number of storage tiles flushed in the background.
+     */
+    private final AtomicLong flushedTiles = new AtomicLong();
+
+    /**
+     * Writes the header of a file and maps its tiles.
+     *
+     * @param channel  channel of the file, opened for reading and writing
+     * @param width    width of the image in pixels
+     * @param height   height of the image in pixels
+     * @param tileSize edge length of a storage tile in pixels
+     * @throws IOException if the file cannot be mapped
+     */
+    private MappedFrameBuffer(FileChannel channel, int width, int height, int tileSize) throws IOException {
+        this.channel = channel;
+        this.width = width;
+        this.height = height;
+        this.tileSize = tileSize;
+        tilesX = (width + tileSize - 1) / tileSize;
+        int tilesY = (height + tileSize - 1) / tileSize;
+        long segmentBytes = (long) tilesX * tileSize * tileSize * Integer.BYTES;
+        if (segmentBytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("A row of tiles must not exceed 2 GB, use a smaller tile size.");
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(width).putInt(height).putInt(tileSize).flip();
+        channel.write(header, 0);
+
+        // Mapping in read-write mode extends the file, unwritten pages stay sparse
+        segments = new MappedByteBuffer[tilesY];
+        pixels = new IntBuffer[tilesY];
+        for (int ty = 0; ty < tilesY; ty++) {
+            segments[ty] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + ty * segmentBytes,
+                    segmentBytes);
+            pixels[ty] = segments[ty].order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+        pending = new AtomicIntegerArray(tilesX * tilesY);
+        for (int t = 0; t < pending.length(); t++) {
+            pending.set(t, tileWidth(t % tilesX) * tileHeight(t / tilesX));
+        }
+        flusher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "frame-buffer-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates a file for an image of the given size with the default tile
+     * size. All pixels are initially 0.
+     *
+     * @param path   path of the file, replaced if it exists
+     * @param width  width of the image in pixels
+     * @param height height of the image in pixels
+     * @return frame buffer mapping the file
+     * @throws IOException if the file cannot be created or mapped
+     * @see #create(Path, int, int, int)
+     */
+    public static MappedFrameBuffer create(Path path, int width, int height) throws IOException {
+        return create(path, width, height, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Creates a file for an image of the given size. All pixels are
+     * initially 0.
+     *
+     * @param path     path of the file, replaced if it exists
+     * @param width    width of the image in pixels
+     * @param height   height of the image in pixels
+     * @param tileSize edge length of a storage tile in pixels, a multiple of
+     *                 16 so the tiles can be written to a tiled TIFF file
+     * @return frame buffer mapping the file
+     * @throws IOException              if the file cannot be created or mapped
+     * @throws IllegalArgumentException if a dimension is not positive or the
+     *                                  tile size is not a positive multiple
+     *                                  of 16
+     */
+    public static MappedFrameBuffer create(Path path, int width, int height, int tileSize) throws IOException {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("Buffer dimensions must be positive: " + width + "x" + height);
+        if (tileSize < 16 || tileSize % 16 != 0)
+            throw new IllegalArgumentException("Tile size must be a positive multiple of 16: " + tileSize);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new MappedFrameBuffer(channel, width, height, tileSize);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing file, e.g. to export an image rendered before.
+     *
+     * @param path path of the file
+     * @return frame buffer mapping the file
+     * @throws IOException if the file cannot be mapped or has no valid header
+     */
+    public static MappedFrameBuffer open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // Read until the header is complete or the file ends
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC)
+                throw new IOException(path + " is not a frame buffer file.");
+            if (header.getInt(4) != FORMAT_VERSION)
+                throw new IOException("Unsupported frame buffer version " + header.getInt(4) + " in " + path + ".");
+            int width = header.getInt(8);
+            int height = header.getInt(12);
+            int tileSize = header.getInt(16);
+            if (width < 1 || height < 1 || tileSize < 16 || tileSize % 16 != 0)
+                throw new IOException("Invalid frame buffer header in " + path + ".");
+            long size = HEADER_SIZE + (long) ((width + tileSize - 1) / tileSize) * ((height + tileSize - 1) / tileSize)
+                    * tileSize * tileSize * Integer.BYTES;
+            if (channel.size() < size)
+                throw new IOException(path + " is truncated.");
+            return new MappedFrameBuffer(channel, width, height, tileSize);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @see RenderTarget
+     */
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @see RenderTarget
+     */
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the edge length of the storage tiles.
+     *
+     * @return tile size in pixels
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Returns the number of storage tiles flushed in the background so far.
+     *
+     * @return number of flushed tiles
+     */
+    public long getFlushedTiles() {
+        return flushedTiles.get();
+    }
+
+    /**
+     * @see RenderTarget
+     */
+    @Override
+    public int getRgb(int i, int j) {
+        int ty = j / tileSize;
+        return pixels[ty].get(indexInSegment(i, j - ty * tileSize));
+    }
+
+    /**
+     * Pixels are written by one thread each, so no synchronization is needed
+     * as long as the buffer is read after rendering has completed.
+     *
+     * @see RenderTarget
+     */
+    @Override
+    public void setRgb(int i, int j, int rgb) {
+        int ty = j / tileSize;
+        pixels[ty].put(indexInSegment(i, j - ty * tileSize), rgb);
+    }
+
+    /**
+     * Subtracts the pixels of the tile from the pending pixels of the storage
+     * tiles it overlaps and flushes every storage tile in the background once
+     * all its pixels have been completed.
+     *
+     * @see RenderTarget
+     */
+    @Override
+    public void tileCompleted(Tile tile) {
+        int right = Math.min(width, tile.getX() + tile.getWidth());
+        int bottom = Math.min(height, tile.getY() + tile.getHeight());
+        for (int ty = tile.getY() / tileSize; ty * tileSize < bottom; ty++) {
+            for (int tx = tile.getX() / tileSize; tx * tileSize < right; tx++) {
+                int overlapX = Math.min(right, (tx + 1) * tileSize) - Math.max(tile.getX(), tx * tileSize);
+                int overlapY = Math.min(bottom, (ty + 1) * tileSize) - Math.max(tile.getY(), ty * tileSize);
+                int t = ty * tilesX + tx;
+                if (pending.addAndGet(t, -overlapX * overlapY) == 0) {
+                    // Re-arm the tile, so it is flushed again if it is rendered again
+                    pending.addAndGet(t, tileWidth(tx) * tileHeight(ty));
+                    int row = ty;
+                    int offset = tx * tileSize * tileSize * Integer.BYTES;
+                    flusher.execute(() -> {
+                        segments[row].force(offset, tileSize * tileSize * Integer.BYTES);
+                        flushedTiles.incrementAndGet();
+                    });
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for the background flushes and flushes all pages of the file.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void flush() throws IOException {
+        try {
+            // Tasks run in order, so all earlier flushes are done once this one is
+            Future<?> done = flusher.submit(() -> {
+            });
+            done.get();
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while flushing the frame buffer.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Flushing the frame buffer failed.", e.getCause());
+        }
+    }
+
+    /**
+     * Flushes all pages, stops the background thread and closes the file.
+     * The mapped pages are released once the buffer is garbage collected.
+     *
+     * @throws IOException if the file cannot be written or closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            flusher.shutdown();
+            channel.close();
+        }
+    }
+
+    /**
+     * Returns the index of a pixel in the int view of its row of storage
+     * tiles.
+     *
+     * @param i horizontal index of the pixel
+     * @param y vertical index of the pixel within its tile
+     * @return index in the int view
+     */
+    private int indexInSegment(int i, int y) {
+        int tx = i / tileSize;
+        return (tx * tileSize + y) * tileSize + i - tx * tileSize;
+    }
+
+    /**
+     * Returns the width of a storage tile cropped to the image.
+     *
+     * @param tx horizontal index of the tile
+     * @return width in pixels
+     */
+    private int tileWidth(int tx) {
+        return Math.min(tileSize, width - tx * tileSize);
+    }
+
+    /**
+     * Returns the height of a storage tile cropped to the image.
+     *
+     * @param ty vertical index of the tile
+     * @return height in pixels
+     */
+    private int tileHeight(int ty) {
+        return Math.min(tileSize, height - ty * tileSize);
+    }
+}
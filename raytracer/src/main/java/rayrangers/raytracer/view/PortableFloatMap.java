@@ -0,0 +1,158 @@
+package rayrangers.raytracer.view;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes high dynamic range images in the Portable Float Map
+ * format, which stores the raw float radiance without compression.
+ * Images are streamed row by row, so only one row is buffered besides the
+ * frame buffer itself.
+ *
+ * File layout: the ASCII header "PF", width and height and the scale, each
+ * terminated by a newline, followed by three floats per pixel. A negative
+ * scale marks little-endian floats. The rows are stored from the bottom to
+ * the top of the image.
+ */
+public class PortableFloatMap {
+
+    /**
+     * Maximum length of the header in bytes, longer headers are rejected.
+     */
+    private static final int MAX_HEADER_SIZE = 64;
+
+    /**
+     * Private constructor, the class only has static methods.
+     */
+    private PortableFloatMap() {
+    }
+
+    /**
+     * Writes a frame buffer into a file in little-endian byte order.
+     * The file is written to a temporary file first and then moved to the
+     * path, so a partially written file never replaces an existing one.
+     *
+     * @param buffer frame buffer to write
+     * @param path   path of the file, replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(HdrFrameBuffer buffer, Path path) throws IOException {
+        int width = buffer.getWidth();
+        float[] data = buffer.getData();
+        byte[] header = ("PF\n" + width + " " + buffer.getHeight() + "\n-1.0\n").getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer row = ByteBuffer.allocate(width * 3 * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        Path directory = path.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                writeFully(channel, ByteBuffer.wrap(header));
+                for (int j = buffer.getHeight() - 1; j >= 0; j--) {
+                    row.clear();
+                    row.asFloatBuffer().put(data, buffer.indexOf(0, j), width * 3);
+                    writeFully(channel, row);
+                }
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads a file into a new frame buffer. The scale of the file only
+     * determines the byte order, the radiance is not scaled.
+     *
+     * @param path path of the file
+     * @return frame buffer with the radiance of the file
+     * @throws IOException if the file cannot be read or is not a color PFM
+     *                     file
+     */
+    public static HdrFrameBuffer read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(MAX_HEADER_SIZE);
+            while (head.hasRemaining() && channel.read(head) >= 0) {
+                // Read until the buffer is full or the file ends
+            }
+            head.flip();
+            String[] fields = new String[4];
+            int position = 0;
+            for (int f = 0; f < fields.length; f++) {
+                while (position < head.limit() && Character.isWhitespace(head.get(position))) {
+                    position++;
+                }
+                int start = position;
+                while (position < head.limit() && !Character.isWhitespace(head.get(position))) {
+                    position++;
+                }
+                if (position == head.limit())
+                    throw new IOException(path + " is not a PFM file.");
+                fields[f] = new String(head.array(), start, position - start, StandardCharsets.US_ASCII);
+            }
+            if (!fields[0].equals("PF"))
+                throw new IOException(path + " is not a color PFM file.");
+            int width;
+            int height;
+            float scale;
+            try {
+                width = Integer.parseInt(fields[1]);
+                height = Integer.parseInt(fields[2]);
+                scale = Float.parseFloat(fields[3]);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid PFM header in " + path + ".", e);
+            }
+            // Exactly one whitespace character separates the header from the data
+            long dataOffset = position + 1;
+            HdrFrameBuffer buffer;
+            try {
+                buffer = new HdrFrameBuffer(width, height);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid PFM header in " + path + ".", e);
+            }
+            if (channel.size() < dataOffset + (long) width * height * 3 * Float.BYTES)
+                throw new IOException(path + " is truncated.");
+
+            channel.position(dataOffset);
+            ByteBuffer row = ByteBuffer.allocate(width * 3 * Float.BYTES)
+                    .order(scale < 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            float[] data = buffer.getData();
+            for (int j = height - 1; j >= 0; j--) {
+                row.clear();
+                while (row.hasRemaining()) {
+                    if (channel.read(row) < 0)
+                        throw new IOException(path + " is truncated.");
+                }
+                row.flip();
+                FloatBuffer values = row.asFloatBuffer();
+                values.get(data, buffer.indexOf(0, j), width * 3);
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * Writes all remaining bytes of a buffer into a channel.
+     *
+     * @param channel channel to write to
+     * @param buffer  bytes to write
+     * @throws IOException if the bytes cannot be written
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package rayrangers.raytracer.view;
+
+/**
+ * Represents a grid of pixels the renderer writes packed RGB values to.
+ * Pixels are written by one render worker each, tile by tile.
+ */
+public interface RenderTarget {
+
+    /**
+     * Returns the width of the target.
+     *
+     * @return width in pixels
+     */
+    int getWidth();
+
+    /**
+     * Returns the height of the target.
+     *
+     * @return height in pixels
+     */
+    int getHeight();
+
+    /**
+     * Returns the color of the pixel at position (i,j).
+     *
+     * @param i horizontal index of the pixel
+     * @param j vertical index of the pixel
+     * @return packed RGB value, see {@link java.awt.Color#getRGB()}
+     */
+    int getRgb(int i, int j);
+
+    /**
+     * Sets the color of the pixel at position (i,j).
+     *
+     * @param i   horizontal index of the pixel
+     * @param j   vertical index of the pixel
+     * @param rgb packed RGB value, see {@link java.awt.Color#getRGB()}
+     */
+    void setRgb(int i, int j, int rgb);
+
+    /**
+     * Notifies the target that all pixels of a tile have been written.
+     * Does nothing by default.
+     *
+     * @param tile completed tile
+     */
+    default void tileCompleted(Tile tile) {
+    }
+}
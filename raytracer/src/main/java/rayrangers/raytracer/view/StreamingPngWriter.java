@@ -0,0 +1,579 @@
+package rayrangers.raytracer.view;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Render target writing the image into a PNG file while it is rendered.
+ * The pixels are stored in a wrapped target. The image is split into bands
+ * of scanlines; as soon as all tiles covering a band have been completed, the
+ * band is filtered and compressed by a pool of encoder threads, independently
+ * of the other bands. Every band is compressed into a deflate chunk ending on
+ * a byte boundary, so the chunks of all bands form a single zlib stream once
+ * they are concatenated in order. The checksum of the stream is combined from
+ * the checksums of the bands. Compressed bands are appended to the file as
+ * IDAT chunks in order as soon as all bands above them have been written, so
+ * encoding and writing overlap with rendering instead of following it.
+ * Bands not completed by rendering are encoded when the writer is closed, so
+ * a writer closed right away writes an image rendered before.
+ */
+public final class StreamingPngWriter implements RenderTarget, Closeable {
+
+    /**
+     * Default height of a band in scanlines, the default tile size of the
+     * renderer.
+     */
+    public static final int DEFAULT_BAND_HEIGHT = 32;
+
+    /**
+     * Signature at the start of every PNG file.
+     */
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+
+    /**
+     * Header of the zlib stream: deflate with a 32 KB window, default level.
+     */
+    private static final byte[] ZLIB_HEADER = { 0x78, (byte) 0x9C };
+
+    /**
+     * Modulus of the Adler-32 checksum.
+     */
+    private static final int ADLER_BASE = 65521;
+
+    /**
+     * Wrapped target storing the pixels.
+     */
+    private final RenderTarget target;
+
+    /**
+     * Path of the PNG file, written when the writer is closed.
+     */
+    private final Path path;
+
+    /**
+     * Temporary file the PNG file is written to.
+     */
+    private final Path temp;
+
+    /**
+     * Channel of the temporary file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Height of a band in scanlines.
+     */
+    private final int bandHeight;
+
+    /**
+     * Number of pixels per band not completed yet.
+     */
+    private final AtomicIntegerArray pending;
+
+    /**
+     * Whether the encoding of a band has been started, 1 if so.
+     */
+    private final AtomicIntegerArray started;
+
+    /**
+     * Compressed bands not written to the file yet.
+     */
+    private final AtomicReferenceArray<EncodedBand> encoded;
+
+    /**
+     * Encoding tasks of the bands, null until a band is started.
+     */
+    private final AtomicReferenceArray<Future<?>> tasks;
+
+    /**
+     * Pool of encoder threads.
+     */
+    private final ExecutorService encoders;
+
+    /**
+     * Index of the next band to be written to the file, guarded by this.
+     */
+    private int nextBand;
+
+    /**
+     * Adler-32 checksum of the scanlines written so far, guarded by this.
+     */
+    private long adler = 1;
+
+    /**
+     * Whether the writer has been closed.
+     */
+    private boolean closed;
+
+    /**
+     * Class constructor specifying the wrapped target and the path of the
+     * PNG file, with the default band height and one encoder thread per
+     * processor.
+     *
+     * @param target target storing the pixels
+     * @param path   path of the PNG file, replaced when the writer is closed
+     * @throws IOException if the file cannot be created
+     */
+    public StreamingPngWriter(RenderTarget target, Path path) throws IOException {
+        this(target, path, DEFAULT_BAND_HEIGHT, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Class constructor specifying the wrapped target, the path of the PNG
+     * file, the band height and the number of encoder threads.
+     *
+     * @param target     target storing the pixels
+     * @param path       path of the PNG file, replaced when the writer is
+     *                   closed
+     * @param bandHeight height of a band in scanlines, larger bands compress
+     *                   better, smaller ones are completed earlier
+     * @param threads    number of encoder threads
+     * @throws IOException              if the file cannot be created
+     * @throws IllegalArgumentException if the band height or the number of
+     *                                  threads is not positive
+     */
+    public StreamingPngWriter(RenderTarget target, Path path, int bandHeight, int threads) throws IOException {
+        if (bandHeight < 1)
+            throw new IllegalArgumentException("Band height must be positive.");
+        if (threads < 1)
+            throw new IllegalArgumentException("Number of encoder threads must be positive.");
+        if ((long) target.getWidth() * 3 + 1 > (Integer.MAX_VALUE - 8) / bandHeight)
+            throw new IllegalArgumentException("Bands are too large, use a smaller band height.");
+        this.target = target;
+        this.path = path;
+        this.bandHeight = bandHeight;
+        int bands = (target.getHeight() + bandHeight - 1) / bandHeight;
+        pending = new AtomicIntegerArray(bands);
+        for (int b = 0; b < bands; b++) {
+            pending.set(b, target.getWidth() * bandRows(b));
+        }
+        started = new AtomicIntegerArray(bands);
+        encoded = new AtomicReferenceArray<>(bands);
+        tasks = new AtomicReferenceArray<>(bands);
+
+        temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        try {
+            writeFully(ByteBuffer.wrap(SIGNATURE));
+            ByteBuffer header = ByteBuffer.allocate(13);
+            header.putInt(target.getWidth()).putInt(target.getHeight());
+            header.put((byte) 8); // Bit depth
+            header.put((byte) 2); // Color type: RGB
+            header.put((byte) 0).put((byte) 0).put((byte) 0); // Deflate, adaptive filters, no interlacing
+            writeChunk("IHDR", header.array(), header.array().length);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        encoders = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "png-encoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Writes an image rendered before into a PNG file.
+     *
+     * @param image image to write
+     * @param path  path of the PNG file, replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(RenderTarget image, Path path) throws IOException {
+        new StreamingPngWriter(image, path).close();
+    }
+
+    /**
+     * @see RenderTarget
+     */
+    @Override
+    public int getWidth() {
+        return target.getWidth();
+    }
+
+    /**
+     * @see RenderTarget
+     */
+    @Override
+    public int getHeight() {
+        return target.getHeight();
+    }
+
+    /**
+     * @see RenderTarget
+     */
+    @Override
+    public int getRgb(int i, int j) {
+        return target.getRgb(i, j);
+    }
+
+    /**
+     * @see RenderTarget
+     */
+    @Override
+    public void setRgb(int i, int j, int rgb) {
+        target.setRgb(i, j, rgb);
+    }
+
+    /**
+     * Notifies the wrapped target, then subtracts the pixels of the tile from
+     * the pending pixels of the bands it overlaps and starts encoding every
+     * band whose pixels have all been completed.
+     *
+     * @see RenderTarget
+     */
+    @Override
+    public void tileCompleted(Tile tile) {
+        target.tileCompleted(tile);
+        int right = Math.min(getWidth(), tile.getX() + tile.getWidth());
+        int bottom = Math.min(getHeight(), tile.getY() + tile.getHeight());
+        int width = right - tile.getX();
+        for (int b = tile.getY() / bandHeight; b * bandHeight < bottom; b++) {
+            int rows = Math.min(bottom, (b + 1) * bandHeight) - Math.max(tile.getY(), b * bandHeight);
+            if (pending.addAndGet(b, -width * rows) == 0) {
+                startBand(b);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bands written to the file so far.
+     *
+     * @return number of written bands
+     */
+    public synchronized int getWrittenBands() {
+        return nextBand;
+    }
+
+    /**
+     * Encodes all bands not encoded yet, waits for the encoder threads,
+     * finishes the file and moves it to its path.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+        }
+        boolean success = false;
+        try {
+            for (int b = 0; b < pending.length(); b++) {
+                startBand(b);
+            }
+            for (int b = 0; b < pending.length(); b++) {
+                tasks.get(b).get();
+            }
+            synchronized (this) {
+                writeEncodedBands();
+                if (nextBand != pending.length())
+                    throw new IOException("Not all bands have been written.");
+                ByteBuffer trailer = ByteBuffer.allocate(4).putInt((int) adler);
+                writeChunk("IDAT", trailer.array(), 4);
+            }
+            writeChunk("IEND", new byte[0], 0);
+            channel.close();
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            success = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while encoding " + path + ".", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException("Encoding failed.", e.getCause());
+        } finally {
+            encoders.shutdownNow();
+            if (!success) {
+                channel.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Starts encoding a band on an encoder thread unless it has already been
+     * started.
+     *
+     * @param band index of the band
+     */
+    private void startBand(int band) {
+        if (started.compareAndSet(band, 0, 1)) {
+            tasks.set(band, encoders.submit(() -> {
+                encoded.set(band, encodeBand(band));
+                synchronized (this) {
+                    writeEncodedBands();
+                }
+                return null;
+            }));
+        }
+    }
+
+    /**
+     * Filters and compresses the scanlines of a band. The deflate chunk of
+     * the last band is terminated by a final block, all others are flushed to
+     * a byte boundary.
+     *
+     * @param band index of the band
+     * @return compressed band with the checksum of its scanlines
+     */
+    private EncodedBand encodeBand(int band) {
+        int width = getWidth();
+        int stride = width * 3 + 1;
+        int rows = bandRows(band);
+        byte[] raw = new byte[stride * rows];
+        byte[] previous = new byte[stride];
+        byte[] current = new byte[stride];
+        byte[][] candidates = new byte[5][stride];
+        for (int r = 0; r < rows; r++) {
+            int j = band * bandHeight + r;
+            for (int i = 0; i < width; i++) {
+                int rgb = target.getRgb(i, j);
+                current[1 + i * 3] = (byte) (rgb >> 16);
+                current[2 + i * 3] = (byte) (rgb >> 8);
+                current[3 + i * 3] = (byte) rgb;
+            }
+            // Filters referring to the scanline above are only used within the band
+            byte[] best = filter(current, r > 0 ? previous : null, candidates);
+            System.arraycopy(best, 0, raw, r * stride, stride);
+            byte[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        Adler32 checksum = new Adler32();
+        checksum.update(raw);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+        byte[] buffer = new byte[64 * 1024];
+        try {
+            deflater.setInput(raw);
+            if (band == pending.length() - 1) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                int length;
+                do {
+                    length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    out.write(buffer, 0, length);
+                } while (length == buffer.length);
+            }
+        } finally {
+            deflater.end();
+        }
+        return new EncodedBand(out.toByteArray(), checksum.getValue(), raw.length);
+    }
+
+    /**
+     * Applies the PNG filters to a scanline and returns the one with the
+     * smallest sum of absolute differences, a common heuristic for the best
+     * compression.
+     *
+     * @param line       scanline with a leading filter byte
+     * @param above      scanline above, null if the filters may not refer to it
+     * @param candidates arrays of the filtered scanlines, one per filter type
+     * @return filtered scanline including its filter type
+     */
+    private static byte[] filter(byte[] line, byte[] above, byte[][] candidates) {
+        int length = line.length;
+        byte[] none = candidates[0];
+        byte[] sub = candidates[1];
+        none[0] = 0;
+        sub[0] = 1;
+        long noneSum = 0;
+        long subSum = 0;
+        for (int k = 1; k < length; k++) {
+            byte value = line[k];
+            none[k] = value;
+            noneSum += Math.abs(value);
+            byte left = (byte) (value - (k > 3 ? line[k - 3] : 0));
+            sub[k] = left;
+            subSum += Math.abs(left);
+        }
+        byte[] best = subSum < noneSum ? sub : none;
+        long bestSum = Math.min(subSum, noneSum);
+        if (above == null)
+            return best;
+
+        byte[] up = candidates[2];
+        byte[] average = candidates[3];
+        byte[] paeth = candidates[4];
+        up[0] = 2;
+        average[0] = 3;
+        paeth[0] = 4;
+        long upSum = 0;
+        long averageSum = 0;
+        long paethSum = 0;
+        for (int k = 1; k < length; k++) {
+            int value = line[k];
+            int a = k > 3 ? line[k - 3] & 0xFF : 0;
+            int b = above[k] & 0xFF;
+            int c = k > 3 ? above[k - 3] & 0xFF : 0;
+            byte upValue = (byte) (value - b);
+            byte averageValue = (byte) (value - ((a + b) >>> 1));
+            byte paethValue = (byte) (value - paeth(a, b, c));
+            up[k] = upValue;
+            average[k] = averageValue;
+            paeth[k] = paethValue;
+            upSum += Math.abs(upValue);
+            averageSum += Math.abs(averageValue);
+            paethSum += Math.abs(paethValue);
+        }
+        if (upSum < bestSum) {
+            best = up;
+            bestSum = upSum;
+        }
+        if (averageSum < bestSum) {
+            best = average;
+            bestSum = averageSum;
+        }
+        return paethSum < bestSum ? paeth : best;
+    }
+
+    /**
+     * Returns the Paeth predictor of a byte.
+     *
+     * @param a byte to the left
+     * @param b byte above
+     * @param c byte above and to the left
+     * @return the neighbor closest to a + b - c
+     */
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc)
+            return a;
+        return pb <= pc ? b : c;
+    }
+
+    /**
+     * Writes all compressed bands following the bands written so far as
+     * IDAT chunks. Has to be called while holding the lock of the writer.
+     *
+     * @throws IOException if the chunks cannot be written
+     */
+    private void writeEncodedBands() throws IOException {
+        while (nextBand < pending.length() && encoded.get(nextBand) != null) {
+            EncodedBand band = encoded.getAndSet(nextBand, null);
+            byte[] data = band.data();
+            if (nextBand == 0) {
+                byte[] first = new byte[ZLIB_HEADER.length + data.length];
+                System.arraycopy(ZLIB_HEADER, 0, first, 0, ZLIB_HEADER.length);
+                System.arraycopy(data, 0, first, ZLIB_HEADER.length, data.length);
+                data = first;
+            }
+            writeChunk("IDAT", data, data.length);
+            adler = combineAdler(adler, band.adler(), band.length());
+            nextBand++;
+        }
+    }
+
+    /**
+     * Combines the Adler-32 checksums of two consecutive byte sequences, as
+     * done by zlib.
+     *
+     * @param adler1  checksum of the first sequence
+     * @param adler2  checksum of the second sequence
+     * @param length2 length of the second sequence
+     * @return checksum of the concatenated sequences
+     */
+    static long combineAdler(long adler1, long adler2, long length2) {
+        long remainder = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = remainder * sum1 % ADLER_BASE;
+        sum1 += (adler2 & 0xFFFF) + ADLER_BASE - 1;
+        sum2 += (adler1 >>> 16 & 0xFFFF) + (adler2 >>> 16 & 0xFFFF) + ADLER_BASE - remainder;
+        if (sum1 >= ADLER_BASE)
+            sum1 -= ADLER_BASE;
+        if (sum1 >= ADLER_BASE)
+            sum1 -= ADLER_BASE;
+        if (sum2 >= 2L * ADLER_BASE)
+            sum2 -= 2L * ADLER_BASE;
+        if (sum2 >= ADLER_BASE)
+            sum2 -= ADLER_BASE;
+        return sum1 | sum2 << 16;
+    }
+
+    /**
+     * Writes a chunk with its length and checksum.
+     *
+     * @param type   chunk type of four ASCII letters
+     * @param data   array holding the chunk data
+     * @param length length of the chunk data
+     * @throws IOException if the chunk cannot be written
+     */
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        ByteBuffer header = ByteBuffer.allocate(8).putInt(length).put(typeBytes).flip();
+        writeFully(header);
+        writeFully(ByteBuffer.wrap(data, 0, length));
+        writeFully(ByteBuffer.allocate(4).putInt((int) crc.getValue()).flip());
+    }
+
+    /**
+     * Writes all remaining bytes of a buffer into the file.
+     *
+     * @param buffer bytes to write
+     * @throws IOException if the bytes cannot be written
+     */
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Returns the number of scanlines of a band cropped to the image.
+     *
+     * @param band index of the band
+     * @return number of scanlines
+     */
+    private int bandRows(int band) {
+        return Math.min(bandHeight, target.getHeight() - band * bandHeight);
+    }
+
+    /**
+     * Compressed scanlines of a band.
+     *
+     * @param data   deflate chunk of the band
+     * @param adler  Adler-32 checksum of the filtered scanlines
+     * @param length number of bytes of the filtered scanlines
+     */
+    private record EncodedBand(byte[] data, long adler, int length) {
+    }
+}
@@ -0,0 +1,142 @@
+package rayrangers.raytracer.view;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Represents a rectangular region of pixels in the viewpane.
+ * Used by the renderer to distribute work in chunks instead of single pixels.
+ */
+public class Tile {
+
+    /**
+     * Horizontal index of the upper left pixel of the tile.
+     */
+    private final int x;
+
+    /**
+     * Vertical index of the upper left pixel of the tile.
+     */
+    private final int y;
+
+    /**
+     * Width of the tile in pixels.
+     */
+    private final int width;
+
+    /**
+     * Height of the tile in pixels.
+     */
+    private final int height;
+
+    /**
+     * Class constructor specifying the position and the size of the tile.
+     *
+     * @param x      horizontal index of the upper left pixel
+     * @param y      vertical index of the upper left pixel
+     * @param width  width in pixels
+     * @param height height in pixels
+     */
+    public Tile(int x, int y, int width, int height) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Splits a pixel grid of the given resolution into tiles of (at most) the
+     * given size. Tiles at the right and bottom border are cropped to the grid.
+     * The tiles are ordered row by row, starting at the upper left corner.
+     *
+     * @param resX     resolution in x-direction
+     * @param resY     resolution in y-direction
+     * @param tileSize edge length of a tile in pixels
+     * @return list of tiles covering the whole grid
+     * @throws IllegalArgumentException if {@code tileSize < 1}
+     */
+    public static List<Tile> split(int resX, int resY, int tileSize) {
+        if (tileSize < 1)
+            throw new IllegalArgumentException("Tile size must be positive.");
+        List<Tile> tiles = new ArrayList<>();
+        for (int j = 0; j < resY; j += tileSize) {
+            for (int i = 0; i < resX; i += tileSize) {
+                tiles.add(new Tile(i, j, Math.min(tileSize, resX - i), Math.min(tileSize, resY - j)));
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Splits a pixel grid like {@link #split(int, int, int)}, but orders the
+     * tiles along a Z-order (Morton) curve over their grid positions.
+     * Every contiguous range of the list covers a compact block of the image,
+     * so when the renderer recursively halves the list, each worker traces
+     * neighbouring rays which hit the same objects. This keeps the working set
+     * of a worker small, e.g. the geometry paged in by a GeometryPager.
+     *
+     * @param resX     resolution in x-direction
+     * @param resY     resolution in y-direction
+     * @param tileSize edge length of a tile in pixels
+     * @return list of tiles covering the whole grid
+     * @throws IllegalArgumentException if {@code tileSize < 1}
+     */
+    public static List<Tile> splitInZOrder(int resX, int resY, int tileSize) {
+        List<Tile> tiles = split(resX, resY, tileSize);
+        tiles.sort(Comparator.comparingLong(tile -> zOrder(tile.x / tileSize, tile.y / tileSize)));
+        return tiles;
+    }
+
+    /**
+     * Interleaves the bits of two grid positions, x in the even bits.
+     *
+     * @param column horizontal grid position
+     * @param row    vertical grid position
+     * @return position on the Z-order curve
+     */
+    private static long zOrder(int column, int row) {
+        long code = 0;
+        for (int bit = 0; bit < 31; bit++) {
+            code |= (long) ((column >> bit) & 1) << (2 * bit);
+            code |= (long) ((row >> bit) & 1) << (2 * bit + 1);
+        }
+        return code;
+    }
+
+    /**
+     * Returns the horizontal index of the upper left pixel.
+     *
+     * @return horizontal pixel index
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Returns the vertical index of the upper left pixel.
+     *
+     * @return vertical pixel index
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Returns the width of the tile.
+     *
+     * @return width in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the tile.
+     *
+     * @return height in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,190 @@
+package rayrangers.raytracer.view;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes images as uncompressed tiled TIFF files with 8 bits per channel.
+ * Images are streamed tile by tile, so only one tile is buffered and images
+ * larger than the heap, e.g. from a {@link MappedFrameBuffer}, can be written.
+ *
+ * File layout (little-endian): header of 8 bytes, followed by the tiles row
+ * by row with three bytes per pixel, then the image file directory and the
+ * values of its tags which do not fit into an entry. Tiles at the right and
+ * bottom border are padded to the full tile size with black pixels.
+ */
+public class TiledTiff {
+
+    /**
+     * Largest size of a classic TIFF file, whose offsets are 32-bit.
+     */
+    private static final long MAX_FILE_SIZE = 0xFFFFFFFFL;
+
+    /**
+     * TIFF field type of 16-bit values.
+     */
+    private static final short SHORT = 3;
+
+    /**
+     * TIFF field type of 32-bit values.
+     */
+    private static final short LONG = 4;
+
+    /**
+     * Number of entries of the image file directory.
+     */
+    private static final int ENTRY_COUNT = 11;
+
+    /**
+     * Private constructor, the class only has static methods.
+     */
+    private TiledTiff() {
+    }
+
+    /**
+     * Writes an image into a file.
+     * The file is written to a temporary file first and then moved to the
+     * path, so a partially written file never replaces an existing one.
+     *
+     * @param image    image to write
+     * @param tileSize edge length of a tile in pixels, e.g. the tile size of a
+     *                 {@link MappedFrameBuffer} so every tile is read from
+     *                 contiguous pages
+     * @param path     path of the file, replaced if it exists
+     * @throws IOException              if the file cannot be written
+     * @throws IllegalArgumentException if the tile size is not a positive
+     *                                  multiple of 16 or the file would be
+     *                                  larger than 4 GB
+     */
+    public static void write(RenderTarget image, int tileSize, Path path) throws IOException {
+        if (tileSize < 16 || tileSize % 16 != 0)
+            throw new IllegalArgumentException("Tile size must be a positive multiple of 16: " + tileSize);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int tilesX = (width + tileSize - 1) / tileSize;
+        int tilesY = (height + tileSize - 1) / tileSize;
+        int tileCount = tilesX * tilesY;
+        int tileBytes = tileSize * tileSize * 3;
+        long directoryOffset = 8 + (long) tileCount * tileBytes;
+        long size = directoryOffset + 2 + ENTRY_COUNT * 12 + 4 + 6 + 8L * tileCount;
+        if (size > MAX_FILE_SIZE)
+            throw new IllegalArgumentException("Image is too large for a TIFF file.");
+
+        Path directory = path.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                header.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt((int) directoryOffset).flip();
+                writeFully(channel, header);
+
+                ByteBuffer tile = ByteBuffer.allocate(tileBytes);
+                for (int ty = 0; ty < tilesY; ty++) {
+                    for (int tx = 0; tx < tilesX; tx++) {
+                        tile.clear();
+                        for (int y = ty * tileSize; y < (ty + 1) * tileSize; y++) {
+                            for (int x = tx * tileSize; x < (tx + 1) * tileSize; x++) {
+                                int rgb = x < width && y < height ? image.getRgb(x, y) : 0;
+                                tile.put((byte) (rgb >> 16)).put((byte) (rgb >> 8)).put((byte) rgb);
+                            }
+                        }
+                        tile.flip();
+                        writeFully(channel, tile);
+                    }
+                }
+                writeFully(channel, encodeDirectory(width, height, tileSize, tileCount, directoryOffset));
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Encodes the image file directory, followed by the bits per sample, the
+     * tile offsets and the tile byte counts.
+     *
+     * @param width           width of the image in pixels
+     * @param height          height of the image in pixels
+     * @param tileSize        edge length of a tile in pixels
+     * @param tileCount       number of tiles
+     * @param directoryOffset offset of the directory in the file
+     * @return encoded directory, ready to be written
+     */
+    private static ByteBuffer encodeDirectory(int width, int height, int tileSize, int tileCount,
+            long directoryOffset) {
+        int tileBytes = tileSize * tileSize * 3;
+        long bitsOffset = directoryOffset + 2 + ENTRY_COUNT * 12 + 4;
+        long offsetsOffset = bitsOffset + 6;
+        long countsOffset = offsetsOffset + 4L * tileCount;
+        ByteBuffer out = ByteBuffer.allocate((int) (countsOffset + 4L * tileCount - directoryOffset))
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        // Entries sorted by tag, values of up to four bytes are stored in the entry
+        out.putShort((short) ENTRY_COUNT);
+        putEntry(out, 256, LONG, 1, width); // ImageWidth
+        putEntry(out, 257, LONG, 1, height); // ImageLength
+        putEntry(out, 258, SHORT, 3, bitsOffset); // BitsPerSample
+        putEntry(out, 259, SHORT, 1, 1); // Compression: none
+        putEntry(out, 262, SHORT, 1, 2); // PhotometricInterpretation: RGB
+        putEntry(out, 277, SHORT, 1, 3); // SamplesPerPixel
+        putEntry(out, 284, SHORT, 1, 1); // PlanarConfiguration: interleaved
+        putEntry(out, 322, LONG, 1, tileSize); // TileWidth
+        putEntry(out, 323, LONG, 1, tileSize); // TileLength
+        putEntry(out, 324, LONG, tileCount, tileCount == 1 ? 8 : offsetsOffset); // TileOffsets
+        putEntry(out, 325, LONG, tileCount, tileCount == 1 ? tileBytes : countsOffset); // TileByteCounts
+        out.putInt(0); // No further directory
+
+        out.putShort((short) 8).putShort((short) 8).putShort((short) 8);
+        for (int t = 0; t < tileCount; t++) {
+            out.putInt((int) (8 + (long) t * tileBytes));
+        }
+        for (int t = 0; t < tileCount; t++) {
+            out.putInt(tileBytes);
+        }
+        return out.flip();
+    }
+
+    /**
+     * Appends an entry of the image file directory.
+     *
+     * @param out   buffer to append to
+     * @param tag   tag of the entry
+     * @param type  field type of the values
+     * @param count number of values
+     * @param value the value if it fits into the entry, the offset of the
+     *              values otherwise
+     */
+    private static void putEntry(ByteBuffer out, int tag, short type, int count, long value) {
+        out.putShort((short) tag).putShort(type).putInt(count);
+        if (type == SHORT && count == 1) {
+            out.putShort((short) value).putShort((short) 0);
+        } else {
+            out.putInt((int) value);
+        }
+    }
+
+    /**
+     * Writes all remaining bytes of a buffer into a channel.
+     *
+     * @param channel channel to write to
+     * @param buffer  bytes to write
+     * @throws IOException if the bytes cannot be written
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package rayrangers.raytracer.view;
+
+/**
+ * Operators mapping linear radiance to display values in [0,1].
+ * The radiance is multiplied by the exposure before it is mapped.
+ */
+public enum ToneMapping {
+
+    /**
+     * Clamps the radiance to [0,1], like the 8-bit output of the shader.
+     */
+    CLAMP {
+        @Override
+        public float map(float x) {
+            return Math.min(1f, Math.max(0f, x));
+        }
+    },
+
+    /**
+     * Reinhard operator x / (1 + x), compressing highlights smoothly.
+     */
+    REINHARD {
+        @Override
+        public float map(float x) {
+            x = Math.max(0f, x);
+            return x / (1f + x);
+        }
+    },
+
+    /**
+     * Filmic curve fitted to the ACES reference rendering transform by
+     * Krzysztof Narkowicz, with a toe in the shadows and a soft shoulder.
+     */
+    FILMIC {
+        @Override
+        public float map(float x) {
+            x = Math.max(0f, x);
+            return Math.min(1f, x * (2.51f * x + 0.03f) / (x * (2.43f * x + 0.59f) + 0.14f));
+        }
+    };
+
+    /**
+     * Maps a single channel.
+     *
+     * @param x exposed linear radiance
+     * @return display value in [0,1]
+     */
+    public abstract float map(float x);
+
+    /**
+     * Maps the channels of a pixel and packs them into an opaque RGB value,
+     * rounding to the nearest 8-bit value.
+     *
+     * @param r        red radiance
+     * @param g        green radiance
+     * @param b        blue radiance
+     * @param exposure factor the radiance is multiplied by
+     * @return packed RGB value, see {@link java.awt.Color#getRGB()}
+     */
+    public int toRgb(float r, float g, float b, float exposure) {
+        return 0xFF000000 | (int) (map(r * exposure) * 255 + 0.5f) << 16
+                | (int) (map(g * exposure) * 255 + 0.5f) << 8 | (int) (map(b * exposure) * 255 + 0.5f);
+    }
+}
@@ -29,10 +29,18 @@ public class ViewPane {
     private final double paneHeight;
 
     /**
-     * One-dimensional array of pixels
-     * representing a two-dimensional grid with i columns and j rows.
+     * Colors of the pixels of the two-dimensional grid with i columns and j rows,
+     * null until it is first used, so very large images can be rendered into
+     * another target without allocating it.
+     * The coordinates of the pixels are computed from their indices.
      */
-    private final Pixel[] pixels;
+    private FrameBuffer frameBuffer;
+
+    /**
+     * Linear radiance of the pixels, null until it is created for high
+     * dynamic range rendering.
+     */
+    private HdrFrameBuffer hdrFrameBuffer;
 
     /**
      * U-coordinate of the upper (or bottom) left edge of the image
@@ -61,33 +69,27 @@ public class ViewPane {
         paneHeight = paneWidth / getAspectRatio(); // Calculate pane height to ensure pixels are squared
         left = -paneWidth / 2;
         top = paneHeight / 2;
-        // Fill pixel array
-        pixels = new Pixel[resX * resY];
-        for (int j = 0; j < resY; j++) {
-            for (int i = 0; i < resX; i++) {
-                // Create Pixel at position (i,j) and set u and v accordingly
-                pixels[j * resX + i] = new Pixel(calculateU(i), calculateV(j));
-            }
-        }
     }
 
     /**
-     * Calculates the coordinate in u-direction
-     * of the pixel at position (i,j).
+     * Calculates the coordinate in u-direction (righthand)
+     * of the pixels in column i.
      * 
+     * @param i horizontal index of the pixel
      * @return pixel coordinate in u-direction
      */
-    private double calculateU(int i) {
+    public double getU(int i) {
         return left + paneWidth * (i + 0.5) / resX;
     }
 
     /**
-     * Calculates the coordinate in v-direction
-     * of the pixel at position (i,j).
+     * Calculates the coordinate in v-direction (up)
+     * of the pixels in row j.
      * 
+     * @param j vertical index of the pixel
      * @return pixel coordinate in v-direction
      */
-    private double calculateV(int j) {
+    public double getV(int j) {
         return top - paneHeight * (j + 0.5) / resY;
     }
 
@@ -138,22 +140,71 @@ public class ViewPane {
     }
 
     /**
-     * Returns the pixels of the viewpane as array..1080px
+     * Returns the frame buffer holding the colors of the pixels, creating it on
+     * the first call.
+     * 
+     * @return frame buffer of the viewpane
+     */
+    public synchronized FrameBuffer getFrameBuffer() {
+        if (frameBuffer == null)
+            frameBuffer = new FrameBuffer(resX, resY);
+        return frameBuffer;
+    }
+
+    /**
+     * Returns the high dynamic range frame buffer holding the linear radiance
+     * of the pixels.
+     * 
+     * @return HDR frame buffer of the viewpane, null if none has been created
+     */
+    public HdrFrameBuffer getHdrFrameBuffer() {
+        return hdrFrameBuffer;
+    }
+
+    /**
+     * Returns the high dynamic range frame buffer, creating it on the first call.
+     * 
+     * @return HDR frame buffer of the viewpane
+     */
+    public synchronized HdrFrameBuffer createHdrFrameBuffer() {
+        if (hdrFrameBuffer == null)
+            hdrFrameBuffer = new HdrFrameBuffer(resX, resY);
+        return hdrFrameBuffer;
+    }
+
+    /**
+     * Tone maps the radiance of the HDR frame buffer into the frame buffer,
+     * e.g. to change the exposure of a rendered image without rendering it again.
+     * 
+     * @param toneMapping operator mapping the radiance to display values
+     * @param exposure    factor the radiance is multiplied by
+     * @throws IllegalStateException if no HDR frame buffer has been created
+     */
+    public void toneMap(ToneMapping toneMapping, float exposure) {
+        if (hdrFrameBuffer == null)
+            throw new IllegalStateException("The viewpane has no HDR frame buffer.");
+        hdrFrameBuffer.toneMap(toneMapping, exposure, getFrameBuffer());
+    }
+
+    /**
+     * Returns the color of the pixel at the specified position on the two-dimensional ViewPane.
      * 
-     * @return pixel array
+     * @param i Horizontal index of the pixel on ViewPane
+     * @param j Vertical index of the pixel on ViewPane
+     * @return packed RGB value, see {@link java.awt.Color#getRGB()}
      */
-    public Pixel[] getPixels() {
-        return pixels;
+    public int getRgbAt(int i, int j) {
+        return getFrameBuffer().getRgb(i, j);
     }
 
     /**
-     * Returns a Pixel at the specified position on the two-dimensional ViewPane.
+     * Sets the color of the pixel at the specified position on the two-dimensional ViewPane.
      * 
-     * @param i Horizontal index of Pixel on ViewPane
-     * @param j Vertical index of Pixel on ViewPane
-     * @return Pixel
+     * @param i   Horizontal index of the pixel on ViewPane
+     * @param j   Vertical index of the pixel on ViewPane
+     * @param rgb packed RGB value, see {@link java.awt.Color#getRGB()}
      */
-    public Pixel getPixelAt(int i, int j) {
-        return pixels[j * resX + i];
+    public void setRgbAt(int i, int j, int rgb) {
+        getFrameBuffer().setRgb(i, j, rgb);
     }
 }
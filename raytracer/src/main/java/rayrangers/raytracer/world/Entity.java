@@ -4,15 +4,28 @@ import java.util.List;
 import java.util.UUID;
 
 import rayrangers.raytracer.algorithm.HitRecord;
+import rayrangers.raytracer.algorithm.HitState;
 import rayrangers.raytracer.algorithm.Ray;
-import rayrangers.raytracer.algorithm.bounding.BoundingVolumeHierarchy;
+import rayrangers.raytracer.algorithm.bounding.Bounded;
+import rayrangers.raytracer.algorithm.bounding.BoundingBox;
+import rayrangers.raytracer.algorithm.bounding.BvhBuildMode;
+import rayrangers.raytracer.algorithm.bounding.BvhUpdateMode;
+import rayrangers.raytracer.algorithm.bounding.LinearBoundingVolumeHierarchy;
+import rayrangers.raytracer.algorithm.bounding.MortonBuilder;
+import rayrangers.raytracer.algorithm.bounding.SplitMethod;
 import rayrangers.raytracer.math.TrafoMatrix;
 import rayrangers.raytracer.math.Vertex3D;
 
 /**
  * Represents an entity (object/mesh) described by a Wavefront OBJ file.
  */
-public class Entity implements Hittable, Transformable {
+public class Entity implements Hittable, Transformable, Bounded {
+
+    /**
+     * Default maximum ratio of the SAH cost after a refit to the cost after the
+     * last build before the BVH tree is rebuilt.
+     */
+    public static final double DEFAULT_REBUILD_THRESHOLD = 1.5;
 
     // TODO: Maybe class TemplateEntity <|---- Entity -------> Hittable,
     // Transformable
@@ -38,9 +51,9 @@ public class Entity implements Hittable, Transformable {
     private List<Face> faces;
 
     /**
-     * List containing all unique vertices of the entity.
+     * Mesh storing the vertices of all faces of the entity.
      */
-    private List<Vertex3D> vertices;
+    private Mesh mesh;
 
     // TODO: Extend by Rotation and Scaling?
     /**
@@ -49,35 +62,73 @@ public class Entity implements Hittable, Transformable {
     private Vertex3D worldPosition;
 
     /**
-     * BVH tree associated with the entity.
+     * BVH tree associated with the entity, flattened into arrays. Volatile,
+     * since it may be built by the first ray entering the entity.
+     */
+    private volatile LinearBoundingVolumeHierarchy bvhTree;
+
+    /**
+     * Bounding box of the mesh while the BVH tree is deferred, null if the
+     * tree has not been deferred since the entity was created.
+     */
+    private BoundingBox deferredBounds;
+
+    /**
+     * Strategy for when the BVH tree is built.
+     */
+    private BvhBuildMode bvhBuildMode = BvhBuildMode.EAGER;
+
+    /**
+     * Strategy used to split the faces when building the BVH tree.
+     */
+    private SplitMethod splitMethod = SplitMethod.MEDIAN;
+
+    /**
+     * Strategy used to update the BVH tree after a transformation.
+     */
+    private BvhUpdateMode bvhUpdateMode = BvhUpdateMode.REFIT;
+
+    /**
+     * Maximum ratio of the SAH cost after a refit to the cost after the last
+     * build, the BVH tree is rebuilt if it is exceeded.
      */
-    private BoundingVolumeHierarchy bvhTree;
+    private double rebuildThreshold = DEFAULT_REBUILD_THRESHOLD;
+
+    /**
+     * Precision the mesh and the BVH tree are stored in.
+     */
+    private GeometryPrecision geometryPrecision = GeometryPrecision.DOUBLE;
+
+    /**
+     * Memory the mesh and the BVH tree are stored in.
+     */
+    private GeometryStorage geometryStorage = GeometryStorage.HEAP;
 
     /**
      * Class constructor with a given UUID.
      * 
      * @param uuid     UUID of the entity
-     * @param name     entity name, null if {@code name == null}
-     * @param faces    face list
-     * @param vertices vertices
+     * @param name  entity name, null if {@code name == null}
+     * @param faces face list, triangles of the given mesh
+     * @param mesh  mesh storing the vertices
      */
-    public Entity(UUID uuid, String name, List<Face> faces, List<Vertex3D> vertices) {
+    public Entity(UUID uuid, String name, List<Face> faces, Mesh mesh) {
         this.uuid = uuid;
         this.name = name;
         this.faces = faces;
-        this.vertices = vertices;
+        this.mesh = mesh;
     }
 
     /**
      * Class constructor without a given UUID.
      * Generates a random UUID for the entity.
      * 
-     * @param name     entity name, null if {@code name == null}
-     * @param faces    face list
-     * @param vertices vertices
+     * @param name  entity name, null if {@code name == null}
+     * @param faces face list, triangles of the given mesh
+     * @param mesh  mesh storing the vertices
      */
-    public Entity(String name, List<Face> faces, List<Vertex3D> vertices) {
-        this(UUID.randomUUID(), name, faces, vertices);
+    public Entity(String name, List<Face> faces, Mesh mesh) {
+        this(UUID.randomUUID(), name, faces, mesh);
     }
 
     /**
@@ -90,12 +141,12 @@ public class Entity implements Hittable, Transformable {
     }
 
     /**
-     * Returns a list of all unique vertices of the entity.
+     * Returns the mesh storing the vertices of the entity.
      * 
-     * @return vertex list
+     * @return mesh
      */
-    public List<Vertex3D> getVertices() {
-        return vertices;
+    public Mesh getMesh() {
+        return mesh;
     }
 
     /**
@@ -125,6 +176,193 @@ public class Entity implements Hittable, Transformable {
         return worldPosition;
     }
 
+    /**
+     * Returns the BVH tree associated with the entity.
+     * 
+     * @return flattened BVH tree, null if the entity has not been transformed yet
+     *         or the tree is deferred until a ray reaches it
+     */
+    public LinearBoundingVolumeHierarchy getBvhTree() {
+        return bvhTree;
+    }
+
+    /**
+     * Sets a BVH tree which was built for the current vertex positions
+     * elsewhere, e.g. read from a mesh cache, instead of building it again.
+     * The split method of the entity is taken over from the tree.
+     * 
+     * @param bvhTree flattened BVH tree over the faces of the entity in their
+     *                current order
+     */
+    public void setBvhTree(LinearBoundingVolumeHierarchy bvhTree) {
+        this.bvhTree = bvhTree;
+        this.splitMethod = bvhTree.getSplitMethod();
+        applyGeometrySettings(bvhTree);
+    }
+
+    /**
+     * Returns the bounding box of the entity in world coordinates.
+     * 
+     * @return bounding box of the BVH tree or of the mesh if the tree is
+     *         deferred, null if the entity has not been transformed yet
+     */
+    @Override
+    public BoundingBox getBoundingBox() {
+        LinearBoundingVolumeHierarchy tree = bvhTree;
+        return tree == null ? deferredBounds : tree.getBoundingBox();
+    }
+
+    /**
+     * Returns the strategy used to split the faces when building the BVH tree.
+     * 
+     * @return split method
+     */
+    public SplitMethod getSplitMethod() {
+        return splitMethod;
+    }
+
+    /**
+     * Sets the strategy used to split the faces when building the BVH tree.
+     * Takes effect on the next transformation, which then rebuilds the tree.
+     * 
+     * @param splitMethod split method
+     */
+    public void setSplitMethod(SplitMethod splitMethod) {
+        this.splitMethod = splitMethod;
+    }
+
+    /**
+     * Returns the strategy used to update the BVH tree after a transformation.
+     * 
+     * @return update mode
+     */
+    public BvhUpdateMode getBvhUpdateMode() {
+        return bvhUpdateMode;
+    }
+
+    /**
+     * Sets the strategy used to update the BVH tree after a transformation.
+     * 
+     * @param bvhUpdateMode update mode
+     */
+    public void setBvhUpdateMode(BvhUpdateMode bvhUpdateMode) {
+        this.bvhUpdateMode = bvhUpdateMode;
+    }
+
+    /**
+     * Returns the strategy for when the BVH tree is built.
+     * 
+     * @return build mode
+     */
+    public BvhBuildMode getBvhBuildMode() {
+        return bvhBuildMode;
+    }
+
+    /**
+     * Sets the strategy for when the BVH tree is built. Takes effect on the
+     * next transformation.
+     * 
+     * @param bvhBuildMode build mode
+     * @see BvhBuildMode
+     */
+    public void setBvhBuildMode(BvhBuildMode bvhBuildMode) {
+        this.bvhBuildMode = bvhBuildMode;
+    }
+
+    /**
+     * Returns the maximum ratio of the SAH cost after a refit to the cost after
+     * the last build.
+     * 
+     * @return rebuild threshold
+     */
+    public double getRebuildThreshold() {
+        return rebuildThreshold;
+    }
+
+    /**
+     * Sets the maximum ratio of the SAH cost after a refit to the cost after the
+     * last build. If a refit exceeds it, the BVH tree is rebuilt.
+     * 
+     * @param rebuildThreshold rebuild threshold, at least 1
+     * @throws IllegalArgumentException if {@code rebuildThreshold < 1}
+     */
+    public void setRebuildThreshold(double rebuildThreshold) {
+        if (rebuildThreshold < 1)
+            throw new IllegalArgumentException("Rebuild threshold must be at least 1.");
+        this.rebuildThreshold = rebuildThreshold;
+    }
+
+    /**
+     * Returns the precision the mesh and the BVH tree are stored in.
+     * 
+     * @return geometry precision
+     */
+    public GeometryPrecision getGeometryPrecision() {
+        return geometryPrecision;
+    }
+
+    /**
+     * Sets the precision the mesh and the BVH tree are stored in and converts
+     * both immediately. Geometry stored off-heap stays in single precision, the
+     * precision applies once it is moved back to the heap.
+     * 
+     * @param geometryPrecision geometry precision
+     * @see GeometryPrecision
+     */
+    public void setGeometryPrecision(GeometryPrecision geometryPrecision) {
+        this.geometryPrecision = geometryPrecision;
+        if (geometryStorage == GeometryStorage.HEAP) {
+            mesh.setPrecision(geometryPrecision);
+            if (bvhTree != null) {
+                // Bounds rounded outwards still enclose the vertices rounded to the nearest float
+                bvhTree.setPrecision(geometryPrecision);
+            }
+        }
+        updateDeferredBounds();
+    }
+
+    /**
+     * Returns the memory the mesh and the BVH tree are stored in.
+     * 
+     * @return geometry storage
+     */
+    public GeometryStorage getGeometryStorage() {
+        return geometryStorage;
+    }
+
+    /**
+     * Sets the memory the mesh and the BVH tree are stored in and moves both
+     * immediately. Trees built later are moved as well.
+     * 
+     * @param geometryStorage geometry storage
+     * @see GeometryStorage
+     */
+    public void setGeometryStorage(GeometryStorage geometryStorage) {
+        this.geometryStorage = geometryStorage;
+        mesh.setStorage(geometryStorage);
+        if (geometryStorage == GeometryStorage.HEAP) {
+            mesh.setPrecision(geometryPrecision);
+        }
+        if (bvhTree != null) {
+            applyGeometrySettings(bvhTree);
+        }
+        updateDeferredBounds();
+    }
+
+    /**
+     * Converts a BVH tree to the geometry precision and storage of the entity.
+     * 
+     * @param tree flattened BVH tree
+     */
+    private void applyGeometrySettings(LinearBoundingVolumeHierarchy tree) {
+        if (geometryStorage == GeometryStorage.OFF_HEAP) {
+            tree.setStorage(GeometryStorage.OFF_HEAP);
+        } else {
+            tree.setStorage(GeometryStorage.HEAP);
+            tree.setPrecision(geometryPrecision);
+        }
+    }
+
     /**
      * Sets the entity name.
      * 
@@ -139,15 +377,38 @@ public class Entity implements Hittable, Transformable {
      */
     @Override
     public boolean hit(Ray ray, double t0, double t1, HitRecord record) {
-        boolean hit = false;
+        HitState state = HitState.current();
+        state.reset();
+        return closestHit(ray, t0, t1, state) && state.fillHitRecord(ray, record);
+    }
+
+    /**
+     * @see Bounded
+     */
+    @Override
+    public boolean closestHit(Ray ray, double t0, double t1, HitState state) {
         // TODO: Deal with entities without transformations
+        LinearBoundingVolumeHierarchy tree = bvhTree;
+        if (tree == null) {
+            if (deferredBounds == null || deferredBounds.intersect(ray, t0, t1) == BoundingBox.MISS) {
+                return false;
+            }
+            tree = awaitBvhTree();
+        }
+        return tree.closestHit(ray, t0, t1, state);
+    }
 
-        // Check if the ray hits anything in the BVH tree
-        // and if t lies within interval [t0,t1]
-        if (bvhTree != null && bvhTree.hit(ray, t0, t1, record) && record.getT() <= t1 && record.getT() >= t0) {
-            hit = true;
+    /**
+     * Builds the deferred BVH tree once. Threads reaching the entity while it
+     * is built wait for the tree.
+     * 
+     * @return flattened BVH tree
+     */
+    private synchronized LinearBoundingVolumeHierarchy awaitBvhTree() {
+        if (bvhTree == null) {
+            buildBvhTree();
         }
-        return hit;
+        return bvhTree;
     }
 
     /**
@@ -156,9 +417,80 @@ public class Entity implements Hittable, Transformable {
     @Override
     public void transform(TrafoMatrix tm) {
         // Transform all vertices of the Entity
-        for (Vertex3D vertex : vertices) {
-            vertex.transform(tm);
+        mesh.transform(tm);
+        if (bvhTree == null || bvhUpdateMode == BvhUpdateMode.REBUILD || bvhTree.getSplitMethod() != splitMethod) {
+            if (bvhBuildMode == BvhBuildMode.LAZY) {
+                deferBvhTree();
+            } else {
+                buildBvhTree();
+            }
+            return;
+        }
+        // Refit the existing tree, rebuild it only if its quality degraded too much
+        double cost = bvhTree.refit();
+        if (cost > rebuildThreshold * bvhTree.getBuildSahCost()) {
+            buildBvhTree();
+        }
+    }
+
+    /**
+     * Builds the BVH tree for the current vertex positions.
+     * Called by {@link #transform(TrafoMatrix)}; meshes which are only rendered
+     * through instances can be prepared in object space without transforming
+     * them.
+     * Trees split by Morton code are written directly into the flattened
+     * arrays by the {@link MortonBuilder}.
+     * 
+     * @see Instance
+     */
+    public void buildBvhTree() {
+        LinearBoundingVolumeHierarchy tree = splitMethod == SplitMethod.MORTON ? MortonBuilder.build(faces)
+                : new LinearBoundingVolumeHierarchy(faces, splitMethod);
+        applyGeometrySettings(tree);
+        // Rays may traverse the tree as soon as it is assigned
+        bvhTree = tree;
+    }
+
+    /**
+     * Discards the BVH tree and only computes the bounding box of the mesh.
+     * The tree is built when the first ray enters the box. Called by
+     * {@link #transform(TrafoMatrix)} in {@link BvhBuildMode#LAZY}; meshes
+     * which are only rendered through instances can be prepared like with
+     * {@link #buildBvhTree()}.
+     */
+    public void deferBvhTree() {
+        bvhTree = null;
+        deferredBounds = meshBounds();
+    }
+
+    /**
+     * Recomputes the deferred bounds after the mesh was converted, since
+     * vertices rounded to the nearest float may leave the previous box.
+     */
+    private void updateDeferredBounds() {
+        if (bvhTree == null && deferredBounds != null) {
+            deferredBounds = meshBounds();
+        }
+    }
+
+    /**
+     * Computes the bounding box of all vertices of the mesh.
+     * 
+     * @return bounding box, null if the mesh has no vertices
+     */
+    private BoundingBox meshBounds() {
+        if (mesh.getVertexCount() == 0) {
+            return null;
+        }
+        double[] min = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+        double[] max = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+        for (int v = 0; v < mesh.getVertexCount(); v++) {
+            for (int axis = 0; axis < 3; axis++) {
+                double c = mesh.getCoord(v, axis);
+                min[axis] = Math.min(min[axis], c);
+                max[axis] = Math.max(max[axis], c);
+            }
         }
-        bvhTree = new BoundingVolumeHierarchy(faces);
+        return new BoundingBox(min[0], max[0], min[1], max[1], min[2], max[2]);
     }
 }
\ No newline at end of file
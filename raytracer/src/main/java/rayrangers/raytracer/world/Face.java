@@ -1,5 +1,7 @@
 package rayrangers.raytracer.world;
 
+import rayrangers.raytracer.algorithm.HitRecord;
+import rayrangers.raytracer.algorithm.Ray;
 import rayrangers.raytracer.math.Vertex3D;
 
 /**
@@ -11,6 +13,12 @@ import rayrangers.raytracer.math.Vertex3D;
  */
 public abstract class Face implements Hittable {
 
+    /**
+     * Value returned by {@link #intersect(Ray, double, double)} if the ray misses
+     * the face.
+     */
+    public static final double MISS = Double.POSITIVE_INFINITY;
+
     /**
      * Material of the face.
      */
@@ -70,6 +78,56 @@ public abstract class Face implements Hittable {
      */
     public abstract Vertex3D[] getAllVert();
 
+    /**
+     * Extends bounds (min x1, min x2, min x3, max x1, max x2, max x3) such that
+     * they enclose the face.
+     * 
+     * @param bounds array containing the bounds
+     * @param offset index of min x1 in the array
+     */
+    public void enclose(double[] bounds, int offset) {
+        for (Vertex3D vertex : getAllVert()) {
+            for (int axis = 0; axis < 3; axis++) {
+                bounds[offset + axis] = Math.min(bounds[offset + axis], vertex.getCoord(axis + 1));
+                bounds[offset + axis + 3] = Math.max(bounds[offset + axis + 3], vertex.getCoord(axis + 1));
+            }
+        }
+    }
+
+    /**
+     * Checks if a ray hits the face in the specified interval [t0; t1]
+     * without allocating any objects.
+     * 
+     * @param ray Ray to check for a hit
+     * @param t0  Minimum ray parameter
+     * @param t1  Maximum ray parameter
+     * @return ray parameter of the hit, {@link #MISS} if there is none
+     */
+    public abstract double intersect(Ray ray, double t0, double t1);
+
+    /**
+     * Fills a hit record for a hit of the given ray at ray parameter t.
+     * 
+     * @param ray    Ray that hit the face
+     * @param t      ray parameter of the hit returned by
+     *               {@link #intersect(Ray, double, double)}
+     * @param record Hit record to fill
+     */
+    public abstract void fillHitRecord(Ray ray, double t, HitRecord record);
+
+    /**
+     * @see Hittable
+     */
+    @Override
+    public boolean hit(Ray ray, double t0, double t1, HitRecord record) {
+        double t = intersect(ray, t0, t1);
+        if (t == MISS) {
+            return false;
+        }
+        fillHitRecord(ray, t, record);
+        return true;
+    }
+
     /**
      * Calculates the center point of a Face.
      * 
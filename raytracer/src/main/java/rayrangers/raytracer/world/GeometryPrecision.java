@@ -0,0 +1,20 @@
+package rayrangers.raytracer.world;
+
+/**
+ * Floating-point precision used to store mesh vertices and BVH bounds.
+ * Intersections are always computed in double precision.
+ */
+public enum GeometryPrecision {
+
+    /**
+     * Stores coordinates as doubles (8 bytes per value).
+     */
+    DOUBLE,
+
+    /**
+     * Stores coordinates as floats (4 bytes per value), halving the memory of
+     * meshes and BVH trees. Vertices are rounded to the nearest float, BVH
+     * bounds are rounded outwards, so boxes still enclose their faces.
+     */
+    FLOAT
+}
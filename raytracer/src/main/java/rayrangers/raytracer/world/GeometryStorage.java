@@ -0,0 +1,40 @@
+package rayrangers.raytracer.world;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Memory mesh vertices, indices and BVH nodes are stored in.
+ */
+public enum GeometryStorage {
+
+    /**
+     * Stores the geometry in arrays on the Java heap, in the geometry
+     * precision of the entity.
+     */
+    HEAP,
+
+    /**
+     * Stores the geometry in direct buffers outside the Java heap, always in
+     * single precision. The heap only holds the buffer objects, so the garbage
+     * collector neither copies nor accounts for the geometry and scenes can be
+     * larger than the maximum heap size. The memory is released when the
+     * buffers become unreachable. A single buffer holds at most 2 GB, e.g.
+     * about 178 million vertices per mesh.
+     */
+    OFF_HEAP;
+
+    /**
+     * Allocates a direct buffer for four-byte values in native byte order, as
+     * used for {@link #OFF_HEAP} geometry.
+     *
+     * @param values number of values
+     * @return direct buffer
+     * @throws IllegalArgumentException if the buffer would exceed 2 GB
+     */
+    public static ByteBuffer allocateDirect(int values) {
+        if (values > Integer.MAX_VALUE / 4)
+            throw new IllegalArgumentException("Too many values for an off-heap buffer: " + values + ".");
+        return ByteBuffer.allocateDirect(values * 4).order(ByteOrder.nativeOrder());
+    }
+}
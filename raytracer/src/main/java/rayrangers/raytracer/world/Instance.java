@@ -0,0 +1,263 @@
+package rayrangers.raytracer.world;
+
+import java.util.UUID;
+
+import rayrangers.raytracer.algorithm.HitRecord;
+import rayrangers.raytracer.algorithm.HitState;
+import rayrangers.raytracer.algorithm.Ray;
+import rayrangers.raytracer.algorithm.bounding.Bounded;
+import rayrangers.raytracer.algorithm.bounding.BoundingBox;
+import rayrangers.raytracer.algorithm.bounding.BvhBuildMode;
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.math.Vector3D;
+import rayrangers.raytracer.math.Vertex3D;
+
+/**
+ * Represents a transformed copy of an entity that shares the vertices, faces
+ * and BVH tree of the entity.
+ * Instead of transforming the mesh, rays are transformed into the object space
+ * of the entity with the cached inverse transformation. An instance only stores
+ * its transformation and bounds, so placing many copies of a mesh does not
+ * copy its vertices or build additional BVH trees.
+ */
+public final class Instance implements Hittable, Transformable, Bounded {
+
+    /**
+     * Randomly generated UUID of the instance.
+     */
+    private UUID uuid;
+
+    /**
+     * Shared entity in object space.
+     */
+    private Entity entity;
+
+    /**
+     * Transformation from object space to world space.
+     */
+    private TrafoMatrix transformation;
+
+    /**
+     * Cached upper three rows of the transformation (row-major).
+     */
+    private double[] toWorld = new double[12];
+
+    /**
+     * Cached upper three rows of the inverse transformation (row-major).
+     */
+    private double[] toObject = new double[12];
+
+    /**
+     * Bounding box of the transformed entity in world space.
+     */
+    private BoundingBox boundingBox;
+
+    /**
+     * Class constructor with a given UUID.
+     * Builds the BVH tree of the entity in object space if it has none yet,
+     * or only its bounds if the entity builds its tree lazily.
+     *
+     * @param uuid           UUID of the instance
+     * @param entity         shared entity in object space
+     * @param transformation transformation from object space to world space
+     * @throws ArithmeticException if the transformation cannot be inverted
+     */
+    public Instance(UUID uuid, Entity entity, TrafoMatrix transformation) {
+        this.uuid = uuid;
+        this.entity = entity;
+        if (entity.getBoundingBox() == null) {
+            if (entity.getBvhBuildMode() == BvhBuildMode.LAZY) {
+                entity.deferBvhTree();
+            } else {
+                entity.buildBvhTree();
+            }
+        }
+        setTransformation(transformation);
+    }
+
+    /**
+     * Class constructor without a given UUID.
+     * Generates a random UUID for the instance.
+     *
+     * @param entity         shared entity in object space
+     * @param transformation transformation from object space to world space
+     * @throws ArithmeticException if the transformation cannot be inverted
+     */
+    public Instance(Entity entity, TrafoMatrix transformation) {
+        this(UUID.randomUUID(), entity, transformation);
+    }
+
+    /**
+     * Sets the transformation and updates the cached inverse and bounds.
+     *
+     * @param transformation transformation from object space to world space
+     */
+    private void setTransformation(TrafoMatrix transformation) {
+        TrafoMatrix inverse = transformation.inverse();
+        this.transformation = transformation;
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 4; j++) {
+                toWorld[i * 4 + j] = transformation.getElement(i, j);
+                toObject[i * 4 + j] = inverse.getElement(i, j);
+            }
+        }
+        updateBoundingBox();
+    }
+
+    /**
+     * Updates the world space bounds from the current bounds of the shared
+     * entity, e.g. after the entity changed its geometry precision.
+     */
+    void updateBoundingBox() {
+        // Enclose all eight transformed corners of the object space box
+        BoundingBox objectBox = entity.getBoundingBox();
+        double[] min = { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+        double[] max = { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+        for (int corner = 0; corner < 8; corner++) {
+            double x1 = (corner & 1) == 0 ? objectBox.getMin(0) : objectBox.getMax(0);
+            double x2 = (corner & 2) == 0 ? objectBox.getMin(1) : objectBox.getMax(1);
+            double x3 = (corner & 4) == 0 ? objectBox.getMin(2) : objectBox.getMax(2);
+            for (int i = 0; i < 3; i++) {
+                double c = toWorld[i * 4] * x1 + toWorld[i * 4 + 1] * x2 + toWorld[i * 4 + 2] * x3
+                        + toWorld[i * 4 + 3];
+                min[i] = Math.min(min[i], c);
+                max[i] = Math.max(max[i], c);
+            }
+        }
+        boundingBox = new BoundingBox(min[0], max[0], min[1], max[1], min[2], max[2]);
+    }
+
+    /**
+     * Returns the UUID of the instance.
+     *
+     * @return UUID
+     */
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    /**
+     * Returns the shared entity.
+     *
+     * @return entity in object space
+     */
+    public Entity getEntity() {
+        return entity;
+    }
+
+    /**
+     * Returns the transformation from object space to world space.
+     *
+     * @return transformation matrix
+     */
+    public TrafoMatrix getTransformation() {
+        return transformation;
+    }
+
+    /**
+     * Returns the bounding box of the instance in world coordinates.
+     *
+     * @return bounding box
+     */
+    @Override
+    public BoundingBox getBoundingBox() {
+        return boundingBox;
+    }
+
+    /**
+     * Applies the transformation on top of the current one.
+     * The shared entity is not modified.
+     *
+     * @see Transformable
+     */
+    @Override
+    public void transform(TrafoMatrix tm) {
+        setTransformation(tm.matrMult(transformation));
+    }
+
+    /**
+     * @see Hittable
+     */
+    @Override
+    public boolean hit(Ray ray, double t0, double t1, HitRecord record) {
+        HitState state = HitState.current();
+        state.reset();
+        return closestHit(ray, t0, t1, state) && state.fillHitRecord(ray, record);
+    }
+
+    /**
+     * Transforms the ray into object space and searches the closest hit in the
+     * BVH tree of the shared entity.
+     * The direction is not normalized, so ray parameters are equal in object
+     * and world space.
+     *
+     * @see Bounded
+     */
+    @Override
+    public boolean closestHit(Ray ray, double t0, double t1, HitState state) {
+        Ray objectRay = state.getObjectRay();
+        toObjectSpace(ray, objectRay.getOrigin().getlocationVector().getCoordinates(),
+                objectRay.getDirection().getCoordinates());
+        if (entity.closestHit(objectRay, t0, t1, state)) {
+            state.setInstance(this);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Transforms origin and direction of a world space ray into object space.
+     *
+     * @param ray       ray in world space
+     * @param origin    array the origin in object space is written to
+     * @param direction array the direction in object space is written to
+     */
+    private void toObjectSpace(Ray ray, double[] origin, double[] direction) {
+        double[] o = ray.getOrigin().getlocationVector().getCoordinates();
+        double[] d = ray.getDirection().getCoordinates();
+        for (int i = 0; i < 3; i++) {
+            origin[i] = toObject[i * 4] * o[0] + toObject[i * 4 + 1] * o[1] + toObject[i * 4 + 2] * o[2]
+                    + toObject[i * 4 + 3];
+            direction[i] = toObject[i * 4] * d[0] + toObject[i * 4 + 1] * d[1] + toObject[i * 4 + 2] * d[2];
+        }
+    }
+
+    /**
+     * Fills the hit record for a face of the shared entity hit by a world space
+     * ray. The face fills the record in object space, afterwards hit point,
+     * view ray direction, normal vector and vertices are converted into world
+     * space, so shading does not depend on whether a mesh is instanced.
+     *
+     * @param ray    ray in world space
+     * @param face   hit face of the shared entity
+     * @param t      ray parameter of the hit
+     * @param record hit record to fill
+     */
+    public void fillHitRecord(Ray ray, Face face, double t, HitRecord record) {
+        Ray objectRay = new Ray(new Vertex3D(0, 0, 0), new Vector3D(0, 0, 0));
+        toObjectSpace(ray, objectRay.getOrigin().getlocationVector().getCoordinates(),
+                objectRay.getDirection().getCoordinates());
+        face.fillHitRecord(objectRay, t, record);
+
+        record.setHitPoint(ray.pointAt(t));
+        record.setViewRayDirection(ray.getDirection());
+
+        // Normals are transformed with the transposed inverse
+        double[] n = record.getNormalVector().getCoordinates();
+        record.setNormalVector(new Vector3D(
+                toObject[0] * n[0] + toObject[4] * n[1] + toObject[8] * n[2],
+                toObject[1] * n[0] + toObject[5] * n[1] + toObject[9] * n[2],
+                toObject[2] * n[0] + toObject[6] * n[1] + toObject[10] * n[2]).normalize());
+
+        Vertex3D[] objectVertices = record.getAllVert();
+        Vertex3D[] worldVertices = new Vertex3D[objectVertices.length];
+        for (int v = 0; v < objectVertices.length; v++) {
+            double[] p = objectVertices[v].getlocationVector().getCoordinates();
+            worldVertices[v] = new Vertex3D(
+                    toWorld[0] * p[0] + toWorld[1] * p[1] + toWorld[2] * p[2] + toWorld[3],
+                    toWorld[4] * p[0] + toWorld[5] * p[1] + toWorld[6] * p[2] + toWorld[7],
+                    toWorld[8] * p[0] + toWorld[9] * p[1] + toWorld[10] * p[2] + toWorld[11]);
+        }
+        record.setAllVert(worldVertices);
+    }
+}
@@ -58,6 +58,12 @@ public class Material {
      */
     private final int illum;
 
+    /**
+     * Ambient, diffuse and specular color scaled to [0,1], three channels
+     * each, precomputed for shading. Missing colors are black.
+     */
+    private final float[] coefficients = new float[9];
+
     /**
      * Class constructor specifying the name and characteristics of the material.
      * 
@@ -77,6 +83,53 @@ public class Material {
         this.ns = ns;
         this.d = d;
         this.illum = illum;
+        setCoefficients(0, ka);
+        setCoefficients(3, kd);
+        setCoefficients(6, ks);
+    }
+
+    /**
+     * Stores the channels of a color scaled to [0,1].
+     * 
+     * @param offset index of the red channel in the coefficients
+     * @param color  color, black if null
+     */
+    private void setCoefficients(int offset, Color color) {
+        if (color != null) {
+            coefficients[offset] = color.getRed() / 255f;
+            coefficients[offset + 1] = color.getGreen() / 255f;
+            coefficients[offset + 2] = color.getBlue() / 255f;
+        }
+    }
+
+    /**
+     * Returns a channel of the ambient color scaled to [0,1].
+     * 
+     * @param channel 0 for red, 1 for green, 2 for blue
+     * @return  ambient coefficient
+     */
+    public float getAmbientCoefficient(int channel) {
+        return coefficients[channel];
+    }
+
+    /**
+     * Returns a channel of the diffuse color scaled to [0,1].
+     * 
+     * @param channel 0 for red, 1 for green, 2 for blue
+     * @return  diffuse coefficient
+     */
+    public float getDiffuseCoefficient(int channel) {
+        return coefficients[3 + channel];
+    }
+
+    /**
+     * Returns a channel of the specular color scaled to [0,1].
+     * 
+     * @param channel 0 for red, 1 for green, 2 for blue
+     * @return  specular coefficient
+     */
+    public float getSpecularCoefficient(int channel) {
+        return coefficients[6 + channel];
     }
 
     /**
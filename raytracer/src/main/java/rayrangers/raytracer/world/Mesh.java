@@ -0,0 +1,748 @@
+package rayrangers.raytracer.world;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.math.Vector3D;
+import rayrangers.raytracer.math.Vertex3D;
+
+/**
+ * Represents a triangle mesh stored as struct of arrays.
+ * Vertex positions and normal vectors are packed into contiguous double
+ * arrays (three values per vertex) and triangles into an int array of vertex
+ * indices (three per triangle). Compared to a Vertex3D with its Vector3D and
+ * coordinate array (about 80 bytes per vertex) a vertex takes 24 bytes, or 48
+ * with a normal vector, and no object has to be allocated per vertex.
+ * The arrays grow while vertices and triangles are added. With
+ * {@link GeometryPrecision#FLOAT} positions and normal vectors are stored as
+ * floats, which halves their size again.
+ * A mesh can also wrap single precision buffers, e.g. views of a memory-mapped
+ * file, which are read and transformed in place and only copied into arrays
+ * when the mesh grows or is converted to double precision. With
+ * {@link GeometryStorage#OFF_HEAP} the mesh is moved into such buffers
+ * allocated outside the Java heap.
+ */
+public class Mesh {
+
+    /**
+     * Initial capacity of vertices and triangles of an empty mesh.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Positions of all vertices: (x1, x2, x3) per vertex.
+     * Null if stored in single precision.
+     */
+    private double[] positions;
+
+    /**
+     * Normal vectors of all vertices: (x1, x2, x3) per vertex, NaN for vertices
+     * without normal vector. Null as long as no vertex has a normal vector or
+     * if stored in single precision.
+     */
+    private double[] normals;
+
+    /**
+     * Positions of all vertices in single precision, null if stored in double
+     * precision.
+     */
+    private float[] floatPositions;
+
+    /**
+     * Normal vectors of all vertices in single precision, null if stored in
+     * double precision or if no vertex has a normal vector.
+     */
+    private float[] floatNormals;
+
+    /**
+     * Positions of all vertices in single precision if the mesh wraps buffers,
+     * null if stored in arrays.
+     */
+    private FloatBuffer positionBuffer;
+
+    /**
+     * Normal vectors of all vertices in single precision if the mesh wraps
+     * buffers, null if stored in arrays or if no vertex has a normal vector.
+     */
+    private FloatBuffer normalBuffer;
+
+    /**
+     * Vertex indices of all triangles if the mesh wraps buffers, null if stored
+     * in arrays.
+     */
+    private IntBuffer indexBuffer;
+
+    /**
+     * Precision the positions and normal vectors are stored in.
+     */
+    private GeometryPrecision precision = GeometryPrecision.DOUBLE;
+
+    /**
+     * Vertex indices of all triangles: three per triangle. Null if the mesh
+     * wraps buffers.
+     */
+    private int[] indices;
+
+    /**
+     * Number of vertices in the mesh.
+     */
+    private int vertexCount;
+
+    /**
+     * Number of triangles in the mesh.
+     */
+    private int triangleCount;
+
+    /**
+     * Class constructor for an empty mesh.
+     */
+    public Mesh() {
+        this(DEFAULT_CAPACITY, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Class constructor for an empty mesh with the given initial capacities.
+     *
+     * @param vertexCapacity   expected number of vertices
+     * @param triangleCapacity expected number of triangles
+     */
+    public Mesh(int vertexCapacity, int triangleCapacity) {
+        positions = new double[Math.max(vertexCapacity, 1) * 3];
+        indices = new int[Math.max(triangleCapacity, 1) * 3];
+    }
+
+    /**
+     * Class constructor wrapping already packed arrays without copying them.
+     *
+     * @param positions three coordinates per vertex
+     * @param normals   three coordinates per vertex (NaN for none), may be null
+     * @param indices   three vertex indices per triangle
+     * @throws IllegalArgumentException if the array lengths do not match or an
+     *                                  index is out of range
+     */
+    public Mesh(double[] positions, double[] normals, int[] indices) {
+        if (positions.length % 3 != 0 || indices.length % 3 != 0
+                || (normals != null && normals.length != positions.length))
+            throw new IllegalArgumentException("Array lengths do not describe a triangle mesh.");
+        this.positions = positions;
+        this.normals = normals;
+        this.indices = indices;
+        vertexCount = positions.length / 3;
+        triangleCount = indices.length / 3;
+        for (int index : indices) {
+            if (index < 0 || index >= vertexCount)
+                throw new IllegalArgumentException("Invalid vertex index " + index + ".");
+        }
+    }
+
+    /**
+     * Class constructor wrapping single precision buffers without copying
+     * them, e.g. views of a memory-mapped file. The values from the current
+     * position to the limit of each buffer are used.
+     * Vertices are read from and transformed in the buffers. Adding vertices
+     * or triangles, setting the first normal vector, converting the mesh to
+     * double precision or writing to read-only buffers copies the buffers into
+     * arrays.
+     *
+     * @param positions three coordinates per vertex
+     * @param normals   three coordinates per vertex (NaN for none), may be null
+     * @param indices   three vertex indices per triangle
+     * @throws IllegalArgumentException if the buffer sizes do not match or an
+     *                                  index is out of range
+     */
+    public Mesh(FloatBuffer positions, FloatBuffer normals, IntBuffer indices) {
+        if (positions.remaining() % 3 != 0 || indices.remaining() % 3 != 0
+                || (normals != null && normals.remaining() != positions.remaining()))
+            throw new IllegalArgumentException("Buffer sizes do not describe a triangle mesh.");
+        positionBuffer = positions.slice();
+        normalBuffer = normals != null ? normals.slice() : null;
+        indexBuffer = indices.slice();
+        precision = GeometryPrecision.FLOAT;
+        vertexCount = positionBuffer.capacity() / 3;
+        triangleCount = indexBuffer.capacity() / 3;
+        for (int i = 0; i < triangleCount * 3; i++) {
+            int index = indexBuffer.get(i);
+            if (index < 0 || index >= vertexCount)
+                throw new IllegalArgumentException("Invalid vertex index " + index + ".");
+        }
+    }
+
+    /**
+     * Adds a vertex.
+     *
+     * @param x1 coordinate of x1-dimension
+     * @param x2 coordinate of x2-dimension
+     * @param x3 coordinate of x3-dimension
+     * @return index of the vertex
+     */
+    public int addVertex(double x1, double x2, double x3) {
+        copyBuffers();
+        if (vertexCount == getVertexCapacity()) {
+            resizeVertices(Math.max(vertexCount * 2, 1));
+        }
+        int p = vertexCount * 3;
+        setPosition(p, x1);
+        setPosition(p + 1, x2);
+        setPosition(p + 2, x3);
+        return vertexCount++;
+    }
+
+    /**
+     * Returns the number of vertices fitting into the position array.
+     *
+     * @return vertex capacity
+     */
+    private int getVertexCapacity() {
+        return (positions != null ? positions.length : floatPositions.length) / 3;
+    }
+
+    /**
+     * Resizes the position and normal arrays, new normal vectors are NaN.
+     *
+     * @param capacity new vertex capacity
+     */
+    private void resizeVertices(int capacity) {
+        int length = capacity * 3;
+        if (positions != null) {
+            positions = Arrays.copyOf(positions, length);
+        } else {
+            floatPositions = Arrays.copyOf(floatPositions, length);
+        }
+        if (normals != null) {
+            normals = Arrays.copyOf(normals, length);
+            Arrays.fill(normals, vertexCount * 3, length, Double.NaN);
+        } else if (floatNormals != null) {
+            floatNormals = Arrays.copyOf(floatNormals, length);
+            Arrays.fill(floatNormals, vertexCount * 3, length, Float.NaN);
+        }
+    }
+
+    /**
+     * Sets the normal vector of a vertex.
+     *
+     * @param vertex index of the vertex
+     * @param x1     coordinate of x1-dimension
+     * @param x2     coordinate of x2-dimension
+     * @param x3     coordinate of x3-dimension
+     * @throws IndexOutOfBoundsException if the vertex does not exist
+     */
+    public void setNormal(int vertex, double x1, double x2, double x3) {
+        checkVertex(vertex);
+        if (normalBuffer == null || normalBuffer.isReadOnly()) {
+            copyBuffers();
+        }
+        if (normals == null && floatNormals == null && normalBuffer == null) {
+            if (precision == GeometryPrecision.DOUBLE) {
+                normals = new double[getVertexCapacity() * 3];
+                Arrays.fill(normals, Double.NaN);
+            } else {
+                floatNormals = new float[getVertexCapacity() * 3];
+                Arrays.fill(floatNormals, Float.NaN);
+            }
+        }
+        setNormalValue(vertex * 3, x1);
+        setNormalValue(vertex * 3 + 1, x2);
+        setNormalValue(vertex * 3 + 2, x3);
+    }
+
+    /**
+     * Adds a triangle between three existing vertices.
+     *
+     * @param v1 index of vertex 1
+     * @param v2 index of vertex 2
+     * @param v3 index of vertex 3
+     * @return index of the triangle
+     * @throws IndexOutOfBoundsException if a vertex does not exist
+     */
+    public int addTriangle(int v1, int v2, int v3) {
+        checkVertex(v1);
+        checkVertex(v2);
+        checkVertex(v3);
+        copyBuffers();
+        if (triangleCount * 3 == indices.length) {
+            indices = Arrays.copyOf(indices, Math.max(indices.length * 2, 3));
+        }
+        int i = triangleCount * 3;
+        indices[i] = v1;
+        indices[i + 1] = v2;
+        indices[i + 2] = v3;
+        return triangleCount++;
+    }
+
+    /**
+     * Copies wrapped buffers into arrays in single precision, such that the
+     * mesh can grow. Does nothing if the mesh is stored in arrays.
+     */
+    private void copyBuffers() {
+        if (positionBuffer == null) {
+            return;
+        }
+        floatPositions = new float[positionBuffer.capacity()];
+        positionBuffer.get(0, floatPositions);
+        if (normalBuffer != null) {
+            floatNormals = new float[normalBuffer.capacity()];
+            normalBuffer.get(0, floatNormals);
+        }
+        indices = new int[indexBuffer.capacity()];
+        indexBuffer.get(0, indices);
+        positionBuffer = null;
+        normalBuffer = null;
+        indexBuffer = null;
+    }
+
+    /**
+     * Returns the memory the positions, normal vectors and indices are stored
+     * in. Wrapped buffers are off-heap if they are direct, e.g. views of a
+     * memory-mapped file.
+     *
+     * @return geometry storage
+     */
+    public GeometryStorage getStorage() {
+        return positionBuffer != null && positionBuffer.isDirect() ? GeometryStorage.OFF_HEAP
+                : GeometryStorage.HEAP;
+    }
+
+    /**
+     * Moves the positions, normal vectors and indices into the given memory.
+     * Moving them off-heap stores them in single precision; moving them back
+     * to the heap copies them into single precision arrays, which can be
+     * converted with {@link #setPrecision(GeometryPrecision)}.
+     *
+     * @param storage geometry storage
+     */
+    public void setStorage(GeometryStorage storage) {
+        if (storage == getStorage()) {
+            return;
+        }
+        if (storage == GeometryStorage.HEAP) {
+            copyBuffers();
+        } else {
+            moveOffHeap();
+        }
+    }
+
+    /**
+     * Copies the positions, normal vectors and indices from any storage into
+     * new direct buffers in native byte order and single precision.
+     */
+    private void moveOffHeap() {
+        int values = vertexCount * 3;
+        FloatBuffer newPositions = GeometryStorage.allocateDirect(values).asFloatBuffer();
+        FloatBuffer newNormals = null;
+        boolean hasNormals = normals != null || floatNormals != null || normalBuffer != null;
+        if (hasNormals) {
+            newNormals = GeometryStorage.allocateDirect(values).asFloatBuffer();
+        }
+        if (floatPositions != null) {
+            newPositions.put(0, floatPositions, 0, values);
+            if (hasNormals) {
+                newNormals.put(0, floatNormals, 0, values);
+            }
+        } else {
+            for (int i = 0; i < values; i++) {
+                newPositions.put(i, (float) getCoord(i / 3, i % 3));
+                if (hasNormals) {
+                    newNormals.put(i, (float) getNormalValue(i));
+                }
+            }
+        }
+        IntBuffer newIndices = GeometryStorage.allocateDirect(triangleCount * 3).asIntBuffer();
+        if (indices != null) {
+            newIndices.put(0, indices, 0, triangleCount * 3);
+        } else {
+            newIndices.put(0, indexBuffer, 0, triangleCount * 3);
+        }
+
+        positions = null;
+        normals = null;
+        floatPositions = null;
+        floatNormals = null;
+        indices = null;
+        positionBuffer = newPositions;
+        normalBuffer = newNormals;
+        indexBuffer = newIndices;
+        precision = GeometryPrecision.FLOAT;
+    }
+
+    /**
+     * Checks that a vertex exists.
+     *
+     * @param vertex index of the vertex
+     * @throws IndexOutOfBoundsException if the vertex does not exist
+     */
+    private void checkVertex(int vertex) {
+        if (vertex < 0 || vertex >= vertexCount)
+            throw new IndexOutOfBoundsException("Vertex " + vertex + " does not exist.");
+    }
+
+    /**
+     * Shrinks the arrays to the number of vertices and triangles.
+     * Called once the mesh is complete to release the spare capacity. Wrapped
+     * buffers have no spare capacity and stay as they are.
+     */
+    public void trim() {
+        if (positionBuffer != null) {
+            return;
+        }
+        resizeVertices(vertexCount);
+        indices = Arrays.copyOf(indices, triangleCount * 3);
+    }
+
+    /**
+     * Returns the precision the positions and normal vectors are stored in.
+     *
+     * @return geometry precision
+     */
+    public GeometryPrecision getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Converts the positions and normal vectors to the given precision.
+     * Converting to single precision rounds every value to the nearest float,
+     * converting wrapped buffers to double precision copies them into arrays.
+     *
+     * @param precision geometry precision
+     */
+    public void setPrecision(GeometryPrecision precision) {
+        if (precision == this.precision) {
+            return;
+        }
+        copyBuffers();
+        if (precision == GeometryPrecision.FLOAT) {
+            floatPositions = toFloats(positions);
+            floatNormals = toFloats(normals);
+            positions = null;
+            normals = null;
+        } else {
+            positions = toDoubles(floatPositions);
+            normals = toDoubles(floatNormals);
+            floatPositions = null;
+            floatNormals = null;
+        }
+        this.precision = precision;
+    }
+
+    /**
+     * Rounds all values to the nearest float.
+     *
+     * @param values values, may be null
+     * @return rounded values, null if {@code values == null}
+     */
+    private static float[] toFloats(double[] values) {
+        if (values == null) {
+            return null;
+        }
+        float[] result = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (float) values[i];
+        }
+        return result;
+    }
+
+    /**
+     * Widens all values to doubles.
+     *
+     * @param values values, may be null
+     * @return widened values, null if {@code values == null}
+     */
+    private static double[] toDoubles(float[] values) {
+        if (values == null) {
+            return null;
+        }
+        double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of vertices.
+     *
+     * @return vertex count
+     */
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * Returns the number of triangles.
+     *
+     * @return triangle count
+     */
+    public int getTriangleCount() {
+        return triangleCount;
+    }
+
+    /**
+     * Returns the backing array of the vertex positions, three coordinates per
+     * vertex. Only the first {@code 3 * getVertexCount()} values are valid and
+     * the array is replaced when the mesh grows.
+     *
+     * @return positions, null if stored in single precision or in buffers
+     */
+    public double[] getPositions() {
+        return positions;
+    }
+
+    /**
+     * Returns the backing array of the vertex normal vectors, three
+     * coordinates per vertex and NaN for vertices without normal vector.
+     *
+     * @return normals, null if no vertex has a normal vector or if stored in
+     *         single precision or in buffers
+     * @see #getPositions()
+     */
+    public double[] getNormals() {
+        return normals;
+    }
+
+    /**
+     * Returns the backing array of the vertex positions in single precision.
+     *
+     * @return positions, null if stored in double precision or in buffers
+     * @see #getPositions()
+     */
+    public float[] getFloatPositions() {
+        return floatPositions;
+    }
+
+    /**
+     * Returns the backing array of the vertex normal vectors in single
+     * precision.
+     *
+     * @return normals, null if no vertex has a normal vector or if stored in
+     *         double precision or in buffers
+     * @see #getNormals()
+     */
+    public float[] getFloatNormals() {
+        return floatNormals;
+    }
+
+    /**
+     * Returns the wrapped buffer of the vertex positions, three coordinates
+     * per vertex starting at index 0.
+     *
+     * @return positions, null if stored in arrays
+     * @see #Mesh(FloatBuffer, FloatBuffer, IntBuffer)
+     */
+    public FloatBuffer getPositionBuffer() {
+        return positionBuffer;
+    }
+
+    /**
+     * Returns the wrapped buffer of the vertex normal vectors, three
+     * coordinates per vertex starting at index 0 and NaN for vertices without
+     * normal vector.
+     *
+     * @return normals, null if no vertex has a normal vector or if stored in
+     *         arrays
+     * @see #getPositionBuffer()
+     */
+    public FloatBuffer getNormalBuffer() {
+        return normalBuffer;
+    }
+
+    /**
+     * Returns the wrapped buffer of the triangle vertex indices, three per
+     * triangle starting at index 0.
+     *
+     * @return indices, null if stored in arrays
+     * @see #getPositionBuffer()
+     */
+    public IntBuffer getIndexBuffer() {
+        return indexBuffer;
+    }
+
+    /**
+     * Returns the backing array of the triangle vertex indices, three per
+     * triangle. Only the first {@code 3 * getTriangleCount()} values are valid
+     * and the array is replaced when the mesh grows.
+     *
+     * @return indices, null if stored in buffers
+     */
+    public int[] getIndices() {
+        return indices;
+    }
+
+    /**
+     * Returns a coordinate of a vertex.
+     *
+     * @param vertex index of the vertex
+     * @param axis   axis, 0 for x1, 1 for x2 and 2 for x3
+     * @return coordinate
+     */
+    public double getCoord(int vertex, int axis) {
+        if (positions != null) {
+            return positions[vertex * 3 + axis];
+        }
+        return floatPositions != null ? floatPositions[vertex * 3 + axis] : positionBuffer.get(vertex * 3 + axis);
+    }
+
+    /**
+     * Stores a position value in the current precision.
+     *
+     * @param i     index in the position array
+     * @param value coordinate
+     */
+    private void setPosition(int i, double value) {
+        if (positions != null) {
+            positions[i] = value;
+        } else if (floatPositions != null) {
+            floatPositions[i] = (float) value;
+        } else {
+            positionBuffer.put(i, (float) value);
+        }
+    }
+
+    /**
+     * Returns a normal vector value.
+     *
+     * @param i index in the normal array
+     * @return coordinate, NaN if the vertex has no normal vector
+     */
+    private double getNormalValue(int i) {
+        if (normals != null) {
+            return normals[i];
+        }
+        return floatNormals != null ? floatNormals[i] : normalBuffer.get(i);
+    }
+
+    /**
+     * Stores a normal vector value in the current precision.
+     *
+     * @param i     index in the normal array
+     * @param value coordinate
+     */
+    private void setNormalValue(int i, double value) {
+        if (normals != null) {
+            normals[i] = value;
+        } else if (floatNormals != null) {
+            floatNormals[i] = (float) value;
+        } else {
+            normalBuffer.put(i, (float) value);
+        }
+    }
+
+    /**
+     * Returns the index of a vertex of a triangle.
+     *
+     * @param triangle index of the triangle
+     * @param corner   corner of the triangle, 0 to 2
+     * @return index of the vertex
+     */
+    public int getVertexIndex(int triangle, int corner) {
+        return indices != null ? indices[triangle * 3 + corner] : indexBuffer.get(triangle * 3 + corner);
+    }
+
+    /**
+     * Checks whether a vertex has a normal vector.
+     *
+     * @param vertex index of the vertex
+     * @return true if a normal vector was set
+     */
+    public boolean hasNormal(int vertex) {
+        return (normals != null || floatNormals != null || normalBuffer != null) && !Double.isNaN(getNormalValue(vertex * 3));
+    }
+
+    /**
+     * Returns a copy of a vertex including its normal vector.
+     * Changing the copy does not change the mesh.
+     *
+     * @param vertex index of the vertex
+     * @return new Vertex3D object
+     */
+    public Vertex3D getVertex(int vertex) {
+        int p = vertex * 3;
+        Vertex3D copy = new Vertex3D(getCoord(vertex, 0), getCoord(vertex, 1), getCoord(vertex, 2));
+        if (hasNormal(vertex)) {
+            copy.setNormalVector(new Vector3D(getNormalValue(p), getNormalValue(p + 1), getNormalValue(p + 2)));
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the approximate size of the arrays, or of the wrapped buffers,
+     * which are outside the heap if the storage is
+     * {@link GeometryStorage#OFF_HEAP}.
+     *
+     * @return size in bytes
+     */
+    public long getMemoryBytes() {
+        if (positionBuffer != null) {
+            long values = positionBuffer.capacity() + (normalBuffer != null ? normalBuffer.capacity() : 0);
+            return values * Float.BYTES + (long) indexBuffer.capacity() * Integer.BYTES;
+        }
+        long bytes = (long) indices.length * Integer.BYTES;
+        if (positions != null) {
+            bytes += (long) positions.length * Double.BYTES;
+        } else {
+            bytes += (long) floatPositions.length * Float.BYTES;
+        }
+        if (normals != null) {
+            bytes += (long) normals.length * Double.BYTES;
+        } else if (floatNormals != null) {
+            bytes += (long) floatNormals.length * Float.BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * Transforms all vertices of the mesh.
+     * Normal vectors are transformed with the cofactor matrix of the linear
+     * part, which keeps them perpendicular to the surface under non-uniform
+     * scaling, and normalized afterwards.
+     *
+     * @param tm transformation matrix
+     */
+    public void transform(TrafoMatrix tm) {
+        if (positionBuffer != null && positionBuffer.isReadOnly()) {
+            if (positionBuffer.isDirect()) {
+                moveOffHeap();
+            } else {
+                copyBuffers();
+            }
+        }
+        double[] m = new double[12];
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 4; j++) {
+                m[i * 4 + j] = tm.getElement(i, j);
+            }
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            int p = v * 3;
+            double x1 = getCoord(v, 0);
+            double x2 = getCoord(v, 1);
+            double x3 = getCoord(v, 2);
+            setPosition(p, m[0] * x1 + m[1] * x2 + m[2] * x3 + m[3]);
+            setPosition(p + 1, m[4] * x1 + m[5] * x2 + m[6] * x3 + m[7]);
+            setPosition(p + 2, m[8] * x1 + m[9] * x2 + m[10] * x3 + m[11]);
+        }
+        if (normals == null && floatNormals == null && normalBuffer == null) {
+            return;
+        }
+
+        // Cofactor matrix, sign of the determinant keeps the orientation
+        double[] c = {
+                m[5] * m[10] - m[6] * m[9], m[6] * m[8] - m[4] * m[10], m[4] * m[9] - m[5] * m[8],
+                m[2] * m[9] - m[1] * m[10], m[0] * m[10] - m[2] * m[8], m[1] * m[8] - m[0] * m[9],
+                m[1] * m[6] - m[2] * m[5], m[2] * m[4] - m[0] * m[6], m[0] * m[5] - m[1] * m[4] };
+        double sign = Math.signum(m[0] * c[0] + m[1] * c[1] + m[2] * c[2]);
+        for (int p = 0; p < vertexCount * 3; p += 3) {
+            double n1 = getNormalValue(p);
+            double n2 = getNormalValue(p + 1);
+            double n3 = getNormalValue(p + 2);
+            double t1 = c[0] * n1 + c[1] * n2 + c[2] * n3;
+            double t2 = c[3] * n1 + c[4] * n2 + c[5] * n3;
+            double t3 = c[6] * n1 + c[7] * n2 + c[8] * n3;
+            double length = Math.sqrt(t1 * t1 + t2 * t2 + t3 * t3);
+            double scale = length > 0 ? sign / length : 0;
+            setNormalValue(p, t1 * scale);
+            setNormalValue(p + 1, t2 * scale);
+            setNormalValue(p + 2, t3 * scale);
+        }
+    }
+}
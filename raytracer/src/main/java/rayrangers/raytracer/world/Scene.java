@@ -1,12 +1,17 @@
 package rayrangers.raytracer.world;
 
 import java.awt.Color;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
 import rayrangers.raytracer.algorithm.HitRecord;
+import rayrangers.raytracer.algorithm.HitState;
 import rayrangers.raytracer.algorithm.Ray;
+import rayrangers.raytracer.algorithm.bounding.Bounded;
+import rayrangers.raytracer.algorithm.bounding.TopLevelHierarchy;
 
 /**
  * Represents a scene to be rendered.
@@ -24,6 +29,16 @@ public class Scene implements Hittable {
 
     private Map<UUID, Entity> entities = new HashMap<>();;
 
+    /**
+     * Collection of instances sharing the mesh of an entity.
+     */
+    private Map<UUID, Instance> instances = new HashMap<>();
+
+    /**
+     * Objects only known by their bounds, e.g. entities paged in on demand.
+     */
+    private List<Bounded> boundedObjects = new ArrayList<>();
+
     /**
      * Collection of cameras to capture the scene.
      */
@@ -34,6 +49,23 @@ public class Scene implements Hittable {
      */
     private Map<UUID, LightSource> lightSources = new HashMap<>();;
 
+    /**
+     * Top-level BVH over the bounds of all entities, null if the scene has not
+     * been prepared for rendering or has changed since.
+     */
+    private TopLevelHierarchy topLevelHierarchy;
+
+    /**
+     * Precision the meshes and BVH trees of all entities are stored in.
+     */
+    private GeometryPrecision geometryPrecision = GeometryPrecision.DOUBLE;
+
+    /**
+     * Memory the meshes and BVH trees of all entities are moved to, null to
+     * keep the storage of every entity.
+     */
+    private GeometryStorage geometryStorage;
+
     public Scene(Color backgroundColor) {
         this.backgroundColor = backgroundColor;
     }
@@ -44,7 +76,116 @@ public class Scene implements Hittable {
      * @param entity Entity to add
      */
     public void addEntity(Entity entity) {
+        applyGeometryStorage(entity);
+        entity.setGeometryPrecision(geometryPrecision);
         entities.put(entity.getUuid(), entity);
+        topLevelHierarchy = null;
+    }
+
+    /**
+     * Adds a new instance to the instances hash map.
+     * The shared entity must not be added to the scene itself unless it should
+     * be rendered untransformed as well.
+     * 
+     * @param instance Instance to add
+     */
+    public void addInstance(Instance instance) {
+        applyGeometryStorage(instance.getEntity());
+        instance.getEntity().setGeometryPrecision(geometryPrecision);
+        instance.updateBoundingBox();
+        instances.put(instance.getUuid(), instance);
+        topLevelHierarchy = null;
+    }
+
+    /**
+     * Adds an object which is only known by its bounding box and hit through
+     * {@link Bounded#closestHit}, e.g. an entity paged in from disk when a ray
+     * reaches its bounds. The geometry precision and storage of the scene are
+     * not applied to it.
+     * 
+     * @param object object to add
+     */
+    public void addBounded(Bounded object) {
+        boundedObjects.add(object);
+        topLevelHierarchy = null;
+    }
+
+    /**
+     * Returns the precision the meshes and BVH trees of all entities are stored
+     * in.
+     * 
+     * @return geometry precision
+     */
+    public GeometryPrecision getGeometryPrecision() {
+        return geometryPrecision;
+    }
+
+    /**
+     * Sets the precision the meshes and BVH trees of all entities are stored in
+     * and converts the entities and instances added so far.
+     * Entities added later are converted when they are added.
+     * 
+     * @param geometryPrecision geometry precision
+     * @see GeometryPrecision
+     */
+    public void setGeometryPrecision(GeometryPrecision geometryPrecision) {
+        this.geometryPrecision = geometryPrecision;
+        for (Entity entity : entities.values()) {
+            entity.setGeometryPrecision(geometryPrecision);
+        }
+        for (Instance instance : instances.values()) {
+            instance.getEntity().setGeometryPrecision(geometryPrecision);
+        }
+        for (Instance instance : instances.values()) {
+            // Shared entities may be converted after other instances were updated
+            instance.updateBoundingBox();
+        }
+        topLevelHierarchy = null;
+    }
+
+    /**
+     * Returns the memory the meshes and BVH trees of all entities are moved
+     * to.
+     * 
+     * @return geometry storage, null if every entity keeps its own storage
+     */
+    public GeometryStorage getGeometryStorage() {
+        return geometryStorage;
+    }
+
+    /**
+     * Sets the memory the meshes and BVH trees of all entities are stored in
+     * and moves the entities and instances added so far. Entities added later
+     * are moved when they are added.
+     * 
+     * @param geometryStorage geometry storage, null to keep the storage of
+     *                        every entity, e.g. of meshes mapped from a file
+     * @see GeometryStorage
+     */
+    public void setGeometryStorage(GeometryStorage geometryStorage) {
+        this.geometryStorage = geometryStorage;
+        for (Entity entity : entities.values()) {
+            applyGeometryStorage(entity);
+        }
+        for (Instance instance : instances.values()) {
+            applyGeometryStorage(instance.getEntity());
+        }
+        for (Instance instance : instances.values()) {
+            // Shared entities may be moved after other instances were updated
+            instance.updateBoundingBox();
+        }
+        topLevelHierarchy = null;
+    }
+
+    /**
+     * Moves an entity to the storage of the scene, if set.
+     * 
+     * @param entity entity to move
+     */
+    private void applyGeometryStorage(Entity entity) {
+        if (geometryStorage != null) {
+            entity.setGeometryStorage(geometryStorage);
+        }
     }
 
     /**
@@ -75,6 +216,15 @@ public class Scene implements Hittable {
         return entities;
     }
 
+    /**
+     * Returns the hash map of all instances in the scene.
+     * 
+     * @return Instances hash map
+     */
+    public Map<UUID, Instance> getInstances() {
+        return instances;
+    }
+
     /**
      * Returns the hash map of all cameras in the scene.
      * 
@@ -93,6 +243,15 @@ public class Scene implements Hittable {
         return lightSources;
     }
 
+    /**
+     * Returns the objects added by {@link #addBounded(Bounded)}.
+     * 
+     * @return objects only known by their bounds
+     */
+    public List<Bounded> getBoundedObjects() {
+        return boundedObjects;
+    }
+
     /**
      * Adds a camera with a unique identifier if it has not been added yet.
      * 
@@ -113,20 +272,69 @@ public class Scene implements Hittable {
         return lightSources.putIfAbsent(lightSource.getUuid(), lightSource) == null;
     }
 
+    /**
+     * Builds the top-level BVH over all entities, instances and bounded
+     * objects, so a ray only tests the objects whose bounds it passes through.
+     * Has to be called after all entities have been added and transformed,
+     * the renderer calls it before rendering. Adding an object discards the
+     * hierarchy until it is built again.
+     */
+    public void buildTopLevelHierarchy() {
+        List<Bounded> objects = new ArrayList<>();
+        for (Entity entity : entities.values()) {
+            // Entities without bounds cannot be hit
+            if (entity.getBoundingBox() != null) {
+                objects.add(entity);
+            }
+        }
+        objects.addAll(instances.values());
+        objects.addAll(boundedObjects);
+        topLevelHierarchy = new TopLevelHierarchy(objects);
+    }
+
+    /**
+     * Returns the top-level BVH over all entities.
+     * 
+     * @return top-level hierarchy, null if it has not been built since the last
+     *         change of the scene
+     */
+    public TopLevelHierarchy getTopLevelHierarchy() {
+        return topLevelHierarchy;
+    }
+
     /**
      * @see Hittable
      */
     @Override
     public boolean hit(Ray ray, double t0, double t1, HitRecord record) {
+        HitState state = HitState.current();
+        state.reset();
         boolean hit = false;
-        // Iterate over entities
-        for (Entity entity : entities.values()) {
-            // Check if the ray hits the entity and if t lies within interval [t0,t1]
-            if (entity.hit(ray, t0, t1, record) && record.getT() <= t1 && record.getT() >= t0) {
-                hit = true;
-                t1 = record.getT(); // Update t1 to decrease interval [t0,t1]
+        if (topLevelHierarchy != null) {
+            hit = topLevelHierarchy.closestHit(ray, t0, t1, state);
+        } else {
+            // Iterate over entities
+            for (Entity entity : entities.values()) {
+                // Check if the ray hits the entity within interval [t0,t1]
+                if (entity.closestHit(ray, t0, t1, state)) {
+                    hit = true;
+                    t1 = state.getT(); // Update t1 to decrease interval [t0,t1]
+                }
+            }
+            for (Instance instance : instances.values()) {
+                if (instance.closestHit(ray, t0, t1, state)) {
+                    hit = true;
+                    t1 = state.getT();
+                }
+            }
+            for (Bounded object : boundedObjects) {
+                if (object.closestHit(ray, t0, t1, state)) {
+                    hit = true;
+                    t1 = state.getT();
+                }
             }
         }
-        return hit;
+        // Fill the hit record only once for the closest hit
+        return hit && state.fillHitRecord(ray, record);
     }
 }
@@ -1,6 +1,7 @@
 package rayrangers.raytracer.world;
 
-import java.util.List;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
 
 import rayrangers.raytracer.algorithm.HitRecord;
 import rayrangers.raytracer.algorithm.Ray;
@@ -9,17 +10,42 @@ import rayrangers.raytracer.math.Vertex3D;
 
 /**
  * Represents a triangle as a special face.
+ * The triangle only references its index in a Mesh, which stores the vertex
+ * positions and indices of all triangles in packed arrays.
  */
 public class Triangle extends Face {
 
     /**
-     * Array containing all vertices of the triangle.
+     * Mesh storing the vertices of the triangle.
      */
-    private Vertex3D[] vertices;
+    private final Mesh mesh;
+
+    /**
+     * Index of the triangle in the mesh.
+     */
+    private final int index;
+
+    /**
+     * Class constructor specifying the material, smoothing group and the
+     * triangle of a mesh.
+     * 
+     * @param material       material
+     * @param smoothingGroup smoothing group
+     * @param mesh           mesh storing the vertices
+     * @param index          index of the triangle in the mesh
+     * @see Face
+     */
+    public Triangle(Material material, String smoothingGroup, Mesh mesh, int index) {
+        super(material, smoothingGroup);
+        this.mesh = mesh;
+        this.index = index;
+    }
 
     /**
      * Class constructor specifying the material, smoothing group and the vertices
      * of the triangle.
+     * The coordinates are copied into a mesh of its own, so the triangle does
+     * not follow later changes of the vertices.
      * 
      * @param material       material
      * @param smoothingGroup smoothing group
@@ -29,94 +55,193 @@ public class Triangle extends Face {
      * @see Face
      */
     public Triangle(Material material, String smoothingGroup, Vertex3D v1, Vertex3D v2, Vertex3D v3) {
-        super(material, smoothingGroup);
-        vertices = new Vertex3D[] { v1, v2, v3 };
+        this(material, smoothingGroup, createMesh(v1, v2, v3), 0);
     }
 
     /**
-     * Class constructor called by ObjParser.
+     * Creates a mesh containing a single triangle.
      * 
-     * @param material       material
-     * @param smoothingGroup smoothing group
-     * @param vertices       vertex list
+     * @param vertices vertices of the triangle
+     * @return mesh
      */
-    public Triangle(Material material, String smoothingGroup, List<Vertex3D> vertices) {
-        super(material, smoothingGroup);
-        this.vertices = new Vertex3D[] { vertices.get(0), vertices.get(1), vertices.get(2) };
+    private static Mesh createMesh(Vertex3D... vertices) {
+        Mesh mesh = new Mesh(3, 1);
+        for (Vertex3D vertex : vertices) {
+            int v = mesh.addVertex(vertex.getCoord(1), vertex.getCoord(2), vertex.getCoord(3));
+            Vector3D normal = vertex.getNormalVector();
+            if (normal != null) {
+                double[] n = normal.getCoordinates();
+                mesh.setNormal(v, n[0], n[1], n[2]);
+            }
+        }
+        mesh.addTriangle(0, 1, 2);
+        return mesh;
     }
 
     /**
+     * Returns the mesh storing the vertices of the triangle.
+     * 
+     * @return mesh
+     */
+    public Mesh getMesh() {
+        return mesh;
+    }
+
+    /**
+     * Returns the index of the triangle in its mesh.
+     * 
+     * @return triangle index
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns copies of the vertices, changing them does not change the mesh.
+     * 
      * @see Face
      */
     @Override
     public Vertex3D[] getAllVert() {
-        return vertices;
+        return new Vertex3D[] {
+                mesh.getVertex(mesh.getVertexIndex(index, 0)),
+                mesh.getVertex(mesh.getVertexIndex(index, 1)),
+                mesh.getVertex(mesh.getVertexIndex(index, 2)) };
+    }
+
+    /**
+     * @see Face
+     */
+    @Override
+    public void enclose(double[] bounds, int offset) {
+        for (int corner = 0; corner < 3; corner++) {
+            int vertex = mesh.getVertexIndex(index, corner);
+            for (int axis = 0; axis < 3; axis++) {
+                double coord = mesh.getCoord(vertex, axis);
+                bounds[offset + axis] = Math.min(bounds[offset + axis], coord);
+                bounds[offset + axis + 3] = Math.max(bounds[offset + axis + 3], coord);
+            }
+        }
     }
 
     /**
-     * @see Hittable
+     * @see Face
      */
     @Override
-    public boolean hit(Ray ray, double t0, double t1, HitRecord record) {
+    public double intersect(Ray ray, double t0, double t1) {
         // Triangle ABC with vertices A, B, C
         // E = origin of the ray (camera eye)
-        Vector3D vecBA = vertices[0].getlocationVector().sub(vertices[1].getlocationVector()); // Vector BA = (a,b,c)^T
-        Vector3D vecCA = vertices[0].getlocationVector().sub(vertices[2].getlocationVector()); // Vector CA = (d,e,f)^T
-        Vector3D vecEA = vertices[0].getlocationVector().sub(ray.getOrigin().getlocationVector()); // Vector EA = (g,h,i)^T
-        Vector3D rayDir = ray.getDirection();
+        int[] indices = mesh.getIndices();
+        int vertA, vertB, vertC; // Offsets of the vertices in the position array
+        if (indices != null) {
+            vertA = indices[index * 3] * 3;
+            vertB = indices[index * 3 + 1] * 3;
+            vertC = indices[index * 3 + 2] * 3;
+        } else {
+            IntBuffer indexBuffer = mesh.getIndexBuffer();
+            vertA = indexBuffer.get(index * 3) * 3;
+            vertB = indexBuffer.get(index * 3 + 1) * 3;
+            vertC = indexBuffer.get(index * 3 + 2) * 3;
+        }
+        double ax, ay, az, bx, by, bz, cx, cy, cz;
+        double[] positions = mesh.getPositions();
+        float[] floatPositions = mesh.getFloatPositions();
+        if (positions != null) {
+            ax = positions[vertA];
+            ay = positions[vertA + 1];
+            az = positions[vertA + 2];
+            bx = positions[vertB];
+            by = positions[vertB + 1];
+            bz = positions[vertB + 2];
+            cx = positions[vertC];
+            cy = positions[vertC + 1];
+            cz = positions[vertC + 2];
+        } else if (floatPositions != null) { // Single precision, computations are still done in double precision
+            ax = floatPositions[vertA];
+            ay = floatPositions[vertA + 1];
+            az = floatPositions[vertA + 2];
+            bx = floatPositions[vertB];
+            by = floatPositions[vertB + 1];
+            bz = floatPositions[vertB + 2];
+            cx = floatPositions[vertC];
+            cy = floatPositions[vertC + 1];
+            cz = floatPositions[vertC + 2];
+        } else { // Single precision in wrapped buffers
+            FloatBuffer positionBuffer = mesh.getPositionBuffer();
+            ax = positionBuffer.get(vertA);
+            ay = positionBuffer.get(vertA + 1);
+            az = positionBuffer.get(vertA + 2);
+            bx = positionBuffer.get(vertB);
+            by = positionBuffer.get(vertB + 1);
+            bz = positionBuffer.get(vertB + 2);
+            cx = positionBuffer.get(vertC);
+            cy = positionBuffer.get(vertC + 1);
+            cz = positionBuffer.get(vertC + 2);
+        }
+        double[] eye = ray.getOrigin().getlocationVector().getCoordinates();
+        double[] rayDir = ray.getDirection().getCoordinates();
 
         // Components of Matrix A = [BA CA rayDir]
-        double a = vecBA.getCoord(1);
-        double b = vecBA.getCoord(2);
-        double c = vecBA.getCoord(3);
-        double d = vecCA.getCoord(1);
-        double e = vecCA.getCoord(2);
-        double f = vecCA.getCoord(3);
-        double g = rayDir.getCoord(1);
-        double h = rayDir.getCoord(2);
-        double i = rayDir.getCoord(3);
-        double j = vecEA.getCoord(1);
-        double k = vecEA.getCoord(2);
-        double l = vecEA.getCoord(3);
+        double a = ax - bx; // Vector BA = (a,b,c)^T
+        double b = ay - by;
+        double c = az - bz;
+        double d = ax - cx; // Vector CA = (d,e,f)^T
+        double e = ay - cy;
+        double f = az - cz;
+        double g = rayDir[0];
+        double h = rayDir[1];
+        double i = rayDir[2];
+        double j = ax - eye[0]; // Vector EA = (j,k,l)^T
+        double k = ay - eye[1];
+        double l = az - eye[2];
 
         // Compute determinant |A| = a(ei - hf) + b(gf - di) + c(dh - eg)
         double det = a * (e * i - h * f) + b * (g * f - d * i) + c * (d * h - e * g);
+        if (det == 0) {
+            return MISS; // Degenerate triangle or ray parallel to triangle, t would be NaN or infinite
+        }
 
         // Compute ray parameter t = (f(ak - jb) + e(jc - al) + d(bl - kc)) / |A|
         double t = -(f * (a * k - j * b) + e * (j * c - a * l) + d * (b * l - k * c)) / det;
         // Check if t lies within current interval [t0,t1]
         if (t > t1 || t < t0) {
-            return false; // Ray parameter is outside current interval [t0,t1]
+            return MISS; // Ray parameter is outside current interval [t0,t1]
         }
 
         // Compute gamma y = (i(ak - jb) + h(jc - al) + g(bl - kc)) / |A|
         double gamma = (i * (a * k - j * b) + h * (j * c - a * l) + g * (b * l - k * c)) / det;
         // Check if the ray intersects the plane within the triangle
         if (gamma < 0 || gamma > 1) {
-            return false; // Ray intersects the plane outside the triangle
+            return MISS; // Ray intersects the plane outside the triangle
         }
 
         // Compute beta = (j(ei - hf ) + k(gf - di) + l(dh - eg)) / |A|
         double beta = (j * (e * i - h * f) + k * (g * f - d * i) + l * (d * h - e * g)) / det;
         // Check if the ray intersects the plane within the triangle
         if (beta < 0 || beta > 1 - gamma) {
-            return false; // Ray intersects the plane outside the triangle
+            return MISS; // Ray intersects the plane outside the triangle
         }
-        
+        return t;
+    }
+
+    /**
+     * @see Face
+     */
+    @Override
+    public void fillHitRecord(Ray ray, double t, HitRecord record) {
         // Update hitrecord with triangle data
+        Vertex3D hitPoint = ray.pointAt(t); // Calculate intersection point
         record.setHitObject(this); // Set this triangle as hit object in hitrecord
         record.setT(t); // Set ray parameter of intersection
-        record.setHitPoint(ray.pointAt(t)); // Calculate intersection point
+        record.setHitPoint(hitPoint);
         record.setMaterial(material); // Set triangle material
-        Vector3D vecHA =  vertices[0].getlocationVector().sub(ray.pointAt(t).getlocationVector());
-        Vector3D vecHB =  vertices[1].getlocationVector().sub(ray.pointAt(t).getlocationVector());
+        Vertex3D[] vertices = getAllVert();
+        Vector3D vecHA = vertices[0].getlocationVector().sub(hitPoint.getlocationVector());
+        Vector3D vecHB = vertices[1].getlocationVector().sub(hitPoint.getlocationVector());
         Vector3D normalVec = vecHA.cross(vecHB).normalize();
-        Vector3D viewDirection = ray.getDirection();
-        record.setViewRayDirection(viewDirection);
-        Vertex3D[] verticesAll  = getAllVert();
-        record.setAllVert(verticesAll);
+        record.setViewRayDirection(ray.getDirection());
+        record.setAllVert(vertices);
         record.setNormalVector(normalVec);
-        return true;
     }
 
     /**
@@ -124,8 +249,11 @@ public class Triangle extends Face {
      */
     @Override
     public Vertex3D getCenter() {
-        return new Vertex3D((vertices[0].getCoord(1) + vertices[1].getCoord(1) + vertices[2].getCoord(1)) / 3,
-                            (vertices[0].getCoord(2) + vertices[1].getCoord(2) + vertices[2].getCoord(2)) / 3,
-                            (vertices[0].getCoord(3) + vertices[1].getCoord(3) + vertices[2].getCoord(3)) / 3);
+        int vertA = mesh.getVertexIndex(index, 0);
+        int vertB = mesh.getVertexIndex(index, 1);
+        int vertC = mesh.getVertexIndex(index, 2);
+        return new Vertex3D((mesh.getCoord(vertA, 0) + mesh.getCoord(vertB, 0) + mesh.getCoord(vertC, 0)) / 3,
+                            (mesh.getCoord(vertA, 1) + mesh.getCoord(vertB, 1) + mesh.getCoord(vertC, 1)) / 3,
+                            (mesh.getCoord(vertA, 2) + mesh.getCoord(vertB, 2) + mesh.getCoord(vertC, 2)) / 3);
     }
 }
\ No newline at end of file
@@ -0,0 +1,135 @@
+package rayrangers.raytracer.algorithm;
+
+import java.awt.Color;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.jupiter.api.Test;
+
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.view.RenderTarget;
+import rayrangers.raytracer.view.Tile;
+import rayrangers.raytracer.world.Camera;
+import rayrangers.raytracer.world.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the tile scheduling of the Renderer class.
+ */
+public class RendererTest {
+
+    /**
+     * Render target counting how often every pixel is written and how many
+     * pixels the completed tiles contain.
+     */
+    private static class CountingTarget implements RenderTarget {
+
+        /**
+         * Width in pixels.
+         */
+        private final int width;
+
+        /**
+         * Height in pixels.
+         */
+        private final int height;
+
+        /**
+         * Number of writes per pixel, row by row.
+         */
+        private final AtomicIntegerArray writes;
+
+        /**
+         * Number of completed tiles per pixel, row by row.
+         */
+        private final AtomicIntegerArray completed;
+
+        /**
+         * Creates a target of the given size.
+         *
+         * @param width  width in pixels
+         * @param height height in pixels
+         */
+        CountingTarget(int width, int height) {
+            this.width = width;
+            this.height = height;
+            writes = new AtomicIntegerArray(width * height);
+            completed = new AtomicIntegerArray(width * height);
+        }
+
+        /**
+         * @see RenderTarget
+         */
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        /**
+         * @see RenderTarget
+         */
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * @see RenderTarget
+         */
+        @Override
+        public int getRgb(int i, int j) {
+            return 0;
+        }
+
+        /**
+         * @see RenderTarget
+         */
+        @Override
+        public void setRgb(int i, int j, int rgb) {
+            writes.incrementAndGet(j * width + i);
+        }
+
+        /**
+         * @see RenderTarget
+         */
+        @Override
+        public void tileCompleted(Tile tile) {
+            for (int j = tile.getY(); j < tile.getY() + tile.getHeight(); j++) {
+                for (int i = tile.getX(); i < tile.getX() + tile.getWidth(); i++) {
+                    completed.incrementAndGet(j * width + i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests that every pixel is rendered exactly once and is part of exactly
+     * one completed tile, also if the resolution is not a multiple of the
+     * tile size.
+     */
+    @Test
+    public void testRenderEveryPixelOnce() {
+        Scene scene = new Scene(Color.BLUE);
+        Camera camera = new Camera(new Vertex3D(0, 0, 100), 0, 0, 0, 75, 100, 53, 37);
+        scene.addCamera(camera);
+        Renderer renderer = new Renderer(scene, camera.getUuid(), 16);
+        CountingTarget target = new CountingTarget(53, 37);
+        renderer.setRenderTarget(target);
+        renderer.render();
+        for (int k = 0; k < 53 * 37; k++) {
+            assertEquals(1, target.writes.get(k));
+            assertEquals(1, target.completed.get(k));
+        }
+    }
+
+    /**
+     * Tests that tile sizes below one are rejected.
+     */
+    @Test
+    public void testInvalidTileSize() {
+        Scene scene = new Scene(Color.BLUE);
+        Camera camera = new Camera(new Vertex3D(0, 0, 100), 0, 0, 0, 75, 100, 10, 10);
+        scene.addCamera(camera);
+        assertThrows(IllegalArgumentException.class, () -> new Renderer(scene, camera.getUuid(), 0));
+    }
+}
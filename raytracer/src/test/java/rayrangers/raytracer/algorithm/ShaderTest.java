@@ -0,0 +1,110 @@
+package rayrangers.raytracer.algorithm;
+
+import java.awt.Color;
+
+import org.junit.jupiter.api.Test;
+
+import rayrangers.raytracer.math.Vector3D;
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.world.LightSource;
+import rayrangers.raytracer.world.Material;
+import rayrangers.raytracer.world.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the Shader class.
+ */
+public class ShaderTest {
+
+    /**
+     * Creates a hit record on a small triangle at distance 10 on the x3 axis,
+     * whose interpolated normal points along the x3 axis.
+     *
+     * @param material material of the triangle
+     * @return hit record of a ray along the negative x3 axis
+     */
+    private static HitRecord createRecord(Material material) {
+        HitRecord record = new HitRecord();
+        record.setMaterial(material);
+        record.setHitPoint(new Vertex3D(0, 0, 10));
+        record.setAllVert(new Vertex3D[] { new Vertex3D(0, 0, 10), new Vertex3D(1e-6, 0, 10),
+                new Vertex3D(0, 1e-6, 10) });
+        record.setViewRayDirection(new Vector3D(0, 0, -1));
+        return record;
+    }
+
+    /**
+     * Asserts that the channels of a packed color differ by at most one from
+     * the expected values.
+     *
+     * @param red   expected red channel
+     * @param green expected green channel
+     * @param blue  expected blue channel
+     * @param rgb   packed color
+     */
+    private static void assertRgb(int red, int green, int blue, int rgb) {
+        Color color = new Color(rgb, true);
+        assertEquals(255, color.getAlpha());
+        assertEquals(red, color.getRed(), 1);
+        assertEquals(green, color.getGreen(), 1);
+        assertEquals(blue, color.getBlue(), 1);
+    }
+
+    /**
+     * Tests the diffuse term for light falling in perpendicularly and at 60
+     * degrees.
+     */
+    @Test
+    public void testDiffuse() {
+        Material red = new Material("red", Color.BLACK, Color.RED, Color.BLACK, 0, 1, 2);
+        Scene scene = new Scene(Color.WHITE);
+        scene.addLightSource(new LightSource(0.15, new Vertex3D(0, 0, 100), Color.WHITE));
+        assertRgb(255, 0, 0, new Shader(scene).calculatePixelRgb(createRecord(red)));
+
+        scene = new Scene(Color.WHITE);
+        scene.addLightSource(new LightSource(0.15, new Vertex3D(Math.sqrt(3), 0, 11), Color.WHITE));
+        Shader shader = new Shader(scene);
+        assertRgb(128, 0, 0, shader.calculatePixelRgb(createRecord(red)));
+        assertEquals(shader.calculatePixelRgb(createRecord(red)),
+                shader.calculatePixelColor(createRecord(red)).getRGB());
+    }
+
+    /**
+     * Tests that see-through materials are mixed with the background and that
+     * the ambient term uses the default ambient color for black backgrounds.
+     */
+    @Test
+    public void testDissolveAndAmbient() {
+        Material glass = new Material("glass", Color.BLACK, Color.RED, Color.BLACK, 0, 0.5, 2);
+        Scene scene = new Scene(Color.WHITE);
+        scene.addLightSource(new LightSource(0.15, new Vertex3D(0, 0, 100), Color.WHITE));
+        assertRgb(255, 128, 128, new Shader(scene).calculatePixelRgb(createRecord(glass)));
+
+        // Ambient color 30 is added twice, once as base and once as ambient term
+        Material gray = new Material("gray", Color.WHITE, Color.BLACK, Color.BLACK, 0, 1, 2);
+        scene = new Scene(Color.BLACK);
+        scene.addLightSource(new LightSource(0.15, new Vertex3D(0, 0, 100), Color.WHITE));
+        assertRgb(60, 60, 60, new Shader(scene).calculatePixelRgb(createRecord(gray)));
+    }
+
+    /**
+     * Tests that the radiance is not clamped while the RGB value is.
+     */
+    @Test
+    public void testRadiance() {
+        Material red = new Material("red", Color.BLACK, Color.RED, Color.BLACK, 0, 1, 2);
+        Scene scene = new Scene(Color.WHITE);
+        for (int i = 0; i < 3; i++) {
+            scene.addLightSource(new LightSource(0.15, new Vertex3D(0, 0, 100 + i), Color.WHITE));
+        }
+        Shader shader = new Shader(scene);
+        float[] radiance = new float[4];
+        shader.calculatePixelRadiance(createRecord(red), radiance, 1);
+        assertEquals(0, radiance[0]);
+        assertEquals(3, radiance[1], 1e-5);
+        assertEquals(0, radiance[2]);
+        assertEquals(0, radiance[3]);
+        assertRgb(255, 0, 0, shader.calculatePixelRgb(createRecord(red)));
+    }
+}
@@ -0,0 +1,80 @@
+package rayrangers.raytracer.algorithm.bounding;
+
+import org.junit.jupiter.api.Test;
+
+import rayrangers.raytracer.algorithm.Ray;
+import rayrangers.raytracer.math.Vector3D;
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.world.Triangle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the BoundingBox class.
+ */
+public class BoundingBoxTest {
+
+    /**
+     * Unit cube translated along the x3 axis to [4,5].
+     */
+    private final BoundingBox box = new BoundingBox(0, 1, 0, 1, 4, 5);
+
+    /**
+     * Ray starting at the origin plane and pointing along the x3 axis.
+     */
+    private final Ray ray = new Ray(new Vertex3D(0.5, 0.5, 0), new Vector3D(0, 0, 1));
+
+    /**
+     * Tests that the entry distance of the box is returned.
+     */
+    @Test
+    public void testIntersectReturnsEntryDistance() {
+        assertEquals(4, box.intersect(ray, 0, Double.MAX_VALUE), 1e-12);
+        assertTrue(box.hit(ray, 0, Double.MAX_VALUE, null));
+    }
+
+    /**
+     * Tests that the entry distance is clamped to t0 if the ray starts inside the
+     * box.
+     */
+    @Test
+    public void testIntersectFromInside() {
+        assertEquals(4.5, box.intersect(ray, 4.5, Double.MAX_VALUE), 1e-12);
+    }
+
+    /**
+     * Tests that boxes outside the interval [t0,t1] are missed.
+     */
+    @Test
+    public void testIntersectRespectsInterval() {
+        assertEquals(BoundingBox.MISS, box.intersect(ray, 0, 3));
+        assertEquals(BoundingBox.MISS, box.intersect(ray, 6, Double.MAX_VALUE));
+        assertFalse(box.hit(ray, 0, 3, null));
+    }
+
+    /**
+     * Tests that a ray passing beside the box misses it.
+     */
+    @Test
+    public void testIntersectMiss() {
+        Ray beside = new Ray(new Vertex3D(2, 0.5, 0), new Vector3D(0, 0, 1));
+        assertEquals(BoundingBox.MISS, box.intersect(beside, 0, Double.MAX_VALUE));
+    }
+
+    /**
+     * Tests that the box of a face with only negative coordinates does not
+     * reach the origin, i.e. that the maxima are not initialised with the
+     * smallest positive double.
+     */
+    @Test
+    public void testFaceWithNegativeCoordinates() {
+        BoundingBox faceBox = new BoundingBox(new Triangle(null, null, new Vertex3D(-3, -2, -7),
+                new Vertex3D(-1, -5, -6), new Vertex3D(-2, -4, -9)));
+        assertEquals(-3, faceBox.getMin(0), 0);
+        assertEquals(-1, faceBox.getMax(0), 0);
+        assertEquals(-5, faceBox.getMin(1), 0);
+        assertEquals(-2, faceBox.getMax(1), 0);
+        assertEquals(-9, faceBox.getMin(2), 0);
+        assertEquals(-6, faceBox.getMax(2), 0);
+    }
+}
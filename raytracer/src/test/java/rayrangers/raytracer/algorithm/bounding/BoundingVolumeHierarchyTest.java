@@ -0,0 +1,105 @@
+package rayrangers.raytracer.algorithm.bounding;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.world.Face;
+import rayrangers.raytracer.world.Triangle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the BoundingVolumeHierarchy class.
+ */
+public class BoundingVolumeHierarchyTest {
+
+    /**
+     * Builds the tree in a fork/join pool of the given parallelism.
+     *
+     * @param faces       faces of the tree, reordered by the build
+     * @param splitMethod split method
+     * @param parallelism parallelism of the pool
+     * @return flattened tree
+     */
+    private static LinearBoundingVolumeHierarchy build(List<Face> faces, SplitMethod splitMethod,
+            int parallelism) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.submit(() -> new LinearBoundingVolumeHierarchy(faces, splitMethod)).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Tests that parallel builds create the same tree as sequential builds.
+     */
+    @Test
+    public void testParallelBuildIsDeterministic() {
+        int count = 4 * BoundingVolume.PARALLEL_BUILD_CUTOFF;
+        for (SplitMethod splitMethod : SplitMethod.values()) {
+            LinearBoundingVolumeHierarchy sequential = build(
+                    RandomGeometry.createRandomTriangles(new Random(21), count), splitMethod, 1);
+            LinearBoundingVolumeHierarchy parallel = build(
+                    RandomGeometry.createRandomTriangles(new Random(21), count), splitMethod, 4);
+            assertEquals(sequential.getNodeCount(), parallel.getNodeCount(), splitMethod + " node count");
+            assertEquals(sequential.getMaxDepth(), parallel.getMaxDepth(), splitMethod + " depth");
+            assertEquals(sequential.getSahCost(), parallel.getSahCost(), splitMethod + " SAH cost");
+        }
+    }
+
+    /**
+     * Tests that the median split puts the faces with the lower centers into
+     * the left child.
+     */
+    @Test
+    public void testMedianSplitPartitionsCenters() {
+        List<Face> faces = RandomGeometry.createRandomTriangles(new Random(21), 1001);
+        BoundingVolume root = new BoundingVolumeHierarchy(faces).getRoot();
+        List<Face> leftFaces = ((BoundingVolume) root.getLeft()).getFaces();
+        List<Face> rightFaces = ((BoundingVolume) root.getRight()).getFaces();
+        assertEquals(500, leftFaces.size());
+        assertEquals(501, rightFaces.size());
+
+        double maxLeft = Double.NEGATIVE_INFINITY;
+        for (Face face : leftFaces) {
+            maxLeft = Math.max(maxLeft, face.getCenter().getCoord(1));
+        }
+        for (Face face : rightFaces) {
+            assertTrue(face.getCenter().getCoord(1) >= maxLeft);
+        }
+    }
+
+    /**
+     * Tests that the SAH split gives a tree with lower estimated traversal
+     * cost than the median split if the faces are not uniformly distributed.
+     */
+    @Test
+    public void testSahSplitLowersCost() {
+        List<Face> faces = new ArrayList<>();
+        Random random = new Random(5);
+        // Dense cluster of small triangles next to a few large ones
+        for (int i = 0; i < 500; i++) {
+            double x = random.nextDouble() * 5;
+            double y = random.nextDouble() * 5;
+            double z = random.nextDouble() * 5;
+            faces.add(new Triangle(null, null, new Vertex3D(x, y, z), new Vertex3D(x + 0.2, y, z),
+                    new Vertex3D(x, y + 0.2, z + 0.1)));
+        }
+        for (int i = 0; i < 50; i++) {
+            double x = 20 + random.nextDouble() * 80;
+            double y = random.nextDouble() * 100;
+            double z = random.nextDouble() * 100;
+            faces.add(new Triangle(null, null, new Vertex3D(x, y, z), new Vertex3D(x + 10, y, z),
+                    new Vertex3D(x, y + 10, z + 5)));
+        }
+        double median = new BoundingVolumeHierarchy(new ArrayList<>(faces), SplitMethod.MEDIAN).getSahCost();
+        double sah = new BoundingVolumeHierarchy(new ArrayList<>(faces), SplitMethod.SAH).getSahCost();
+        assertTrue(sah < median, "SAH cost " + sah + " not below median cost " + median);
+    }
+}
@@ -0,0 +1,229 @@
+package rayrangers.raytracer.algorithm.bounding;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import rayrangers.raytracer.algorithm.HitRecord;
+import rayrangers.raytracer.algorithm.HitState;
+import rayrangers.raytracer.algorithm.Ray;
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.math.Vector3D;
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.world.Face;
+import rayrangers.raytracer.world.GeometryPrecision;
+import rayrangers.raytracer.world.GeometryStorage;
+import rayrangers.raytracer.world.Triangle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the LinearBoundingVolumeHierarchy class.
+ */
+public class LinearBoundingVolumeHierarchyTest {
+
+    /**
+     * Compares the results of the flattened and the tree hierarchy for many rays.
+     *
+     * @param splitMethod split method used to build the tree
+     */
+    private static void assertSameHitsAsTree(SplitMethod splitMethod) {
+        Random random = new Random(42);
+        List<Face> faces = RandomGeometry.createRandomTriangles(random, 2000);
+        BoundingVolumeHierarchy tree = new BoundingVolumeHierarchy(faces, splitMethod);
+        LinearBoundingVolumeHierarchy linear = new LinearBoundingVolumeHierarchy(tree, faces);
+
+        assertEquals(tree.getNodeCount(), linear.getNodeCount(), "node count differs");
+        assertEquals(tree.getSahCost(), linear.getSahCost(), 1e-9, "SAH cost differs");
+
+        RandomGeometry.assertSameHits(random, tree, linear, 5000);
+    }
+
+    /**
+     * Tests that the flattened median split hierarchy matches the tree exactly.
+     */
+    @Test
+    public void testSameHitsAsMedianTree() {
+        assertSameHitsAsTree(SplitMethod.MEDIAN);
+    }
+
+    /**
+     * Tests that the flattened SAH hierarchy matches the tree exactly.
+     */
+    @Test
+    public void testSameHitsAsSahTree() {
+        assertSameHitsAsTree(SplitMethod.SAH);
+    }
+
+    /**
+     * Tests that the flattened Morton code hierarchy matches the tree exactly.
+     */
+    @Test
+    public void testSameHitsAsMortonTree() {
+        assertSameHitsAsTree(SplitMethod.MORTON);
+    }
+
+    /**
+     * Tests that a hierarchy with a single face consists of one leaf node.
+     */
+    @Test
+    public void testSingleFace() {
+        List<Face> faces = new ArrayList<>();
+        faces.add(new Triangle(null, null, new Vertex3D(0, 0, 0), new Vertex3D(1, 0, 0), new Vertex3D(0, 1, 0)));
+        LinearBoundingVolumeHierarchy linear = new LinearBoundingVolumeHierarchy(faces, SplitMethod.MEDIAN);
+        assertEquals(1, linear.getNodeCount());
+        assertEquals(1, linear.getMaxDepth());
+
+        HitRecord record = new HitRecord();
+        Ray ray = new Ray(new Vertex3D(0.25, 0.25, 5), new Vector3D(0, 0, -1));
+        assertTrue(linear.hit(ray, 0, Double.MAX_VALUE, record));
+        assertEquals(5, record.getT(), 1e-12);
+        assertSame(faces.get(0), record.getHitObject());
+    }
+
+    /**
+     * Tests that closest-hit queries do not allocate any objects in steady state.
+     */
+    @Test
+    public void testClosestHitDoesNotAllocate() {
+        Random random = new Random(7);
+        List<Face> faces = RandomGeometry.createRandomTriangles(random, 2000);
+        LinearBoundingVolumeHierarchy linear = new LinearBoundingVolumeHierarchy(faces, SplitMethod.SAH);
+        Ray[] rays = new Ray[1000];
+        for (int i = 0; i < rays.length; i++) {
+            rays[i] = RandomGeometry.createRandomRay(random);
+        }
+        HitState state = HitState.current();
+
+        // Warm up: grows the traversal stack and lets the JIT compile the traversal
+        int hits = 0;
+        for (int i = 0; i < 50_000; i++) {
+            state.reset();
+            if (linear.closestHit(rays[i % rays.length], 0, Double.MAX_VALUE, state)) {
+                hits++;
+            }
+        }
+        assertTrue(hits > 0, "test rays should hit the mesh");
+
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        int queries = 100_000;
+        long before = threadBean.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < queries; i++) {
+            state.reset();
+            linear.closestHit(rays[i % rays.length], 0, Double.MAX_VALUE, state);
+        }
+        long allocated = threadBean.getCurrentThreadAllocatedBytes() - before;
+        assertTrue(allocated < queries, "allocated " + allocated + " bytes for " + queries + " rays");
+    }
+
+    /**
+     * Tests that a refitted hierarchy finds the same closest hits as a new
+     * hierarchy built for the moved faces.
+     */
+    @Test
+    public void testRefitMatchesRebuild() {
+        Random random = new Random(9);
+        List<Face> faces = RandomGeometry.createRandomTriangles(random, 2000);
+        LinearBoundingVolumeHierarchy refitted = new LinearBoundingVolumeHierarchy(faces, SplitMethod.SAH);
+
+        TrafoMatrix tm = new TrafoMatrix(10, -20, 5, 15, 30, 0, 1.2, 1.2, 1.2);
+        for (Face face : faces) {
+            ((Triangle) face).getMesh().transform(tm);
+        }
+        double cost = refitted.refit();
+        LinearBoundingVolumeHierarchy rebuilt = new LinearBoundingVolumeHierarchy(new ArrayList<>(faces),
+                SplitMethod.SAH);
+        assertEquals(cost, refitted.getSahCost());
+        assertTrue(cost >= rebuilt.getSahCost() * 0.9, "refit should not beat a rebuild by far");
+        for (int axis = 0; axis < 3; axis++) {
+            assertEquals(rebuilt.getBoundingBox().getMin(axis), refitted.getBoundingBox().getMin(axis));
+            assertEquals(rebuilt.getBoundingBox().getMax(axis), refitted.getBoundingBox().getMax(axis));
+        }
+
+        RandomGeometry.assertSameHits(random, rebuilt, refitted, 5000);
+    }
+
+    /**
+     * Tests that bounds stored in single precision enclose the rounded vertices,
+     * so the tree finds the same closest hit as testing all faces.
+     */
+    @Test
+    public void testFloatPrecisionKeepsHits() {
+        Random random = new Random(12);
+        List<Face> faces = RandomGeometry.createRandomTriangles(random, 2000);
+        LinearBoundingVolumeHierarchy linear = new LinearBoundingVolumeHierarchy(faces, SplitMethod.SAH);
+        long doubleBytes = linear.getMemoryBytes();
+        for (Face face : faces) {
+            ((Triangle) face).getMesh().setPrecision(GeometryPrecision.FLOAT);
+        }
+        linear.setPrecision(GeometryPrecision.FLOAT);
+        assertEquals(GeometryPrecision.FLOAT, linear.getPrecision());
+        assertTrue(linear.getMemoryBytes() < doubleBytes);
+
+        for (int pass = 0; pass < 2; pass++) {
+            int hits = 0;
+            for (int i = 0; i < 5000; i++) {
+                Ray ray = RandomGeometry.createRandomRay(random);
+                double closest = Double.MAX_VALUE;
+                for (Face face : faces) {
+                    double t = face.intersect(ray, 0, closest);
+                    if (t != Face.MISS) {
+                        closest = t;
+                    }
+                }
+                HitRecord record = new HitRecord();
+                boolean hit = linear.hit(ray, 0, Double.MAX_VALUE, record);
+                assertEquals(closest != Double.MAX_VALUE, hit, "hit differs for ray " + i);
+                if (hit) {
+                    hits++;
+                    assertEquals(closest, record.getT(), "t differs for ray " + i);
+                }
+            }
+            assertTrue(hits > 0, "test rays should hit the mesh");
+
+            // Second pass after refitting the single precision bounds
+            for (Face face : faces) {
+                ((Triangle) face).getMesh().transform(new TrafoMatrix(1e-3, 0, 0, 0, 0, 0, 1, 1, 1));
+            }
+            linear.refit();
+        }
+    }
+
+    /**
+     * Tests that a hierarchy stored off-heap finds the same hits as in single
+     * precision on the heap and can be refitted and moved back.
+     */
+    @Test
+    public void testOffHeapKeepsHits() {
+        Random random = new Random(13);
+        List<Face> faces = RandomGeometry.createRandomTriangles(random, 2000);
+        for (Face face : faces) {
+            ((Triangle) face).getMesh().setStorage(GeometryStorage.OFF_HEAP);
+        }
+        LinearBoundingVolumeHierarchy heap = new LinearBoundingVolumeHierarchy(faces, SplitMethod.SAH);
+        heap.setPrecision(GeometryPrecision.FLOAT);
+        LinearBoundingVolumeHierarchy offHeap = new LinearBoundingVolumeHierarchy(faces, SplitMethod.SAH);
+        offHeap.setStorage(GeometryStorage.OFF_HEAP);
+        assertEquals(GeometryStorage.OFF_HEAP, offHeap.getStorage());
+        assertEquals(GeometryPrecision.FLOAT, offHeap.getPrecision());
+        assertEquals(heap.getSahCost(), offHeap.getSahCost());
+        assertEquals(heap.getMemoryBytes(), offHeap.getMemoryBytes());
+
+        for (int pass = 0; pass < 2; pass++) {
+            RandomGeometry.assertSameHits(random, heap, offHeap, 2000);
+            // Second pass after moving all faces
+            for (Face face : faces) {
+                ((Triangle) face).getMesh().transform(new TrafoMatrix(1, 2, 3, 0, 0, 0, 1, 1, 1));
+            }
+            assertEquals(heap.refit(), offHeap.refit());
+        }
+
+        offHeap.setPrecision(GeometryPrecision.DOUBLE);
+        assertEquals(GeometryStorage.HEAP, offHeap.getStorage());
+        assertEquals(GeometryPrecision.DOUBLE, offHeap.getPrecision());
+    }
+}
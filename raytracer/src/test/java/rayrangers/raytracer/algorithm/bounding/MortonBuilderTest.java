@@ -0,0 +1,110 @@
+package rayrangers.raytracer.algorithm.bounding;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import rayrangers.raytracer.world.Face;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the MortonBuilder and MortonCode classes.
+ */
+public class MortonBuilderTest {
+
+    /**
+     * Tests that the builder writes the same nodes as flattening a Morton code
+     * tree of BoundingVolume objects, without reordering the faces.
+     */
+    @Test
+    public void testSameTreeAsBoundingVolumeHierarchy() {
+        Random random = new Random(3);
+        List<Face> faces = RandomGeometry.createRandomTriangles(random, 3 * BoundingVolume.PARALLEL_BUILD_CUTOFF);
+        List<Face> original = new ArrayList<>(faces);
+        LinearBoundingVolumeHierarchy built = MortonBuilder.build(faces);
+        assertEquals(original, faces);
+
+        List<Face> copy = new ArrayList<>(faces);
+        LinearBoundingVolumeHierarchy flattened = new LinearBoundingVolumeHierarchy(copy, SplitMethod.MORTON);
+        assertEquals(SplitMethod.MORTON, built.getSplitMethod());
+        assertEquals(2 * faces.size() - 1, built.getNodeCount());
+        assertEquals(flattened.getNodeCount(), built.getNodeCount());
+        assertEquals(flattened.getMaxDepth(), built.getMaxDepth());
+        assertEquals(flattened.getSahCost(), built.getSahCost());
+        assertEquals(built.getSahCost(), built.getBuildSahCost());
+        RandomGeometry.assertSameHits(random, flattened, built, 3000);
+    }
+
+    /**
+     * Tests batches added with a grid, including a grid which grows after
+     * faces were added and faces outside of the grid.
+     */
+    @Test
+    public void testBatchesWithGrid() {
+        Random random = new Random(4);
+        List<Face> faces = RandomGeometry.createRandomTriangles(random, 5000);
+        LinearBoundingVolumeHierarchy expected = new LinearBoundingVolumeHierarchy(new ArrayList<>(faces),
+                SplitMethod.MEDIAN);
+
+        MortonBuilder builder = new MortonBuilder(100);
+        builder.setGrid(new double[] { 0, 0, 0, 110, 110, 110 });
+        builder.add(faces.subList(0, 2000));
+        builder.add(faces.subList(2000, 4000));
+        RandomGeometry.assertSameHits(random, expected,
+                addAndBuild(builder, faces, new double[] { 0, 0, 0, 110, 110, 110 }), 3000);
+
+        builder = new MortonBuilder(100);
+        builder.setGrid(new double[] { 0, 0, 0, 50, 50, 50 }); // Most centers are outside
+        builder.add(faces.subList(0, 2000));
+        builder.add(faces.subList(2000, 4000));
+        RandomGeometry.assertSameHits(random, expected,
+                addAndBuild(builder, faces, new double[] { -10, 0, 0, 120, 120, 120 }), 3000);
+    }
+
+    /**
+     * Sets the grid, adds the last faces and builds the hierarchy.
+     *
+     * @param builder builder with the first 4000 faces
+     * @param faces   all faces
+     * @param grid    grid to set
+     * @return hierarchy
+     */
+    private static LinearBoundingVolumeHierarchy addAndBuild(MortonBuilder builder, List<Face> faces,
+            double[] grid) {
+        builder.setGrid(grid);
+        builder.add(faces.subList(4000, faces.size()));
+        assertEquals(faces.size(), builder.getFaceCount());
+        LinearBoundingVolumeHierarchy built = builder.build();
+        assertEquals(2 * faces.size() - 1, built.getNodeCount());
+        return built;
+    }
+
+    /**
+     * Tests that a builder without faces cannot build a hierarchy.
+     */
+    @Test
+    public void testEmptyBuilder() {
+        assertThrows(IllegalStateException.class, () -> new MortonBuilder(0).build());
+    }
+
+    /**
+     * Tests splitting sorted codes at the highest differing bit.
+     */
+    @Test
+    public void testSplit() {
+        int[] codes = { 0b000101, 0b000111, 0b010000, 0b010001, 0b110000 };
+        assertEquals(4, MortonCode.split(codes, 0, 5));
+        assertEquals(2, MortonCode.split(codes, 0, 4));
+        assertEquals(1, MortonCode.split(codes, 0, 2));
+        assertEquals(3, MortonCode.split(new int[] { 7, 7, 7, 7, 7, 7 }, 0, 6));
+
+        long[] keys = new long[2];
+        MortonCode.computeKeys(new double[] { 0, 0, 0, 0, 0, 0, 10, 10, 10, 10, 10, 10 }, 0, 2,
+                new double[] { 0, 0, 0, 10, 10, 10 }, keys);
+        assertEquals(0, keys[0]);
+        assertEquals((long) ((1 << 30) - 1) << 32 | 1, keys[1]); // Clamped into the last cell
+    }
+}
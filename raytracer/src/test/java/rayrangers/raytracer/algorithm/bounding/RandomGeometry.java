@@ -0,0 +1,88 @@
+package rayrangers.raytracer.algorithm.bounding;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import rayrangers.raytracer.algorithm.HitRecord;
+import rayrangers.raytracer.algorithm.Ray;
+import rayrangers.raytracer.math.Vector3D;
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.world.Face;
+import rayrangers.raytracer.world.Hittable;
+import rayrangers.raytracer.world.Triangle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Random triangles and rays shared by the unit tests of the hierarchies.
+ */
+final class RandomGeometry {
+
+    /**
+     * Private constructor, class only provides static members.
+     */
+    private RandomGeometry() {
+    }
+
+    /**
+     * Creates random triangles inside a cube with edge length 100.
+     *
+     * @param random random number generator
+     * @param count  number of triangles
+     * @return face list
+     */
+    static List<Face> createRandomTriangles(Random random, int count) {
+        List<Face> faces = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            double x = random.nextDouble() * 100;
+            double y = random.nextDouble() * 100;
+            double z = random.nextDouble() * 100;
+            faces.add(new Triangle(null, null,
+                    new Vertex3D(x, y, z),
+                    new Vertex3D(x + random.nextDouble() * 10, y + random.nextDouble() * 10, z),
+                    new Vertex3D(x, y + random.nextDouble() * 10, z + random.nextDouble() * 10)));
+        }
+        return faces;
+    }
+
+    /**
+     * Creates a random ray starting outside the cube and pointing into it.
+     *
+     * @param random random number generator
+     * @return ray
+     */
+    static Ray createRandomRay(Random random) {
+        Vertex3D origin = new Vertex3D(-50 + random.nextDouble() * 200, -50 + random.nextDouble() * 200, -100);
+        Vector3D target = new Vector3D(random.nextDouble() * 100, random.nextDouble() * 100,
+                random.nextDouble() * 100);
+        return new Ray(origin, target.sub(origin.getlocationVector()));
+    }
+
+    /**
+     * Asserts that two hierarchies return the same closest hits for random
+     * rays, and that some of the rays hit.
+     *
+     * @param random   random number generator
+     * @param expected expected hierarchy
+     * @param actual   actual hierarchy
+     * @param rays     number of rays
+     */
+    static void assertSameHits(Random random, Hittable expected, Hittable actual, int rays) {
+        int hits = 0;
+        for (int i = 0; i < rays; i++) {
+            Ray ray = createRandomRay(random);
+            HitRecord expectedRecord = new HitRecord();
+            HitRecord actualRecord = new HitRecord();
+            boolean hit = expected.hit(ray, 0, Double.MAX_VALUE, expectedRecord);
+            assertEquals(hit, actual.hit(ray, 0, Double.MAX_VALUE, actualRecord), "hit differs for ray " + i);
+            if (hit) {
+                hits++;
+                assertEquals(expectedRecord.getT(), actualRecord.getT(), "t differs for ray " + i);
+                assertSame(expectedRecord.getHitObject(), actualRecord.getHitObject(),
+                        "hit object differs for ray " + i);
+            }
+        }
+        assertTrue(hits > 0, "test rays should hit the mesh");
+    }
+}
@@ -0,0 +1,114 @@
+package rayrangers.raytracer.algorithm.bounding;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import rayrangers.raytracer.algorithm.HitRecord;
+import rayrangers.raytracer.algorithm.Ray;
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.math.Vector3D;
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.Face;
+import rayrangers.raytracer.world.Mesh;
+import rayrangers.raytracer.world.Scene;
+import rayrangers.raytracer.world.Triangle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the TopLevelHierarchy class.
+ */
+public class TopLevelHierarchyTest {
+
+    /**
+     * Creates an entity of random triangles inside a cube with edge length 10
+     * at the given position.
+     *
+     * @param random random number generator
+     * @param x      x coordinate of the cube corner
+     * @param y      y coordinate of the cube corner
+     * @param z      z coordinate of the cube corner
+     * @return transformed entity with BVH tree
+     */
+    private static Entity createRandomEntity(Random random, double x, double y, double z) {
+        List<Face> faces = new ArrayList<>();
+        Mesh mesh = new Mesh();
+        for (int i = 0; i < 50; i++) {
+            double vx = x + random.nextDouble() * 10;
+            double vy = y + random.nextDouble() * 10;
+            double vz = z + random.nextDouble() * 10;
+            int v1 = mesh.addVertex(vx, vy, vz);
+            int v2 = mesh.addVertex(vx + random.nextDouble() * 2, vy + random.nextDouble() * 2, vz);
+            int v3 = mesh.addVertex(vx, vy + random.nextDouble() * 2, vz + random.nextDouble() * 2);
+            faces.add(new Triangle(null, null, mesh, mesh.addTriangle(v1, v2, v3)));
+        }
+        Entity entity = new Entity("random", faces, mesh);
+        entity.transform(new TrafoMatrix(0, 0, 0, 0, 0, 0, 1, 1, 1));
+        return entity;
+    }
+
+    /**
+     * Tests that the scene finds the same closest hits with and without the
+     * top-level hierarchy.
+     */
+    @Test
+    public void testSameHitsAsEntityLoop() {
+        Random random = new Random(3);
+        Scene scene = new Scene(Color.BLACK);
+        for (int i = 0; i < 200; i++) {
+            scene.addEntity(createRandomEntity(random, random.nextDouble() * 100, random.nextDouble() * 100,
+                    random.nextDouble() * 100));
+        }
+        Ray[] rays = new Ray[3000];
+        HitRecord[] expected = new HitRecord[rays.length];
+        for (int i = 0; i < rays.length; i++) {
+            Vertex3D origin = new Vertex3D(-50 + random.nextDouble() * 200, -50 + random.nextDouble() * 200, -100);
+            Vector3D target = new Vector3D(random.nextDouble() * 110, random.nextDouble() * 110,
+                    random.nextDouble() * 110);
+            rays[i] = new Ray(origin, target.sub(origin.getlocationVector()));
+            HitRecord record = new HitRecord();
+            expected[i] = scene.hit(rays[i], 0, Double.MAX_VALUE, record) ? record : null;
+        }
+
+        scene.buildTopLevelHierarchy();
+        TopLevelHierarchy tlas = scene.getTopLevelHierarchy();
+        assertEquals(200, tlas.getObjectCount());
+        assertEquals(399, tlas.getNodeCount());
+
+        int hits = 0;
+        for (int i = 0; i < rays.length; i++) {
+            HitRecord record = new HitRecord();
+            boolean hit = scene.hit(rays[i], 0, Double.MAX_VALUE, record);
+            assertEquals(expected[i] != null, hit, "hit differs for ray " + i);
+            if (hit) {
+                hits++;
+                assertEquals(expected[i].getT(), record.getT(), "t differs for ray " + i);
+                assertSame(expected[i].getHitObject(), record.getHitObject(), "hit object differs for ray " + i);
+            }
+        }
+        assertTrue(hits > 0, "test rays should hit the entities");
+    }
+
+    /**
+     * Tests that adding an entity discards the hierarchy and that an empty
+     * hierarchy is never hit.
+     */
+    @Test
+    public void testEmptyAndInvalidated() {
+        Scene scene = new Scene(Color.BLACK);
+        scene.buildTopLevelHierarchy();
+        assertEquals(0, scene.getTopLevelHierarchy().getNodeCount());
+        Ray ray = new Ray(new Vertex3D(5, 5, -10), new Vector3D(0, 0, 1));
+        assertFalse(scene.hit(ray, 0, Double.MAX_VALUE, new HitRecord()));
+
+        scene.addEntity(createRandomEntity(new Random(5), 0, 0, 0));
+        assertNull(scene.getTopLevelHierarchy());
+        scene.buildTopLevelHierarchy();
+        assertEquals(1, scene.getTopLevelHierarchy().getNodeCount());
+    }
+}
@@ -0,0 +1,83 @@
+package rayrangers.raytracer.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import rayrangers.raytracer.algorithm.bounding.SplitMethod;
+import rayrangers.raytracer.parser.BinaryMeshFormat;
+import rayrangers.raytracer.parser.ObjParser;
+import rayrangers.raytracer.world.Entity;
+
+/**
+ * Benchmark for loading meshes from OBJ files and from binary mesh files.
+ * Every OBJ file is converted into a temporary binary mesh file once; then
+ * parsing the OBJ file is compared with mapping the binary mesh file, both
+ * alone and followed by building a BVH tree split by Morton code, which is
+ * the time until the entity can be rendered. Has to be run from the
+ * repository root.
+ * Usage: BinaryMeshBenchmark [obj files...]
+ */
+public class BinaryMeshBenchmark {
+
+    /**
+     * Number of measured runs per file, the fastest one is reported.
+     */
+    private static final int RUNS = 10;
+
+    /**
+     * Private constructor, class only provides the main method.
+     */
+    private BinaryMeshBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args paths of the OBJ files, defaults to plane1.obj and
+     *             building1.obj
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        String[] paths = args.length > 0 ? args
+                : new String[] { "examples/planes/jumbo/plane1.obj", "examples/buildings/building1/building1.obj" };
+
+        for (String path : paths) {
+            Path binaryPath = Files.createTempFile("benchmark", BinaryMeshFormat.EXTENSION);
+            try {
+                BinaryMeshFormat.convert(path, binaryPath);
+                double parse = Double.POSITIVE_INFINITY;
+                double parseBuild = Double.POSITIVE_INFINITY;
+                double map = Double.POSITIVE_INFINITY;
+                double mapBuild = Double.POSITIVE_INFINITY;
+                for (int run = 0; run < RUNS + 3; run++) { // First runs warm up the JIT compiler
+                    long start = System.nanoTime();
+                    Entity entity = ObjParser.parseObjFile(path);
+                    double parseMs = (System.nanoTime() - start) / 1e6;
+                    entity.setSplitMethod(SplitMethod.MORTON);
+                    entity.buildBvhTree();
+                    double parseBuildMs = (System.nanoTime() - start) / 1e6;
+
+                    start = System.nanoTime();
+                    entity = BinaryMeshFormat.read(binaryPath);
+                    double mapMs = (System.nanoTime() - start) / 1e6;
+                    entity.setSplitMethod(SplitMethod.MORTON);
+                    entity.buildBvhTree();
+                    double mapBuildMs = (System.nanoTime() - start) / 1e6;
+                    if (run >= 3) {
+                        parse = Math.min(parse, parseMs);
+                        parseBuild = Math.min(parseBuild, parseBuildMs);
+                        map = Math.min(map, mapMs);
+                        mapBuild = Math.min(mapBuild, mapBuildMs);
+                    }
+                }
+                System.out.printf("%s (%d KiB OBJ, %d KiB binary)%n%-28s %8.1f ms%n%-28s %8.1f ms%n"
+                        + "%-28s %8.1f ms%n%-28s %8.1f ms%n", path, Files.size(Path.of(path)) / 1024,
+                        Files.size(binaryPath) / 1024, "parse OBJ", parse, "parse OBJ + Morton build", parseBuild,
+                        "map binary", map, "map binary + Morton build", mapBuild);
+            } finally {
+                Files.deleteIfExists(binaryPath);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package rayrangers.raytracer.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import rayrangers.raytracer.algorithm.bounding.BoundingVolumeHierarchy;
+import rayrangers.raytracer.algorithm.bounding.SplitMethod;
+import rayrangers.raytracer.parser.ObjParser;
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.Face;
+
+/**
+ * Benchmark for the BVH construction time against the number of cores.
+ * The tree is built inside fork/join pools of increasing parallelism, which
+ * the builder forks its subtrees into. Has to be run from the repository root.
+ * Usage: BvhBuildBenchmark [obj file] [core counts...]
+ */
+public class BvhBuildBenchmark {
+
+    /**
+     * Number of measured builds per configuration, the fastest one is reported.
+     */
+    private static final int RUNS = 5;
+
+    /**
+     * Private constructor, class only provides the main method.
+     */
+    private BvhBuildBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args path of the OBJ file followed by the core counts, defaults to
+     *             building1.obj and powers of two up to the available processors
+     * @throws Exception if the OBJ file cannot be loaded
+     */
+    public static void main(String[] args) throws Exception {
+        String path = args.length > 0 ? args[0] : "examples/buildings/building1/building1.obj";
+        List<Integer> cores = new ArrayList<>();
+        if (args.length > 1) {
+            for (int i = 1; i < args.length; i++) {
+                cores.add(Integer.parseInt(args[i]));
+            }
+        } else {
+            int available = Runtime.getRuntime().availableProcessors();
+            for (int c = 1; c < available; c *= 2) {
+                cores.add(c);
+            }
+            cores.add(available);
+        }
+
+        Entity entity = ObjParser.parseObjFile(path);
+        List<Face> faces = entity.getFaces();
+        System.out.printf("%s: %d faces, %d available processors%n", path, faces.size(),
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("%8s %6s %10s %8s%n", "split", "cores", "build ms", "speedup");
+        for (SplitMethod splitMethod : SplitMethod.values()) {
+            double baseline = 0;
+            for (int c : cores) {
+                double ms = buildMillis(faces, splitMethod, c);
+                if (baseline == 0) {
+                    baseline = ms;
+                }
+                System.out.printf("%8s %6d %10.1f %8.2f%n", splitMethod, c, ms, baseline / ms);
+            }
+        }
+    }
+
+    /**
+     * Builds the tree repeatedly in a pool of the given parallelism.
+     *
+     * @param faces       faces of the mesh
+     * @param splitMethod split method
+     * @param cores       parallelism of the pool
+     * @return fastest build time in milliseconds
+     */
+    private static double buildMillis(List<Face> faces, SplitMethod splitMethod, int cores) {
+        ForkJoinPool pool = new ForkJoinPool(cores);
+        try {
+            double best = Double.POSITIVE_INFINITY;
+            for (int run = 0; run < RUNS + 1; run++) { // First run warms up the JIT compiler
+                List<Face> copy = new ArrayList<>(faces);
+                long start = System.nanoTime();
+                pool.submit(() -> new BoundingVolumeHierarchy(copy, splitMethod)).join();
+                double ms = (System.nanoTime() - start) / 1e6;
+                if (run > 0) {
+                    best = Math.min(best, ms);
+                }
+            }
+            return best;
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
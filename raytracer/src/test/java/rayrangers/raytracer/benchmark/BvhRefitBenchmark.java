@@ -0,0 +1,65 @@
+package rayrangers.raytracer.benchmark;
+
+import rayrangers.raytracer.algorithm.bounding.BvhUpdateMode;
+import rayrangers.raytracer.algorithm.bounding.LinearBoundingVolumeHierarchy;
+import rayrangers.raytracer.algorithm.bounding.SplitMethod;
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.parser.ObjParser;
+import rayrangers.raytracer.world.Entity;
+
+/**
+ * Benchmark for updating the BVH tree of an animated entity.
+ * The entity is rotated and moved in small steps, once rebuilding the tree
+ * after every step and once refitting it. Has to be run from the repository
+ * root.
+ * Usage: BvhRefitBenchmark [obj file] [frames]
+ */
+public class BvhRefitBenchmark {
+
+    /**
+     * Private constructor, class only provides the main method.
+     */
+    private BvhRefitBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args path of the OBJ file and number of frames, defaults to
+     *             building1.obj and 60
+     * @throws Exception if the OBJ file cannot be loaded
+     */
+    public static void main(String[] args) throws Exception {
+        String path = args.length > 0 ? args[0] : "examples/buildings/building1/building1.obj";
+        int frames = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+
+        System.out.printf("%8s %8s %12s %10s %12s%n", "split", "mode", "ms/frame", "rebuilds", "cost ratio");
+        for (SplitMethod splitMethod : SplitMethod.values()) {
+            for (BvhUpdateMode mode : BvhUpdateMode.values()) {
+                Entity entity = ObjParser.parseObjFile(path);
+                entity.setSplitMethod(splitMethod);
+                entity.setBvhUpdateMode(mode);
+                entity.transform(new TrafoMatrix(0, 0, 0, 0, 0, 0, 1, 1, 1));
+
+                int rebuilds = 0;
+                long elapsed = 0;
+                TrafoMatrix step = new TrafoMatrix(0.5, 0, 0.25, 0, 3, 1, 1, 1, 1);
+                for (int frame = 0; frame < frames; frame++) {
+                    LinearBoundingVolumeHierarchy before = entity.getBvhTree();
+                    long start = System.nanoTime();
+                    entity.transform(step);
+                    elapsed += System.nanoTime() - start;
+                    if (entity.getBvhTree() != before) {
+                        rebuilds++;
+                    }
+                }
+
+                // Quality of the final tree compared to a fresh build of the final pose
+                LinearBoundingVolumeHierarchy tree = entity.getBvhTree();
+                double fresh = new LinearBoundingVolumeHierarchy(entity.getFaces(), splitMethod).getSahCost();
+                System.out.printf("%8s %8s %12.2f %10d %12.3f%n", splitMethod, mode, elapsed / 1e6 / frames,
+                        rebuilds, tree.getSahCost() / fresh);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package rayrangers.raytracer.benchmark;
+
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+import rayrangers.raytracer.view.FrameBuffer;
+import rayrangers.raytracer.view.ViewPane;
+
+/**
+ * Benchmark for the memory footprint of a view pane and the export of its
+ * pixels into an image.
+ * Compares writing the pixels one by one with setRGB, copying the frame
+ * buffer in one call and wrapping the frame buffer as image.
+ * Usage: FrameBufferBenchmark [resolution]
+ */
+public class FrameBufferBenchmark {
+
+    /**
+     * Number of measured runs per export method, the fastest one is reported.
+     */
+    private static final int RUNS = 5;
+
+    /**
+     * Private constructor, class only provides the main method.
+     */
+    private FrameBufferBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args resolution, defaults to 2000
+     */
+    public static void main(String[] args) {
+        int res = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        ViewPane viewPane = new ViewPane(res, res, 100);
+        FrameBuffer buffer = viewPane.getFrameBuffer();
+        System.out.printf("%dx%d view pane: %.1f MiB allocated%n", res, res,
+                (threads.getCurrentThreadAllocatedBytes() - allocated) / 1048576.0);
+
+        for (int j = 0; j < res; j++) {
+            for (int i = 0; i < res; i++) {
+                buffer.setRgb(i, j, 0xFF000000 | i * 31 + j * 17);
+            }
+        }
+        System.out.printf("%10s %10s%n", "export", "ms");
+        for (String method : new String[] { "setRGB", "copyTo", "wrap" }) {
+            double best = Double.POSITIVE_INFINITY;
+            long checksum = 0;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                BufferedImage image;
+                if (method.equals("wrap")) {
+                    image = buffer.toBufferedImage();
+                } else {
+                    image = new BufferedImage(res, res, BufferedImage.TYPE_INT_RGB);
+                    if (method.equals("copyTo")) {
+                        buffer.copyTo(image);
+                    } else {
+                        for (int j = 0; j < res; j++) {
+                            for (int i = 0; i < res; i++) {
+                                image.setRGB(i, j, viewPane.getRgbAt(i, j));
+                            }
+                        }
+                    }
+                }
+                best = Math.min(best, (System.nanoTime() - start) / 1e6);
+                checksum += image.getRGB(res - 1, res - 1);
+            }
+            System.out.printf("%10s %10.1f (checksum %d)%n", method, best, checksum);
+        }
+    }
+}
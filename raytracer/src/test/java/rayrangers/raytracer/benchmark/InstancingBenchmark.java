@@ -0,0 +1,128 @@
+package rayrangers.raytracer.benchmark;
+
+import java.awt.Color;
+import java.util.Random;
+
+import rayrangers.raytracer.algorithm.bounding.BoundingBox;
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.parser.ObjParser;
+import rayrangers.raytracer.world.Camera;
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.Instance;
+import rayrangers.raytracer.world.Scene;
+
+/**
+ * Benchmark comparing a forest of mesh copies built from separate entities
+ * with the same forest built from instances of a single entity.
+ * Reports retained heap, scene setup time and ray throughput. Has to be run
+ * from the repository root.
+ * Usage: InstancingBenchmark [resolution] [copy counts...]
+ */
+public class InstancingBenchmark {
+
+    /**
+     * Path of the mesh which is copied.
+     */
+    private static final String MESH = "examples/tuna/tuna-low.obj";
+
+    /**
+     * Private constructor, class only provides the main method.
+     */
+    private InstancingBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args resolution followed by the copy counts, defaults to 200 and
+     *             10 100 1000
+     * @throws Exception if the mesh cannot be loaded
+     */
+    public static void main(String[] args) throws Exception {
+        int res = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int[] counts = { 10, 100, 1000 };
+        if (args.length > 1) {
+            counts = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                counts[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.printf("%8s %10s %10s %10s %12s%n", "copies", "mode", "heap MB", "setup ms", "Mray/s");
+        for (int count : counts) {
+            for (boolean instanced : new boolean[] { false, true }) {
+                long heapBefore = usedHeap();
+                long start = System.nanoTime();
+                Scene scene = new Scene(Color.BLACK);
+                Camera camera = createForest(scene, count, res, instanced);
+                scene.buildTopLevelHierarchy();
+                double setupMs = (System.nanoTime() - start) / 1e6;
+                double heapMb = (usedHeap() - heapBefore) / 1e6;
+                double rays = SceneScalingBenchmark.raysPerSecond(scene, camera);
+                System.out.printf("%8d %10s %10.2f %10.1f %12.3f%n", count, instanced ? "instances" : "entities",
+                        heapMb, setupMs, rays / 1e6);
+            }
+        }
+    }
+
+    /**
+     * Adds randomly rotated and scaled copies of the mesh on a cubic grid to
+     * the scene and returns a camera looking at the whole grid.
+     *
+     * @param scene     scene to add the copies to
+     * @param count     number of copies
+     * @param res       resolution of the camera
+     * @param instanced true to add instances of one entity, false to add
+     *                  separately loaded and transformed entities
+     * @return camera
+     * @throws Exception if the mesh cannot be loaded
+     */
+    private static Camera createForest(Scene scene, int count, int res, boolean instanced) throws Exception {
+        Entity shared = ObjParser.parseObjFile(MESH);
+        shared.buildBvhTree();
+        BoundingBox box = shared.getBoundingBox();
+        double spacing = 0;
+        for (int axis = 0; axis < 3; axis++) {
+            spacing = Math.max(spacing, 2 * (box.getMax(axis) - box.getMin(axis)));
+        }
+
+        Random random = new Random(1);
+        int side = (int) Math.ceil(Math.cbrt(count));
+        for (int n = 0; n < count; n++) {
+            int i = n % side;
+            int j = n / side % side;
+            int k = n / (side * side);
+            double scale = 0.75 + random.nextDouble() * 0.5;
+            TrafoMatrix tm = new TrafoMatrix(-k * spacing, j * spacing, i * spacing, 0,
+                    random.nextDouble() * 360, 0, scale, scale, scale);
+            if (instanced) {
+                scene.addInstance(new Instance(shared, tm));
+            } else {
+                Entity entity = ObjParser.parseObjFile(MESH);
+                entity.transform(tm);
+                scene.addEntity(entity);
+            }
+        }
+
+        // Camera on the x1 axis looking at the front layer, the pane covers the grid
+        double extent = side * spacing;
+        double distance = extent * 75 / 100 * 1.2;
+        Camera camera = new Camera(new Vertex3D(distance, extent / 2, extent / 2), 0, 90, 0, 75, 100, res, res);
+        scene.addCamera(camera);
+        return camera;
+    }
+
+    /**
+     * Returns the used heap after requesting a garbage collection.
+     *
+     * @return used heap in bytes
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,90 @@
+package rayrangers.raytracer.benchmark;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import rayrangers.raytracer.algorithm.Renderer;
+import rayrangers.raytracer.algorithm.bounding.BvhBuildMode;
+import rayrangers.raytracer.algorithm.bounding.SplitMethod;
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.parser.ObjParser;
+import rayrangers.raytracer.world.Camera;
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.LightSource;
+import rayrangers.raytracer.world.Scene;
+
+/**
+ * Benchmark for building BVH trees eagerly or when the first ray reaches an
+ * entity.
+ * Places copies of a mesh in a row of which only the first few are in view of
+ * the camera, then measures the time to transform all entities and to render
+ * the first frame. Has to be run from the repository root.
+ * Usage: LazyBvhBenchmark [obj file] [copies] [visible copies]
+ */
+public class LazyBvhBenchmark {
+
+    /**
+     * Number of measured runs per build mode, the fastest one is reported.
+     */
+    private static final int RUNS = 3;
+
+    /**
+     * Private constructor, class only provides the main method.
+     */
+    private LazyBvhBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args path of the OBJ file, the number of copies and the number of
+     *             copies in view, defaults to building1.obj, 16 and 2
+     * @throws Exception if the OBJ file cannot be loaded
+     */
+    public static void main(String[] args) throws Exception {
+        String path = args.length > 0 ? args[0] : "examples/buildings/building1/building1.obj";
+        int copies = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int visible = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+
+        System.out.printf("%8s %12s %12s %12s %8s%n", "mode", "transform ms", "frame ms", "total ms", "trees");
+        for (BvhBuildMode mode : BvhBuildMode.values()) {
+            double transformMs = Double.POSITIVE_INFINITY;
+            double frameMs = Double.POSITIVE_INFINITY;
+            int trees = 0;
+            for (int run = 0; run < RUNS; run++) {
+                List<Entity> entities = new ArrayList<>();
+                for (int i = 0; i < copies; i++) {
+                    Entity entity = ObjParser.parseObjFile(path);
+                    entity.setSplitMethod(SplitMethod.SAH);
+                    entity.setBvhBuildMode(mode);
+                    entities.add(entity);
+                }
+                Scene scene = new Scene(Color.BLACK);
+                Camera camera = new Camera(new Vertex3D(600, 25, 0), 0, 90, 0, 75, 100, 200, 200);
+                scene.addCamera(camera);
+                scene.addLightSource(new LightSource(new UUID(0, 1), 0.15, new Vertex3D(300, 250, 200), Color.WHITE));
+
+                // Copies beyond the visible ones are placed far behind the camera
+                long start = System.nanoTime();
+                for (int i = 0; i < copies; i++) {
+                    double x = i < visible ? 0 : 2000;
+                    entities.get(i).transform(new TrafoMatrix(x, -20, i * 50 - visible * 25, 0, 30, 0, 0.002, 0.002,
+                            0.002));
+                    scene.addEntity(entities.get(i));
+                }
+                double transformed = (System.nanoTime() - start) / 1e6;
+                new Renderer(scene, camera.getUuid()).render();
+                double total = (System.nanoTime() - start) / 1e6;
+
+                transformMs = Math.min(transformMs, transformed);
+                frameMs = Math.min(frameMs, total - transformed);
+                trees = (int) entities.stream().filter(entity -> entity.getBvhTree() != null).count();
+            }
+            System.out.printf("%8s %12.1f %12.1f %12.1f %8d%n", mode, transformMs, frameMs, transformMs + frameMs,
+                    trees);
+        }
+    }
+}
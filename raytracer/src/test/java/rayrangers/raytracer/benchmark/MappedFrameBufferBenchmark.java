@@ -0,0 +1,99 @@
+package rayrangers.raytracer.benchmark;
+
+import java.awt.Color;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import rayrangers.raytracer.algorithm.Renderer;
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.parser.ObjParser;
+import rayrangers.raytracer.view.FrameBuffer;
+import rayrangers.raytracer.view.MappedFrameBuffer;
+import rayrangers.raytracer.view.RenderTarget;
+import rayrangers.raytracer.view.TiledTiff;
+import rayrangers.raytracer.world.Camera;
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.LightSource;
+import rayrangers.raytracer.world.Scene;
+
+/**
+ * Benchmark for rendering large images into the heap frame buffer or into a
+ * memory-mapped frame buffer.
+ * Renders a teapot into both targets and reports the render time, the heap
+ * in use after rendering, the tiles flushed in the background and the time
+ * to stream the image into a tiled TIFF file. Has to be run from the
+ * repository root.
+ * Usage: MappedFrameBufferBenchmark [resolution]
+ */
+public class MappedFrameBufferBenchmark {
+
+    /**
+     * Private constructor, class only provides the main method.
+     */
+    private MappedFrameBufferBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args resolution, defaults to 4000
+     * @throws Exception if the OBJ file cannot be loaded or the files cannot
+     *                   be written
+     */
+    public static void main(String[] args) throws Exception {
+        int res = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        Scene scene = new Scene(Color.BLACK);
+        Camera camera = new Camera(new Vertex3D(400, 25, 0), 0, 90, 0, 75, 100, res, res);
+        scene.addCamera(camera);
+        Entity teapot = ObjParser.parseObjFile("examples/teapot/Teapot.obj");
+        teapot.transform(new TrafoMatrix(-50, -100, 10, -90, 10, -33, 1, 1, 1));
+        scene.addEntity(teapot);
+        scene.addLightSource(new LightSource(new UUID(0, 1), 0.15, new Vertex3D(300, 250, 200), Color.WHITE));
+        scene.addLightSource(new LightSource(new UUID(0, 2), 0.15, new Vertex3D(300, 50, 0), Color.WHITE));
+        Renderer renderer = new Renderer(scene, camera.getUuid());
+        Path directory = Files.createTempDirectory("mappedframebuffer");
+        Path bufferPath = directory.resolve("image.rrfb");
+        Path tiffPath = directory.resolve("image.tif");
+
+        System.out.printf("%dx%d%n%8s %10s %10s %10s %10s%n", res, res, "target", "render ms", "heap MiB",
+                "flushed", "TIFF ms");
+        try {
+            for (String name : new String[] { "heap", "mapped" }) {
+                long heapBefore = usedHeap();
+                RenderTarget target = name.equals("heap") ? new FrameBuffer(res, res)
+                        : MappedFrameBuffer.create(bufferPath, res, res);
+                renderer.setRenderTarget(target);
+                long start = System.nanoTime();
+                renderer.render();
+                double renderMs = (System.nanoTime() - start) / 1e6;
+                double heapMiB = (usedHeap() - heapBefore) / 1048576.0;
+                long flushed = target instanceof MappedFrameBuffer mapped ? mapped.getFlushedTiles() : 0;
+
+                start = System.nanoTime();
+                TiledTiff.write(target, MappedFrameBuffer.DEFAULT_TILE_SIZE, tiffPath);
+                double tiffMs = (System.nanoTime() - start) / 1e6;
+                if (target instanceof MappedFrameBuffer mapped) {
+                    mapped.close();
+                }
+                renderer.setRenderTarget(null);
+                System.out.printf("%8s %10.1f %10.1f %10d %10.1f%n", name, renderMs, heapMiB, flushed, tiffMs);
+            }
+        } finally {
+            Files.deleteIfExists(bufferPath);
+            Files.deleteIfExists(tiffPath);
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Returns the heap in use after a garbage collection.
+     *
+     * @return used heap in bytes
+     */
+    private static long usedHeap() {
+        System.gc();
+        return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    }
+}
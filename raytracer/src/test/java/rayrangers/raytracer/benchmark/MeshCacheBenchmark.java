@@ -0,0 +1,76 @@
+package rayrangers.raytracer.benchmark;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import rayrangers.raytracer.algorithm.bounding.SplitMethod;
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.parser.MeshCache;
+import rayrangers.raytracer.parser.ObjParser;
+import rayrangers.raytracer.world.Entity;
+
+/**
+ * Benchmark for loading an entity with the mesh cache.
+ * Compares parsing the OBJ file, transforming it and building the BVH tree
+ * against reading the entry written by the first load. Has to be run from the
+ * repository root.
+ * Usage: MeshCacheBenchmark [obj file] [cache directory]
+ */
+public class MeshCacheBenchmark {
+
+    /**
+     * Number of measured loads per configuration, the fastest one is reported.
+     */
+    private static final int RUNS = 5;
+
+    /**
+     * Private constructor, class only provides the main method.
+     */
+    private MeshCacheBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args path of the OBJ file and the cache directory, defaults to
+     *             building1.obj and a temporary directory
+     * @throws Exception if the OBJ file cannot be loaded
+     */
+    public static void main(String[] args) throws Exception {
+        String path = args.length > 0 ? args[0] : "examples/buildings/building1/building1.obj";
+        Path directory = args.length > 1 ? Path.of(args[1]) : Files.createTempDirectory("meshcache");
+        TrafoMatrix tm = new TrafoMatrix(0, 0, 0, 0, 30, 0, 1, 1, 1);
+
+        System.out.printf("%8s %12s %12s %12s%n", "split", "parse ms", "cached ms", "entry KiB");
+        for (SplitMethod splitMethod : SplitMethod.values()) {
+            MeshCache cache = new MeshCache(directory.resolve(splitMethod.name()));
+            cache.load(path, tm, splitMethod); // Writes the entry if it does not exist yet
+
+            double parse = Double.POSITIVE_INFINITY;
+            double cached = Double.POSITIVE_INFINITY;
+            for (int run = 0; run < RUNS + 1; run++) { // First run warms up the JIT compiler
+                long start = System.nanoTime();
+                Entity entity = ObjParser.parseObjFile(path);
+                entity.setSplitMethod(splitMethod);
+                entity.transform(tm);
+                double parseMs = (System.nanoTime() - start) / 1e6;
+
+                start = System.nanoTime();
+                cache.load(path, tm, splitMethod);
+                double cachedMs = (System.nanoTime() - start) / 1e6;
+                if (run > 0) {
+                    parse = Math.min(parse, parseMs);
+                    cached = Math.min(cached, cachedMs);
+                }
+            }
+
+            long bytes = 0;
+            try (var entries = Files.list(cache.getDirectory())) {
+                for (Path entry : entries.toList()) {
+                    bytes += Files.size(entry);
+                }
+            }
+            System.out.printf("%8s %12.1f %12.1f %12d%n", splitMethod, parse, cached, bytes / 1024);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package rayrangers.raytracer.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import rayrangers.raytracer.parser.ObjParser;
+import rayrangers.raytracer.world.Entity;
+
+/**
+ * Benchmark for the heap size of parsed meshes.
+ * Parses the OBJ file several times, keeps all entities and reports the
+ * retained heap per triangle together with the share of the packed mesh
+ * arrays. The BVH tree is not built. Has to be run from the repository root,
+ * preferably with -XX:+UseSerialGC for stable numbers.
+ * Usage: MeshMemoryBenchmark [obj file] [copies]
+ */
+public class MeshMemoryBenchmark {
+
+    /**
+     * Private constructor, class only provides the main method.
+     */
+    private MeshMemoryBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args path of the OBJ file and number of retained copies, defaults
+     *             to building1.obj and 5
+     * @throws Exception if the OBJ file cannot be loaded
+     */
+    public static void main(String[] args) throws Exception {
+        String path = args.length > 0 ? args[0] : "examples/buildings/building1/building1.obj";
+        int copies = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        // The parser keeps its last result, so the first copy is measured as baseline
+        List<Entity> entities = new ArrayList<>();
+        entities.add(ObjParser.parseObjFile(path));
+        long before = usedHeap();
+        for (int i = 0; i < copies; i++) {
+            entities.add(ObjParser.parseObjFile(path));
+        }
+        long after = usedHeap();
+
+        Entity entity = entities.get(0);
+        int triangles = entity.getFaces().size();
+        double perTriangle = (after - before) / (double) copies / triangles;
+        double meshPerTriangle = entity.getMesh().getMemoryBytes() / (double) triangles;
+        System.out.printf("%s: %d triangles, %d vertices%n", path, triangles, entity.getMesh().getVertexCount());
+        System.out.printf("retained %.1f bytes/triangle, packed mesh arrays %.1f bytes/triangle%n", perTriangle,
+                meshPerTriangle);
+    }
+
+    /**
+     * Returns the used heap after garbage collection.
+     *
+     * @return used heap in bytes
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,116 @@
+package rayrangers.raytracer.benchmark;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+import rayrangers.raytracer.parser.ObjParser;
+import rayrangers.raytracer.parser.ParallelObjParser;
+import rayrangers.raytracer.world.Entity;
+
+/**
+ * Benchmark for parsing OBJ files.
+ * Compares the byte-level ObjParser against tokenizing the same file line by
+ * line with BufferedReader, String.split and Double.parseDouble, as the parser
+ * did before. The baseline only tokenizes and parses the numbers without
+ * building an entity, so the reported speedup is a lower bound. The last
+ * column is the ParallelObjParser on all cores of the common pool. Has to be
+ * run from the repository root.
+ * Usage: ObjParserBenchmark [obj files...]
+ */
+public class ObjParserBenchmark {
+
+    /**
+     * Number of measured runs per file, the fastest one is reported.
+     */
+    private static final int RUNS = 10;
+
+    /**
+     * Private constructor, class only provides the main method.
+     */
+    private ObjParserBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args paths of the OBJ files, defaults to plane1.obj and
+     *             building1.obj
+     * @throws IOException if an OBJ file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        String[] paths = args.length > 0 ? args
+                : new String[] { "examples/planes/jumbo/plane1.obj", "examples/buildings/building1/building1.obj" };
+
+        System.out.printf("%-45s %10s %12s %12s %8s %12s%n", "file", "triangles", "split ms", "parser ms", "speedup",
+                "parallel ms");
+        for (String path : paths) {
+            double split = Double.POSITIVE_INFINITY;
+            double parser = Double.POSITIVE_INFINITY;
+            double parallel = Double.POSITIVE_INFINITY;
+            int triangles = 0;
+            for (int run = 0; run < RUNS + 3; run++) { // First runs warm up the JIT compiler
+                long start = System.nanoTime();
+                tokenize(path);
+                double splitMs = (System.nanoTime() - start) / 1e6;
+
+                start = System.nanoTime();
+                Entity entity = ObjParser.parseObjFile(path);
+                double parserMs = (System.nanoTime() - start) / 1e6;
+                triangles = entity.getFaces().size();
+
+                start = System.nanoTime();
+                ParallelObjParser.parseObjFile(path);
+                double parallelMs = (System.nanoTime() - start) / 1e6;
+                if (run >= 3) {
+                    split = Math.min(split, splitMs);
+                    parser = Math.min(parser, parserMs);
+                    parallel = Math.min(parallel, parallelMs);
+                }
+            }
+            System.out.printf("%-45s %10d %12.1f %12.1f %7.1fx %12.1f%n", path, triangles, split, parser,
+                    split / parser, parallel);
+        }
+    }
+
+    /**
+     * Tokenizes an OBJ file with regular expressions and parses all vertex
+     * coordinates and face indices.
+     *
+     * @param path path of the OBJ file
+     * @return sum of all parsed values, so the work cannot be eliminated
+     * @throws IOException if the file cannot be read
+     */
+    private static double tokenize(String path) throws IOException {
+        double sum = 0;
+        try (BufferedReader br = new BufferedReader(new FileReader(path))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                line = line.split("#", 2)[0];
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] data = line.split("\\s+");
+                switch (data[0]) {
+                    case "v":
+                    case "vn":
+                        sum += Double.parseDouble(data[1]) + Double.parseDouble(data[2])
+                                + Double.parseDouble(data[3]);
+                        break;
+                    case "f":
+                        for (int i = 1; i < data.length; i++) {
+                            for (String index : data[i].split("/")) {
+                                if (!index.isEmpty()) {
+                                    sum += Integer.parseInt(index);
+                                }
+                            }
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,106 @@
+package rayrangers.raytracer.benchmark;
+
+import java.awt.Color;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.parser.ObjParser;
+import rayrangers.raytracer.world.Camera;
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.GeometryPrecision;
+import rayrangers.raytracer.world.GeometryStorage;
+import rayrangers.raytracer.world.LightSource;
+import rayrangers.raytracer.world.Scene;
+
+/**
+ * Benchmark comparing geometry stored on the heap with geometry stored
+ * off-heap.
+ * Loads several copies of a mesh in double and single precision on the heap
+ * and off-heap and reports the used heap and direct memory after a garbage
+ * collection and the primary ray throughput. Has to be run from the
+ * repository root.
+ * Usage: OffHeapBenchmark [obj file] [copies]
+ */
+public class OffHeapBenchmark {
+
+    /**
+     * Number of throughput measurements per configuration, the fastest one is
+     * reported.
+     */
+    private static final int ROUNDS = 3;
+
+    /**
+     * Private constructor, class only provides the main method.
+     */
+    private OffHeapBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args path of the OBJ file and the number of copies, defaults to
+     *             building1.obj and 8
+     * @throws Exception if the OBJ file cannot be loaded
+     */
+    public static void main(String[] args) throws Exception {
+        String path = args.length > 0 ? args[0] : "examples/buildings/building1/building1.obj";
+        int copies = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+        String[] names = { "heap double", "heap float", "off-heap" };
+        GeometryPrecision[] precisions = { GeometryPrecision.DOUBLE, GeometryPrecision.FLOAT,
+                GeometryPrecision.FLOAT };
+        GeometryStorage[] storages = { GeometryStorage.HEAP, GeometryStorage.HEAP, GeometryStorage.OFF_HEAP };
+        System.out.printf("%12s %12s %12s %12s%n", "storage", "heap KiB", "direct KiB", "rays/s");
+        for (int c = 0; c < names.length; c++) {
+            long heapBefore = usedHeap();
+            long directBefore = usedDirect();
+            Scene scene = new Scene(Color.BLACK);
+            scene.setGeometryPrecision(precisions[c]);
+            scene.setGeometryStorage(storages[c]);
+            Camera camera = new Camera(new Vertex3D(400, 25, 0), 0, 90, 0, 75, 100, 300, 300);
+            scene.addCamera(camera);
+            scene.addLightSource(new LightSource(new UUID(0, 1), 0.15, new Vertex3D(300, 250, 200), Color.WHITE));
+            for (int i = 0; i < copies; i++) {
+                Entity entity = ObjParser.parseObjFile(path);
+                entity.transform(new TrafoMatrix(0, -50, i * 10 - copies * 5, 0, 30, 0, 0.008, 0.008, 0.008));
+                scene.addEntity(entity);
+            }
+            long heap = usedHeap() - heapBefore;
+            long direct = usedDirect() - directBefore;
+
+            double raysPerSecond = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                raysPerSecond = Math.max(raysPerSecond, SceneScalingBenchmark.raysPerSecond(scene, camera));
+            }
+            System.out.printf("%12s %12d %12d %12.0f%n", names[c], heap / 1024, direct / 1024, raysPerSecond);
+        }
+    }
+
+    /**
+     * Returns the used heap after a garbage collection.
+     *
+     * @return used heap in bytes
+     */
+    private static long usedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Returns the memory used by direct buffers.
+     *
+     * @return used direct memory in bytes
+     */
+    private static long usedDirect() {
+        long used = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                used += pool.getMemoryUsed();
+            }
+        }
+        return used;
+    }
+}
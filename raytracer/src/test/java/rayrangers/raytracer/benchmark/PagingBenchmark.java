@@ -0,0 +1,124 @@
+package rayrangers.raytracer.benchmark;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import rayrangers.raytracer.algorithm.HitRecord;
+import rayrangers.raytracer.algorithm.Ray;
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.math.Vector3D;
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.parser.GeometryPager;
+import rayrangers.raytracer.parser.ObjParser;
+import rayrangers.raytracer.view.Tile;
+import rayrangers.raytracer.view.ViewPane;
+import rayrangers.raytracer.world.Camera;
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.Scene;
+
+/**
+ * Benchmark for rendering entities paged in from disk with a resident-set
+ * budget smaller than the scene.
+ * Several copies of a mesh are stored in a temporary GeometryPager, then the
+ * primary rays are traced tile by tile in row order and in Z-order, and the
+ * page-ins, evictions and the throughput are reported per budget. Has to be
+ * run from the repository root.
+ * Usage: PagingBenchmark [obj file] [copies]
+ */
+public class PagingBenchmark {
+
+    /**
+     * Edge length of the traced tiles in pixels.
+     */
+    private static final int TILE_SIZE = 32;
+
+    /**
+     * Private constructor, class only provides the main method.
+     */
+    private PagingBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args path of the OBJ file and the number of copies, defaults to
+     *             building1.obj and 16
+     * @throws IOException if the OBJ file cannot be loaded or the pages cannot
+     *                     be written
+     */
+    public static void main(String[] args) throws IOException {
+        String path = args.length > 0 ? args[0] : "examples/buildings/building1/building1.obj";
+        int copies = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+
+        Path directory = Files.createTempDirectory("paging");
+        try {
+            GeometryPager pager = new GeometryPager(directory, Long.MAX_VALUE);
+            Scene scene = new Scene(Color.BLACK);
+            Camera camera = new Camera(new Vertex3D(600, 25, 0), 0, 90, 0, 75, 100, 300, 300);
+            scene.addCamera(camera);
+            for (int i = 0; i < copies; i++) {
+                Entity entity = ObjParser.parseObjFile(path);
+                entity.transform(new TrafoMatrix(0, -20, i * 50 - copies * 25, 0, 30, 0, 0.002, 0.002, 0.002));
+                scene.addBounded(pager.store(entity));
+            }
+            scene.buildTopLevelHierarchy();
+            ViewPane viewPane = camera.getViewPane();
+
+            // Fully resident run to measure the size of the scene
+            trace(scene, camera, Tile.split(viewPane.getResX(), viewPane.getResY(), TILE_SIZE));
+            long sceneBytes = pager.getResidentBytes();
+            System.out.printf("%d entities, %d KiB resident%n", pager.getResidentCount(), sceneBytes / 1024);
+            System.out.printf("%8s %10s %10s %10s %12s%n", "budget", "order", "page-ins", "evictions", "rays/s");
+            for (int percent : new int[] { 100, 50, 25 }) {
+                for (String order : new String[] { "row", "Z" }) {
+                    List<Tile> tiles = order.equals("row")
+                            ? Tile.split(viewPane.getResX(), viewPane.getResY(), TILE_SIZE)
+                            : Tile.splitInZOrder(viewPane.getResX(), viewPane.getResY(), TILE_SIZE);
+                    pager.evictAll();
+                    pager.setResidentBudget(sceneBytes * percent / 100);
+                    long pageIns = pager.getPageIns();
+                    long evictions = pager.getEvictions();
+                    double raysPerSecond = trace(scene, camera, tiles);
+                    System.out.printf("%7d%% %10s %10d %10d %12.0f%n", percent, order, pager.getPageIns() - pageIns,
+                            pager.getEvictions() - evictions, raysPerSecond);
+                }
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Traces the primary rays of all pixels tile by tile in the given order.
+     *
+     * @param scene  scene to trace
+     * @param camera camera of the scene
+     * @param tiles  tiles in tracing order
+     * @return rays per second
+     */
+    private static double trace(Scene scene, Camera camera, List<Tile> tiles) {
+        ViewPane viewPane = camera.getViewPane();
+        Vector3D dw = camera.getW().mult(-camera.getPaneDistance());
+        HitRecord record = new HitRecord();
+        long start = System.nanoTime();
+        for (Tile tile : tiles) {
+            for (int j = tile.getY(); j < tile.getY() + tile.getHeight(); j++) {
+                for (int i = tile.getX(); i < tile.getX() + tile.getWidth(); i++) {
+                    Vector3D direction = dw.add(camera.getU().mult(viewPane.getU(i)))
+                            .add(camera.getV().mult(viewPane.getV(j)));
+                    scene.hit(new Ray(camera.getWorldPosition(), direction), 0, Double.MAX_VALUE, record);
+                }
+            }
+        }
+        return viewPane.getResX() * viewPane.getResY() / ((System.nanoTime() - start) / 1e9);
+    }
+}
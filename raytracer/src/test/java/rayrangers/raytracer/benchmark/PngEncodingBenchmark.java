@@ -0,0 +1,102 @@
+package rayrangers.raytracer.benchmark;
+
+import java.awt.Color;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import javax.imageio.ImageIO;
+
+import rayrangers.raytracer.algorithm.Renderer;
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.parser.ObjParser;
+import rayrangers.raytracer.view.StreamingPngWriter;
+import rayrangers.raytracer.view.ViewPane;
+import rayrangers.raytracer.world.Camera;
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.LightSource;
+import rayrangers.raytracer.world.Scene;
+
+/**
+ * Benchmark for writing a rendered image into a PNG file.
+ * Compares rendering followed by ImageIO, rendering followed by the
+ * StreamingPngWriter and rendering into the StreamingPngWriter, which
+ * encodes bands while the remaining tiles are rendered. Has to be run from
+ * the repository root.
+ * Usage: PngEncodingBenchmark [resolution]
+ */
+public class PngEncodingBenchmark {
+
+    /**
+     * Number of measured runs per method, the fastest one is reported.
+     */
+    private static final int RUNS = 3;
+
+    /**
+     * Private constructor, class only provides the main method.
+     */
+    private PngEncodingBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args resolution, defaults to 2000
+     * @throws Exception if the OBJ file cannot be loaded or the PNG file
+     *                   cannot be written
+     */
+    public static void main(String[] args) throws Exception {
+        int res = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        Scene scene = new Scene(Color.BLACK);
+        Camera camera = new Camera(new Vertex3D(400, 25, 0), 0, 90, 0, 75, 100, res, res);
+        scene.addCamera(camera);
+        Entity teapot = ObjParser.parseObjFile("examples/teapot/Teapot.obj");
+        teapot.transform(new TrafoMatrix(-50, -100, 10, -90, 10, -33, 1, 1, 1));
+        scene.addEntity(teapot);
+        scene.addLightSource(new LightSource(new UUID(0, 1), 0.15, new Vertex3D(300, 250, 200), Color.WHITE));
+        scene.addLightSource(new LightSource(new UUID(0, 2), 0.15, new Vertex3D(300, 50, 0), Color.WHITE));
+        Renderer renderer = new Renderer(scene, camera.getUuid());
+        ViewPane viewPane = camera.getViewPane();
+        Path path = Files.createTempFile("pngencoding", ".png");
+
+        System.out.printf("%dx%d, %d processors%n%10s %10s %10s %10s %10s%n", res, res,
+                Runtime.getRuntime().availableProcessors(), "method", "render ms", "encode ms", "total ms", "KiB");
+        try {
+            for (String method : new String[] { "ImageIO", "after", "streaming" }) {
+                double renderMs = Double.POSITIVE_INFINITY;
+                double totalMs = Double.POSITIVE_INFINITY;
+                for (int run = 0; run < RUNS; run++) {
+                    long start = System.nanoTime();
+                    double rendered;
+                    if (method.equals("streaming")) {
+                        try (StreamingPngWriter writer = new StreamingPngWriter(viewPane.getFrameBuffer(), path)) {
+                            renderer.setRenderTarget(writer);
+                            renderer.render();
+                            rendered = (System.nanoTime() - start) / 1e6;
+                        } finally {
+                            renderer.setRenderTarget(null);
+                        }
+                    } else {
+                        renderer.render();
+                        rendered = (System.nanoTime() - start) / 1e6;
+                        if (method.equals("ImageIO")) {
+                            ImageIO.write(viewPane.getFrameBuffer().toBufferedImage(), "png", path.toFile());
+                        } else {
+                            StreamingPngWriter.write(viewPane.getFrameBuffer(), path);
+                        }
+                    }
+                    double total = (System.nanoTime() - start) / 1e6;
+                    if (total < totalMs) {
+                        totalMs = total;
+                        renderMs = rendered;
+                    }
+                }
+                System.out.printf("%10s %10.1f %10.1f %10.1f %10d%n", method, renderMs, totalMs - renderMs, totalMs,
+                        Files.size(path) / 1024);
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package rayrangers.raytracer.benchmark;
+
+import java.awt.Color;
+import java.util.UUID;
+
+import rayrangers.raytracer.algorithm.Renderer;
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.parser.ObjParser;
+import rayrangers.raytracer.view.ViewPane;
+import rayrangers.raytracer.world.Camera;
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.GeometryPrecision;
+import rayrangers.raytracer.world.LightSource;
+import rayrangers.raytracer.world.Scene;
+
+/**
+ * Benchmark comparing single and double precision geometry.
+ * Renders the same scene in both precisions and reports the size of the mesh
+ * and BVH arrays, the primary ray throughput and the number of pixels that
+ * differ from the double precision image. Has to be run from the repository
+ * root.
+ * Usage: PrecisionBenchmark [obj file] [resolution]
+ */
+public class PrecisionBenchmark {
+
+    /**
+     * Number of throughput measurements per precision, the fastest one is
+     * reported.
+     */
+    private static final int ROUNDS = 3;
+
+    /**
+     * Private constructor, class only provides the main method.
+     */
+    private PrecisionBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args path of the OBJ file and the image resolution, defaults to
+     *             building1.obj and 400
+     * @throws Exception if the OBJ file cannot be loaded
+     */
+    public static void main(String[] args) throws Exception {
+        String path = args.length > 0 ? args[0] : "examples/buildings/building1/building1.obj";
+        int res = args.length > 1 ? Integer.parseInt(args[1]) : 400;
+
+        GeometryPrecision[] precisions = GeometryPrecision.values();
+        Scene[] scenes = new Scene[precisions.length];
+        Camera[] cameras = new Camera[precisions.length];
+        Entity[] entities = new Entity[precisions.length];
+        int[][] images = new int[precisions.length][];
+        for (int p = 0; p < precisions.length; p++) {
+            scenes[p] = new Scene(Color.BLACK);
+            scenes[p].setGeometryPrecision(precisions[p]);
+            cameras[p] = new Camera(new Vertex3D(400, 25, 0), 0, 90, 0, 75, 100, res, res);
+            scenes[p].addCamera(cameras[p]);
+            // Fixed UUIDs, so both scenes add up the light sources in the same order
+            scenes[p].addLightSource(new LightSource(new UUID(0, 1), 0.15, new Vertex3D(300, 250, 200), Color.WHITE));
+            scenes[p].addLightSource(new LightSource(new UUID(0, 2), 0.15, new Vertex3D(300, 50, 0), Color.WHITE));
+            entities[p] = ObjParser.parseObjFile(path);
+            entities[p].transform(new TrafoMatrix(0, -50, 0, 0, 30, 0, 0.008, 0.008, 0.008));
+            scenes[p].addEntity(entities[p]);
+            new Renderer(scenes[p], cameras[p].getUuid()).render();
+            images[p] = readImage(cameras[p].getViewPane());
+        }
+
+        // Alternate the measurements, so both precisions run with the same compiled code
+        double[] raysPerSecond = new double[precisions.length];
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int p = 0; p < precisions.length; p++) {
+                raysPerSecond[p] = Math.max(raysPerSecond[p],
+                        SceneScalingBenchmark.raysPerSecond(scenes[p], cameras[p]));
+            }
+        }
+
+        System.out.printf("%10s %12s %12s %12s %12s %10s%n", "precision", "mesh KiB", "BVH KiB", "rays/s",
+                "diff pixels", "max delta");
+        for (int p = 0; p < precisions.length; p++) {
+            // Compare against the double precision image
+            int[] image = images[p];
+            int[] reference = images[GeometryPrecision.DOUBLE.ordinal()];
+            int differing = 0;
+            int maxDelta = 0;
+            for (int i = 0; i < image.length; i++) {
+                if (image[i] != reference[i]) {
+                    differing++;
+                    for (int shift = 0; shift < 24; shift += 8) {
+                        int delta = Math.abs(((image[i] >> shift) & 0xFF) - ((reference[i] >> shift) & 0xFF));
+                        maxDelta = Math.max(maxDelta, delta);
+                    }
+                }
+            }
+            System.out.printf("%10s %12d %12d %12.0f %12d %10d%n", precisions[p],
+                    entities[p].getMesh().getMemoryBytes() / 1024, entities[p].getBvhTree().getMemoryBytes() / 1024,
+                    raysPerSecond[p], differing, maxDelta);
+        }
+    }
+
+    /**
+     * Reads the colors of all pixels of a view pane.
+     *
+     * @param viewPane rendered view pane
+     * @return RGB values row by row
+     */
+    private static int[] readImage(ViewPane viewPane) {
+        return viewPane.getFrameBuffer().getData().clone();
+    }
+}
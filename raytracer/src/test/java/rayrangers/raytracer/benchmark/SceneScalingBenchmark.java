@@ -0,0 +1,136 @@
+package rayrangers.raytracer.benchmark;
+
+import java.awt.Color;
+
+import rayrangers.raytracer.algorithm.HitRecord;
+import rayrangers.raytracer.algorithm.Ray;
+import rayrangers.raytracer.algorithm.bounding.BoundingBox;
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.math.Vector3D;
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.parser.ObjParser;
+import rayrangers.raytracer.view.ViewPane;
+import rayrangers.raytracer.world.Camera;
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.Scene;
+
+/**
+ * Benchmark for the scaling of Scene.hit with the number of entities.
+ * A grid of tuna copies is traced once by looping over all entities and once
+ * with the top-level BVH. Has to be run from the repository root.
+ * Usage: SceneScalingBenchmark [resolution] [entity counts...]
+ */
+public class SceneScalingBenchmark {
+
+    /**
+     * Path of the mesh which is copied.
+     */
+    private static final String MESH = "examples/tuna/tuna-low.obj";
+
+    /**
+     * Private constructor, class only provides the main method.
+     */
+    private SceneScalingBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args resolution followed by the entity counts, defaults to 200 and
+     *             1 10 100 400
+     * @throws Exception if the mesh cannot be loaded
+     */
+    public static void main(String[] args) throws Exception {
+        int res = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int[] counts = { 1, 10, 100, 400 };
+        if (args.length > 1) {
+            counts = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                counts[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.printf("%8s %10s %10s %12s %12s %8s%n", "entities", "faces", "build ms", "loop Mray/s",
+                "tlas Mray/s", "speedup");
+        for (int count : counts) {
+            Scene scene = new Scene(Color.BLACK);
+            Camera camera = createGrid(scene, count, res);
+
+            double loop = raysPerSecond(scene, camera);
+            long start = System.nanoTime();
+            scene.buildTopLevelHierarchy();
+            double buildMs = (System.nanoTime() - start) / 1e6;
+            double tlas = raysPerSecond(scene, camera);
+
+            int faces = scene.getEntities().values().stream().mapToInt(e -> e.getFaces().size()).sum();
+            System.out.printf("%8d %10d %10.2f %12.3f %12.3f %8.1f%n", count, faces, buildMs, loop / 1e6,
+                    tlas / 1e6, tlas / loop);
+        }
+    }
+
+    /**
+     * Adds copies of the mesh on a cubic grid to the scene and returns a camera
+     * looking at the whole grid.
+     *
+     * @param scene scene to add the entities to
+     * @param count number of copies
+     * @param res   resolution of the camera
+     * @return camera
+     * @throws Exception if the mesh cannot be loaded
+     */
+    private static Camera createGrid(Scene scene, int count, int res) throws Exception {
+        int side = (int) Math.ceil(Math.cbrt(count));
+        double spacing = 0;
+        for (int n = 0; n < count; n++) {
+            Entity entity = ObjParser.parseObjFile(MESH);
+            if (spacing == 0) {
+                // Use the first copy to measure the mesh
+                entity.transform(new TrafoMatrix(0, 0, 0, 0, 0, 0, 1, 1, 1));
+                BoundingBox box = entity.getBoundingBox();
+                for (int axis = 0; axis < 3; axis++) {
+                    spacing = Math.max(spacing, 1.5 * (box.getMax(axis) - box.getMin(axis)));
+                }
+                entity = ObjParser.parseObjFile(MESH);
+            }
+            int i = n % side;
+            int j = n / side % side;
+            int k = n / (side * side);
+            entity.transform(new TrafoMatrix(-k * spacing, j * spacing, i * spacing, 0, 0, 0, 1, 1, 1));
+            scene.addEntity(entity);
+        }
+
+        // Camera on the x1 axis looking at the front layer, the pane covers the grid
+        double extent = side * spacing;
+        double distance = extent * 75 / 100 * 1.2;
+        Camera camera = new Camera(new Vertex3D(distance, extent / 2, extent / 2), 0, 90, 0, 75, 100, res, res);
+        scene.addCamera(camera);
+        return camera;
+    }
+
+    /**
+     * Traces all camera rays three times on the current thread and measures
+     * the last pass, the first ones warm up the JIT compiler.
+     *
+     * @param scene  scene to trace
+     * @param camera camera the rays start at
+     * @return rays per second
+     */
+    static double raysPerSecond(Scene scene, Camera camera) {
+        ViewPane viewPane = camera.getViewPane();
+        Vector3D dw = camera.getW().mult(-camera.getPaneDistance());
+        HitRecord record = new HitRecord();
+        long elapsed = 0;
+        for (int pass = 0; pass < 3; pass++) {
+            long start = System.nanoTime();
+            for (int j = 0; j < viewPane.getResY(); j++) {
+                for (int i = 0; i < viewPane.getResX(); i++) {
+                    Vector3D direction = dw.add(camera.getU().mult(viewPane.getU(i)))
+                            .add(camera.getV().mult(viewPane.getV(j)));
+                    scene.hit(new Ray(camera.getWorldPosition(), direction), 0, Double.MAX_VALUE, record);
+                }
+            }
+            elapsed = System.nanoTime() - start;
+        }
+        return viewPane.getResX() * viewPane.getResY() / (elapsed / 1e9);
+    }
+}
@@ -0,0 +1,92 @@
+package rayrangers.raytracer.benchmark;
+
+import java.awt.Color;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import rayrangers.raytracer.algorithm.HitRecord;
+import rayrangers.raytracer.algorithm.Ray;
+import rayrangers.raytracer.algorithm.Shader;
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.math.Vector3D;
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.parser.ObjParser;
+import rayrangers.raytracer.view.ViewPane;
+import rayrangers.raytracer.world.Camera;
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.LightSource;
+import rayrangers.raytracer.world.Scene;
+
+/**
+ * Benchmark for shading hits.
+ * Collects the hit records of the primary rays of a teapot lit by two light
+ * sources, then shades them repeatedly and reports the time and the bytes
+ * allocated per shaded hit. Has to be run from the repository root.
+ * Usage: ShaderBenchmark [resolution]
+ */
+public class ShaderBenchmark {
+
+    /**
+     * Number of shading passes, the last one is reported.
+     */
+    private static final int PASSES = 20;
+
+    /**
+     * Private constructor, class only provides the main method.
+     */
+    private ShaderBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args resolution, defaults to 200
+     * @throws Exception if the OBJ file cannot be loaded
+     */
+    public static void main(String[] args) throws Exception {
+        int res = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        Scene scene = new Scene(Color.BLACK);
+        Camera camera = new Camera(new Vertex3D(400, 25, 0), 0, 90, 0, 75, 100, res, res);
+        scene.addCamera(camera);
+        Entity teapot = ObjParser.parseObjFile("examples/teapot/Teapot.obj");
+        teapot.transform(new TrafoMatrix(-50, -100, 10, -90, 10, -33, 1, 1, 1));
+        scene.addEntity(teapot);
+        scene.addLightSource(new LightSource(new UUID(0, 1), 0.15, new Vertex3D(300, 250, 200), Color.WHITE));
+        scene.addLightSource(new LightSource(new UUID(0, 2), 0.15, new Vertex3D(300, 50, 0), Color.WHITE));
+        scene.buildTopLevelHierarchy();
+
+        List<HitRecord> hits = new ArrayList<>();
+        ViewPane viewPane = camera.getViewPane();
+        Vector3D dw = camera.getW().mult(-camera.getPaneDistance());
+        for (int j = 0; j < viewPane.getResY(); j++) {
+            for (int i = 0; i < viewPane.getResX(); i++) {
+                Vector3D direction = dw.add(camera.getU().mult(viewPane.getU(i)))
+                        .add(camera.getV().mult(viewPane.getV(j)));
+                HitRecord record = new HitRecord();
+                if (scene.hit(new Ray(camera.getWorldPosition(), direction), 0, Double.MAX_VALUE, record)) {
+                    hits.add(record);
+                }
+            }
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        Shader shader = new Shader(scene);
+        long checksum = 0;
+        double nanos = 0;
+        double bytes = 0;
+        for (int pass = 0; pass < PASSES; pass++) { // First passes warm up the JIT compiler
+            long allocated = threads.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            for (HitRecord record : hits) {
+                checksum += shader.calculatePixelRgb(record);
+            }
+            nanos = (double) (System.nanoTime() - start) / hits.size();
+            bytes = (double) (threads.getCurrentThreadAllocatedBytes() - allocated) / hits.size();
+        }
+        System.out.printf("%d hits, %.1f ns/hit, %.1f bytes/hit (checksum %d)%n", hits.size(), nanos, bytes,
+                checksum);
+    }
+}
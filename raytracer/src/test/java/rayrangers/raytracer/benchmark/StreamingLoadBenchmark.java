@@ -0,0 +1,82 @@
+package rayrangers.raytracer.benchmark;
+
+import java.io.IOException;
+
+import rayrangers.raytracer.algorithm.bounding.SplitMethod;
+import rayrangers.raytracer.parser.LoadTimings;
+import rayrangers.raytracer.parser.ObjParser;
+import rayrangers.raytracer.parser.StreamingObjLoader;
+import rayrangers.raytracer.world.Entity;
+
+/**
+ * Benchmark for the time from loading an OBJ file until its BVH tree is ready.
+ * Compares parsing followed by building the tree with the default median
+ * split and with Morton codes against the StreamingObjLoader, which bins the
+ * faces while parsing. The stage timings of the fastest streaming run show how
+ * much of the build overlaps with parsing. Has to be run from the repository
+ * root.
+ * Usage: StreamingLoadBenchmark [obj files...]
+ */
+public class StreamingLoadBenchmark {
+
+    /**
+     * Number of measured runs per file, the fastest one is reported.
+     */
+    private static final int RUNS = 10;
+
+    /**
+     * Private constructor, class only provides the main method.
+     */
+    private StreamingLoadBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args paths of the OBJ files, defaults to plane1.obj and
+     *             building1.obj
+     * @throws IOException if an OBJ file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        String[] paths = args.length > 0 ? args
+                : new String[] { "examples/planes/jumbo/plane1.obj", "examples/buildings/building1/building1.obj" };
+
+        for (String path : paths) {
+            double parse = Double.POSITIVE_INFINITY;
+            double median = Double.POSITIVE_INFINITY;
+            double morton = Double.POSITIVE_INFINITY;
+            double streaming = Double.POSITIVE_INFINITY;
+            LoadTimings best = null;
+            for (int run = 0; run < RUNS + 3; run++) { // First runs warm up the JIT compiler
+                long start = System.nanoTime();
+                Entity entity = ObjParser.parseObjFile(path);
+                double parseMs = (System.nanoTime() - start) / 1e6;
+                entity.buildBvhTree();
+                double medianMs = (System.nanoTime() - start) / 1e6;
+
+                start = System.nanoTime();
+                entity = ObjParser.parseObjFile(path);
+                entity.setSplitMethod(SplitMethod.MORTON);
+                entity.buildBvhTree();
+                double mortonMs = (System.nanoTime() - start) / 1e6;
+
+                LoadTimings timings = new LoadTimings();
+                StreamingObjLoader.load(path, timings);
+                double streamingMs = timings.getTotalNanos() / 1e6;
+                if (run >= 3) {
+                    parse = Math.min(parse, parseMs);
+                    median = Math.min(median, medianMs);
+                    morton = Math.min(morton, mortonMs);
+                    if (streamingMs < streaming) {
+                        streaming = streamingMs;
+                        best = timings;
+                    }
+                }
+            }
+            System.out.printf("%s%n%-28s %8.1f ms%n%-28s %8.1f ms%n%-28s %8.1f ms%n%-28s %8.1f ms%n", path,
+                    "parse only", parse, "parse + median build", median, "parse + Morton build", morton,
+                    "streaming Morton build", streaming);
+            System.out.println(best);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package rayrangers.raytracer.benchmark;
+
+import java.awt.Color;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import rayrangers.raytracer.algorithm.Renderer;
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.parser.ObjParser;
+import rayrangers.raytracer.view.PortableFloatMap;
+import rayrangers.raytracer.view.ToneMapping;
+import rayrangers.raytracer.view.ViewPane;
+import rayrangers.raytracer.world.Camera;
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.LightSource;
+import rayrangers.raytracer.world.Scene;
+
+/**
+ * Benchmark for changing the exposure of a rendered image.
+ * Renders a teapot with high dynamic range once, then compares the time of a
+ * full render with tone mapping the radiance again and with writing it to a
+ * PFM file. Has to be run from the repository root.
+ * Usage: ToneMappingBenchmark [resolution]
+ */
+public class ToneMappingBenchmark {
+
+    /**
+     * Number of measured runs per step, the fastest one is reported.
+     */
+    private static final int RUNS = 3;
+
+    /**
+     * Private constructor, class only provides the main method.
+     */
+    private ToneMappingBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args resolution, defaults to 800
+     * @throws Exception if the OBJ file cannot be loaded or the PFM file
+     *                   cannot be written
+     */
+    public static void main(String[] args) throws Exception {
+        int res = args.length > 0 ? Integer.parseInt(args[0]) : 800;
+        Scene scene = new Scene(Color.BLACK);
+        Camera camera = new Camera(new Vertex3D(400, 25, 0), 0, 90, 0, 75, 100, res, res);
+        scene.addCamera(camera);
+        Entity teapot = ObjParser.parseObjFile("examples/teapot/Teapot.obj");
+        teapot.transform(new TrafoMatrix(-50, -100, 10, -90, 10, -33, 1, 1, 1));
+        scene.addEntity(teapot);
+        scene.addLightSource(new LightSource(new UUID(0, 1), 0.15, new Vertex3D(300, 250, 200), Color.WHITE));
+        scene.addLightSource(new LightSource(new UUID(0, 2), 0.15, new Vertex3D(300, 50, 0), Color.WHITE));
+        Renderer renderer = new Renderer(scene, camera.getUuid());
+        renderer.setHighDynamicRange(true);
+        ViewPane viewPane = camera.getViewPane();
+        Path path = Files.createTempFile("tonemapping", ".pfm");
+
+        double renderMs = Double.POSITIVE_INFINITY;
+        double toneMapMs = Double.POSITIVE_INFINITY;
+        double writeMs = Double.POSITIVE_INFINITY;
+        try {
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                renderer.render();
+                renderMs = Math.min(renderMs, (System.nanoTime() - start) / 1e6);
+
+                start = System.nanoTime();
+                for (ToneMapping toneMapping : ToneMapping.values()) {
+                    viewPane.toneMap(toneMapping, 0.5f + run);
+                }
+                toneMapMs = Math.min(toneMapMs, (System.nanoTime() - start) / 1e6 / ToneMapping.values().length);
+
+                start = System.nanoTime();
+                PortableFloatMap.write(viewPane.getHdrFrameBuffer(), path);
+                writeMs = Math.min(writeMs, (System.nanoTime() - start) / 1e6);
+            }
+            System.out.printf("%dx%d: render %.1f ms, tone map %.1f ms, write PFM %.1f ms (%d KiB)%n", res, res,
+                    renderMs, toneMapMs, writeMs, Files.size(path) / 1024);
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
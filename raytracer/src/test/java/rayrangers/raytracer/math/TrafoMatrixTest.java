@@ -0,0 +1,41 @@
+package rayrangers.raytracer.math;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the TrafoMatrix class.
+ */
+public class TrafoMatrixTest {
+
+    // Test that the product of a matrix and its inverse is the identity
+    @Test
+    public void testInverse() {
+        TrafoMatrix tm = new TrafoMatrix(10, -20, 5, 30, -45, 60, 2, 0.5, 3);
+        TrafoMatrix product = tm.matrMult(tm.inverse());
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 4; j++) {
+                assertEquals(i == j ? 1 : 0, product.getElement(i, j), 1e-12);
+            }
+        }
+    }
+
+    // Test that the inverse transforms a point back to its original position
+    @Test
+    public void testInverseRestoresPoint() {
+        TrafoMatrix tm = new TrafoMatrix(1, 2, 3, 0, 90, 0, 1, 1, 1);
+        Vector3D vec = new Vector3D(4, 5, 6);
+        vec.transform(tm);
+        vec.transform(tm.inverse());
+        assertEquals(4, vec.getCoord(1), 1e-12);
+        assertEquals(5, vec.getCoord(2), 1e-12);
+        assertEquals(6, vec.getCoord(3), 1e-12);
+    }
+
+    // Test for a singular matrix (scaling factor 0)
+    @Test
+    public void testSingularInverse() {
+        TrafoMatrix tm = new TrafoMatrix(0, 0, 0, 0, 0, 0, 1, 0, 1);
+        assertThrows(ArithmeticException.class, tm::inverse);
+    }
+}
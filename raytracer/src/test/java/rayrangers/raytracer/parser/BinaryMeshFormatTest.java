@@ -0,0 +1,190 @@
+package rayrangers.raytracer.parser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import rayrangers.raytracer.algorithm.HitRecord;
+import rayrangers.raytracer.algorithm.Ray;
+import rayrangers.raytracer.algorithm.bounding.LinearBoundingVolumeHierarchy;
+import rayrangers.raytracer.algorithm.bounding.SplitMethod;
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.math.Vector3D;
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.Face;
+import rayrangers.raytracer.world.GeometryPrecision;
+import rayrangers.raytracer.world.GeometryStorage;
+import rayrangers.raytracer.world.Mesh;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the BinaryMeshFormat class.
+ */
+public class BinaryMeshFormatTest {
+
+    /**
+     * Temporary directory holding the OBJ file, the MTL file and the binary
+     * mesh file.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Path to the OBJ file.
+     */
+    private String objPath;
+
+    /**
+     * Path to the binary mesh file.
+     */
+    private Path binaryPath;
+
+    /**
+     * Writes the grid fixture.
+     *
+     * @throws IOException if the files cannot be written
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        // Coordinates which cannot be represented exactly as floats
+        objPath = GridFixture.write(directory, 0.1);
+        binaryPath = directory.resolve("grid" + BinaryMeshFormat.EXTENSION);
+    }
+
+    /**
+     * Tests that a converted file is loaded into buffers with the vertices,
+     * faces and materials of the OBJ file rounded to floats.
+     *
+     * @throws IOException if converting or loading fails
+     */
+    @Test
+    public void testConvertAndRead() throws IOException {
+        BinaryMeshFormat.convert(objPath, binaryPath);
+        Entity parsed = ObjParser.parseObjFile(objPath);
+        Entity loaded = BinaryMeshFormat.read(binaryPath);
+
+        Mesh expected = parsed.getMesh();
+        Mesh actual = loaded.getMesh();
+        assertEquals(GeometryPrecision.FLOAT, loaded.getGeometryPrecision());
+        assertNotNull(actual.getPositionBuffer());
+        assertNull(actual.getFloatPositions());
+        assertEquals(expected.getVertexCount(), actual.getVertexCount());
+        assertEquals(expected.getTriangleCount(), actual.getTriangleCount());
+        for (int v = 0; v < expected.getVertexCount(); v++) {
+            for (int axis = 0; axis < 3; axis++) {
+                assertEquals((float) expected.getCoord(v, axis), actual.getCoord(v, axis));
+            }
+            assertEquals(expected.hasNormal(v), actual.hasNormal(v));
+        }
+        for (int t = 0; t < expected.getTriangleCount(); t++) {
+            for (int corner = 0; corner < 3; corner++) {
+                assertEquals(expected.getVertexIndex(t, corner), actual.getVertexIndex(t, corner));
+            }
+        }
+
+        assertEquals(parsed.getName(), loaded.getName());
+        assertEquals(parsed.getFaces().size(), loaded.getFaces().size());
+        for (int i = 0; i < parsed.getFaces().size(); i++) {
+            Face expectedFace = parsed.getFaces().get(i);
+            Face actualFace = loaded.getFaces().get(i);
+            assertEquals(expectedFace.getMaterial().getName(), actualFace.getMaterial().getName());
+            assertEquals(expectedFace.getMaterial().getDiffuse(), actualFace.getMaterial().getDiffuse());
+            assertEquals(expectedFace.getMaterial().getTransparency(), actualFace.getMaterial().getTransparency());
+            assertEquals(expectedFace.getSmoothingGroup(), actualFace.getSmoothingGroup());
+        }
+        // Faces of a material share one object
+        assertSame(loaded.getFaces().get(0).getMaterial(), loaded.getFaces().get(1).getMaterial());
+    }
+
+    /**
+     * Tests that a loaded entity is transformed in its buffers and hit like the
+     * parsed entity in single precision, while the file stays unchanged.
+     *
+     * @throws IOException if converting or loading fails
+     */
+    @Test
+    public void testTransformDoesNotChangeFile() throws IOException {
+        BinaryMeshFormat.convert(objPath, binaryPath);
+        byte[] bytes = Files.readAllBytes(binaryPath);
+        TrafoMatrix tm = new TrafoMatrix(1, 2, 3, 10, 20, 30, 2, 2, 2);
+
+        Entity parsed = ObjParser.parseObjFile(objPath);
+        parsed.setGeometryPrecision(GeometryPrecision.FLOAT);
+        parsed.transform(tm);
+        Entity loaded = BinaryMeshFormat.read(binaryPath);
+        loaded.transform(tm);
+        assertNotNull(loaded.getMesh().getPositionBuffer());
+
+        for (int i = 0; i < 10; i++) {
+            Vertex3D target = parsed.getFaces().get(i * 17).getCenter();
+            Ray ray = new Ray(new Vertex3D(0, 0, 200), new Vector3D(target.getCoord(1), target.getCoord(2),
+                    target.getCoord(3) - 200).normalize());
+            HitRecord expectedRecord = new HitRecord();
+            HitRecord actualRecord = new HitRecord();
+            assertTrue(parsed.hit(ray, 0, Double.MAX_VALUE, expectedRecord));
+            assertTrue(loaded.hit(ray, 0, Double.MAX_VALUE, actualRecord));
+            assertEquals(expectedRecord.getT(), actualRecord.getT());
+        }
+        assertArrayEquals(bytes, Files.readAllBytes(binaryPath));
+    }
+
+    /**
+     * Tests that a stored BVH tree is wrapped off-heap on loading and finds
+     * the same hits as the tree of the written entity.
+     *
+     * @throws IOException if writing or loading fails
+     */
+    @Test
+    public void testBvhTreeIsStored() throws IOException {
+        Entity parsed = ObjParser.parseObjFile(objPath);
+        parsed.setGeometryPrecision(GeometryPrecision.FLOAT);
+        parsed.setSplitMethod(SplitMethod.SAH);
+        parsed.transform(new TrafoMatrix(1, 2, 3, 10, 20, 30, 2, 2, 2));
+        BinaryMeshFormat.write(parsed, binaryPath);
+        Entity loaded = BinaryMeshFormat.read(binaryPath);
+
+        LinearBoundingVolumeHierarchy tree = loaded.getBvhTree();
+        assertNotNull(tree);
+        assertEquals(GeometryStorage.OFF_HEAP, tree.getStorage());
+        assertEquals(SplitMethod.SAH, tree.getSplitMethod());
+        assertEquals(parsed.getBvhTree().getNodeCount(), tree.getNodeCount());
+        assertEquals(parsed.getBvhTree().getMaxDepth(), tree.getMaxDepth());
+        assertEquals(parsed.getBvhTree().getBuildSahCost(), tree.getBuildSahCost());
+        for (int i = 0; i < 10; i++) {
+            Vertex3D target = parsed.getFaces().get(i * 17).getCenter();
+            Ray ray = new Ray(new Vertex3D(0, 0, 200), new Vector3D(target.getCoord(1), target.getCoord(2),
+                    target.getCoord(3) - 200).normalize());
+            HitRecord expectedRecord = new HitRecord();
+            HitRecord actualRecord = new HitRecord();
+            assertTrue(parsed.hit(ray, 0, Double.MAX_VALUE, expectedRecord));
+            assertTrue(loaded.hit(ray, 0, Double.MAX_VALUE, actualRecord));
+            assertEquals(expectedRecord.getT(), actualRecord.getT());
+        }
+    }
+
+    /**
+     * Tests that truncated and foreign files are rejected.
+     *
+     * @throws IOException if converting fails
+     */
+    @Test
+    public void testInvalidFileIsRejected() throws IOException {
+        BinaryMeshFormat.convert(objPath, binaryPath);
+        byte[] bytes = Files.readAllBytes(binaryPath);
+
+        Files.write(binaryPath, Arrays.copyOf(bytes, bytes.length / 2));
+        assertThrows(IOException.class, () -> BinaryMeshFormat.read(binaryPath));
+        Files.write(binaryPath, new byte[10]);
+        assertThrows(IOException.class, () -> BinaryMeshFormat.read(binaryPath));
+        Files.copy(Path.of(objPath), binaryPath, StandardCopyOption.REPLACE_EXISTING);
+        assertThrows(IOException.class, () -> BinaryMeshFormat.read(binaryPath));
+    }
+}
@@ -0,0 +1,196 @@
+package rayrangers.raytracer.parser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import rayrangers.raytracer.algorithm.HitRecord;
+import rayrangers.raytracer.algorithm.Ray;
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.math.Vector3D;
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.GeometryPrecision;
+import rayrangers.raytracer.world.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the GeometryPager class.
+ */
+public class GeometryPagerTest {
+
+    /**
+     * Number of stored entities.
+     */
+    private static final int ENTITIES = 4;
+
+    /**
+     * Temporary directory holding the OBJ file and the paged entities.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Entities in single precision, kept resident for comparison.
+     */
+    private List<Entity> expected;
+
+    /**
+     * Pager of the stored entities.
+     */
+    private GeometryPager pager;
+
+    /**
+     * Paged copies of the expected entities.
+     */
+    private List<PagedEntity> paged;
+
+    /**
+     * Writes a grid of triangles, stores several translated copies in a pager
+     * whose budget holds about two of them and keeps resident copies.
+     *
+     * @throws IOException if the files cannot be written
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        StringBuilder obj = new StringBuilder();
+        for (int y = 0; y <= 10; y++) {
+            for (int x = 0; x <= 10; x++) {
+                obj.append("v ").append(x).append(' ').append(y).append(" 0\n");
+            }
+        }
+        for (int y = 0; y < 10; y++) {
+            for (int x = 0; x < 10; x++) {
+                int v = y * 11 + x + 1;
+                obj.append("f ").append(v).append(' ').append(v + 1).append(' ').append(v + 11).append('\n');
+                obj.append("f ").append(v + 1).append(' ').append(v + 12).append(' ').append(v + 11).append('\n');
+            }
+        }
+        String objPath = directory.resolve("grid.obj").toString();
+        Files.writeString(Path.of(objPath), obj);
+
+        expected = new ArrayList<>();
+        paged = new ArrayList<>();
+        pager = new GeometryPager(directory.resolve("pages"), Long.MAX_VALUE);
+        for (int i = 0; i < ENTITIES; i++) {
+            TrafoMatrix tm = new TrafoMatrix(i * 20, 0, -i, 0, 0, 0, 1, 1, 1);
+            Entity entity = ObjParser.parseObjFile(objPath);
+            entity.setGeometryPrecision(GeometryPrecision.FLOAT);
+            entity.transform(tm);
+            expected.add(entity);
+            Entity stored = ObjParser.parseObjFile(objPath);
+            stored.transform(tm);
+            paged.add(pager.store(stored));
+        }
+        // Warm up once to learn the size of an entity
+        paged.get(0).hit(ray(0, 0), 0, Double.MAX_VALUE, new HitRecord());
+        pager.setResidentBudget(pager.getResidentBytes() * 5 / 2);
+        pager.evictAll();
+    }
+
+    /**
+     * Returns a ray from above towards a point of the grid of an entity.
+     *
+     * @param entity index of the entity
+     * @param k      index of the target point
+     * @return ray
+     */
+    private static Ray ray(int entity, int k) {
+        double x = entity * 20 + 0.5 + k % 9;
+        double y = 0.3 + k / 9 % 9;
+        return new Ray(new Vertex3D(x, y, 50), new Vector3D(0.01, 0.02, -1).normalize());
+    }
+
+    /**
+     * Tests that entities are paged in on the first ray reaching them, hit
+     * like resident entities and evicted to stay within the budget.
+     */
+    @Test
+    public void testPagingWithinBudget() {
+        assertEquals(0, pager.getResidentCount());
+        assertFalse(paged.get(0).isResident());
+        assertNotNull(paged.get(0).getBoundingBox());
+        long pageIns = pager.getPageIns();
+        long evictions = pager.getEvictions();
+        long accesses = pager.getAccesses();
+
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < ENTITIES; i++) {
+                for (int k = 0; k < 20; k++) {
+                    HitRecord expectedRecord = new HitRecord();
+                    HitRecord actualRecord = new HitRecord();
+                    assertTrue(expected.get(i).hit(ray(i, k), 0, Double.MAX_VALUE, expectedRecord));
+                    assertTrue(paged.get(i).hit(ray(i, k), 0, Double.MAX_VALUE, actualRecord));
+                    assertEquals(expectedRecord.getT(), actualRecord.getT());
+                }
+                assertTrue(paged.get(i).isResident());
+                assertTrue(pager.getResidentBytes() <= pager.getResidentBudget());
+                assertTrue(pager.getResidentCount() <= 2);
+            }
+        }
+        // Every entity is paged in once per round, the other rays find it resident
+        assertEquals(2 * ENTITIES, pager.getPageIns() - pageIns);
+        assertEquals(2 * ENTITIES * 20, pager.getAccesses() - accesses);
+        assertEquals(2 * ENTITIES - pager.getResidentCount(), pager.getEvictions() - evictions);
+
+        pager.setResidentBudget(0);
+        assertEquals(0, pager.getResidentCount());
+        assertEquals(0, pager.getResidentBytes());
+    }
+
+    /**
+     * Tests that a scene renders paged entities through its top-level
+     * hierarchy while several threads page them in and out concurrently.
+     *
+     * @throws Exception if a thread fails
+     */
+    @Test
+    public void testConcurrentPagingInScene() throws Exception {
+        Scene scene = new Scene(null);
+        for (PagedEntity entity : paged) {
+            scene.addBounded(entity);
+        }
+        scene.buildTopLevelHierarchy();
+        Scene resident = new Scene(null);
+        resident.setGeometryPrecision(GeometryPrecision.FLOAT);
+        for (Entity entity : expected) {
+            resident.addEntity(entity);
+        }
+        resident.buildTopLevelHierarchy();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                int offset = thread;
+                futures.add(executor.submit(() -> {
+                    for (int n = 0; n < 400; n++) {
+                        int i = (n / 7 + offset) % ENTITIES;
+                        HitRecord expectedRecord = new HitRecord();
+                        HitRecord actualRecord = new HitRecord();
+                        assertTrue(resident.hit(ray(i, n), 0, Double.MAX_VALUE, expectedRecord));
+                        assertTrue(scene.hit(ray(i, n), 0, Double.MAX_VALUE, actualRecord));
+                        assertEquals(expectedRecord.getT(), actualRecord.getT());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(pager.getResidentCount() <= 2);
+        assertTrue(pager.getPageIns() >= ENTITIES);
+    }
+}
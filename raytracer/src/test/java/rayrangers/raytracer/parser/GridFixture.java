@@ -0,0 +1,76 @@
+package rayrangers.raytracer.parser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * OBJ test fixture shared by the parser tests: a grid of quads in the x1-x2
+ * plane, each split into two triangles. The lower half of the rows uses the
+ * material red and smoothing group 1, the upper half the material blue and no
+ * smoothing group. Optionally, the first triangle of every quad has a normal
+ * vector.
+ */
+final class GridFixture {
+
+    /**
+     * Private constructor, class only provides static members.
+     */
+    private GridFixture() {
+    }
+
+    /**
+     * Writes a grid of 10 x 10 quads with normal vectors into the files
+     * grid.obj and grid.mtl.
+     *
+     * @param directory directory of the files
+     * @param spacing   distance of the vertices in x1-direction
+     * @return path to the OBJ file
+     * @throws IOException if the files cannot be written
+     */
+    static String write(Path directory, double spacing) throws IOException {
+        return write(directory, "grid", 10, 10, spacing, true);
+    }
+
+    /**
+     * Writes a grid into the files name.obj and grid.mtl.
+     *
+     * @param directory directory of the files
+     * @param name      name of the object and the OBJ file
+     * @param columns   number of quads per row
+     * @param rows      number of rows
+     * @param spacing   distance of the vertices in x1-direction
+     * @param normals   whether the first triangle of every quad has a normal
+     *                  vector
+     * @return path to the OBJ file
+     * @throws IOException if the files cannot be written
+     */
+    static String write(Path directory, String name, int columns, int rows, double spacing, boolean normals)
+            throws IOException {
+        Files.writeString(directory.resolve("grid.mtl"), "newmtl red\nKd 1 0 0\nNs 10\nd 1\nillum 2\n"
+                + "newmtl blue\nKd 0 0 1\nNs 20\nd 0.5\nillum 1\n");
+        StringBuilder obj = new StringBuilder("mtllib grid.mtl\no ").append(name).append('\n');
+        if (normals) {
+            obj.append("vn 0 0 1\n");
+        }
+        for (int y = 0; y <= rows; y++) {
+            for (int x = 0; x <= columns; x++) {
+                obj.append("v ").append(x * spacing).append(' ').append(y).append(" 0\n");
+            }
+        }
+        String normal = normals ? "//1" : "";
+        for (int y = 0; y < rows; y++) {
+            obj.append(y < rows / 2 ? "usemtl red\ns 1\n" : "usemtl blue\ns off\n");
+            for (int x = 0; x < columns; x++) {
+                int v = y * (columns + 1) + x + 1;
+                obj.append("f ").append(v).append(normal).append(' ').append(v + 1).append(normal).append(' ')
+                        .append(v + columns + 1).append(normal).append('\n');
+                obj.append("f ").append(v + 1).append(' ').append(v + columns + 2).append(' ')
+                        .append(v + columns + 1).append('\n');
+            }
+        }
+        Path objPath = directory.resolve(name + ".obj");
+        Files.writeString(objPath, obj);
+        return objPath.toString();
+    }
+}
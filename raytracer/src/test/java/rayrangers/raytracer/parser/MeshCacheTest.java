@@ -0,0 +1,181 @@
+package rayrangers.raytracer.parser;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import rayrangers.raytracer.algorithm.HitRecord;
+import rayrangers.raytracer.algorithm.Ray;
+import rayrangers.raytracer.algorithm.bounding.SplitMethod;
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.math.Vector3D;
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.Mesh;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the MeshCache class.
+ */
+public class MeshCacheTest {
+
+    /**
+     * Temporary directory holding the OBJ file, the MTL file and the cache.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Path to the OBJ file.
+     */
+    private String objPath;
+
+    /**
+     * Transformation applied to the loaded entity.
+     */
+    private final TrafoMatrix tm = new TrafoMatrix(1, 2, 3, 10, 20, 30, 2, 2, 2);
+
+    /**
+     * Writes the grid fixture.
+     *
+     * @throws IOException if the files cannot be written
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        objPath = GridFixture.write(directory, 1);
+    }
+
+    /**
+     * Returns the cache entries in a directory.
+     *
+     * @param cacheDirectory cache directory
+     * @return entry files
+     * @throws IOException if the directory cannot be listed
+     */
+    private static List<Path> entries(Path cacheDirectory) throws IOException {
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            return files.toList();
+        }
+    }
+
+    /**
+     * Asserts that two entities have the same mesh, materials and BVH tree.
+     *
+     * @param expected entity parsed from the OBJ file
+     * @param actual   entity read from the cache
+     */
+    private static void assertSameMesh(Entity expected, Entity actual) {
+        assertEquals(expected.getName(), actual.getName());
+        Mesh expectedMesh = expected.getMesh();
+        Mesh actualMesh = actual.getMesh();
+        assertEquals(expectedMesh.getVertexCount(), actualMesh.getVertexCount());
+        assertEquals(expectedMesh.getTriangleCount(), actualMesh.getTriangleCount());
+        assertArrayEquals(Arrays.copyOf(expectedMesh.getPositions(), expectedMesh.getVertexCount() * 3),
+                actualMesh.getPositions());
+        assertArrayEquals(Arrays.copyOf(expectedMesh.getNormals(), expectedMesh.getVertexCount() * 3),
+                actualMesh.getNormals());
+        assertArrayEquals(Arrays.copyOf(expectedMesh.getIndices(), expectedMesh.getTriangleCount() * 3),
+                actualMesh.getIndices());
+        assertEquals(expected.getFaces().size(), actual.getFaces().size());
+        for (int i = 0; i < expected.getFaces().size(); i++) {
+            assertEquals(expected.getFaces().get(i).getMaterial().getName(),
+                    actual.getFaces().get(i).getMaterial().getName());
+            assertEquals(expected.getFaces().get(i).getMaterial().getDiffuse(),
+                    actual.getFaces().get(i).getMaterial().getDiffuse());
+            assertEquals(expected.getFaces().get(i).getSmoothingGroup(), actual.getFaces().get(i).getSmoothingGroup());
+        }
+        assertEquals(expected.getSplitMethod(), actual.getSplitMethod());
+        assertEquals(expected.getBvhTree().getNodeCount(), actual.getBvhTree().getNodeCount());
+        assertEquals(expected.getBvhTree().getMaxDepth(), actual.getBvhTree().getMaxDepth());
+        assertEquals(expected.getBvhTree().getSahCost(), actual.getBvhTree().getSahCost());
+
+        // Both entities are hit at the same point
+        for (int i = 0; i < 10; i++) {
+            Vertex3D target = expected.getFaces().get(i * 17).getCenter();
+            Ray ray = new Ray(new Vertex3D(0, 0, 200), new Vector3D(target.getCoord(1), target.getCoord(2),
+                    target.getCoord(3) - 200).normalize());
+            HitRecord expectedRecord = new HitRecord();
+            HitRecord actualRecord = new HitRecord();
+            assertTrue(expected.hit(ray, 0, Double.MAX_VALUE, expectedRecord));
+            assertTrue(actual.hit(ray, 0, Double.MAX_VALUE, actualRecord));
+            assertEquals(expectedRecord.getT(), actualRecord.getT());
+        }
+    }
+
+    /**
+     * Tests that the second load is read from the cache.
+     *
+     * @throws IOException if loading fails
+     */
+    @Test
+    public void testLoadFromCache() throws IOException {
+        for (SplitMethod splitMethod : SplitMethod.values()) {
+            MeshCache cache = new MeshCache(directory.resolve("cache-" + splitMethod));
+            Entity parsed = cache.load(objPath, tm, splitMethod);
+            Entity cached = cache.load(objPath, tm, splitMethod);
+            assertEquals(1, cache.getMisses());
+            assertEquals(1, cache.getHits());
+            assertNotSame(parsed, cached);
+            assertSameMesh(parsed, cached);
+            assertTrue(cached.getMesh().hasNormal(0));
+            assertFalse(cached.getMesh().hasNormal(cached.getMesh().getVertexCount() - 1));
+        }
+    }
+
+    /**
+     * Tests that changes of the OBJ file, the MTL file or the transformation
+     * create new entries.
+     *
+     * @throws IOException if loading fails
+     */
+    @Test
+    public void testChangedInputsMiss() throws IOException {
+        MeshCache cache = new MeshCache(directory.resolve("cache"));
+        cache.load(objPath, tm, SplitMethod.SAH);
+        cache.load(objPath, new TrafoMatrix(0, 0, 0, 0, 0, 0, 1, 1, 1), SplitMethod.SAH);
+        Files.writeString(directory.resolve("grid.mtl"), "newmtl red\nKd 0 1 0\nnewmtl blue\nKd 0 0 1\n");
+        Entity entity = cache.load(objPath, tm, SplitMethod.SAH);
+        assertEquals(3, cache.getMisses());
+        assertEquals(0, cache.getHits());
+        assertEquals(new Color(0, 255, 0), entity.getFaces().stream()
+                .filter(face -> face.getMaterial().getName().equals("red")).findAny().get().getMaterial().getDiffuse());
+        assertEquals(3, entries(cache.getDirectory()).size());
+    }
+
+    /**
+     * Tests that a corrupt entry is detected and rebuilt.
+     *
+     * @throws IOException if loading fails
+     */
+    @Test
+    public void testCorruptEntryIsRebuilt() throws IOException {
+        MeshCache cache = new MeshCache(directory.resolve("cache"));
+        Entity parsed = cache.load(objPath, tm, SplitMethod.SAH);
+        Path entry = entries(cache.getDirectory()).get(0);
+        byte[] bytes = Files.readAllBytes(entry);
+        bytes[bytes.length / 2] ^= 0x40;
+        Files.write(entry, bytes);
+
+        Entity rebuilt = cache.load(objPath, tm, SplitMethod.SAH);
+        assertEquals(1, cache.getInvalidations());
+        assertEquals(2, cache.getMisses());
+        assertSameMesh(parsed, rebuilt);
+
+        // Truncated entries are rejected as well
+        Files.write(entry, new byte[10]);
+        cache.load(objPath, tm, SplitMethod.SAH);
+        assertEquals(2, cache.getInvalidations());
+        assertSameMesh(parsed, cache.load(objPath, tm, SplitMethod.SAH));
+        assertEquals(1, cache.getHits());
+        assertTrue(Files.size(entry) > 10);
+    }
+}
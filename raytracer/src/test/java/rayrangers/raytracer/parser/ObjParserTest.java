@@ -0,0 +1,182 @@
+package rayrangers.raytracer.parser;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.Face;
+import rayrangers.raytracer.world.Mesh;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the ObjParser and ObjScanner classes.
+ */
+public class ObjParserTest {
+
+    /**
+     * Temporary directory of the OBJ files.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Writes an OBJ file into the temporary directory.
+     *
+     * @param content content of the file
+     * @return path to the file
+     * @throws IOException if the file cannot be written
+     */
+    private String writeObj(String content) throws IOException {
+        Path file = Files.createTempFile(directory, "parser", ".obj");
+        Files.writeString(file, content);
+        return file.toString();
+    }
+
+    /**
+     * Tests that numbers parsed from bytes are identical to Double.parseDouble.
+     */
+    @Test
+    public void testNextDoubleMatchesParseDouble() {
+        Random random = new Random(5);
+        StringBuilder line = new StringBuilder();
+        String[] special = { "0", "-0", "+1.5", "1.", ".25", "1e3", "-2.5E-3", "123456789012345678",
+                "0.1234567890123456789", "1e300", "4.9e-324", "NaN", "-Infinity", "1.0f", "0x1p3" };
+        for (String token : special) {
+            line.append(token).append(' ');
+        }
+        for (int i = 0; i < 10000; i++) {
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12) - 4);
+            line.append(i % 2 == 0 ? String.format(Locale.ROOT, "%.6f", value) : Double.toString(value));
+            line.append('\t');
+        }
+        String text = line.toString();
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        ObjScanner scanner = new ObjScanner(bytes, 0, bytes.length);
+        assertTrue(scanner.nextLine());
+        for (String token : text.split("\\s+")) {
+            assertEquals(Double.parseDouble(token), scanner.nextDouble(), token);
+        }
+        assertFalse(scanner.hasToken());
+    }
+
+    /**
+     * Tests tokenizing lines with comments, keywords and invalid numbers.
+     */
+    @Test
+    public void testScannerTokens() {
+        byte[] bytes = "# comment\n  vn 1 2# trailing\r\nvt  x\nf 7//3 -2".getBytes(StandardCharsets.US_ASCII);
+        ObjScanner scanner = new ObjScanner(bytes, 0, bytes.length);
+        byte[] vertex = { 'v' };
+        byte[] normal = { 'v', 'n' };
+
+        assertTrue(scanner.nextLine());
+        assertFalse(scanner.hasToken());
+        assertTrue(scanner.nextLine());
+        assertFalse(scanner.skipKeyword(vertex));
+        assertTrue(scanner.skipKeyword(normal));
+        assertEquals(1, scanner.nextDouble());
+        assertEquals(2, scanner.nextDouble());
+        assertFalse(scanner.hasToken());
+        assertTrue(scanner.nextLine());
+        assertEquals("vt", scanner.nextString());
+        assertThrows(NumberFormatException.class, scanner::nextDouble);
+        assertTrue(scanner.nextLine());
+        assertEquals("f", scanner.nextString("f"));
+        assertEquals(7, scanner.nextInt());
+        assertTrue(scanner.skip('/') && scanner.skip('/'));
+        assertEquals(3, scanner.nextInt());
+        assertEquals(-2, scanner.nextInt());
+        assertFalse(scanner.nextLine());
+    }
+
+    /**
+     * Tests parsing all face formats, normal vectors and smoothing groups.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Test
+    public void testParseFaceFormats() throws IOException {
+        String path = writeObj("o test # name\n"
+                + "v 0 0 0\nv 1 0 0\nv 0 1 0\nv 1 1 0\nv 1.5e1 -2 0.25\n"
+                + "vn 0 0 1\nvn 0 1 0\nvt 0.5 0.5\n"
+                + "s 1\nf 1 2 3\n"
+                + "f 2/1 4/1 3/1\n"
+                + "s off\nf 2//1 5//1 4//1\n"
+                + "f 1/1/2 5/1/2 2/1/2\n");
+        Entity entity = ObjParser.parseObjFile(path);
+        Mesh mesh = entity.getMesh();
+
+        assertEquals("test", entity.getName());
+        assertEquals(5, mesh.getVertexCount());
+        assertEquals(4, entity.getFaces().size());
+        assertEquals(15, mesh.getCoord(4, 0));
+        assertEquals(0.25, mesh.getCoord(4, 2));
+        assertArrayEquals(new int[] { 0, 1, 2, 1, 3, 2, 1, 4, 3, 0, 4, 1 }, mesh.getIndices());
+        assertFalse(mesh.hasNormal(2));
+        assertTrue(mesh.hasNormal(3));
+        assertEquals(1, mesh.getNormals()[3 * 3 + 2]);
+        assertEquals(1, mesh.getNormals()[4 * 3 + 1]); // Overwritten by the last face
+        Face first = entity.getFaces().get(0);
+        assertEquals("1", first.getSmoothingGroup());
+        assertSame(first.getSmoothingGroup(), entity.getFaces().get(1).getSmoothingGroup());
+    }
+
+    /**
+     * Tests that polygons and invalid faces are rejected.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Test
+    public void testInvalidFaces() throws IOException {
+        String vertices = "v 0 0 0\nv 1 0 0\nv 0 1 0\nv 1 1 0\n";
+        assertThrows(UnsupportedOperationException.class,
+                () -> ObjParser.parseObjFile(writeObj(vertices + "f 1 2 3 4\n")));
+        assertThrows(NumberFormatException.class,
+                () -> ObjParser.parseObjFile(writeObj(vertices + "f 1 2x 3\n")));
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> ObjParser.parseObjFile(writeObj(vertices + "f 1//1 2//1 3//1\n")));
+    }
+
+    /**
+     * Tests that parsing several files concurrently gives the same entities in
+     * the same order as parsing them one after another, including a file large
+     * enough to be split into chunks.
+     *
+     * @throws IOException if the files cannot be written
+     */
+    @Test
+    public void testParseObjFilesConcurrently() throws IOException {
+        List<String> paths = new ArrayList<>();
+        for (int rows : new int[] { 3000, 1, 40, 7, 500, 2, 90, 12 }) {
+            paths.add(GridFixture.write(directory, "grid" + rows, 10, rows, 1, true));
+        }
+        assertTrue(Files.size(Path.of(paths.get(0))) > ParallelObjParser.MIN_CHUNK_SIZE);
+
+        List<Entity> entities = ObjParser.parseObjFiles(paths, 4);
+        assertEquals(paths.size(), entities.size());
+        for (int i = 0; i < paths.size(); i++) {
+            Entity expected = ObjParser.parseObjFile(paths.get(i));
+            Entity actual = entities.get(i);
+            assertEquals(expected.getName(), actual.getName());
+            assertArrayEquals(expected.getMesh().getPositions(), actual.getMesh().getPositions());
+            assertArrayEquals(expected.getMesh().getNormals(), actual.getMesh().getNormals());
+            assertArrayEquals(expected.getMesh().getIndices(), actual.getMesh().getIndices());
+        }
+        assertEquals("grid3000", entities.get(0).getName());
+        assertEquals(60000, entities.get(0).getFaces().size());
+
+        paths.add(3, paths.get(3) + ".missing");
+        assertThrows(FileNotFoundException.class, () -> ObjParser.parseObjFiles(paths, 2));
+    }
+}
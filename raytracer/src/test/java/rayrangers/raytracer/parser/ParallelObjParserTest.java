@@ -0,0 +1,139 @@
+package rayrangers.raytracer.parser;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.Face;
+import rayrangers.raytracer.world.Mesh;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the ParallelObjParser class.
+ */
+public class ParallelObjParserTest {
+
+    /**
+     * Temporary directory of the OBJ and MTL files.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Writes a strip of triangles using two materials, smoothing groups,
+     * normal vectors and relative indices.
+     *
+     * @return path to the OBJ file
+     * @throws IOException if the files cannot be written
+     */
+    private String writeStrip() throws IOException {
+        Files.writeString(directory.resolve("strip.mtl"), "newmtl red\nKd 1 0 0\nNs 10\nd 1\nillum 2\n"
+                + "newmtl blue\nKd 0 0 1\nNs 20\nd 0.5\nillum 1\n");
+        StringBuilder obj = new StringBuilder("# strip\nmtllib strip.mtl\no strip\nvn 0 0 1\n");
+        obj.append("v 0 0 0\nv 0 1 0\n");
+        for (int i = 1; i <= 200; i++) {
+            obj.append("v ").append(i).append(" 0 0\nv ").append(i).append(" 1 0\n");
+            if (i % 50 == 1) {
+                obj.append("usemtl ").append(i % 100 == 1 ? "red" : "blue").append('\n');
+                obj.append("s ").append(i / 50).append('\n');
+                obj.append("vn 0 ").append(i).append(" 1\n");
+            }
+            if (i % 2 == 0) {
+                // Relative indices count back from the last vertex and normal vector
+                obj.append("f -4//-1 -3//-1 -2//-1\nf -3 -1 -2\n");
+            } else {
+                int v = 2 * i + 1;
+                obj.append("f ").append(v - 2).append('/').append(i).append("/1 ").append(v - 1).append(' ')
+                        .append(v).append("\nf ").append(v - 1).append(' ').append(v + 1).append(' ').append(v)
+                        .append(" # comment\n");
+            }
+        }
+        Path file = directory.resolve("strip.obj");
+        Files.writeString(file, obj);
+        return file.toString();
+    }
+
+    /**
+     * Asserts that two entities have the same mesh and faces.
+     *
+     * @param expected expected entity
+     * @param actual   actual entity
+     */
+    private static void assertSameEntity(Entity expected, Entity actual) {
+        Mesh expectedMesh = expected.getMesh();
+        Mesh actualMesh = actual.getMesh();
+        assertEquals(expected.getName(), actual.getName());
+        assertArrayEquals(expectedMesh.getPositions(), actualMesh.getPositions());
+        assertArrayEquals(expectedMesh.getNormals(), actualMesh.getNormals());
+        assertArrayEquals(expectedMesh.getIndices(), actualMesh.getIndices());
+        List<Face> expectedFaces = expected.getFaces();
+        List<Face> actualFaces = actual.getFaces();
+        assertEquals(expectedFaces.size(), actualFaces.size());
+        for (int i = 0; i < expectedFaces.size(); i++) {
+            assertEquals(expectedFaces.get(i).getSmoothingGroup(), actualFaces.get(i).getSmoothingGroup());
+            assertEquals(expectedFaces.get(i).getMaterial().getName(), actualFaces.get(i).getMaterial().getName());
+        }
+    }
+
+    /**
+     * Tests that chunks of any size give the same entity as the sequential
+     * parser, including state and relative indices across chunk boundaries.
+     *
+     * @throws IOException if the files cannot be written
+     */
+    @Test
+    public void testSameEntityAsObjParser() throws IOException {
+        String path = writeStrip();
+        Entity expected = ObjParser.parseObjFile(path);
+        assertEquals(400, expected.getFaces().size());
+        assertEquals("blue", expected.getFaces().get(399).getMaterial().getName());
+        assertEquals(151, expected.getMesh().getNormals()[398 * 3 + 1]);
+
+        for (long chunkSize : new long[] { 1, 37, 256, 4096, 0 }) {
+            assertSameEntity(expected, ParallelObjParser.parseObjFile(path, chunkSize));
+        }
+    }
+
+    /**
+     * Tests that invalid files are rejected like by the sequential parser.
+     *
+     * @throws IOException if the files cannot be written
+     */
+    @Test
+    public void testInvalidFiles() throws IOException {
+        Path file = directory.resolve("invalid.obj");
+        Files.writeString(file, "v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1 2 -4\n");
+        assertThrows(IndexOutOfBoundsException.class, () -> ParallelObjParser.parseObjFile(file.toString(), 8));
+        Files.writeString(file, "v 0 0 0\nv 1 0 0\nv 0 1 0\nv 1 1 0\nf 1 2 3 4\n");
+        assertThrows(UnsupportedOperationException.class, () -> ParallelObjParser.parseObjFile(file.toString()));
+        assertThrows(FileNotFoundException.class, () -> ParallelObjParser.parseObjFile(file + ".missing"));
+    }
+
+    /**
+     * Tests that faces referring to vertices or normal vectors defined later
+     * in the file are rejected like by the sequential parser, both within a
+     * chunk and across chunks.
+     *
+     * @throws IOException if the files cannot be written
+     */
+    @Test
+    public void testForwardReferences() throws IOException {
+        Path file = directory.resolve("forward.obj");
+        Files.writeString(file, "v 0 0 0\nv 1 0 0\nf 1 2 3\nv 0 1 0\n");
+        assertThrows(IndexOutOfBoundsException.class, () -> ObjParser.parseObjFile(file.toString()));
+        assertThrows(IndexOutOfBoundsException.class, () -> ParallelObjParser.parseObjFile(file.toString()));
+        assertThrows(IndexOutOfBoundsException.class, () -> ParallelObjParser.parseObjFile(file.toString(), 8));
+
+        Files.writeString(file, "v 0 0 0\nv 1 0 0\nv 0 1 0\nf 1//1 2//1 3//1\nvn 0 0 1\n");
+        assertThrows(IndexOutOfBoundsException.class, () -> ObjParser.parseObjFile(file.toString()));
+        assertThrows(IndexOutOfBoundsException.class, () -> ParallelObjParser.parseObjFile(file.toString()));
+        assertThrows(IndexOutOfBoundsException.class, () -> ParallelObjParser.parseObjFile(file.toString(), 8));
+    }
+}
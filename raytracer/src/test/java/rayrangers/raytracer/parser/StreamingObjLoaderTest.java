@@ -0,0 +1,95 @@
+package rayrangers.raytracer.parser;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import rayrangers.raytracer.algorithm.HitRecord;
+import rayrangers.raytracer.algorithm.Ray;
+import rayrangers.raytracer.algorithm.bounding.SplitMethod;
+import rayrangers.raytracer.math.Vector3D;
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.parser.LoadTimings.Stage;
+import rayrangers.raytracer.world.Entity;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the StreamingObjLoader class.
+ */
+public class StreamingObjLoaderTest {
+
+    /**
+     * Temporary directory of the OBJ and MTL files.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Tests that the loaded entity equals the parsed one and its tree finds the
+     * same hits as a tree built after parsing.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Test
+    public void testSameEntityAndHits() throws IOException {
+        String path = GridFixture.write(directory, "grid", 100, 60, 1, false);
+        LoadTimings timings = new LoadTimings();
+        Entity loaded = StreamingObjLoader.load(path, timings);
+        Entity parsed = ObjParser.parseObjFile(path);
+        parsed.buildBvhTree();
+
+        assertEquals(12000, loaded.getFaces().size());
+        assertEquals(parsed.getName(), loaded.getName());
+        assertArrayEquals(parsed.getMesh().getPositions(), loaded.getMesh().getPositions());
+        assertArrayEquals(parsed.getMesh().getIndices(), loaded.getMesh().getIndices());
+        assertEquals(SplitMethod.MORTON, loaded.getSplitMethod());
+        assertEquals(2 * 12000 - 1, loaded.getBvhTree().getNodeCount());
+
+        Random random = new Random(8);
+        int hits = 0;
+        for (int i = 0; i < 2000; i++) {
+            Vertex3D origin = new Vertex3D(random.nextDouble() * 100, random.nextDouble() * 60, 20);
+            Ray ray = new Ray(origin, new Vector3D(random.nextDouble() - 0.5, random.nextDouble() - 0.5, -1));
+            HitRecord expected = new HitRecord();
+            HitRecord actual = new HitRecord();
+            boolean hit = parsed.hit(ray, 0, Double.MAX_VALUE, expected);
+            assertEquals(hit, loaded.hit(ray, 0, Double.MAX_VALUE, actual), "hit differs for ray " + i);
+            if (hit) {
+                hits++;
+                assertEquals(expected.getT(), actual.getT(), "t differs for ray " + i);
+            }
+        }
+        assertTrue(hits > 1000, "test rays should hit the grid");
+
+        for (Stage stage : Stage.values()) {
+            assertTrue(timings.getStartNanos(stage) >= 0, stage + " did not run");
+            assertTrue(timings.getEndNanos(stage) >= timings.getStartNanos(stage));
+        }
+        assertTrue(timings.getStartNanos(Stage.BUILD) >= timings.getEndNanos(Stage.PARSE));
+        assertEquals(timings.getEndNanos(Stage.BUILD), timings.getTotalNanos());
+    }
+
+    /**
+     * Tests that failures of the parser thread are thrown by the loader.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Test
+    public void testInvalidFiles() throws IOException {
+        Path file = directory.resolve("invalid.obj");
+        Files.writeString(file, "v 0 0 0\nv 1 0 0\nv 0 1 0\nv 1 1 0\nf 1 2 3 4\n");
+        assertThrows(UnsupportedOperationException.class, () -> StreamingObjLoader.load(file.toString()));
+        assertThrows(FileNotFoundException.class, () -> StreamingObjLoader.load(file + ".missing"));
+
+        Files.writeString(file, "o empty\nv 0 0 0\n");
+        Entity empty = StreamingObjLoader.load(file.toString());
+        assertEquals("empty", empty.getName());
+        assertNull(empty.getBvhTree());
+    }
+}
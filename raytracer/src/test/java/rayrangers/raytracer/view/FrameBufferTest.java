@@ -0,0 +1,73 @@
+package rayrangers.raytracer.view;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the FrameBuffer class and the pixel coordinates of the
+ * ViewPane class.
+ */
+public class FrameBufferTest {
+
+    /**
+     * Tests that pixels are stored row by row.
+     */
+    @Test
+    public void testSetAndGet() {
+        FrameBuffer buffer = new FrameBuffer(3, 2);
+        buffer.setRgb(2, 1, Color.RED.getRGB());
+        buffer.setRgb(0, 1, Color.BLUE.getRGB());
+        assertEquals(Color.RED.getRGB(), buffer.getRgb(2, 1));
+        assertEquals(Color.BLUE.getRGB(), buffer.getData()[3]);
+        assertEquals(0, buffer.getRgb(1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new FrameBuffer(0, 2));
+    }
+
+    /**
+     * Tests copying into an image and wrapping the buffer as image.
+     */
+    @Test
+    public void testExport() {
+        FrameBuffer buffer = new FrameBuffer(4, 3);
+        for (int j = 0; j < 3; j++) {
+            for (int i = 0; i < 4; i++) {
+                buffer.setRgb(i, j, new Color(i * 60, j * 100, 7).getRGB());
+            }
+        }
+        BufferedImage copy = new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB);
+        buffer.copyTo(copy);
+        BufferedImage view = buffer.toBufferedImage();
+        assertEquals(BufferedImage.TYPE_INT_RGB, view.getType());
+        for (int j = 0; j < 3; j++) {
+            for (int i = 0; i < 4; i++) {
+                assertEquals(buffer.getRgb(i, j), copy.getRGB(i, j));
+                assertEquals(buffer.getRgb(i, j), view.getRGB(i, j));
+            }
+        }
+
+        // The wrapped image shares the data of the buffer
+        buffer.setRgb(1, 1, Color.WHITE.getRGB());
+        assertEquals(Color.WHITE.getRGB(), view.getRGB(1, 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> buffer.copyTo(new BufferedImage(3, 4, BufferedImage.TYPE_INT_RGB)));
+    }
+
+    /**
+     * Tests that the pixel coordinates are the centers of the pixels.
+     */
+    @Test
+    public void testPixelCoordinates() {
+        ViewPane viewPane = new ViewPane(4, 2, 8);
+        assertEquals(4, viewPane.getPaneHeight());
+        assertEquals(-3, viewPane.getU(0));
+        assertEquals(3, viewPane.getU(3));
+        assertEquals(1, viewPane.getV(0));
+        assertEquals(-1, viewPane.getV(1));
+        viewPane.setRgbAt(3, 1, Color.GREEN.getRGB());
+        assertEquals(Color.GREEN.getRGB(), viewPane.getFrameBuffer().getRgb(3, 1));
+    }
+}
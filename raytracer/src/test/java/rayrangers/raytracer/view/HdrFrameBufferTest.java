@@ -0,0 +1,117 @@
+package rayrangers.raytracer.view;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the HdrFrameBuffer class, the tone mapping operators and the
+ * PortableFloatMap class.
+ */
+public class HdrFrameBufferTest {
+
+    /**
+     * Temporary directory of the PFM files.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Tests the tone mapping operators and the exposure.
+     */
+    @Test
+    public void testToneMapping() {
+        assertEquals(1f, ToneMapping.CLAMP.map(4f));
+        assertEquals(0f, ToneMapping.CLAMP.map(-1f));
+        assertEquals(0.5f, ToneMapping.REINHARD.map(1f));
+        assertEquals(0.8f, ToneMapping.REINHARD.map(4f), 1e-6);
+        assertEquals(0f, ToneMapping.FILMIC.map(0f));
+        assertEquals(1f, ToneMapping.FILMIC.map(1000f));
+        for (ToneMapping toneMapping : ToneMapping.values()) {
+            assertTrue(toneMapping.map(0.2f) < toneMapping.map(0.4f));
+        }
+        assertEquals(new Color(255, 128, 0).getRGB(), ToneMapping.CLAMP.toRgb(2f, 0.25f, 0f, 2f));
+    }
+
+    /**
+     * Tests that a rendered buffer can be tone mapped again with a different
+     * exposure.
+     */
+    @Test
+    public void testToneMapIntoFrameBuffer() {
+        ViewPane viewPane = new ViewPane(2, 1, 2);
+        assertThrows(IllegalStateException.class, () -> viewPane.toneMap(ToneMapping.CLAMP, 1f));
+        HdrFrameBuffer hdr = viewPane.createHdrFrameBuffer();
+        assertSame(hdr, viewPane.createHdrFrameBuffer());
+        hdr.set(0, 0, 3f, 1f, 0.5f);
+        hdr.set(1, 0, 0.1f, 0.2f, 0.3f);
+
+        viewPane.toneMap(ToneMapping.CLAMP, 1f);
+        assertEquals(new Color(255, 255, 128).getRGB(), viewPane.getRgbAt(0, 0));
+        viewPane.toneMap(ToneMapping.CLAMP, 0.25f);
+        assertEquals(new Color(191, 64, 32).getRGB(), viewPane.getRgbAt(0, 0));
+        assertEquals(new Color(6, 13, 19).getRGB(), viewPane.getRgbAt(1, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> hdr.toneMap(ToneMapping.CLAMP, 1f, new FrameBuffer(1, 2)));
+    }
+
+    /**
+     * Tests that writing and reading a PFM file preserves the radiance.
+     *
+     * @throws IOException if the file cannot be written or read
+     */
+    @Test
+    public void testPfmRoundTrip() throws IOException {
+        HdrFrameBuffer buffer = new HdrFrameBuffer(3, 2);
+        float[] data = buffer.getData();
+        for (int k = 0; k < data.length; k++) {
+            data[k] = k * 1.5f - 4f;
+        }
+        data[5] = 1e6f;
+        Path path = directory.resolve("image.pfm");
+        PortableFloatMap.write(buffer, path);
+
+        byte[] bytes = Files.readAllBytes(path);
+        String header = "PF\n3 2\n-1.0\n";
+        assertEquals(header, new String(bytes, 0, header.length(), StandardCharsets.US_ASCII));
+        assertEquals(header.length() + data.length * Float.BYTES, bytes.length);
+        // The first row of the file is the bottom row of the image
+        assertEquals(buffer.get(0, 1, 0),
+                ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getFloat(header.length()));
+
+        HdrFrameBuffer read = PortableFloatMap.read(path);
+        assertEquals(3, read.getWidth());
+        assertEquals(2, read.getHeight());
+        assertArrayEquals(data, read.getData());
+    }
+
+    /**
+     * Tests reading a big-endian file and rejecting invalid files.
+     *
+     * @throws IOException if the file cannot be written or read
+     */
+    @Test
+    public void testPfmReadBigEndian() throws IOException {
+        byte[] header = "PF\n1 1\n1.0\n".getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer file = ByteBuffer.allocate(header.length + 3 * Float.BYTES).order(ByteOrder.BIG_ENDIAN);
+        file.put(header).putFloat(0.5f).putFloat(2f).putFloat(8f);
+        Path path = directory.resolve("big.pfm");
+        Files.write(path, file.array());
+        HdrFrameBuffer read = PortableFloatMap.read(path);
+        assertArrayEquals(new float[] { 0.5f, 2f, 8f }, read.getData());
+
+        Files.write(path, "Pf\n1 1\n-1.0\n".getBytes(StandardCharsets.US_ASCII));
+        assertThrows(IOException.class, () -> PortableFloatMap.read(path));
+        Files.write(path, header);
+        assertThrows(IOException.class, () -> PortableFloatMap.read(path));
+    }
+}
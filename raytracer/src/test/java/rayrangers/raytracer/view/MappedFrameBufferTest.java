@@ -0,0 +1,178 @@
+package rayrangers.raytracer.view;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import rayrangers.raytracer.algorithm.Renderer;
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.math.Vertex3D;
+import rayrangers.raytracer.parser.ObjParser;
+import rayrangers.raytracer.world.Camera;
+import rayrangers.raytracer.world.Entity;
+import rayrangers.raytracer.world.LightSource;
+import rayrangers.raytracer.world.Scene;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the MappedFrameBuffer and the TiledTiff class.
+ */
+public class MappedFrameBufferTest {
+
+    /**
+     * Temporary directory of the frame buffer files.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Fills a render target with a pattern of distinct colors.
+     *
+     * @param target target to fill
+     */
+    private static void fill(RenderTarget target) {
+        for (int j = 0; j < target.getHeight(); j++) {
+            for (int i = 0; i < target.getWidth(); i++) {
+                target.setRgb(i, j, new Color(i * 5, j * 7, (i + j) % 256).getRGB());
+            }
+        }
+    }
+
+    /**
+     * Tests that pixels of all storage tiles, including the cropped border
+     * tiles, are stored in the file and can be read after reopening it.
+     *
+     * @throws IOException if the file cannot be written or read
+     */
+    @Test
+    public void testStoreAndReopen() throws IOException {
+        Path path = directory.resolve("image.rrfb");
+        FrameBuffer expected = new FrameBuffer(40, 20);
+        fill(expected);
+        try (MappedFrameBuffer buffer = MappedFrameBuffer.create(path, 40, 20, 16)) {
+            fill(buffer);
+            assertEquals(16, buffer.getTileSize());
+            assertEquals(expected.getRgb(39, 19), buffer.getRgb(39, 19));
+        }
+        assertEquals(MappedFrameBuffer.HEADER_SIZE + 3 * 2 * 16 * 16 * Integer.BYTES, Files.size(path));
+        try (MappedFrameBuffer buffer = MappedFrameBuffer.open(path)) {
+            assertEquals(40, buffer.getWidth());
+            assertEquals(20, buffer.getHeight());
+            for (int j = 0; j < 20; j++) {
+                for (int i = 0; i < 40; i++) {
+                    assertEquals(expected.getRgb(i, j), buffer.getRgb(i, j));
+                }
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> MappedFrameBuffer.create(path, 40, 20, 24));
+        Files.writeString(path, "no frame buffer");
+        assertThrows(IOException.class, () -> MappedFrameBuffer.open(path));
+    }
+
+    /**
+     * Tests that rendering into a mapped frame buffer produces the same image
+     * as rendering into the frame buffer of the viewpane, and that every
+     * storage tile is flushed once all its pixels have been rendered.
+     *
+     * @throws IOException if the files cannot be written
+     */
+    @Test
+    public void testRenderIntoMappedTarget() throws IOException {
+        Files.writeString(directory.resolve("triangle.mtl"), "newmtl red\nKd 1 0 0\nNs 10\nd 1\nillum 2\n");
+        Files.writeString(directory.resolve("triangle.obj"), "mtllib triangle.mtl\no triangle\nv -31.37 -27.11 0\n"
+                + "v 33.23 -19.41 0\nv 3.17 29.53 0\nusemtl red\nf 1 2 3\n");
+        Entity triangle = ObjParser.parseObjFile(directory.resolve("triangle.obj").toString());
+        triangle.transform(new TrafoMatrix(0, 0, 0, 0, 0, 0, 1, 1, 1));
+        Scene scene = new Scene(Color.BLUE);
+        Camera camera = new Camera(new Vertex3D(0, 0, 100), 0, 0, 0, 75, 100, 40, 40);
+        scene.addCamera(camera);
+        scene.addEntity(triangle);
+        scene.addLightSource(new LightSource(0.15, new Vertex3D(0, 0, 200), Color.WHITE));
+
+        Renderer renderer = new Renderer(scene, camera.getUuid(), 12);
+        renderer.render();
+        FrameBuffer expected = camera.getViewPane().getFrameBuffer();
+        assertNotEquals(expected.getRgb(0, 0), expected.getRgb(20, 20));
+
+        try (MappedFrameBuffer buffer = MappedFrameBuffer.create(directory.resolve("image.rrfb"), 40, 40, 16)) {
+            renderer.setRenderTarget(buffer);
+            renderer.render();
+            buffer.flush();
+            assertEquals(9, buffer.getFlushedTiles());
+            for (int j = 0; j < 40; j++) {
+                for (int i = 0; i < 40; i++) {
+                    assertEquals(expected.getRgb(i, j), buffer.getRgb(i, j));
+                }
+            }
+            // Tiles are flushed again when the image is rendered again
+            renderer.render();
+            buffer.flush();
+            assertEquals(18, buffer.getFlushedTiles());
+        }
+        assertThrows(IllegalArgumentException.class, () -> renderer.setRenderTarget(new FrameBuffer(40, 20)));
+    }
+
+    /**
+     * Tests that high dynamic range rendering is rejected together with a
+     * mapped frame buffer as render target, since the radiance can only be
+     * stored in the HDR frame buffer on the heap.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Test
+    public void testHighDynamicRangeRejectsMappedTarget() throws IOException {
+        Scene scene = new Scene(Color.BLUE);
+        Camera camera = new Camera(new Vertex3D(0, 0, 100), 0, 0, 0, 75, 100, 40, 40);
+        scene.addCamera(camera);
+        Renderer renderer = new Renderer(scene, camera.getUuid(), 12);
+
+        try (MappedFrameBuffer buffer = MappedFrameBuffer.create(directory.resolve("image.rrfb"), 40, 40, 16)) {
+            renderer.setHighDynamicRange(true);
+            assertThrows(IllegalStateException.class, () -> renderer.setRenderTarget(buffer));
+            assertNull(renderer.getRenderTarget());
+
+            renderer.setHighDynamicRange(false);
+            renderer.setRenderTarget(buffer);
+            assertThrows(IllegalStateException.class, () -> renderer.setHighDynamicRange(true));
+            assertFalse(renderer.isHighDynamicRange());
+        }
+
+        // The frame buffer of the viewpane remains a valid target
+        renderer.setRenderTarget(camera.getViewPane().getFrameBuffer());
+        renderer.setHighDynamicRange(true);
+        renderer.render();
+        assertNotNull(camera.getViewPane().getHdrFrameBuffer());
+        assertEquals(Color.BLUE.getRGB(), camera.getViewPane().getFrameBuffer().getRgb(20, 20));
+    }
+
+    /**
+     * Tests that a tiled TIFF file can be read by ImageIO.
+     *
+     * @throws IOException if the files cannot be written or read
+     */
+    @Test
+    public void testTiledTiff() throws IOException {
+        try (MappedFrameBuffer buffer = MappedFrameBuffer.create(directory.resolve("image.rrfb"), 40, 20, 16)) {
+            fill(buffer);
+            Path path = directory.resolve("image.tif");
+            TiledTiff.write(buffer, buffer.getTileSize(), path);
+            assertEquals(8 + 6 * 16 * 16 * 3 + 2 + 11 * 12 + 4 + 6 + 8 * 6, Files.size(path));
+            BufferedImage image = ImageIO.read(path.toFile());
+            assertEquals(40, image.getWidth());
+            assertEquals(20, image.getHeight());
+            for (int j = 0; j < 20; j++) {
+                for (int i = 0; i < 40; i++) {
+                    assertEquals(buffer.getRgb(i, j), image.getRGB(i, j));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package rayrangers.raytracer.view;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the StreamingPngWriter class.
+ */
+public class StreamingPngWriterTest {
+
+    /**
+     * Temporary directory of the PNG files.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Creates a frame buffer with smooth gradients and some noise, so all
+     * filter types are used.
+     *
+     * @param width  width in pixels
+     * @param height height in pixels
+     * @return filled frame buffer
+     */
+    private static FrameBuffer createImage(int width, int height) {
+        Random random = new Random(3);
+        FrameBuffer image = new FrameBuffer(width, height);
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                int noise = random.nextInt(8) == 0 ? random.nextInt(256) : 0;
+                image.setRgb(i, j, 0xFF000000 | (i * 3 & 0xFF) << 16 | (j * 5 & 0xFF) << 8 | (i + j + noise) & 0xFF);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Reads a PNG file and asserts that it has the pixels of an image.
+     *
+     * @param expected expected image
+     * @param path     path of the PNG file
+     * @throws IOException if the file cannot be read
+     */
+    private static void assertImage(FrameBuffer expected, Path path) throws IOException {
+        BufferedImage image = ImageIO.read(path.toFile());
+        assertEquals(expected.getWidth(), image.getWidth());
+        assertEquals(expected.getHeight(), image.getHeight());
+        for (int j = 0; j < expected.getHeight(); j++) {
+            for (int i = 0; i < expected.getWidth(); i++) {
+                assertEquals(expected.getRgb(i, j), image.getRGB(i, j), "pixel " + i + "," + j);
+            }
+        }
+    }
+
+    /**
+     * Tests that tiles completed in random order are written into a valid
+     * PNG file, with the bands written as soon as they are complete.
+     *
+     * @throws IOException if the file cannot be written or read
+     */
+    @Test
+    public void testTilesInRandomOrder() throws IOException {
+        FrameBuffer expected = createImage(75, 50);
+        FrameBuffer target = new FrameBuffer(75, 50);
+        Path path = directory.resolve("tiles.png");
+        List<Tile> tiles = new ArrayList<>(Tile.split(75, 50, 12));
+        Collections.shuffle(tiles, new Random(7));
+        try (StreamingPngWriter writer = new StreamingPngWriter(target, path, 16, 3)) {
+            for (Tile tile : tiles) {
+                for (int j = tile.getY(); j < tile.getY() + tile.getHeight(); j++) {
+                    for (int i = tile.getX(); i < tile.getX() + tile.getWidth(); i++) {
+                        writer.setRgb(i, j, expected.getRgb(i, j));
+                    }
+                }
+                writer.tileCompleted(tile);
+            }
+            assertFalse(Files.exists(path));
+        }
+        assertImage(expected, path);
+    }
+
+    /**
+     * Tests that the IDAT chunks form a single zlib stream with a valid
+     * checksum, which ImageIO does not verify.
+     *
+     * @throws IOException         if the file cannot be written or read
+     * @throws DataFormatException if the stream is invalid
+     */
+    @Test
+    public void testZlibStream() throws IOException, DataFormatException {
+        FrameBuffer image = createImage(40, 37);
+        Path path = directory.resolve("image.png");
+        new StreamingPngWriter(image, path, 5, 2).close();
+        assertImage(image, path);
+
+        ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(path));
+        file.position(8);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        while (file.hasRemaining()) {
+            int length = file.getInt();
+            byte[] type = new byte[4];
+            file.get(type);
+            if (new String(type, StandardCharsets.US_ASCII).equals("IDAT")) {
+                stream.write(file.array(), file.position(), length);
+            }
+            file.position(file.position() + length + 4);
+        }
+        Inflater inflater = new Inflater();
+        inflater.setInput(stream.toByteArray());
+        byte[] raw = new byte[37 * (40 * 3 + 1)];
+        assertEquals(raw.length, inflater.inflate(raw));
+        assertTrue(inflater.finished());
+        inflater.end();
+    }
+
+    /**
+     * Tests combining the checksums of consecutive byte sequences.
+     */
+    @Test
+    public void testCombineAdler() {
+        byte[] data = new byte[100000];
+        new Random(1).nextBytes(data);
+        Adler32 whole = new Adler32();
+        whole.update(data);
+        Adler32 first = new Adler32();
+        first.update(data, 0, 70001);
+        Adler32 second = new Adler32();
+        second.update(data, 70001, data.length - 70001);
+        assertEquals(whole.getValue(),
+                StreamingPngWriter.combineAdler(first.getValue(), second.getValue(), data.length - 70001));
+        assertEquals(whole.getValue(), StreamingPngWriter.combineAdler(1, whole.getValue(), data.length));
+    }
+}
@@ -0,0 +1,90 @@
+package rayrangers.raytracer.view;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the Tile class.
+ */
+public class TileTest {
+
+    /**
+     * Counts how often every pixel of a grid is covered by a list of tiles.
+     *
+     * @param tiles tiles to count
+     * @param resX  resolution in x-direction
+     * @param resY  resolution in y-direction
+     * @return coverage count per pixel, row by row
+     */
+    private static int[] coverage(List<Tile> tiles, int resX, int resY) {
+        int[] counts = new int[resX * resY];
+        for (Tile tile : tiles) {
+            for (int j = tile.getY(); j < tile.getY() + tile.getHeight(); j++) {
+                for (int i = tile.getX(); i < tile.getX() + tile.getWidth(); i++) {
+                    counts[j * resX + i]++;
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Tests that the tiles of both orders cover every pixel exactly once.
+     */
+    @Test
+    public void testCoverEveryPixelOnce() {
+        for (List<Tile> tiles : List.of(Tile.split(70, 45, 16), Tile.splitInZOrder(70, 45, 16))) {
+            assertEquals(5 * 3, tiles.size());
+            for (int count : coverage(tiles, 70, 45)) {
+                assertEquals(1, count);
+            }
+        }
+    }
+
+    /**
+     * Tests that the tiles at the right and bottom border are cropped if the
+     * resolution is not a multiple of the tile size.
+     */
+    @Test
+    public void testCropBorderTiles() {
+        List<Tile> tiles = Tile.split(70, 45, 16);
+        for (Tile tile : tiles) {
+            assertEquals(tile.getX() == 64 ? 6 : 16, tile.getWidth());
+            assertEquals(tile.getY() == 32 ? 13 : 16, tile.getHeight());
+        }
+        Tile corner = tiles.get(tiles.size() - 1);
+        assertEquals(64, corner.getX());
+        assertEquals(32, corner.getY());
+
+        // A tile larger than the grid is cropped to the grid
+        List<Tile> single = Tile.split(10, 7, 32);
+        assertEquals(1, single.size());
+        assertEquals(10, single.get(0).getWidth());
+        assertEquals(7, single.get(0).getHeight());
+    }
+
+    /**
+     * Tests that the Z-order visits the four tiles of a 2x2 block first.
+     */
+    @Test
+    public void testZOrder() {
+        List<Tile> tiles = Tile.splitInZOrder(64, 64, 16);
+        int[][] expected = { { 0, 0 }, { 16, 0 }, { 0, 16 }, { 16, 16 }, { 32, 0 } };
+        for (int k = 0; k < expected.length; k++) {
+            assertEquals(expected[k][0], tiles.get(k).getX());
+            assertEquals(expected[k][1], tiles.get(k).getY());
+        }
+    }
+
+    /**
+     * Tests that tile sizes below one are rejected.
+     */
+    @Test
+    public void testInvalidTileSize() {
+        assertThrows(IllegalArgumentException.class, () -> Tile.split(10, 10, 0));
+        assertThrows(IllegalArgumentException.class, () -> Tile.splitInZOrder(10, 10, -1));
+    }
+}
@@ -0,0 +1,213 @@
+package rayrangers.raytracer.world;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import rayrangers.raytracer.algorithm.HitRecord;
+import rayrangers.raytracer.algorithm.Ray;
+import rayrangers.raytracer.algorithm.bounding.BvhBuildMode;
+import rayrangers.raytracer.algorithm.bounding.BvhUpdateMode;
+import rayrangers.raytracer.algorithm.bounding.LinearBoundingVolumeHierarchy;
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.math.Vector3D;
+import rayrangers.raytracer.math.Vertex3D;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the Entity class.
+ */
+public class EntityTest {
+
+    /**
+     * Creates an entity of thin triangles along the x1 axis.
+     *
+     * @return entity
+     */
+    private static Entity createRow() {
+        List<Face> faces = new ArrayList<>();
+        Mesh mesh = new Mesh();
+        for (int i = 0; i < 100; i++) {
+            int v1 = mesh.addVertex(i, 0, 0);
+            int v2 = mesh.addVertex(i + 0.5, 0, 0);
+            int v3 = mesh.addVertex(i, 0.5, 0.5);
+            faces.add(new Triangle(null, null, mesh, mesh.addTriangle(v1, v2, v3)));
+        }
+        return new Entity("row", faces, mesh);
+    }
+
+    /**
+     * Tests that rigid transformations refit the existing BVH tree.
+     */
+    @Test
+    public void testTransformRefits() {
+        Entity entity = createRow();
+        entity.transform(new TrafoMatrix(0, 0, 0, 0, 0, 0, 1, 1, 1));
+        LinearBoundingVolumeHierarchy tree = entity.getBvhTree();
+
+        entity.transform(new TrafoMatrix(5, 10, 0, 0, 0, 0, 1, 1, 1));
+        assertSame(tree, entity.getBvhTree());
+        assertEquals(5, entity.getBoundingBox().getMin(0), 1e-12);
+        assertEquals(10, entity.getBoundingBox().getMin(1), 1e-12);
+    }
+
+    /**
+     * Tests that the tree is rebuilt if its quality degrades past the threshold
+     * or if the update mode requests it.
+     */
+    @Test
+    public void testTransformRebuilds() {
+        Entity entity = createRow();
+        entity.transform(new TrafoMatrix(0, 0, 0, 0, 0, 0, 1, 1, 1));
+        LinearBoundingVolumeHierarchy tree = entity.getBvhTree();
+
+        // Squeezing the row along x1 makes the boxes of all leaves overlap
+        entity.transform(new TrafoMatrix(0, 0, 0, 0, 0, 0, 0.01, 1, 1));
+        assertNotSame(tree, entity.getBvhTree());
+
+        tree = entity.getBvhTree();
+        entity.setBvhUpdateMode(BvhUpdateMode.REBUILD);
+        entity.transform(new TrafoMatrix(1, 0, 0, 0, 0, 0, 1, 1, 1));
+        assertNotSame(tree, entity.getBvhTree());
+        assertThrows(IllegalArgumentException.class, () -> entity.setRebuildThreshold(0.5));
+    }
+
+    /**
+     * Tests that a scene converts the mesh and BVH tree of added entities and
+     * that rebuilt trees keep the precision.
+     */
+    @Test
+    public void testSceneGeometryPrecision() {
+        Entity entity = createRow();
+        entity.transform(new TrafoMatrix(0.1, 0, 0, 0, 0, 0, 1, 1, 1));
+        Scene scene = new Scene(null);
+        scene.setGeometryPrecision(GeometryPrecision.FLOAT);
+        scene.addEntity(entity);
+        assertEquals(GeometryPrecision.FLOAT, entity.getMesh().getPrecision());
+        assertEquals(GeometryPrecision.FLOAT, entity.getBvhTree().getPrecision());
+        assertTrue(entity.getBoundingBox().getMin(0) <= entity.getMesh().getCoord(0, 0));
+
+        entity.setBvhUpdateMode(BvhUpdateMode.REBUILD);
+        entity.transform(new TrafoMatrix(1, 0, 0, 0, 0, 0, 1, 1, 1));
+        assertEquals(GeometryPrecision.FLOAT, entity.getBvhTree().getPrecision());
+
+        scene.setGeometryPrecision(GeometryPrecision.DOUBLE);
+        assertEquals(GeometryPrecision.DOUBLE, entity.getMesh().getPrecision());
+        assertEquals(GeometryPrecision.DOUBLE, entity.getBvhTree().getPrecision());
+    }
+
+    /**
+     * Tests that a scene moves added entities off-heap, that rebuilt trees
+     * stay off-heap and that moving them back restores the scene precision.
+     */
+    @Test
+    public void testSceneGeometryStorage() {
+        Entity entity = createRow();
+        entity.transform(new TrafoMatrix(0.1, 0, 0, 0, 0, 0, 1, 1, 1));
+        Scene scene = new Scene(null);
+        scene.setGeometryStorage(GeometryStorage.OFF_HEAP);
+        scene.addEntity(entity);
+        assertEquals(GeometryStorage.OFF_HEAP, entity.getMesh().getStorage());
+        assertEquals(GeometryStorage.OFF_HEAP, entity.getBvhTree().getStorage());
+        assertEquals(GeometryPrecision.FLOAT, entity.getMesh().getPrecision());
+        assertEquals(GeometryPrecision.DOUBLE, entity.getGeometryPrecision());
+        assertTrue(entity.getBoundingBox().getMin(0) <= entity.getMesh().getCoord(0, 0));
+
+        entity.setBvhUpdateMode(BvhUpdateMode.REBUILD);
+        entity.transform(new TrafoMatrix(1, 0, 0, 0, 0, 0, 1, 1, 1));
+        assertEquals(GeometryStorage.OFF_HEAP, entity.getBvhTree().getStorage());
+        assertEquals(1.1f, entity.getMesh().getPositionBuffer().get(0));
+
+        scene.setGeometryStorage(GeometryStorage.HEAP);
+        assertEquals(GeometryStorage.HEAP, entity.getMesh().getStorage());
+        assertEquals(GeometryPrecision.DOUBLE, entity.getMesh().getPrecision());
+        assertEquals(GeometryPrecision.DOUBLE, entity.getBvhTree().getPrecision());
+        assertEquals(GeometryStorage.HEAP, entity.getBvhTree().getStorage());
+    }
+
+    /**
+     * Tests that a lazy entity only computes its bounds when transformed and
+     * builds its tree once the first ray enters them, hitting like an eager
+     * entity.
+     */
+    @Test
+    public void testLazyBvhBuild() {
+        TrafoMatrix tm = new TrafoMatrix(0, 2, 0, 0, 0, 0, 1, 1, 1);
+        Entity eager = createRow();
+        eager.transform(tm);
+        Entity lazy = createRow();
+        lazy.setBvhBuildMode(BvhBuildMode.LAZY);
+        lazy.transform(tm);
+        assertNull(lazy.getBvhTree());
+        for (int axis = 0; axis < 3; axis++) {
+            assertEquals(eager.getBoundingBox().getMin(axis), lazy.getBoundingBox().getMin(axis));
+            assertEquals(eager.getBoundingBox().getMax(axis), lazy.getBoundingBox().getMax(axis));
+        }
+
+        // A ray missing the bounds does not build the tree
+        HitRecord record = new HitRecord();
+        assertFalse(lazy.hit(new Ray(new Vertex3D(0, -10, 10), new Vector3D(1, 0, 0)), 0, Double.MAX_VALUE, record));
+        assertNull(lazy.getBvhTree());
+
+        Ray ray = new Ray(new Vertex3D(50.1, 2.1, 10), new Vector3D(0, 0, -1));
+        HitRecord expected = new HitRecord();
+        assertTrue(eager.hit(ray, 0, Double.MAX_VALUE, expected));
+        assertTrue(lazy.hit(ray, 0, Double.MAX_VALUE, record));
+        assertEquals(expected.getT(), record.getT());
+        LinearBoundingVolumeHierarchy tree = lazy.getBvhTree();
+        assertNotNull(tree);
+
+        // Refitting keeps the built tree, rebuilding defers it again
+        lazy.transform(new TrafoMatrix(1, 0, 0, 0, 0, 0, 1, 1, 1));
+        assertSame(tree, lazy.getBvhTree());
+        lazy.setBvhUpdateMode(BvhUpdateMode.REBUILD);
+        lazy.transform(new TrafoMatrix(1, 0, 0, 0, 0, 0, 1, 1, 1));
+        assertNull(lazy.getBvhTree());
+        assertEquals(2, lazy.getBoundingBox().getMin(0), 1e-12);
+    }
+
+    /**
+     * Tests that threads reaching a lazy entity at the same time build its
+     * tree only once and all find the hit.
+     *
+     * @throws Exception if a thread fails
+     */
+    @Test
+    public void testLazyBvhBuildIsThreadSafe() throws Exception {
+        Entity lazy = createRow();
+        lazy.setBvhBuildMode(BvhBuildMode.LAZY);
+        lazy.transform(new TrafoMatrix(0, 0, 0, 0, 0, 0, 1, 1, 1));
+        Scene scene = new Scene(null);
+        scene.addEntity(lazy);
+        scene.buildTopLevelHierarchy();
+
+        int threads = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<LinearBoundingVolumeHierarchy>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int x = i * 20;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    Ray ray = new Ray(new Vertex3D(x + 0.1, 0.1, 10), new Vector3D(0, 0, -1));
+                    assertTrue(scene.hit(ray, 0, Double.MAX_VALUE, new HitRecord()));
+                    return lazy.getBvhTree();
+                }));
+            }
+            start.countDown();
+            for (Future<LinearBoundingVolumeHierarchy> future : futures) {
+                LinearBoundingVolumeHierarchy tree = future.get();
+                assertSame(lazy.getBvhTree(), tree);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package rayrangers.raytracer.world;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import rayrangers.raytracer.algorithm.HitRecord;
+import rayrangers.raytracer.algorithm.Ray;
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.math.Vector3D;
+import rayrangers.raytracer.math.Vertex3D;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the Instance class.
+ */
+public class InstanceTest {
+
+    /**
+     * Creates an untransformed entity of random triangles inside a cube with
+     * edge length 10. The same seed yields the same entity.
+     *
+     * @param seed seed of the random number generator
+     * @return entity
+     */
+    private static Entity createRandomEntity(long seed) {
+        Random random = new Random(seed);
+        List<Face> faces = new ArrayList<>();
+        Mesh mesh = new Mesh();
+        for (int i = 0; i < 100; i++) {
+            double x = random.nextDouble() * 10;
+            double y = random.nextDouble() * 10;
+            double z = random.nextDouble() * 10;
+            int v1 = mesh.addVertex(x, y, z);
+            int v2 = mesh.addVertex(x + random.nextDouble() * 2, y + random.nextDouble() * 2, z);
+            int v3 = mesh.addVertex(x, y + random.nextDouble() * 2, z + random.nextDouble() * 2);
+            faces.add(new Triangle(null, null, mesh, mesh.addTriangle(v1, v2, v3)));
+        }
+        return new Entity("random", faces, mesh);
+    }
+
+    /**
+     * Tests that an instance is hit exactly like an entity with the
+     * transformation baked into its vertices.
+     */
+    @Test
+    public void testSameHitsAsTransformedEntity() {
+        TrafoMatrix tm = new TrafoMatrix(20, -5, 30, 30, 45, -60, 2, 1.5, 0.5);
+        Entity baked = createRandomEntity(11);
+        baked.transform(tm);
+        Instance instance = new Instance(createRandomEntity(11), tm);
+
+        Random random = new Random(12);
+        int hits = 0;
+        for (int i = 0; i < 2000; i++) {
+            Vertex3D origin = new Vertex3D(random.nextDouble() * 100 - 50, random.nextDouble() * 100 - 50, -100);
+            Vector3D target = new Vector3D(random.nextDouble() * 60, random.nextDouble() * 60 - 30,
+                    random.nextDouble() * 60);
+            Ray ray = new Ray(origin, target.sub(origin.getlocationVector()));
+            HitRecord expected = new HitRecord();
+            HitRecord actual = new HitRecord();
+            boolean hit = baked.hit(ray, 0, Double.MAX_VALUE, expected);
+            assertEquals(hit, instance.hit(ray, 0, Double.MAX_VALUE, actual), "hit differs for ray " + i);
+            if (hit) {
+                hits++;
+                assertEquals(expected.getT(), actual.getT(), 1e-9);
+                for (int dim = 1; dim <= 3; dim++) {
+                    assertEquals(expected.getHitPoint().getCoord(dim), actual.getHitPoint().getCoord(dim), 1e-9);
+                    assertEquals(Math.abs(expected.getNormalVector().getCoord(dim)),
+                            Math.abs(actual.getNormalVector().getCoord(dim)), 1e-9);
+                    for (int v = 0; v < 3; v++) {
+                        assertEquals(expected.getAllVert()[v].getCoord(dim), actual.getAllVert()[v].getCoord(dim),
+                                1e-9);
+                    }
+                }
+            }
+        }
+        assertTrue(hits > 0, "test rays should hit the instance");
+    }
+
+    /**
+     * Tests that many instances share the BVH tree of one entity and are found
+     * through the top-level hierarchy of the scene.
+     */
+    @Test
+    public void testSharedEntityInScene() {
+        Entity entity = createRandomEntity(13);
+        Scene scene = new Scene(Color.BLACK);
+        for (int i = 0; i < 100; i++) {
+            scene.addInstance(new Instance(entity, new TrafoMatrix(i * 20, 0, 0, 0, 0, 0, 1, 1, 1)));
+        }
+        scene.buildTopLevelHierarchy();
+        assertEquals(100, scene.getTopLevelHierarchy().getObjectCount());
+
+        // Ray along x1 through the row of copies hits the first copy
+        Ray ray = new Ray(new Vertex3D(-10, 5, 5), new Vector3D(1, 0, 0));
+        HitRecord record = new HitRecord();
+        assertTrue(scene.hit(ray, 0, Double.MAX_VALUE, record));
+        assertTrue(record.getHitPoint().getCoord(1) <= 12);
+        assertTrue(entity.getFaces().contains((Face) record.getHitObject()));
+    }
+}
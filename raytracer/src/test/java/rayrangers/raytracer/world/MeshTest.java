@@ -0,0 +1,195 @@
+package rayrangers.raytracer.world;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import rayrangers.raytracer.math.TrafoMatrix;
+import rayrangers.raytracer.math.Vertex3D;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the Mesh class.
+ */
+public class MeshTest {
+
+    /**
+     * Tests that the arrays grow while vertices and triangles are added.
+     */
+    @Test
+    public void testAddGrowsArrays() {
+        Mesh mesh = new Mesh(1, 1);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, mesh.addVertex(i, 2 * i, 3 * i));
+        }
+        mesh.setNormal(50, 0, 0, 1);
+        for (int i = 0; i < 98; i++) {
+            assertEquals(i, mesh.addTriangle(i, i + 1, i + 2));
+        }
+        mesh.trim();
+
+        assertEquals(100, mesh.getVertexCount());
+        assertEquals(98, mesh.getTriangleCount());
+        assertEquals(300, mesh.getPositions().length);
+        assertEquals(294, mesh.getIndices().length);
+        assertEquals(42, mesh.getCoord(21, 1));
+        assertEquals(52, mesh.getVertexIndex(50, 2));
+        assertTrue(mesh.hasNormal(50));
+        assertFalse(mesh.hasNormal(49));
+        assertThrows(IndexOutOfBoundsException.class, () -> mesh.addTriangle(0, 1, 100));
+    }
+
+    /**
+     * Tests that triangles read their vertices from the mesh.
+     */
+    @Test
+    public void testTriangleUsesMesh() {
+        Mesh mesh = new Mesh();
+        mesh.addVertex(0, 0, 0);
+        mesh.addVertex(3, 0, 0);
+        mesh.addVertex(0, 3, 0);
+        Triangle triangle = new Triangle(null, null, mesh, mesh.addTriangle(0, 1, 2));
+        assertEquals(1, triangle.getCenter().getCoord(1), 1e-12);
+
+        mesh.transform(new TrafoMatrix(0, 0, 6, 0, 0, 0, 1, 1, 1));
+        Vertex3D[] vertices = triangle.getAllVert();
+        assertEquals(6, vertices[2].getCoord(3), 1e-12);
+        assertEquals(3, vertices[2].getCoord(2), 1e-12);
+
+        double[] bounds = { 10, 10, 10, -10, -10, -10 };
+        triangle.enclose(bounds, 0);
+        assertArrayEquals(new double[] { 0, 0, 6, 3, 3, 6 }, bounds, 1e-12);
+    }
+
+    /**
+     * Tests that normal vectors stay perpendicular to the surface under
+     * non-uniform scaling.
+     */
+    @Test
+    public void testTransformNormals() {
+        Mesh mesh = new Mesh();
+        mesh.addVertex(1, 0, 0);
+        mesh.addVertex(0, 1, 0);
+        mesh.addVertex(0, 0, 0);
+        double s = Math.sqrt(0.5);
+        mesh.setNormal(0, s, s, 0); // Normal of the plane x1 + x2 = 1
+        mesh.transform(new TrafoMatrix(5, 5, 5, 0, 0, 0, 2, 1, 1));
+
+        // Plane through (2, 0) and (0, 1) after scaling x1 by two
+        double[] normals = mesh.getNormals();
+        double[] positions = mesh.getPositions();
+        double edge1 = positions[3] - positions[0];
+        double edge2 = positions[4] - positions[1];
+        assertEquals(0, normals[0] * edge1 + normals[1] * edge2, 1e-12);
+        assertEquals(1, Math.hypot(normals[0], normals[1]), 1e-12);
+        assertTrue(normals[0] > 0 && normals[1] > 0);
+        assertTrue(Double.isNaN(normals[3]));
+    }
+
+    /**
+     * Tests that single precision rounds the coordinates to the nearest float and
+     * halves the position and normal arrays.
+     */
+    @Test
+    public void testFloatPrecision() {
+        Mesh mesh = new Mesh();
+        mesh.addVertex(0.1, 0.2, 0.3);
+        mesh.addVertex(1, 0, 0);
+        mesh.addVertex(0, 1, 0);
+        mesh.setNormal(2, 0, 0, 1);
+        mesh.addTriangle(0, 1, 2);
+        mesh.trim();
+        long doubleBytes = mesh.getMemoryBytes();
+
+        mesh.setPrecision(GeometryPrecision.FLOAT);
+        assertNull(mesh.getPositions());
+        assertEquals(9, mesh.getFloatPositions().length);
+        assertEquals((float) 0.1, mesh.getCoord(0, 0));
+        assertTrue(mesh.hasNormal(2));
+        assertFalse(mesh.hasNormal(1));
+        assertTrue(mesh.getMemoryBytes() < doubleBytes);
+
+        // Vertices added later are stored in single precision as well
+        assertEquals(3, mesh.addVertex(0.7, 0, 0));
+        assertEquals((float) 0.7, mesh.getCoord(3, 0));
+
+        mesh.setPrecision(GeometryPrecision.DOUBLE);
+        assertNull(mesh.getFloatPositions());
+        assertEquals((float) 0.3, mesh.getCoord(0, 2));
+    }
+
+    /**
+     * Tests that a mesh wrapping buffers reads and transforms them in place
+     * and copies them into arrays once it grows.
+     */
+    @Test
+    public void testBufferStorage() {
+        FloatBuffer positions = FloatBuffer.wrap(new float[] { 0, 0, 0, 1, 0, 0, 0, 1, 0 });
+        float nan = Float.NaN;
+        FloatBuffer normals = FloatBuffer.wrap(new float[] { nan, nan, nan, nan, nan, nan, 0, 0, 1 });
+        Mesh mesh = new Mesh(positions, normals, IntBuffer.wrap(new int[] { 0, 1, 2 }));
+        assertEquals(GeometryPrecision.FLOAT, mesh.getPrecision());
+        assertNull(mesh.getIndices());
+        assertEquals(1, mesh.getCoord(1, 0));
+        assertEquals(2, mesh.getVertexIndex(0, 2));
+        assertTrue(mesh.hasNormal(2));
+        assertFalse(mesh.hasNormal(0));
+        assertEquals(Float.BYTES * 18 + Integer.BYTES * 3, mesh.getMemoryBytes());
+
+        mesh.transform(new TrafoMatrix(0, 0, 0, 0, 0, 0, 2, 2, 2));
+        assertEquals(2, positions.get(3));
+        assertSame(positions.array(), mesh.getPositionBuffer().array());
+        mesh.trim();
+        assertNotNull(mesh.getPositionBuffer());
+
+        assertEquals(3, mesh.addVertex(5, 5, 5));
+        assertNull(mesh.getPositionBuffer());
+        assertEquals(2, mesh.getCoord(1, 0));
+        assertEquals(5, mesh.getCoord(3, 2));
+        assertTrue(mesh.hasNormal(2));
+        assertFalse(mesh.hasNormal(3));
+        assertEquals(1, mesh.addTriangle(0, 1, 3));
+        assertEquals(2, mesh.getVertexIndex(0, 2));
+
+        // Read-only buffers are copied before they are written
+        FloatBuffer readOnly = FloatBuffer.wrap(new float[] { 0, 0, 0, 1, 0, 0, 0, 1, 0 }).asReadOnlyBuffer();
+        Mesh readOnlyMesh = new Mesh(readOnly, null, IntBuffer.wrap(new int[] { 0, 1, 2 }));
+        readOnlyMesh.transform(new TrafoMatrix(1, 0, 0, 0, 0, 0, 1, 1, 1));
+        assertEquals(2, readOnlyMesh.getCoord(1, 0));
+        assertEquals(1, readOnly.get(3));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new Mesh(FloatBuffer.allocate(9), null, IntBuffer.wrap(new int[] { 0, 1, 3 })));
+    }
+
+    /**
+     * Tests that a mesh moved off-heap is stored in direct buffers in single
+     * precision and can be moved back.
+     */
+    @Test
+    public void testOffHeapStorage() {
+        Mesh mesh = new Mesh(new double[] { 0.1, 0, 0, 1, 0, 0, 0, 1, 0 }, null, new int[] { 0, 1, 2 });
+        assertEquals(GeometryStorage.HEAP, mesh.getStorage());
+        mesh.setStorage(GeometryStorage.OFF_HEAP);
+        assertEquals(GeometryStorage.OFF_HEAP, mesh.getStorage());
+        assertTrue(mesh.getPositionBuffer().isDirect());
+        assertNull(mesh.getPositions());
+        assertEquals(GeometryPrecision.FLOAT, mesh.getPrecision());
+        assertEquals((float) 0.1, mesh.getCoord(0, 0));
+        assertEquals(1, mesh.getVertexIndex(0, 1));
+
+        mesh.setNormal(1, 0, 0, 1);
+        assertEquals(GeometryStorage.HEAP, mesh.getStorage());
+        mesh.setStorage(GeometryStorage.OFF_HEAP);
+        assertTrue(mesh.getNormalBuffer().isDirect());
+        assertTrue(mesh.hasNormal(1));
+        assertFalse(mesh.hasNormal(0));
+
+        mesh.setStorage(GeometryStorage.HEAP);
+        assertNull(mesh.getPositionBuffer());
+        assertEquals(9, mesh.getFloatPositions().length);
+        assertArrayEquals(new int[] { 0, 1, 2 }, mesh.getIndices());
+    }
+}
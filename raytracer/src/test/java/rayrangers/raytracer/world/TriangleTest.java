@@ -0,0 +1,53 @@
+package rayrangers.raytracer.world;
+
+import org.junit.jupiter.api.Test;
+
+import rayrangers.raytracer.algorithm.Ray;
+import rayrangers.raytracer.math.Vector3D;
+import rayrangers.raytracer.math.Vertex3D;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the Triangle class.
+ */
+public class TriangleTest {
+
+    /**
+     * Ray starting below the x1-x2 plane and pointing along the x3 axis.
+     */
+    private final Ray ray = new Ray(new Vertex3D(1, 1, -5), new Vector3D(0, 0, 1));
+
+    /**
+     * Tests that a ray through the inside of a triangle hits it.
+     */
+    @Test
+    public void testHit() {
+        Triangle triangle = new Triangle(null, null, new Vertex3D(0, 0, 0), new Vertex3D(4, 0, 0),
+                new Vertex3D(0, 4, 0));
+        assertEquals(5, triangle.intersect(ray, 0, Double.MAX_VALUE), 1e-12);
+    }
+
+    /**
+     * Tests that a degenerate triangle with collinear vertices is a miss
+     * instead of a hit at distance NaN.
+     */
+    @Test
+    public void testDegenerateTriangleIsMiss() {
+        Triangle triangle = new Triangle(null, null, new Vertex3D(0, 0, 0), new Vertex3D(1, 1, 0),
+                new Vertex3D(2, 2, 0));
+        assertEquals(Face.MISS, triangle.intersect(ray, 0, Double.MAX_VALUE));
+        assertFalse(triangle.hit(ray, 0, Double.MAX_VALUE, null));
+    }
+
+    /**
+     * Tests that a ray parallel to the plane of a triangle misses it.
+     */
+    @Test
+    public void testParallelRayIsMiss() {
+        Triangle triangle = new Triangle(null, null, new Vertex3D(0, 0, 0), new Vertex3D(4, 0, 0),
+                new Vertex3D(0, 0, 4));
+        Ray parallel = new Ray(new Vertex3D(1, 0, -5), new Vector3D(0, 0, 1));
+        assertEquals(Face.MISS, triangle.intersect(parallel, 0, Double.MAX_VALUE));
+    }
+}